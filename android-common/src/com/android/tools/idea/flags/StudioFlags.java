@@ -287,6 +287,12 @@ public final class StudioFlags {
     "Allows a LocalResourceRepository that implements Disposable to notify its parents when it is being disposed, so that they can "
     + "release any stale references.",
     true);
+
+  public static final Flag<Boolean> RESOURCE_REPOSITORY_PARALLEL_LOADING = new BooleanFlag(
+    RESOURCE_REPOSITORY, "parallel.loading", "Parse resource files in parallel on cache miss",
+    "When a resource folder can't be fully loaded from the persistent cache, parse the remaining resource files on a pool of "
+    + "threads instead of on the loading thread.",
+    true);
   //endregion
 
   //region Run/Debug
@@ -886,6 +892,10 @@ public final class StudioFlags {
     EMBEDDED_EMULATOR, "screenshot.statistics.interval", "Aggregation Interval for Screenshot Statistics",
     "Aggregation interval in seconds for statistics of received Emulator screenshots",
     120);
+  public static final Flag<Boolean> EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS = new BooleanFlag(
+    EMBEDDED_EMULATOR, "shared.memory.screenshots", "Receive Emulator Screenshots Through Shared Memory",
+    "Makes the Emulator write display images to a memory-mapped file instead of sending them over gRPC",
+    false);
   public static final Flag<Boolean> EMBEDDED_EMULATOR_TRACE_GRPC_CALLS = new BooleanFlag(
     EMBEDDED_EMULATOR, "trace.grpc.calls", "Enable Emulator gRPC Tracing",
     "Enables tracing of most Emulator gRPC calls",
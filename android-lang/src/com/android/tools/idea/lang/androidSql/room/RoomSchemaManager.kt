@@ -28,6 +28,7 @@ import com.android.tools.idea.projectsystem.getScopeType
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi.JavaPsiFacade
 import com.intellij.psi.PsiAnnotation
@@ -50,17 +51,23 @@ import com.intellij.psi.search.searches.AnnotatedElementsSearch.searchPsiClasses
 import com.intellij.psi.util.CachedValue
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.InheritanceUtil
 import com.intellij.psi.util.PsiModificationTracker
 import com.intellij.psi.util.PsiUtil
 import com.intellij.testFramework.LightVirtualFile
 import org.jetbrains.kotlin.asJava.elements.KtLightField
 import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtStringTemplateExpression
 import org.jetbrains.uast.UAnnotation
 import org.jetbrains.uast.UExpression
+import org.jetbrains.uast.ULiteralExpression
 import org.jetbrains.uast.toUElementOfType
 
 private val LOG = Logger.getInstance(RoomSchemaManager::class.java)
 
+private val ENTITY_TABLE_KEY = Key.create<CachedValue<RoomTable?>>("RoomSchemaManager.ENTITY_TABLE")
+private val VIEW_TABLE_KEY = Key.create<CachedValue<RoomTable?>>("RoomSchemaManager.VIEW_TABLE")
+
 /** Utility for constructing a [RoomSchema] using IDE indices. */
 class RoomSchemaManager(val module: Module) {
   companion object {
@@ -105,8 +112,8 @@ class RoomSchemaManager(val module: Module) {
     val psiFacade = JavaPsiFacade.getInstance(module.project) ?: return null
 
     // Some of this logic is repeated in [RoomReferenceSearchExecutor], make sure to keep them in sync.
-    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY) { createTable(it, RoomTable.Type.ENTITY) }
-    val views = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DATABASE_VIEW) { createTable(it, RoomTable.Type.VIEW) }
+    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY) { getTable(it, RoomTable.Type.ENTITY) }
+    val views = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DATABASE_VIEW) { getTable(it, RoomTable.Type.VIEW) }
     val daos = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DAO) {
       Dao(pointerManager.createSmartPsiElementPointer(it))
     }
@@ -132,7 +139,60 @@ class RoomSchemaManager(val module: Module) {
     return result
   }
 
-  private fun createTable(psiClass: PsiClass, type: RoomTable.Type): RoomTable? {
+  /**
+   * Returns the [RoomTable] for an `@Entity` or `@DatabaseView` class.
+   *
+   * The table is cached in the class and only recomputed after a change to one of the files it was built from, so the schema can be
+   * rebuilt after an unrelated change without analyzing the fields and annotations of every entity again.
+   */
+  private fun getTable(psiClass: PsiClass, type: RoomTable.Type): RoomTable? {
+    val key = when (type) {
+      RoomTable.Type.ENTITY -> ENTITY_TABLE_KEY
+      RoomTable.Type.VIEW -> VIEW_TABLE_KEY
+    }
+    return CachedValuesManager.getCachedValue(psiClass, key) {
+      val builder = RoomTableBuilder(SmartPointerManager.getInstance(psiClass.project))
+      val table = builder.createTable(psiClass, type)
+      CachedValueProvider.Result(table, *builder.dependencies.toTypedArray())
+    }
+  }
+
+  private fun PsiAnnotation.extractClassesFromAttribute(attribute: String): Set<PsiClassPointer> = findDeclaredAttributeValue(attribute)
+  ?.let { it as? PsiArrayInitializerMemberValue }
+  ?.initializers
+  ?.mapNotNullTo(HashSet()) {
+    val classObjectAccessExpression = it as? PsiClassObjectAccessExpression ?: return@mapNotNullTo null
+    PsiUtil.resolveClassInClassTypeOnly(classObjectAccessExpression.operand.type)
+      ?.let(pointerManager::createSmartPsiElementPointer)
+  } ?: emptySet()
+
+  private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager, daos: Set<Dao>): RoomDatabase? {
+    val dataBaseAnnotation = psiClass.modifierList?.findAnnotation(RoomAnnotations.DATABASE) ?: return null
+    val entities: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("entities")
+    val views: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("views")
+
+    val daosExposedInDatabase: Set<PsiClassPointer> = psiClass.allMethods
+      .mapNotNullTo((HashSet())) {
+        val resolvedClass = (it.returnType as? PsiClassReferenceType)?.resolve()
+        resolvedClass
+          ?.takeIf { daos.any { dao -> dao.psiClass.element == resolvedClass } }
+          ?.let(pointerManager::createSmartPsiElementPointer)
+      }
+
+    return RoomDatabase(pointerManager.createSmartPsiElementPointer(psiClass), entities = entities, daos = daosExposedInDatabase, views = views)
+  }
+}
+
+/**
+ * Builds a [RoomTable] from an `@Entity` or `@DatabaseView` class, collecting the [dependencies] of the result: the files of the class,
+ * its superclasses and its embedded classes. Name overrides that aren't literals may refer to constants anywhere in the project, in
+ * which case the result depends on all PSI.
+ */
+private class RoomTableBuilder(private val pointerManager: SmartPointerManager) {
+  val dependencies = mutableSetOf<Any>()
+
+  fun createTable(psiClass: PsiClass, type: RoomTable.Type): RoomTable? {
+    addClassDependencies(psiClass)
     val (tableName, tableNameElement) = getNameAndNameElement(
       psiClass,
       annotationName = when (type) {
@@ -226,40 +286,20 @@ class RoomSchemaManager(val module: Module) {
     embeddedAnnotation: PsiAnnotation,
     currentPrefix: String
   ): Sequence<RoomMemberColumn> {
-    val newPrefix = embeddedAnnotation.getAttributeValue("prefix")?.evaluate() as? String
+    val prefixExpression = embeddedAnnotation.getAttributeValue("prefix")
+    if (prefixExpression != null && prefixExpression !is ULiteralExpression) {
+      dependencies.add(PsiModificationTracker.MODIFICATION_COUNT)
+    }
+    val newPrefix = prefixExpression?.evaluate() as? String
                     ?: ""
 
     val type = (embeddedMember as? PsiField)?.type ?: (embeddedMember as PsiMethod).returnType
     val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(type) ?: return emptySequence()
+    addClassDependencies(embeddedClass)
 
     return createColumnsFromFields(embeddedClass, currentPrefix + newPrefix, false)
   }
 
-  private fun PsiAnnotation.extractClassesFromAttribute(attribute: String): Set<PsiClassPointer> = findDeclaredAttributeValue(attribute)
-  ?.let { it as? PsiArrayInitializerMemberValue }
-  ?.initializers
-  ?.mapNotNullTo(HashSet()) {
-    val classObjectAccessExpression = it as? PsiClassObjectAccessExpression ?: return@mapNotNullTo null
-    PsiUtil.resolveClassInClassTypeOnly(classObjectAccessExpression.operand.type)
-      ?.let(pointerManager::createSmartPsiElementPointer)
-  } ?: emptySet()
-
-  private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager, daos: Set<Dao>): RoomDatabase? {
-    val dataBaseAnnotation = psiClass.modifierList?.findAnnotation(RoomAnnotations.DATABASE) ?: return null
-    val entities: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("entities")
-    val views: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("views")
-
-    val daosExposedInDatabase: Set<PsiClassPointer> = psiClass.allMethods
-      .mapNotNullTo((HashSet())) {
-        val resolvedClass = (it.returnType as? PsiClassReferenceType)?.resolve()
-        resolvedClass
-          ?.takeIf { daos.any { dao -> dao.psiClass.element == resolvedClass } }
-          ?.let(pointerManager::createSmartPsiElementPointer)
-      }
-
-    return RoomDatabase(pointerManager.createSmartPsiElementPointer(psiClass), entities = entities, daos = daosExposedInDatabase, views = views)
-  }
-
   private fun <T> getNameAndNameElement(
     element: T,
     annotationName: AndroidxName,
@@ -311,6 +351,9 @@ class RoomSchemaManager(val module: Module) {
           T : PsiNamedElement {
     val annotation = element.modifierList?.findAnnotation(annotationName)
     val nameExpression = annotation?.getAttributeValue(annotationAttributeName)
+    if (nameExpression != null && nameExpression !is ULiteralExpression) {
+      dependencies.add(PsiModificationTracker.MODIFICATION_COUNT)
+    }
     val name = nameExpression?.evaluate() as? String
     if (name != null && nameExpression.sourcePsi != null) {
       return name to nameExpression.sourcePsi!!
@@ -320,6 +363,9 @@ class RoomSchemaManager(val module: Module) {
     // In that case element.modifierList.findAnnotation(annotationName) returns null because it searches only for annotation with FIELD target
     if (name == null && element is KtLightField) {
       val ktExpression = element.getPropertyAnnotationExpression(annotationName, annotationAttributeName)
+      if (ktExpression != null && (ktExpression !is KtStringTemplateExpression || ktExpression.hasInterpolation())) {
+        dependencies.add(PsiModificationTracker.MODIFICATION_COUNT)
+      }
       ktExpression?.tryEvaluateConstant()?.let {
         return it to ktExpression
       }
@@ -328,17 +374,25 @@ class RoomSchemaManager(val module: Module) {
     return null
   }
 
-  private inline fun AndroidxName.bothNames(f: (String) -> Unit) {
-    f(oldName())
-    f(newName())
+  /** Adds the source files of the class and its superclasses, which declare the fields the columns are created from. */
+  private fun addClassDependencies(psiClass: PsiClass) {
+    dependencies.add(psiClass.navigationElement.containingFile ?: psiClass)
+    for (superClass in InheritanceUtil.getSuperClasses(psiClass)) {
+      dependencies.add(superClass.navigationElement.containingFile ?: superClass)
+    }
   }
+}
 
-  private fun PsiModifierList.findAnnotation(annotation: AndroidxName): PsiAnnotation? {
-    return findAnnotation(annotation.oldName()) ?: findAnnotation(annotation.newName())
-  }
+private inline fun AndroidxName.bothNames(f: (String) -> Unit) {
+  f(oldName())
+  f(newName())
+}
 
-  private fun PsiAnnotation.getAttributeValue(attributeName: String): UExpression? {
-    val uAnnotation = toUElementOfType<UAnnotation>()
-    return uAnnotation?.findDeclaredAttributeValue(attributeName)
-  }
+private fun PsiModifierList.findAnnotation(annotation: AndroidxName): PsiAnnotation? {
+  return findAnnotation(annotation.oldName()) ?: findAnnotation(annotation.newName())
+}
+
+private fun PsiAnnotation.getAttributeValue(attributeName: String): UExpression? {
+  val uAnnotation = toUElementOfType<UAnnotation>()
+  return uAnnotation?.findDeclaredAttributeValue(attributeName)
 }
@@ -264,6 +264,40 @@ class RoomSchemaManagerTest : JavaCodeInsightFixtureAdtTestCase() {
     assertThat(entity.nameElement).isNotSameAs(entity.psiClass)
   }
 
+  fun testEntities_unrelatedChangeReusesTables() {
+    val address = myFixture.addRoomEntity("com.example.Address", tableNameOverride = "addresses")
+    myFixture.addRoomEntity("com.example.User")
+    val otherClass = myFixture.addClass(
+      """
+        package com.example;
+
+        public class Other {}
+        """.trimIndent())
+
+    val tables = getSchema(otherClass).tables
+
+    myFixture.openFileInEditor(otherClass.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(otherClass.lBrace!!.textOffset + 1)
+    myFixture.type("private int count;")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    // The schema is rebuilt, but tables of entities in unchanged files are reused.
+    val newTables = getSchema(otherClass).tables
+    assertThat(newTables).hasSize(2)
+    for (table in newTables) {
+      assertThat(tables.any { it === table }).named("${table.name} reused").isTrue()
+    }
+
+    myFixture.openFileInEditor(address.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(address.lBrace!!.textOffset + 1)
+    myFixture.type("private String street;")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    val addressTable = getSchema(otherClass).tables.single { it.name == "addresses" }
+    assertThat(tables.any { it === addressTable }).named("addresses reused").isFalse()
+    assertThat(addressTable.columns.map { it.name }).contains("street")
+  }
+
   fun testDatabases_single() {
     myFixture.addRoomEntity("com.example.User")
     myFixture.addRoomEntity("com.example.Address")
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport;
+
+import com.android.tools.idea.protobuf.ByteString;
+import com.android.tools.idea.protobuf.UnsafeByteOperations;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+/**
+ * Byte cache of the proxy layer, e.g. for the heap dumps and traces generated on pre-O devices until the datastore fetches them.
+ * <p>
+ * The most recently used contents are kept in memory up to a budget. Beyond that, the least recently used contents are written to a
+ * spill directory and are memory-mapped back when requested, so that the cached contents do not need to fit in the heap. Contents read
+ * back from the spill directory wrap the mapped file without copying it.
+ * <p>
+ * This class is thread-safe. Spilled contents are written without holding the lock of the cache, so that reading other contents is not
+ * blocked by the disk.
+ */
+public final class ProxyBytesCache extends AbstractMap<String, ByteString> {
+  public static final long DEFAULT_MEMORY_BUDGET_BYTES = 64 * 1024 * 1024;
+
+  private static Logger getLogger() { return Logger.getInstance(ProxyBytesCache.class); }
+
+  private final long myMemoryBudgetBytes;
+  private final Object myLock = new Object();
+  // Access-ordered, so that the least recently used contents are spilled first.
+  @NotNull private final LinkedHashMap<String, ByteString> myInMemory = new LinkedHashMap<>(16, 0.75f, true);
+  @NotNull private final Map<String, Path> mySpilled = new HashMap<>();
+  // Keys of the in-memory contents being written to the spill directory.
+  @NotNull private final Set<String> mySpilling = new HashSet<>();
+  private long myInMemoryBytes;
+  @Nullable private Path mySpillDirectory;
+  private int myNextSpillFileId;
+
+  public ProxyBytesCache() {
+    this(DEFAULT_MEMORY_BUDGET_BYTES);
+  }
+
+  public ProxyBytesCache(long memoryBudgetBytes) {
+    myMemoryBudgetBytes = memoryBudgetBytes;
+  }
+
+  @Override
+  @Nullable
+  public ByteString put(@NotNull String key, @NotNull ByteString value) {
+    ByteString previous;
+    List<Map.Entry<String, ByteString>> toSpill = new ArrayList<>();
+    synchronized (myLock) {
+      previous = removeLocked(key);
+      myInMemory.put(key, value);
+      myInMemoryBytes += value.size();
+      long bytesToSpill = myInMemoryBytes - myMemoryBudgetBytes;
+      for (Map.Entry<String, ByteString> entry : myInMemory.entrySet()) {
+        if (bytesToSpill <= 0) {
+          break;
+        }
+        // Contents already being spilled by another thread will leave the memory as well.
+        if (mySpilling.add(entry.getKey())) {
+          toSpill.add(new SimpleImmutableEntry<>(entry));
+        }
+        bytesToSpill -= entry.getValue().size();
+      }
+    }
+    toSpill.forEach(this::spill);
+    return previous;
+  }
+
+  @Override
+  @Nullable
+  public ByteString get(@Nullable Object key) {
+    Path file;
+    synchronized (myLock) {
+      ByteString value = myInMemory.get(key);
+      if (value != null) {
+        return value;
+      }
+      file = mySpilled.get(key);
+    }
+    return file == null ? null : map(file);
+  }
+
+  /**
+   * Removes and returns the contents of {@code key}. The spill file of the contents, if any, is deleted once they are mapped.
+   */
+  @Override
+  @Nullable
+  public ByteString remove(@Nullable Object key) {
+    synchronized (myLock) {
+      return removeLocked(key);
+    }
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    synchronized (myLock) {
+      return myInMemory.containsKey(key) || mySpilled.containsKey(key);
+    }
+  }
+
+  @Override
+  public int size() {
+    synchronized (myLock) {
+      return myInMemory.size() + mySpilled.size();
+    }
+  }
+
+  /**
+   * Removes all the contents, and deletes the spill directory.
+   */
+  @Override
+  public void clear() {
+    Path spillDirectory;
+    synchronized (myLock) {
+      myInMemory.clear();
+      mySpilled.clear();
+      myInMemoryBytes = 0;
+      spillDirectory = mySpillDirectory;
+      mySpillDirectory = null;
+    }
+    if (spillDirectory != null) {
+      FileUtil.delete(spillDirectory.toFile());
+    }
+  }
+
+  /**
+   * Returns a snapshot of the entries of the cache. Spilled contents are mapped back in memory, so this should only be used for debugging.
+   */
+  @Override
+  @NotNull
+  public Set<Entry<String, ByteString>> entrySet() {
+    Map<String, ByteString> snapshot = new LinkedHashMap<>();
+    for (String key : keySnapshot()) {
+      ByteString value = get(key);
+      if (value != null) {
+        snapshot.put(key, value);
+      }
+    }
+    return snapshot.entrySet();
+  }
+
+  @TestOnly
+  long getInMemoryBytes() {
+    synchronized (myLock) {
+      return myInMemoryBytes;
+    }
+  }
+
+  @TestOnly
+  int getSpilledCount() {
+    synchronized (myLock) {
+      return mySpilled.size();
+    }
+  }
+
+  @NotNull
+  private List<String> keySnapshot() {
+    synchronized (myLock) {
+      List<String> keys = new ArrayList<>(myInMemory.keySet());
+      keys.addAll(mySpilled.keySet());
+      return keys;
+    }
+  }
+
+  @Nullable
+  private ByteString removeLocked(@Nullable Object key) {
+    ByteString value = myInMemory.remove(key);
+    if (value != null) {
+      myInMemoryBytes -= value.size();
+      return value;
+    }
+    Path file = mySpilled.remove(key);
+    if (file == null) {
+      return null;
+    }
+    ByteString contents = map(file);
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      // The file may still be mapped on some platforms. It will be deleted with the spill directory.
+      getLogger().debug("Cannot delete " + file, e);
+    }
+    return contents;
+  }
+
+  private void spill(@NotNull Map.Entry<String, ByteString> entry) {
+    Path file = null;
+    try {
+      file = createSpillFile();
+      try (OutputStream stream = Channels.newOutputStream(FileChannel.open(file, StandardOpenOption.WRITE))) {
+        entry.getValue().writeTo(stream);
+      }
+    }
+    catch (IOException e) {
+      // Keep the contents in memory.
+      getLogger().warn("Cannot spill cached bytes to disk", e);
+      deleteQuietly(file);
+      file = null;
+    }
+    synchronized (myLock) {
+      mySpilling.remove(entry.getKey());
+      // The contents may have been removed or replaced while they were written.
+      if (file != null && myInMemory.get(entry.getKey()) == entry.getValue()) {
+        myInMemory.remove(entry.getKey());
+        myInMemoryBytes -= entry.getValue().size();
+        mySpilled.put(entry.getKey(), file);
+        file = null;
+      }
+    }
+    deleteQuietly(file);
+  }
+
+  @NotNull
+  private Path createSpillFile() throws IOException {
+    Path directory;
+    int fileId;
+    synchronized (myLock) {
+      if (mySpillDirectory == null) {
+        mySpillDirectory = FileUtil.createTempDirectory("transport-proxy-bytes", null, true).toPath();
+      }
+      directory = mySpillDirectory;
+      fileId = myNextSpillFileId++;
+    }
+    return Files.createFile(directory.resolve(fileId + ".bin"));
+  }
+
+  @NotNull
+  private static ByteString map(@NotNull Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      // The buffer is read-only and the file is never written again, so it is safe to wrap it without copying.
+      return UnsafeByteOperations.unsafeWrap(buffer);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path file) {
+    if (file != null) {
+      FileUtil.delete(file.toFile());
+    }
+  }
+}
@@ -35,6 +35,8 @@ import com.android.tools.profiler.proto.Agent;
 import com.android.tools.profiler.proto.Common.CommonConfig;
 import com.android.tools.profiler.proto.Transport;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.messages.MessageBus;
@@ -46,8 +48,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -129,10 +137,23 @@ public final class TransportFileManager implements TransportFileCopier {
   private static final String CODE_CACHE_DIR = "code_cache";
   private static final String DAEMON_CONFIG_FILE = "daemon.config";
   private static final String AGENT_CONFIG_FILE = "agent.config";
+  @VisibleForTesting static final String DEPLOYMENT_MANIFEST_FILE = "deployment.manifest";
   private static final int DEVICE_PORT = 12389;
+
+  /**
+   * Content hashes of the host files, reused as long as the files are not modified.
+   */
+  private static final Map<Path, HostFileHash> ourHostFileHashes = new ConcurrentHashMap<>();
+
   @NotNull private final IDevice myDevice;
   @NotNull private final MessageBus myMessageBus;
 
+  /**
+   * The deployment manifest of the device, which maps the on-device path of the deployed files to the content hash of their host file.
+   * Only set while {@link #copyFilesToDevice()} runs, so that the manifest is read once for all the files.
+   */
+  @Nullable private Map<String, String> myDeviceManifest;
+
   public TransportFileManager(@NotNull IDevice device, @NotNull MessageBus messageBus) {
     myDevice = device;
     myMessageBus = messageBus;
@@ -140,33 +161,43 @@ public final class TransportFileManager implements TransportFileCopier {
 
   public void copyFilesToDevice()
     throws AdbCommandRejectedException, IOException, ShellCommandUnresponsiveException, SyncException, TimeoutException {
-    myDevice.executeShellCommand("rm -rf " + DEVICE_DIR, new NullOutputReceiver());
     if (!AndroidProfilerDownloader.getInstance().makeSureComponentIsInPlace()) return;
-    // Copy resources into device directory, all resources need to be included in profiler-artifacts target to build and
-    // in AndroidStudioProperties.groovy to package in release.
-    copyFileToDevice(HostFiles.TRANSPORT);
-    if (isAtLeastO(myDevice)) {
-      copyFileToDevice(HostFiles.PERFA);
-      copyFileToDevice(HostFiles.JVMTI_AGENT);
-      // Simpleperf can be used by CPU profiler for method tracing, if it is supported by target device.
-      // TODO: In case of simpleperf, remember the device doesn't support it, so we don't try to use it to profile the device.
-      copyFileToDevice(HostFiles.SIMPLEPERF);
-    }
-    if (StudioFlags.PROFILER_TRACEBOX.get()) {
-      if(isBetweenMAndP(myDevice)) {
-        copyFileToDevice(HostFiles.TRACEBOX);
+    long startTimeNs = System.nanoTime();
+    // The files are not deleted from the device beforehand, so that the files that did not change since they were deployed, according to
+    // the deployment manifest, are not pushed again.
+    myDeviceManifest = readDeviceManifest();
+    try {
+      // Copy resources into device directory, all resources need to be included in profiler-artifacts target to build and
+      // in AndroidStudioProperties.groovy to package in release.
+      copyFileToDevice(HostFiles.TRANSPORT);
+      if (isAtLeastO(myDevice)) {
+        copyFileToDevice(HostFiles.PERFA);
+        copyFileToDevice(HostFiles.JVMTI_AGENT);
+        // Simpleperf can be used by CPU profiler for method tracing, if it is supported by target device.
+        // TODO: In case of simpleperf, remember the device doesn't support it, so we don't try to use it to profile the device.
+        copyFileToDevice(HostFiles.SIMPLEPERF);
+      }
+      if (StudioFlags.PROFILER_TRACEBOX.get()) {
+        if(isBetweenMAndP(myDevice)) {
+          copyFileToDevice(HostFiles.TRACEBOX);
+        }
+      }
+      else if (myDevice.getVersion().getFeatureLevel() == AndroidVersion.VersionCodes.P) {
+        // Profiler is side-loading Perfetto on P. On Q+, the system image's Perfetto is used.
+        copyFileToDevice(HostFiles.PERFETTO);
+        copyFileToDevice(HostFiles.PERFETTO_SO);
+        copyFileToDevice(HostFiles.TRACED);
+        copyFileToDevice(HostFiles.TRACED_PROBE);
       }
     }
-    else if (myDevice.getVersion().getFeatureLevel() == AndroidVersion.VersionCodes.P) {
-      // Profiler is side-loading Perfetto on P. On Q+, the system image's Perfetto is used.
-      copyFileToDevice(HostFiles.PERFETTO);
-      copyFileToDevice(HostFiles.PERFETTO_SO);
-      copyFileToDevice(HostFiles.TRACED);
-      copyFileToDevice(HostFiles.TRACED_PROBE);
+    finally {
+      myDeviceManifest = null;
     }
 
     pushDaemonConfig();
     pushAgentConfig(AGENT_CONFIG_FILE, null);
+    getLogger().info(String.format("Deployed transport files to %s in %d ms", myDevice,
+                                   TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNs)));
   }
 
   @NotNull
@@ -258,6 +289,7 @@ public final class TransportFileManager implements TransportFileCopier {
   /**
    * Copies a file from host (where Studio is running) to the device.
    * If executable, then the abi is taken into account, which may result in multiple files copied.
+   * Files that did not change since they were last copied to the device are skipped.
    * <p>
    * Returns a list of the on-device paths of copied files.
    */
@@ -265,82 +297,180 @@ public final class TransportFileManager implements TransportFileCopier {
   public List<String> copyFileToDevice(@NotNull DeployableFile hostFile)
     throws AdbCommandRejectedException, IOException {
     final Path dirPath = hostFile.getDir().toPath();
-    List<String> paths = new ArrayList<>();
+    List<FileToDeploy> files = new ArrayList<>();
 
     if (!hostFile.isExecutable()) {
       Path path = dirPath.resolve(hostFile.getFileName());
-      paths.add(pushFileToDevice(path, hostFile.getFileName(), hostFile.isExecutable()));
-      return paths;
+      files.add(new FileToDeploy(path, hostFile.getFileName(), hostFile.isExecutable()));
     }
-
-    if (!hostFile.isAbiDependent()) {
+    else if (!hostFile.isAbiDependent()) {
       Abi abi = getBestAbi(hostFile);
       Path path = dirPath.resolve(abi + "/" + hostFile.getFileName());
-      paths.add(pushFileToDevice(path, hostFile.getFileName(), true));
+      files.add(new FileToDeploy(path, hostFile.getFileName(), true));
     }
     else {
       String format = hostFile.getOnDeviceAbiFileNameFormat();
       assert format != null;
       for (Abi abi : getBestAbis(hostFile)) {
         Path path = dirPath.resolve(abi + "/" + hostFile.getFileName());
-        paths.add(pushFileToDevice(path, String.format(format, abi.getCpuArch()), true));
+        files.add(new FileToDeploy(path, String.format(format, abi.getCpuArch()), true));
       }
     }
-    return paths;
+    return pushFilesToDevice(files);
   }
 
-  private String pushFileToDevice(Path localPath, String fileName, boolean executable)
-    throws AdbCommandRejectedException, IOException {
-    // Refrain from using platform independent utility to concatenate path (ex: Paths.get) because this file path is intended for Android
-    // file system which uses UNIX fashioned path whereas the host (the machine that executes this code) may be a Windows machine.
-    String deviceFilePath = DEVICE_DIR + fileName;
-    try {
+  /**
+   * Pushes the files whose content hash differs from the one in the deployment manifest of the device, and updates the manifest. The
+   * setup of all the files is done in a single shell command before pushing them, and another one after.
+   */
+  @NotNull
+  private List<String> pushFilesToDevice(@NotNull List<FileToDeploy> files) throws AdbCommandRejectedException, IOException {
+    long startTimeNs = System.nanoTime();
+    Map<String, String> manifest = myDeviceManifest != null ? myDeviceManifest : readDeviceManifest();
+    List<String> paths = new ArrayList<>();
+    Map<FileToDeploy, String> filesToPush = new LinkedHashMap<>();
+    for (FileToDeploy file : files) {
       // TODO: Handle the case where we don't have file for this platform.
-      if (!Files.exists(localPath)) {
-        throw new TransportNonExistingFileException(String.format("File %s could not be found for device: %s", localPath, myDevice),
-                                                    localPath.toString());
+      if (!Files.exists(file.myLocalPath)) {
+        throw new TransportNonExistingFileException(String.format("File %s could not be found for device: %s", file.myLocalPath, myDevice),
+                                                    file.myLocalPath.toString());
       }
+      paths.add(file.myDevicePath);
+      String hash = getHostFileHash(file.myLocalPath);
+      if (hash.equals(manifest.get(file.myDevicePath))) {
+        getLogger().info(String.format("Skipping %s, which is up-to-date in %s", file.myFileName, DEVICE_DIR));
+      }
+      else {
+        filesToPush.put(file, hash);
+      }
+    }
+    if (filesToPush.isEmpty()) {
+      return paths;
+    }
+
+    try {
       /*
        * If copying the agent fails, we will attach the previous version of the agent
-       * Hence we first delete old agent before copying new one
+       * Hence we first delete old agent, and its manifest entry, before copying new one
        */
-      getLogger().info(String.format("Pushing %s to %s...", fileName, DEVICE_DIR));
-      myDevice.executeShellCommand("rm -f " + deviceFilePath, new NullOutputReceiver());
+      Set<String> folders = new LinkedHashSet<>();
+      StringBuilder removeCommand = new StringBuilder("rm -f");
+      for (FileToDeploy file : filesToPush.keySet()) {
+        manifest.remove(file.myDevicePath);
+        removeCommand.append(' ').append(file.myDevicePath);
+        folders.add(file.myDevicePath.substring(0, file.myDevicePath.lastIndexOf('/')));
+      }
       // Make the directory not writable for the group or the world. Otherwise, any unprivileged app running on device can replace the
       // content of file in this directory and archive escalation of privileges when Android Studio will decide to launch the
       // corresponding functionality.
       // "chown shell:shell" ensures proper ownership of DEVICE_DIR if adb is rooted.
-      String folder = deviceFilePath.substring(0, deviceFilePath.lastIndexOf('/'));
-      myDevice.executeShellCommand("mkdir -p -m 755 " + folder + "; chown shell:shell " + folder, new NullOutputReceiver());
-      myDevice.pushFile(localPath.toString(), deviceFilePath);
-      myDevice.executeShellCommand("chown shell:shell " + deviceFilePath, new NullOutputReceiver());
-
-      if (executable) {
-        /*
-         * Use chmod octal scheme to ensure the executable is not writable for the group or the world. Otherwise, any unprivileged app
-         * running on device can replace the content of file and archive escalation of privileges when Android Studio will decide to
-         * launch the corresponding functionality.
-         * We could use "chmod -w" and "chmod +x". However, in older devices, chmod letter usage isn't fully supported although CTS tests
-         * have been added for it since.
-         */
-        String cmd = "chmod 755 " + deviceFilePath;
-        myDevice.executeShellCommand(cmd, new NullOutputReceiver());
-      }
-      else {
-        /*
-         * Starting with API 34 there is an additional check that a dex cannot be writable (see dalvik_system_DexFile.cc).
-         */
-        if (fileName.endsWith(".jar")) {
-          String cmd = "chmod 444 " + deviceFilePath;
-          myDevice.executeShellCommand(cmd, new NullOutputReceiver());
+      String folderList = String.join(" ", folders);
+      myDevice.executeShellCommand(String.format("%s; mkdir -p -m 755 %s; chown shell:shell %s; %s",
+                                                 removeCommand, folderList, folderList, buildWriteManifestCommand(manifest)),
+                                   new NullOutputReceiver());
+
+      List<String> ownedPaths = new ArrayList<>();
+      List<String> executablePaths = new ArrayList<>();
+      List<String> readOnlyPaths = new ArrayList<>();
+      for (Map.Entry<FileToDeploy, String> entry : filesToPush.entrySet()) {
+        FileToDeploy file = entry.getKey();
+        getLogger().info(String.format("Pushing %s to %s...", file.myFileName, DEVICE_DIR));
+        myDevice.pushFile(file.myLocalPath.toString(), file.myDevicePath);
+        ownedPaths.add(file.myDevicePath);
+        if (file.myExecutable) {
+          /*
+           * Use chmod octal scheme to ensure the executable is not writable for the group or the world. Otherwise, any unprivileged app
+           * running on device can replace the content of file and archive escalation of privileges when Android Studio will decide to
+           * launch the corresponding functionality.
+           * We could use "chmod -w" and "chmod +x". However, in older devices, chmod letter usage isn't fully supported although CTS
+           * tests have been added for it since.
+           */
+          executablePaths.add(file.myDevicePath);
+        }
+        else if (file.myFileName.endsWith(".jar")) {
+          /*
+           * Starting with API 34 there is an additional check that a dex cannot be writable (see dalvik_system_DexFile.cc).
+           */
+          readOnlyPaths.add(file.myDevicePath);
         }
+        manifest.put(file.myDevicePath, entry.getValue());
+      }
+
+      StringBuilder setupCommand = new StringBuilder("chown shell:shell ").append(String.join(" ", ownedPaths));
+      if (!executablePaths.isEmpty()) {
+        setupCommand.append("; chmod 755 ").append(String.join(" ", executablePaths));
       }
-      getLogger().info(String.format("Successfully pushed %s to %s.", fileName, DEVICE_DIR));
+      if (!readOnlyPaths.isEmpty()) {
+        setupCommand.append("; chmod 444 ").append(String.join(" ", readOnlyPaths));
+      }
+      setupCommand.append("; ").append(buildWriteManifestCommand(manifest));
+      myDevice.executeShellCommand(setupCommand.toString(), new NullOutputReceiver());
+      getLogger().info(String.format("Successfully pushed %d of %d files to %s in %d ms.", filesToPush.size(), files.size(), DEVICE_DIR,
+                                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNs)));
     }
     catch (TimeoutException | SyncException | ShellCommandUnresponsiveException e) {
       throw new RuntimeException(e);
     }
-    return deviceFilePath;
+    return paths;
+  }
+
+  /**
+   * Reads the deployment manifest of the device, ignoring the entries of the files that no longer exist. Returns an empty manifest if
+   * it cannot be read, in which case all the files are pushed again.
+   */
+  @NotNull
+  private Map<String, String> readDeviceManifest() throws AdbCommandRejectedException, IOException {
+    Map<String, String> manifest = new TreeMap<>();
+    String manifestPath = DEVICE_DIR + DEPLOYMENT_MANIFEST_FILE;
+    String command = String.format(
+      "if [ -f %1$s ]; then while read -r hash path; do [ -f \"$path\" ] && echo \"$hash $path\"; done < %1$s; fi", manifestPath);
+    try {
+      myDevice.executeShellCommand(command, new MultiLineReceiver() {
+        @Override
+        public void processNewLines(@NonNull String[] lines) {
+          for (String line : lines) {
+            String[] entry = line.trim().split(" ", 2);
+            if (entry.length == 2) {
+              manifest.put(entry[1], entry[0]);
+            }
+          }
+        }
+
+        @Override
+        public boolean isCancelled() {
+          return false;
+        }
+      });
+    }
+    catch (TimeoutException | ShellCommandUnresponsiveException e) {
+      getLogger().warn("Cannot read the deployment manifest of " + myDevice, e);
+      manifest.clear();
+    }
+    return manifest;
+  }
+
+  @NotNull
+  private static String buildWriteManifestCommand(@NotNull Map<String, String> manifest) {
+    String manifestPath = DEVICE_DIR + DEPLOYMENT_MANIFEST_FILE;
+    if (manifest.isEmpty()) {
+      return "rm -f " + manifestPath;
+    }
+    StringBuilder command = new StringBuilder("printf '%s\\n'");
+    manifest.forEach((path, hash) -> command.append(" '").append(hash).append(' ').append(path).append('\''));
+    return command.append(" > ").append(manifestPath).toString();
+  }
+
+  @NotNull
+  private static String getHostFileHash(@NotNull Path path) throws IOException {
+    long size = Files.size(path);
+    long lastModified = Files.getLastModifiedTime(path).toMillis();
+    HostFileHash cached = ourHostFileHashes.get(path);
+    if (cached != null && cached.mySize == size && cached.myLastModified == lastModified) {
+      return cached.myHash;
+    }
+    String hash = MoreFiles.asByteSource(path).hash(Hashing.sha256()).toString();
+    ourHostFileHashes.put(path, new HostFileHash(size, lastModified, hash));
+    return hash;
   }
 
   /**
@@ -472,4 +602,32 @@ public final class TransportFileManager implements TransportFileCopier {
     }
     return abi.getCpuArch();
   }
+
+  private static final class FileToDeploy {
+    @NotNull private final Path myLocalPath;
+    @NotNull private final String myFileName;
+    // Refrain from using platform independent utility to concatenate path (ex: Paths.get) because this file path is intended for Android
+    // file system which uses UNIX fashioned path whereas the host (the machine that executes this code) may be a Windows machine.
+    @NotNull private final String myDevicePath;
+    private final boolean myExecutable;
+
+    private FileToDeploy(@NotNull Path localPath, @NotNull String fileName, boolean executable) {
+      myLocalPath = localPath;
+      myFileName = fileName;
+      myDevicePath = DEVICE_DIR + fileName;
+      myExecutable = executable;
+    }
+  }
+
+  private static final class HostFileHash {
+    private final long mySize;
+    private final long myLastModified;
+    @NotNull private final String myHash;
+
+    private HostFileHash(long size, long lastModified, @NotNull String hash) {
+      mySize = size;
+      myLastModified = lastModified;
+      myHash = hash;
+    }
+  }
 }
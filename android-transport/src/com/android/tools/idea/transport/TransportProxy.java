@@ -25,8 +25,6 @@ import com.android.tools.profiler.proto.Commands;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Transport;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -63,8 +61,8 @@ public class TransportProxy {
   @NotNull private final ManagedChannel myTransportChannel;
   @NotNull private final TransportServiceProxy myProxyService;
   @NotNull private final LinkedBlockingDeque<Common.Event> myProxyEventQueue = new LinkedBlockingDeque<>();
-  // General file/byte cache used in the proxy layer.
-  @NotNull private final Map<String, ByteString> myProxyBytesCache = Collections.synchronizedMap(new HashMap<>());
+  // General file/byte cache used in the proxy layer. Large contents are spilled to disk instead of being kept in memory.
+  @NotNull private final ProxyBytesCache myProxyBytesCache = new ProxyBytesCache();
 
   public TransportProxy(@NotNull IDevice ddmlibDevice, @NotNull Common.Device transportDevice, @NotNull ManagedChannel transportChannel) {
     myDevice = ddmlibDevice;
@@ -132,6 +130,10 @@ public class TransportProxy {
     catch (InterruptedException e) {
       throw new RuntimeException(e);
     }
+    finally {
+      // Nothing can fetch the cached contents once the proxy is disconnected.
+      myProxyBytesCache.clear();
+    }
   }
 
   @NotNull
@@ -77,7 +77,7 @@ import kotlin.math.max
  * as generated via [.transportDeviceFromIDevice]
  * @param channel         the channel that is used for communicating with the device daemon.
  * @param proxyEventQueue event queue shared by the proxy layer.
- * @param proxyBytesCache byte cache shared by the proxy layer.
+ * @param proxyBytesCache byte cache shared by the proxy layer, which must be thread-safe (see [ProxyBytesCache]).
  */
 class TransportServiceProxy(private val ddmlibDevice: IDevice,
                             private val transportDevice: Common.Device,
@@ -184,8 +184,9 @@ class TransportServiceProxy(private val ddmlibDevice: IDevice,
   }
 
   @VisibleForTesting
-  fun getBytes(request: BytesRequest, responseObserver: StreamObserver<BytesResponse>) = synchronized(proxyBytesCache) {
-    // Removes cache to save memory once it has been requested/cached by the datastore.
+  fun getBytes(request: BytesRequest, responseObserver: StreamObserver<BytesResponse>) {
+    // Removes cache to save memory once it has been requested/cached by the datastore. The cache is thread-safe, so concurrent requests
+    // for other contents are not blocked while these ones are fetched from the device or preprocessed.
     val response = when (val cached = proxyBytesCache.remove(request.id)) {
       null -> serviceStub.getBytes(request).toBuilder()
       else -> BytesResponse.newBuilder().setContents(cached)
@@ -15,12 +15,15 @@
  */
 package com.android.tools.idea.transport.poller
 
+import com.android.tools.idea.io.grpc.Context
+import com.android.tools.idea.io.grpc.StatusRuntimeException
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport
 import com.android.tools.profiler.proto.TransportServiceGrpc
 import com.intellij.openapi.diagnostic.Logger
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.ScheduledFuture
@@ -30,6 +33,10 @@ import kotlin.math.max
 /**
  * Encapsulates most of the polling functionality that Transport Pipeline subscribers would need to implement
  * to listen for updates and Events coming in from the pipeline
+ *
+ * By default, every listener is queried on each [poll]. After [subscribe], the poller also listens to the events pushed by the
+ * transport service, and a listener is only queried when an event of its kind was pushed or when its query changed (e.g. its time
+ * range). If the service does not support pushing events, or the subscription ends, every listener is queried again.
  */
 class TransportEventPoller(
   private val transportClient: TransportServiceGrpc.TransportServiceBlockingStub,
@@ -39,6 +46,16 @@ class TransportEventPoller(
   private val eventListeners: MutableList<TransportEventListener> = CopyOnWriteArrayList() // Used to preserve insertion order
   private val listenersToLastTimestamp = ConcurrentHashMap<TransportEventListener, Long>()
 
+  /** The last query of each listener, used to tell whether it changed while subscribed. */
+  private val listenersToLastRequest = ConcurrentHashMap<TransportEventListener, Transport.GetEventGroupsRequest>()
+  /** Listeners that may have new events since their last query. Only used while subscribed. */
+  private val listenersWithNewEvents: MutableSet<TransportEventListener> = ConcurrentHashMap.newKeySet()
+  /** Whether the transport service acknowledged the subscription started by [subscribe] and is pushing events. */
+  @Volatile
+  var isSubscribed = false
+    private set
+  private var subscriptionContext: Context.CancellableContext? = null
+
   /**
    * Adds a listener to the list to poll for and be notified of changes. Listeners are polled in insertion order.
    */
@@ -56,6 +73,76 @@ class TransportEventPoller(
     synchronized(writeLock) {
       eventListeners.remove(listener)
       listenersToLastTimestamp.remove(listener)
+      listenersToLastRequest.remove(listener)
+      listenersWithNewEvents.remove(listener)
+    }
+  }
+
+  /**
+   * Starts listening to the events pushed by the transport service on a thread of [executor], so that listeners are only queried when
+   * they may have new events. Does nothing if already subscribed. Once the service ends the subscription, by completing or failing
+   * the call, [subscribe] can be called again.
+   */
+  @JvmOverloads
+  fun subscribe(executor: Executor = subscriptionExecutor) {
+    val context = synchronized(writeLock) {
+      if (subscriptionContext != null) return
+      Context.current().withCancellation().also { subscriptionContext = it }
+    }
+    executor.execute(context.wrap(Runnable {
+      try {
+        // The iterator blocks until the service pushes an event, which also throttles the service if events are not consumed.
+        val events = transportClient.getEvents(Transport.GetEventsRequest.getDefaultInstance())
+        while (events.hasNext()) {
+          onEventPushed(events.next())
+        }
+      }
+      catch (e: StatusRuntimeException) {
+        // The service does not support pushing events, or the channel was shut down. Fall back to querying every listener.
+      }
+      finally {
+        onSubscriptionEnded(context)
+      }
+    }))
+  }
+
+  /**
+   * Stops listening to pushed events. Every listener is queried on each [poll] again.
+   */
+  fun unsubscribe() {
+    synchronized(writeLock) {
+      subscriptionContext?.cancel(null)
+      subscriptionContext = null
+      isSubscribed = false
+    }
+  }
+
+  private fun onSubscriptionEnded(context: Context.CancellableContext) {
+    synchronized(writeLock) {
+      // The poller may have been unsubscribed and subscribed again in the meantime, leave the new subscription alone.
+      if (subscriptionContext !== context) return
+      context.cancel(null)
+      subscriptionContext = null
+      isSubscribed = false
+    }
+  }
+
+  private fun onEventPushed(event: Common.Event) {
+    if (event == Common.Event.getDefaultInstance()) {
+      // The subscription is acknowledged, or events were dropped: any listener may have missed events.
+      listenersWithNewEvents.addAll(eventListeners)
+      isSubscribed = true
+      return
+    }
+    for (listener in eventListeners) {
+      // Pushed events do not carry their stream id, the stream filter is applied by the query.
+      val lastRequest = listenersToLastRequest[listener]
+      val matches = lastRequest == null ||
+                    (lastRequest.pid == 0 || lastRequest.pid == event.pid) &&
+                    (lastRequest.groupId == 0L || lastRequest.groupId == event.groupId)
+      if (listener.eventKind == event.kind && matches) {
+        listenersWithNewEvents.add(listener)
+      }
     }
   }
 
@@ -78,6 +165,18 @@ class TransportEventPoller(
       eventListener.groupId?.invoke()?.let { builder.groupId = it }
 
       val request = builder.build()
+      if (isSubscribed) {
+        if (listenersToLastRequest[eventListener] == request && !listenersWithNewEvents.contains(eventListener)) {
+          continue
+        }
+        // Events pushed from now on will trigger another query.
+        listenersWithNewEvents.remove(eventListener)
+      }
+      synchronized(writeLock) {
+        if (listenersToLastTimestamp.containsKey(eventListener)) {
+          listenersToLastRequest[eventListener] = request
+        }
+      }
 
       // Order by timestamp
       val response = transportClient.getEventGroups(request)
@@ -110,6 +209,9 @@ class TransportEventPoller(
 
   companion object {
     private val myExecutorService: ScheduledExecutorService = Executors.newScheduledThreadPool(1)
+    private val subscriptionExecutor: Executor = Executors.newCachedThreadPool { runnable ->
+      Thread(runnable, "TransportEventPoller subscription").apply { isDaemon = true }
+    }
     private val myScheduledFutures = mutableMapOf<TransportEventPoller, ScheduledFuture<*>>()
 
     @JvmOverloads
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport
+
+import com.android.tools.idea.protobuf.ByteString
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+
+class ProxyBytesCacheTest {
+  private val cache = ProxyBytesCache(10)
+
+  @After
+  fun tearDown() {
+    cache.clear()
+  }
+
+  @Test
+  fun contentsWithinBudgetStayInMemory() {
+    cache["a"] = bytes("12345")
+    cache["b"] = bytes("6789")
+
+    assertThat(cache.inMemoryBytes).isEqualTo(9)
+    assertThat(cache.spilledCount).isEqualTo(0)
+    assertThat(cache["a"]).isEqualTo(bytes("12345"))
+  }
+
+  @Test
+  fun leastRecentlyUsedContentsAreSpilled() {
+    cache["a"] = bytes("12345")
+    cache["b"] = bytes("67890")
+    // Access "a" so that "b" is the least recently used contents.
+    cache["a"]
+    cache["c"] = bytes("abc")
+
+    assertThat(cache.inMemoryBytes).isEqualTo(8)
+    assertThat(cache.spilledCount).isEqualTo(1)
+    assertThat(cache).hasSize(3)
+    assertThat(cache.containsKey("b")).isTrue()
+    assertThat(cache["b"]).isEqualTo(bytes("67890"))
+  }
+
+  @Test
+  fun removeReturnsSpilledContents() {
+    cache["a"] = bytes("0123456789")
+    cache["b"] = bytes("abcdefghij")
+    assertThat(cache.spilledCount).isEqualTo(1)
+
+    assertThat(cache.remove("a")).isEqualTo(bytes("0123456789"))
+    assertThat(cache.remove("b")).isEqualTo(bytes("abcdefghij"))
+    assertThat(cache.remove("a")).isNull()
+    assertThat(cache).isEmpty()
+    assertThat(cache.inMemoryBytes).isEqualTo(0)
+  }
+
+  @Test
+  fun putReplacesSpilledContents() {
+    cache["a"] = bytes("0123456789")
+    cache["b"] = bytes("abcdefghij")
+    assertThat(cache.spilledCount).isEqualTo(1)
+
+    assertThat(cache.put("a", bytes("xyz"))).isEqualTo(bytes("0123456789"))
+    assertThat(cache.spilledCount).isEqualTo(1)
+    assertThat(cache["a"]).isEqualTo(bytes("xyz"))
+    assertThat(cache["b"]).isEqualTo(bytes("abcdefghij"))
+  }
+
+  @Test
+  fun clearRemovesAllContents() {
+    cache["a"] = bytes("0123456789")
+    cache["b"] = bytes("abcdefghij")
+
+    cache.clear()
+    assertThat(cache).isEmpty()
+    assertThat(cache["a"]).isNull()
+    assertThat(cache.inMemoryBytes).isEqualTo(0)
+  }
+
+  private fun bytes(contents: String) = ByteString.copyFromUtf8(contents)
+}
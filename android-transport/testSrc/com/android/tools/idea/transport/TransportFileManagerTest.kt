@@ -16,6 +16,7 @@
 package com.android.tools.idea.transport
 
 import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
 import com.android.sdklib.devices.Abi
 import com.android.testutils.MockitoKt.whenever
 import com.android.tools.idea.flags.StudioFlags
@@ -37,13 +38,19 @@ import org.mockito.ArgumentCaptor
 import org.mockito.Mockito.eq
 import org.mockito.Mockito
 import org.mockito.Mockito.any
+import org.mockito.Mockito.atLeastOnce
+import org.mockito.Mockito.doAnswer
 import org.mockito.Mockito.doReturn
+import org.mockito.Mockito.never
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.spy
+import org.mockito.Mockito.startsWith
 import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import java.io.File
 
+private const val EMPTY_FILE_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"
+
 class TransportFileManagerTest {
   @get:Rule
   val timeout = Timeout.seconds(60)
@@ -97,8 +104,10 @@ class TransportFileManagerTest {
 
     fileManager.copyHostFileToDevice(hostFile)
     verify(mockDevice, times(1)).pushFile(hostPathCaptor.capture(), devicePathCaptor.capture())
-    verify(mockDevice, times(1)).executeShellCommand(eq("chmod 444 ${TransportFileManager.DEVICE_DIR}perfa.jar"), any())
-    verify(mockDevice, times(1)).executeShellCommand(eq("chown shell:shell ${TransportFileManager.DEVICE_DIR}perfa.jar"), any())
+    // The setup of the pushed files is done in a single command, after pushing them.
+    val setupCommand = captureShellCommands().last()
+    assertThat(setupCommand).contains("chmod 444 ${TransportFileManager.DEVICE_DIR}perfa.jar")
+    assertThat(setupCommand).contains("chown shell:shell ${TransportFileManager.DEVICE_DIR}perfa.jar")
 
     val expectedPaths = listOf(
       Pair("dev" + File.separator + "perfa.jar", "perfa.jar")
@@ -157,8 +166,9 @@ class TransportFileManagerTest {
 
     assertThat(hostPathCaptor.allValues).containsExactlyElementsIn(expectedPaths.map { it.first })
     assertThat(devicePathCaptor.allValues).containsExactlyElementsIn(expectedPaths.map { it.second })
-    verify(mockDevice, times(1)).executeShellCommand(eq("chmod 755 ${TransportFileManager.DEVICE_DIR}transport"), any())
-    verify(mockDevice, times(1)).executeShellCommand(eq("chown shell:shell ${TransportFileManager.DEVICE_DIR}transport"), any())
+    val setupCommand = captureShellCommands().last()
+    assertThat(setupCommand).contains("chmod 755 ${TransportFileManager.DEVICE_DIR}transport")
+    assertThat(setupCommand).contains("chown shell:shell ${TransportFileManager.DEVICE_DIR}transport")
   }
 
   @Test
@@ -266,10 +276,67 @@ class TransportFileManagerTest {
 
     val expectedDevicePaths = expectedAbis.map { "${TransportFileManager.DEVICE_DIR}${it.cpuArch}/perfetto" }
     assertThat(devicePathCaptor.allValues).containsExactlyElementsIn(expectedDevicePaths)
-    expectedAbis.map {
-      val filePath = "${TransportFileManager.DEVICE_DIR}${it.cpuArch}"
-      verify(mockDevice, times(1)).executeShellCommand(eq("mkdir -p -m 755 $filePath; chown shell:shell $filePath"), any())
+    // The folders of all the files are created in a single command.
+    val folders = expectedAbis.joinToString(" ") { "${TransportFileManager.DEVICE_DIR}${it.cpuArch}" }
+    assertThat(captureShellCommands().filter { it.contains("mkdir -p -m 755 $folders; chown shell:shell $folders") }).hasSize(1)
+  }
+
+  @Test
+  fun testUpToDateFileIsNotPushedAgain() {
+    temporaryFolder.apply {
+      newFolder("dev")
+      newFile("dev/perfa.jar")
     }
+    val devicePath = "${TransportFileManager.DEVICE_DIR}perfa.jar"
+    mockDeviceManifest("$EMPTY_FILE_HASH $devicePath")
+
+    assertThat(fileManager.copyFileToDevice(createPerfaHostFile())).containsExactly(devicePath)
+    verify(mockDevice, never()).pushFile(any(), any())
+    // Only the manifest was read.
+    assertThat(captureShellCommands()).hasSize(1)
+  }
+
+  @Test
+  fun testModifiedFileIsPushedAndManifestUpdated() {
+    temporaryFolder.apply {
+      newFolder("dev")
+      newFile("dev/perfa.jar")
+    }
+    val devicePath = "${TransportFileManager.DEVICE_DIR}perfa.jar"
+    val manifestPath = "${TransportFileManager.DEVICE_DIR}${TransportFileManager.DEPLOYMENT_MANIFEST_FILE}"
+    mockDeviceManifest("0123456789abcdef $devicePath")
+
+    fileManager.copyFileToDevice(createPerfaHostFile())
+    verify(mockDevice, times(1)).pushFile(any(), eq(devicePath))
+    val commands = captureShellCommands()
+    assertThat(commands).hasSize(3)
+    // The old file and its manifest entry are deleted before pushing.
+    assertThat(commands[1]).startsWith("rm -f $devicePath;")
+    assertThat(commands[1]).endsWith("rm -f $manifestPath")
+    assertThat(commands[2]).endsWith("printf '%s\\n' '$EMPTY_FILE_HASH $devicePath' > $manifestPath")
+  }
+
+  private fun createPerfaHostFile() = DeployableFile.Builder("perfa.jar")
+    .setReleaseDir("release")
+    .setDevDir("dev")
+    .setExecutable(false)
+    .setIsRunningFromSources(true)
+    .setSourcesRoot(temporaryFolder.root.absolutePath)
+    .build()
+
+  private fun mockDeviceManifest(contents: String) {
+    doAnswer {
+      val receiver = it.getArgument<IShellOutputReceiver>(1)
+      val bytes = "$contents\n".toByteArray()
+      receiver.addOutput(bytes, 0, bytes.size)
+      receiver.flush()
+    }.whenever(mockDevice).executeShellCommand(startsWith("if [ -f"), any())
+  }
+
+  private fun captureShellCommands(): List<String> {
+    val commandCaptor: ArgumentCaptor<String> = ArgumentCaptor.forClass(String::class.java)
+    verify(mockDevice, atLeastOnce()).executeShellCommand(commandCaptor.capture(), any())
+    return commandCaptor.allValues
   }
 
   @Test
@@ -16,13 +16,17 @@
 package com.android.tools.idea.transport.poller
 
 import com.android.tools.adtui.model.FakeTimer
+import com.android.tools.idea.io.grpc.Status
+import com.android.tools.idea.io.grpc.stub.StreamObserver
 import com.android.tools.idea.transport.TransportClient
 import com.android.tools.idea.transport.faketransport.FakeGrpcServer
 import com.android.tools.idea.transport.faketransport.FakeTransportService
 import com.android.tools.pipeline.example.proto.Echo
 import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport
 import com.google.common.truth.Truth.assertThat
 import com.google.common.util.concurrent.MoreExecutors
+import java.util.concurrent.Executors
 import org.junit.After
 import org.junit.Before
 import org.junit.Rule
@@ -31,7 +35,21 @@ import org.junit.Test
 class TransportEventPollerTest {
 
   private var timer = FakeTimer()
-  private var transportService = FakeTransportService(timer, true)
+  private var eventGroupsQueries = 0
+  private var pushedEventsObserver: StreamObserver<Common.Event>? = null
+  private var transportService = object : FakeTransportService(timer, true) {
+    override fun getEventGroups(request: Transport.GetEventGroupsRequest,
+                                responseObserver: StreamObserver<Transport.GetEventGroupsResponse>) {
+      eventGroupsQueries++
+      super.getEventGroups(request, responseObserver)
+    }
+
+    override fun getEvents(request: Transport.GetEventsRequest, responseObserver: StreamObserver<Common.Event>) {
+      pushedEventsObserver = responseObserver
+      // Acknowledge the subscription.
+      responseObserver.onNext(Common.Event.getDefaultInstance())
+    }
+  }
   private var transportClient: TransportClient? = null
   private var transportEventPoller: TransportEventPoller? = null
 
@@ -46,6 +64,7 @@ class TransportEventPollerTest {
 
   @After
   fun close() {
+    transportEventPoller?.unsubscribe()
     transportEventPoller?.let { TransportEventPoller.stopPoller(it) }
     transportEventPoller = null
     transportClient!!.shutdown()
@@ -456,4 +475,77 @@ class TransportEventPollerTest {
     assertThat(events[0]).isEqualTo(event2)
     assertThat(events[1]).isEqualTo(event1)
   }
+
+  @Test
+  fun testSubscribedPollerOnlyQueriesListenersWithNewEvents() {
+    val events = mutableListOf<Common.Event>()
+    val listener = TransportEventListener(
+      eventKind = Common.Event.Kind.ECHO,
+      executor = MoreExecutors.directExecutor(),
+      callback = {
+        events.add(it)
+        false
+      })
+    val poller = transportEventPoller!!
+    poller.registerListener(listener)
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      poller.subscribe(executor)
+      waitUntil { poller.isSubscribed }
+
+      // The first poll queries every listener, the following ones only the listeners with pushed events.
+      poller.poll()
+      val queries = eventGroupsQueries
+      poller.poll()
+      poller.poll()
+      assertThat(eventGroupsQueries).isEqualTo(queries)
+
+      val event = generateEchoEvent(10)
+      transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, event)
+      pushedEventsObserver!!.onNext(event)
+      waitUntil {
+        poller.poll()
+        events.isNotEmpty()
+      }
+      assertThat(events).containsExactly(event)
+    }
+    finally {
+      poller.unsubscribe()
+      executor.shutdownNow()
+    }
+  }
+
+  @Test
+  fun testPollerCanSubscribeAgainAfterSubscriptionEnds() {
+    val poller = transportEventPoller!!
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      poller.subscribe(executor)
+      waitUntil { poller.isSubscribed }
+
+      // The service completes the call.
+      pushedEventsObserver!!.onCompleted()
+      waitUntil { !poller.isSubscribed }
+      poller.subscribe(executor)
+      waitUntil { poller.isSubscribed }
+
+      // The service fails the call.
+      pushedEventsObserver!!.onError(Status.UNAVAILABLE.asRuntimeException())
+      waitUntil { !poller.isSubscribed }
+      poller.subscribe(executor)
+      waitUntil { poller.isSubscribed }
+    }
+    finally {
+      poller.unsubscribe()
+      executor.shutdownNow()
+    }
+  }
+
+  private fun waitUntil(condition: () -> Boolean) {
+    val deadline = System.currentTimeMillis() + 10_000
+    while (!condition()) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadline)
+      Thread.sleep(10)
+    }
+  }
 }
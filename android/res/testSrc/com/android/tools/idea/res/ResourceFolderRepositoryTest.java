@@ -55,6 +55,7 @@ import com.android.resources.ResourceType;
 import com.android.test.testutils.TestUtils;
 import com.android.tools.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.DrawableRenderer;
 import com.android.tools.idea.testing.AndroidProjectRule;
 import com.android.tools.res.LocalResourceRepository;
@@ -192,7 +193,7 @@ public class ResourceFolderRepositoryTest {
     ServiceContainerUtil.replaceService(getApplication(), ResourceFolderRepositoryFileCache.class, cache, myFixture.getTestRootDisposable());
     myRegistry = ResourceFolderRegistry.getInstance(myProject);
     Path file = cache.getCachingData(myProject, getResourceDirectory(), null).getCacheFile();
-    Files.deleteIfExists(file);
+    FileUtil.delete(file);
   }
 
   private @NotNull VirtualFile getResourceDirectory() {
@@ -4001,6 +4002,90 @@ public class ResourceFolderRepositoryTest {
     assertContainSameData(myFacet, repository, fromCacheFile);
   }
 
+  @Test
+  public void parallelLoading() {
+    int numFiles = ResourceFolderRepository.Loader.PARALLEL_LOADING_THRESHOLD;
+    for (int i = 0; i < numFiles; i++) {
+      // Values files define the same resources, so the order of the items depends on the order in which the files are merged.
+      myFixture.copyFileToProject(VALUES1, "res/values" + (i % 3 == 0 ? "" : "-v" + (i % 3 + 20)) + "/values" + i + ".xml");
+      myFixture.copyFileToProject(LAYOUT1, "res/layout/layout" + i + ".xml");
+    }
+    myFixture.copyFileToProject(DRAWABLE, "res/drawable/logo.png");
+
+    StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.override(false);
+    ResourceFolderRepository serial;
+    try {
+      serial = createRepository(false);
+    }
+    finally {
+      StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.clearOverride();
+    }
+    StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.override(true);
+    ResourceFolderRepository parallel;
+    try {
+      parallel = createRepository(false);
+    }
+    finally {
+      StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.clearOverride();
+    }
+
+    assertThat(parallel.getNumXmlFilesLoadedInitially()).isEqualTo(2 * numFiles);
+    assertThat(parallel.getNumXmlFilesLoadedInitiallyFromSources()).isEqualTo(2 * numFiles);
+    assertThat(parallel.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout" + (numFiles - 1))).isTrue();
+    assertThat(parallel.hasResources(RES_AUTO, ResourceType.DRAWABLE, "logo")).isTrue();
+    assertContainSameData(myFacet, serial, parallel);
+  }
+
+  @Test
+  public void serializationUpdatesOnlyChangedSegments() throws Exception {
+    VirtualFile strings = myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout-land/layout.xml");
+    createRepository(true);
+
+    Path cacheDir = ResourceFolderRepositoryFileCacheService.get().getCachingData(myProject, getResourceDirectory(), null).getCacheFile();
+    Path valuesSegment = cacheDir.resolve("values.seg");
+    Path layoutSegment = cacheDir.resolve("layout.seg");
+    Path layoutLandSegment = cacheDir.resolve("layout-land.seg");
+    assertThat(Files.exists(valuesSegment)).isTrue();
+    assertThat(Files.exists(layoutSegment)).isTrue();
+    assertThat(Files.exists(layoutLandSegment)).isTrue();
+    FileTime oldTime = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(valuesSegment, oldTime);
+    Files.setLastModifiedTime(layoutSegment, oldTime);
+
+    // Edit the values file directly on disk, making sure that its timestamp changes.
+    File stringsFile = virtualToIoFile(strings);
+    FileUtil.writeToFile(stringsFile, FileUtilRt.loadFile(stringsFile).replace("hello_world", "hello_there"));
+    assertThat(stringsFile.setLastModified(stringsFile.lastModified() + 2000)).isTrue();
+    strings.refresh(false, false);
+    // Delete a whole folder.
+    WriteCommandAction.runWriteCommandAction(myProject, () -> {
+      try {
+        Objects.requireNonNull(getResourceDirectory().findChild("layout-land")).delete(this);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    ResourceFolderRepository fromCache = createRepository(true);
+    assertThat(fromCache.hasResources(RES_AUTO, ResourceType.STRING, "hello_there")).isTrue();
+    assertThat(fromCache.getNumXmlFilesLoadedInitiallyFromSources()).isEqualTo(1);
+    assertThat(fromCache.hasFreshFileCache()).isFalse();
+    // Only the segment of the changed folder is rewritten, and the segment of the deleted folder is removed.
+    assertThat(Files.getLastModifiedTime(valuesSegment)).isNotEqualTo(oldTime);
+    assertThat(Files.getLastModifiedTime(layoutSegment)).isEqualTo(oldTime);
+    assertThat(Files.exists(layoutLandSegment)).isFalse();
+    // Segments are written to temporary files that replace them once complete.
+    assertThat(Files.exists(cacheDir.resolve("values.tmp"))).isFalse();
+
+    ResourceFolderRepository fromUpdatedCache = createRepository(true);
+    assertThat(fromUpdatedCache.getNumXmlFilesLoadedInitiallyFromSources()).isEqualTo(0);
+    assertThat(fromUpdatedCache.hasFreshFileCache()).isTrue();
+    assertContainSameData(myFacet, fromCache, fromUpdatedCache);
+  }
+
   @Test
   public void invalidateCache() {
     myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
@@ -4041,8 +4126,8 @@ public class ResourceFolderRepositoryTest {
 
     ResourceFolderRepository fromCacheFile = createRepository(true);
     assertThat(fromCacheFile).isNotNull();
-    // Non-value files aren't counted in the cache, so deleting doesn't affect freshness.
-    assertThat(fromCacheFile.hasFreshFileCache()).isTrue();
+    // The segment of the layout folder no longer matches its files.
+    assertThat(fromCacheFile.hasFreshFileCache()).isFalse();
 
     assertThat(fromCacheFile.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout")).isFalse();
     assertThat(fromCacheFile.hasResources(RES_AUTO, ResourceType.ID, "noteArea")).isFalse();
@@ -4056,9 +4141,8 @@ public class ResourceFolderRepositoryTest {
 
     ResourceFolderRepository fromCacheFile2 = createRepository(true);
     assertThat(fromCacheFile2).isNotNull();
-    // Value files are counted in the cache, but we only count the percentage re-parsed for freshness.
-    // We don't count extraneous cache entries (but perhaps we should).
-    assertThat(fromCacheFile2.hasFreshFileCache()).isTrue();
+    // The segment of the values folder still has the items of the deleted file.
+    assertThat(fromCacheFile2.hasFreshFileCache()).isFalse();
 
     assertThat(fromCacheFile2.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout")).isFalse();
     assertThat(fromCacheFile2.hasResources(RES_AUTO, ResourceType.ID, "noteArea")).isFalse();
@@ -4134,7 +4218,7 @@ public class ResourceFolderRepositoryTest {
 
     ResourceFolderRepository fromCacheFile = createRepository(false);
     assertThat(fromCacheFile).isNotNull();
-    // Freshness depends on a heurisitic, but now half the XML files are parsed.
+    // The layout folder has no cache segment yet.
     assertThat(fromCacheFile.hasFreshFileCache()).isFalse();
 
     assertThat(fromCacheFile.hasResources(RES_AUTO, ResourceType.STRING, "hello_world")).isTrue();
@@ -4154,8 +4238,8 @@ public class ResourceFolderRepositoryTest {
 
     ResourceFolderRepository fromCacheFile = createRepository(true);
     assertThat(fromCacheFile).isNotNull();
-    // Freshness depends on a heurisitic, but we don't count PNG in the blob.
-    assertThat(fromCacheFile.hasFreshFileCache()).isTrue();
+    // The drawable folder has no cache segment yet, even though PNG files are not parsed.
+    assertThat(fromCacheFile.hasFreshFileCache()).isFalse();
 
     assertThat(fromCacheFile.hasResources(RES_AUTO, ResourceType.STRING, "hello_world")).isTrue();
     assertThat(fromCacheFile.hasResources(RES_AUTO, ResourceType.DRAWABLE, "logo")).isTrue();
@@ -4214,7 +4298,7 @@ public class ResourceFolderRepositoryTest {
 
     ResourceFolderRepository fromCacheFile = createRepository(true);
     assertThat(fromCacheFile).isNotNull();
-    // We don't count files that we explicitly skip against freshness.
+    // Files that are explicitly skipped are still part of the stamps of their folders.
     assertThat(fromCacheFile.hasFreshFileCache()).isTrue();
 
     assertThat(fromCacheFile).isNotSameAs(repository);
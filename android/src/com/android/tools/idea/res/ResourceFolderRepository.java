@@ -27,8 +27,6 @@ import static com.android.resources.ResourceFolderType.DRAWABLE;
 import static com.android.resources.ResourceFolderType.FONT;
 import static com.android.resources.ResourceFolderType.VALUES;
 import static com.android.resources.base.RepositoryLoader.portableFileName;
-import static com.android.resources.base.ResourceSerializationUtil.createPersistentCache;
-import static com.android.resources.base.ResourceSerializationUtil.writeResourcesToStream;
 import static com.android.tools.idea.res.FileRelevanceKt.isRelevantFile;
 import static com.android.tools.idea.res.IdeResourcesUtil.getResourceTypeForResourceTag;
 import static com.android.utils.TraceUtils.getSimpleId;
@@ -65,6 +63,7 @@ import com.android.resources.base.ResourceSerializationUtil;
 import com.android.resources.base.ResourceSourceFile;
 import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.util.FileExtensions;
 import com.android.tools.idea.module.ModuleKeyManager;
 import com.android.tools.res.LocalResourceRepository;
@@ -77,7 +76,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.intellij.ide.highlighter.XmlFileType;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
@@ -90,6 +89,7 @@ import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
@@ -144,6 +144,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -180,18 +181,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
    * Increment when making changes that may affect content of repository cache files.
    * Used together with CachingData.codeVersion. Important for developer builds.
    */
-  static final String CACHE_FILE_FORMAT_VERSION = "2";
+  static final String CACHE_FILE_FORMAT_VERSION = "3";
   private static final byte[] CACHE_FILE_HEADER = "Resource cache".getBytes(UTF_8);
-  /**
-   * Maximum fraction of resources out of date in the cache for the cache to be considered fresh.
-   * <p>
-   * Loading without cache takes approximately twice as long as with the cache. This means that
-   * if x% of all resources are loaded from sources because the cache is not completely up to date,
-   * it introduces approximately x% loading time overhead. 5% overhead seems acceptable since it
-   * is well within natural variation. Since cache file creation is asynchronous, the cost of
-   * keeping cache fresh is pretty low.
-   */
-  private static final double CACHE_STALENESS_THRESHOLD = 0.05;
   private static final Comparator<ResourceItemSource<?>> SOURCE_COMPARATOR =
       Comparator.comparing(ResourceItemSource::getFolderConfiguration);
   private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
@@ -214,6 +205,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
   // Statistics of the initial repository loading.
   private int myNumXmlFilesLoadedInitially; // Doesn't count files that were explicitly skipped.
   private int myNumXmlFilesLoadedInitiallyFromSources;
+  private boolean myHasFreshFileCache;
 
   @SuppressWarnings("InstanceGuardedByStatic")
   @GuardedBy("ITEM_MAP_LOCK")
@@ -257,7 +249,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
    * Creates a ResourceFolderRepository and loads its contents.
    * <p>
    * If {@code cachingData} is not null, an attempt is made
-   * to load resources from the cache file specified in {@code cachingData}. While loading from the cache resources
+   * to load resources from the segmented cache (see {@link SegmentedResourceCache}) in the directory specified in
+   * {@code cachingData}. While loading from the cache resources
    * defined in the XML files that changed recently are skipped. Whether an XML has changed or not is determined by
    * comparing the combined hash of the file modification time and the length obtained by calling
    * {@link VirtualFile#getTimeStamp()} and {@link VirtualFile#getLength()} with the hash value stored in the cache.
@@ -266,9 +259,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
    * The remaining resources are then loaded by parsing XML files that were not present in the cache or were newer
    * than their cached versions.
    * <p>
-   * If a significant (determined by {@link #CACHE_STALENESS_THRESHOLD}) percentage of resources was loaded by parsing
-   * XML files and {@code cachingData.cacheCreationExecutor} is not null, the new cache file is created using that
-   * executor, possibly after this method has already returned.
+   * If the cache segments of some resource folders are missing or out of date and {@code cachingData.cacheCreationExecutor}
+   * is not null, only those segments are rewritten using that executor, possibly after this method has already returned.
    * <p>
    * After creation the contents of the repository are maintained to be up-to-date by listening to VFS and PSI events.
    * <p>
@@ -455,14 +447,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
   }
 
   /**
-   * Determines if it's unnecessary to write or update the file-backed cache.
-   * If only a few items were reparsed, then the cache is fresh enough.
+   * Determines if the file-backed cache was up to date when the repository was loaded, i.e. if the cache had a segment for every
+   * resource folder, no segment for a folder that no longer exists, and none of the folders changed since its segment was written.
    *
    * @return true if this repo is backed by a fresh file cache
    */
   @VisibleForTesting
   boolean hasFreshFileCache() {
-    return myNumXmlFilesLoadedInitiallyFromSources <= myNumXmlFilesLoadedInitially * CACHE_STALENESS_THRESHOLD;
+    return myHasFreshFileCache;
   }
 
   @TestOnly
@@ -2306,6 +2298,15 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
    * The file cache omits non-XML single-file items, since those are easily derived from the file path.
    */
   static class Loader extends RepositoryLoader<ResourceFolderRepository> {
+    /** Minimum number of files to parse for the parsing to be done in parallel. */
+    @VisibleForTesting
+    static final int PARALLEL_LOADING_THRESHOLD = 256;
+    private static final int MIN_PARALLEL_LOADING_CHUNK_SIZE = 32;
+    private static final int PARALLEL_LOADING_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    /** Shared by all repositories, so that loading many resource folders at once doesn't oversubscribe the CPU. */
+    private static final ExecutorService ourParallelLoadingExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("ResourceFolderRepository Loader", PARALLEL_LOADING_THREADS);
+
     @NotNull private final ResourceFolderRepository myRepository;
     @NotNull private final VirtualFile myResourceDir;
     @NotNull private final PsiManager myPsiManager;
@@ -2318,6 +2319,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
     @Nullable private PathString myLastPathString;
 
     @NotNull Set<VirtualFile> myFilesToReparseAsPsi = new HashSet<>();
+    /**
+     * Stamps of the resource folders found by {@link #scanResFolder}, computed before their files were parsed.
+     * Only populated when there is a persistent cache.
+     */
+    @NotNull private final Map<String, byte[]> myFolderStamps = new HashMap<>();
+    @Nullable private SegmentedResourceCache mySegmentedCache;
+    /** Names of the resource folders whose cache segments are up to date. */
+    @NotNull private Set<String> myFreshCacheFolders = Collections.emptySet();
     private final FileDocumentManager myFileDocumentManager;
 
     private volatile boolean myLoaded = false;
@@ -2382,31 +2391,17 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
         return;
       }
 
-      byte[] fileHeader = getCacheFileHeader(myCachingData);
-      try (Base128InputStream stream = new Base128InputStream(myCachingData.getCacheFile())) {
-        if (!stream.validateContents(fileHeader)) {
-          return; // Cache file header doesn't match.
-        }
-        ResourceSerializationUtil.readResourcesFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null, myRepository,
-                                                          item -> addResourceItem(item, myRepository));
-      }
-      catch (NoSuchFileException ignored) {
-        // Cache file does not exist.
-      }
-      catch (ProcessCanceledException e) {
-        throw e;
-      }
-      catch (Throwable e) {
-        // Remove incomplete data.
-        mySources.clear();
-        myFileResources.clear();
-
-        LOG.warn("Failed to load resources from cache file " + myCachingData.getCacheFile(), e);
-      }
+      mySegmentedCache = new SegmentedResourceCache(myCachingData.getCacheFile(), getCacheFileHeader(myCachingData), myResourceDir);
+      myFreshCacheFolders = mySegmentedCache.load(myRepository, item -> addResourceItem(item, myRepository));
     }
 
     private void createCacheFileIfNeeded() {
-      if (myCachingData != null && !myRepository.hasFreshFileCache()) {
+      if (mySegmentedCache == null) {
+        return;
+      }
+      myRepository.myHasFreshFileCache = !mySegmentedCache.needsUpdate(myFolderStamps.keySet(), myFreshCacheFolders);
+      if (!myRepository.myHasFreshFileCache) {
+        assert myCachingData != null;
         Executor executor = myCachingData.getCacheCreationExecutor();
         if (executor != null) {
           executor.execute(this::createCacheFile);
@@ -2424,10 +2419,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
     }
 
     private void createCacheFile() {
-      assert myCachingData != null;
-      byte[] header = getCacheFileHeader(myCachingData);
+      assert mySegmentedCache != null;
       try {
-        createPersistentCache(myCachingData.getCacheFile(), header, stream -> writeResourcesToStream(myResources, stream, config -> true));
+        mySegmentedCache.update(myResources, myFolderStamps, myFreshCacheFolders);
       }
       catch (Throwable e) {
         LOG.error(e);
@@ -2436,11 +2430,16 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
 
     private void scanResFolder() {
       try {
+        List<PendingFile> pendingFiles = new ArrayList<>();
         for (VirtualFile subDir : myResourceDir.getChildren()) {
           if (subDir.isValid() && subDir.isDirectory()) {
             String folderName = subDir.getName();
             FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
             if (folderInfo != null) {
+              if (mySegmentedCache != null) {
+                // Taken before parsing so that files changed while they are parsed make the cache segment stale.
+                myFolderStamps.put(folderName, SegmentedResourceCache.computeFolderStamp(subDir));
+              }
               RepositoryConfiguration configuration = getConfiguration(myRepository, folderInfo.configuration);
               for (VirtualFile file : subDir.getChildren()) {
                 if (file.getName().startsWith(".")) {
@@ -2460,24 +2459,18 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
                   continue;
                 }
 
-                PathString pathString = FileExtensions.toPathString(file);
-                myLastVirtualFile = file;
-                myLastPathString = pathString;
-                try {
-                  loadResourceFile(pathString, folderInfo, configuration);
-                  if (isParsableFile(file, folderInfo)) {
-                    countCacheMiss();
-                  }
-                }
-                catch (ParsingException e) {
-                  // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
-                  // it is designed to work with potentially malformed files in the middle of editing.
-                  myFilesToReparseAsPsi.add(file);
-                }
+                pendingFiles.add(new PendingFile(file, folderInfo, configuration));
               }
             }
           }
         }
+
+        if (pendingFiles.size() >= PARALLEL_LOADING_THRESHOLD && StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.get()) {
+          loadResourceFilesInParallel(pendingFiles);
+        }
+        else {
+          countCacheMisses(loadResourceFiles(pendingFiles));
+        }
       }
       catch (ProcessCanceledException e) {
         throw e;
@@ -2508,6 +2501,65 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
       }
     }
 
+    /**
+     * Parses the given files that were not found in the persistent cache.
+     *
+     * @return the number of parsed XML files
+     */
+    private int loadResourceFiles(@NotNull List<PendingFile> files) {
+      int numParsedFiles = 0;
+      for (PendingFile pendingFile : files) {
+        VirtualFile file = pendingFile.file;
+        PathString pathString = FileExtensions.toPathString(file);
+        myLastVirtualFile = file;
+        myLastPathString = pathString;
+        try {
+          loadResourceFile(pathString, pendingFile.folderInfo, pendingFile.configuration);
+          if (isParsableFile(file, pendingFile.folderInfo)) {
+            numParsedFiles++;
+          }
+        }
+        catch (ParsingException e) {
+          // Reparse the file as PSI. The PSI parser is more forgiving than KXmlParser because
+          // it is designed to work with potentially malformed files in the middle of editing.
+          myFilesToReparseAsPsi.add(file);
+        }
+      }
+      return numParsedFiles;
+    }
+
+    /**
+     * Parses the given files on {@link #ourParallelLoadingExecutor}. The parser state of {@link RepositoryLoader} is not thread safe, so
+     * each chunk of files is parsed by a separate loader into its own buffers. The buffers are then merged in the original file order,
+     * which makes the contents of the repository identical to the ones produced by {@link #loadResourceFiles}.
+     */
+    private void loadResourceFilesInParallel(@NotNull List<PendingFile> files) {
+      int chunkSize = Math.max(MIN_PARALLEL_LOADING_CHUNK_SIZE, files.size() / (PARALLEL_LOADING_THREADS * 4) + 1);
+      List<Future<ChunkResult>> futures = new ArrayList<>();
+      try {
+        for (List<PendingFile> chunk : Lists.partition(files, chunkSize)) {
+          futures.add(ourParallelLoadingExecutor.submit(() -> {
+            Loader chunkLoader = new Loader(myRepository, null);
+            int numParsedFiles = chunkLoader.loadResourceFiles(chunk);
+            chunkLoader.finishLoading(myRepository);
+            return new ChunkResult(chunkLoader, numParsedFiles);
+          }));
+        }
+        for (Future<ChunkResult> future : futures) {
+          ChunkResult result = ProgressIndicatorUtils.awaitWithCheckCanceled(future);
+          mySources.putAll(result.loader.mySources);
+          myFileResources.putAll(result.loader.myFileResources);
+          myFilesToReparseAsPsi.addAll(result.loader.myFilesToReparseAsPsi);
+          countCacheMisses(result.numParsedFiles);
+        }
+      }
+      finally {
+        for (Future<ChunkResult> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+
     private void loadResourceFile(
         @NotNull PathString file, @NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration) {
       if (folderInfo.resourceType == null) {
@@ -2656,9 +2708,33 @@ public final class ResourceFolderRepository extends LocalResourceRepository<Virt
       ++myRepository.myNumXmlFilesLoadedInitially;
     }
 
-    private void countCacheMiss() {
-      ++myRepository.myNumXmlFilesLoadedInitially;
-      ++myRepository.myNumXmlFilesLoadedInitiallyFromSources;
+    private void countCacheMisses(int count) {
+      myRepository.myNumXmlFilesLoadedInitially += count;
+      myRepository.myNumXmlFilesLoadedInitiallyFromSources += count;
+    }
+
+    /** A resource file that was not found in the persistent cache and has to be parsed. */
+    private static final class PendingFile {
+      @NotNull final VirtualFile file;
+      @NotNull final FolderInfo folderInfo;
+      @NotNull final RepositoryConfiguration configuration;
+
+      PendingFile(@NotNull VirtualFile file, @NotNull FolderInfo folderInfo, @NotNull RepositoryConfiguration configuration) {
+        this.file = file;
+        this.folderInfo = folderInfo;
+        this.configuration = configuration;
+      }
+    }
+
+    /** The buffers filled by the loader of one chunk of files in {@link #loadResourceFilesInParallel}. */
+    private static final class ChunkResult {
+      @NotNull final Loader loader;
+      final int numParsedFiles;
+
+      ChunkResult(@NotNull Loader loader, int numParsedFiles) {
+        this.loader = loader;
+        this.numParsedFiles = numParsedFiles;
+      }
     }
   }
 
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import static com.android.resources.base.ResourceSerializationUtil.createPersistentCache;
+import static com.android.resources.base.ResourceSerializationUtil.writeResourcesToStream;
+
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.util.PathString;
+import com.android.resources.ResourceType;
+import com.android.resources.base.BasicResourceItem;
+import com.android.resources.base.ResourceSerializationUtil;
+import com.android.utils.Base128InputStream;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Persistent cache of a {@link ResourceFolderRepository} split into one segment file per resource folder (e.g. {@code values-fr} or
+ * {@code layout}), stored in the directory given by {@link ResourceFolderRepositoryCachingData#getCacheFile()}.
+ * <p>
+ * Each segment starts with the common cache file header, followed by a stamp of its resource folder computed from the names,
+ * timestamps and lengths of the files in the folder (see {@link FileTimeStampLengthHasher}). A segment whose stamp matches the
+ * current state of its folder is up to date and is never rewritten. After changes to a few files only the segments of the
+ * affected folders are written again, instead of the whole cache.
+ * <p>
+ * The stamps written to the segments are computed by the caller when the files of the folder are parsed, so changes made to the
+ * files while the cache is being written make the segment stale instead of being silently missed.
+ * <p>
+ * Segments are read into memory in one go when loading, and written to a temporary file that replaces the segment once complete,
+ * so no segment file is kept open. Items of a segment are only passed on after the whole segment has been read, so a corrupted
+ * segment is skipped without affecting the others. Items of stale segments are still loaded, since the validity of each file is
+ * checked individually during deserialization.
+ */
+final class SegmentedResourceCache {
+  private static final Logger LOG = Logger.getInstance(SegmentedResourceCache.class);
+  private static final String SEGMENT_EXTENSION = ".seg";
+  private static final String TEMP_EXTENSION = ".tmp";
+  private static final int STAMP_SIZE = 8;
+
+  @NotNull private final Path myCacheDir;
+  @NotNull private final byte[] myHeader;
+  @NotNull private final VirtualFile myResourceDir;
+
+  SegmentedResourceCache(@NotNull Path cacheDir, @NotNull byte[] header, @NotNull VirtualFile resourceDir) {
+    myCacheDir = cacheDir;
+    myHeader = header;
+    myResourceDir = resourceDir;
+  }
+
+  /**
+   * Loads the resource items of all segments and passes them to {@code consumer}.
+   *
+   * @return the names of the resource folders whose segments are up to date
+   */
+  @NotNull
+  Set<String> load(@NotNull ResourceFolderRepository repository, @NotNull Consumer<BasicResourceItem> consumer) {
+    Set<String> freshFolders = new HashSet<>();
+    if (!Files.isDirectory(myCacheDir)) {
+      return freshFolders;
+    }
+
+    Map<String, String> stringCache = new HashMap<>();
+    for (Path segment : listSegments()) {
+      String folderName = getFolderName(segment);
+      VirtualFile folder = myResourceDir.findChild(folderName);
+      if (folder == null || !folder.isDirectory()) {
+        continue; // The folder was deleted, the segment will be deleted by the next update.
+      }
+
+      List<BasicResourceItem> items = new ArrayList<>();
+      try (Base128InputStream stream = new Base128InputStream(new ByteArrayInputStream(Files.readAllBytes(segment)))) {
+        if (!stream.validateContents(myHeader)) {
+          continue; // Segment header doesn't match.
+        }
+        byte[] stamp = stream.readNBytes(STAMP_SIZE);
+        ResourceSerializationUtil.readResourcesFromStream(stream, stringCache, null, repository, items::add);
+        if (Arrays.equals(stamp, computeFolderStamp(folder))) {
+          freshFolders.add(folderName);
+        }
+      }
+      catch (NoSuchFileException ignored) {
+        // The segment was deleted concurrently.
+        continue;
+      }
+      catch (ProcessCanceledException e) {
+        throw e;
+      }
+      catch (Throwable e) {
+        LOG.warn("Failed to load resources from cache segment " + segment, e);
+        continue;
+      }
+      items.forEach(consumer);
+    }
+    return freshFolders;
+  }
+
+  /**
+   * Returns true if some segments are missing, out of date, or obsolete.
+   *
+   * @param folderNames the names of the resource folders of the repository
+   * @param freshFolders the folders with up-to-date segments, as returned by {@link #load}
+   */
+  boolean needsUpdate(@NotNull Set<String> folderNames, @NotNull Set<String> freshFolders) {
+    if (!freshFolders.containsAll(folderNames)) {
+      return true;
+    }
+    for (Path segment : listSegments()) {
+      if (!folderNames.contains(getFolderName(segment))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the segments of the folders that are not in {@code freshFolders} and deletes the segments of folders that no longer exist.
+   *
+   * @param resources the resources of the repository
+   * @param folderStamps the stamps of the resource folders of the repository, computed by {@link #computeFolderStamp} right before
+   *     their files were parsed
+   * @param freshFolders the folders with up-to-date segments, as returned by {@link #load}
+   */
+  void update(@NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> resources,
+              @NotNull Map<String, byte[]> folderStamps,
+              @NotNull Set<String> freshFolders) throws IOException {
+    Set<String> folderNames = folderStamps.keySet();
+    if (Files.exists(myCacheDir) && !Files.isDirectory(myCacheDir)) {
+      Files.delete(myCacheDir); // Cache file in the old single-file format.
+    }
+    Files.createDirectories(myCacheDir);
+
+    Map<String, Map<ResourceType, ListMultimap<String, ResourceItem>>> resourcesByFolder = new HashMap<>();
+    for (String folderName : folderNames) {
+      if (!freshFolders.contains(folderName)) {
+        resourcesByFolder.put(folderName, new EnumMap<>(ResourceType.class));
+      }
+    }
+    for (Map.Entry<ResourceType, ListMultimap<String, ResourceItem>> entry : resources.entrySet()) {
+      for (ResourceItem item : entry.getValue().values()) {
+        PathString source = item.getSource();
+        String folderName = source == null ? null : source.getParentFileName();
+        Map<ResourceType, ListMultimap<String, ResourceItem>> folderResources =
+            folderName == null ? null : resourcesByFolder.get(folderName);
+        if (folderResources != null) {
+          folderResources.computeIfAbsent(entry.getKey(), type -> LinkedListMultimap.create()).put(item.getName(), item);
+        }
+      }
+    }
+
+    for (Map.Entry<String, Map<ResourceType, ListMultimap<String, ResourceItem>>> entry : resourcesByFolder.entrySet()) {
+      byte[] stamp = folderStamps.get(entry.getKey());
+      if (stamp == null) {
+        continue;
+      }
+      Path segment = getSegment(entry.getKey());
+      Path tempFile = myCacheDir.resolve(entry.getKey() + TEMP_EXTENSION);
+      createPersistentCache(tempFile, myHeader, stream -> {
+        stream.write(stamp);
+        writeResourcesToStream(entry.getValue(), stream, config -> true);
+      });
+      if (Files.exists(tempFile)) {
+        moveReplacing(tempFile, segment);
+      }
+    }
+
+    for (Path segment : listSegments()) {
+      if (!folderNames.contains(getFolderName(segment))) {
+        FileUtil.delete(segment);
+      }
+    }
+  }
+
+  private static void moveReplacing(@NotNull Path source, @NotNull Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Computes a 64-bit stamp of the names, timestamps and lengths of the files in a resource folder. Files with names starting with
+   * a dot are ignored, same as when loading the repository.
+   */
+  @NotNull
+  static byte[] computeFolderStamp(@NotNull VirtualFile folder) {
+    VirtualFile[] children = folder.getChildren().clone();
+    Arrays.sort(children, Comparator.comparing(VirtualFile::getName));
+    Hasher hasher = Hashing.sipHash24().newHasher();
+    for (VirtualFile child : children) {
+      if (child.getName().startsWith(".")) {
+        continue;
+      }
+      hasher.putString(child.getName(), StandardCharsets.UTF_8);
+      hasher.putBytes(FileTimeStampLengthHasher.hash(child));
+    }
+    return hasher.hash().asBytes();
+  }
+
+  @NotNull
+  private Path getSegment(@NotNull String folderName) {
+    return myCacheDir.resolve(folderName + SEGMENT_EXTENSION);
+  }
+
+  @NotNull
+  private static String getFolderName(@NotNull Path segment) {
+    String fileName = segment.getFileName().toString();
+    return fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length());
+  }
+
+  @NotNull
+  private List<Path> listSegments() {
+    if (!Files.isDirectory(myCacheDir)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(myCacheDir)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_EXTENSION)).toList();
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to list cache segments in " + myCacheDir, e);
+      return List.of();
+    }
+  }
+}
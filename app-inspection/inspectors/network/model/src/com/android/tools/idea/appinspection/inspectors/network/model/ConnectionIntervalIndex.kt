@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.ConnectionData
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+
+private const val INITIAL_CAPACITY = 256
+
+/**
+ * An index of [ConnectionData] by connection id that also answers "which connections intersect
+ * this time range" queries without scanning every connection.
+ *
+ * Connections are kept in insertion order. A segment tree over the insertion positions stores the
+ * minimum [ConnectionData.requestStartTimeUs] and maximum [ConnectionData.updateTimeUs] of each
+ * subtree, so a range query only descends into subtrees that can contain a match. Since
+ * connections are mostly inserted in start time order, a query visits `O(log n + k)` nodes where
+ * `k` is the number of results. Results are returned in insertion order.
+ *
+ * Updating a connection (which happens for every event of that connection) is `O(log n)`.
+ *
+ * This class is not thread safe.
+ */
+internal class ConnectionIntervalIndex<T : ConnectionData> {
+  private val positions = Long2IntOpenHashMap().apply { defaultReturnValue(-1) }
+  private val values = ArrayList<T>()
+
+  private var capacity = INITIAL_CAPACITY
+  private var minStarts = LongArray(2 * capacity) { Long.MAX_VALUE }
+  private var maxEnds = LongArray(2 * capacity) { Long.MIN_VALUE }
+
+  val size: Int
+    get() = values.size
+
+  operator fun get(id: Long): T? {
+    val position = positions.get(id)
+    return if (position < 0) null else values[position]
+  }
+
+  /** Adds [data] to the index, or replaces the existing connection with the same id. */
+  fun put(data: T) {
+    var position = positions.get(data.id)
+    if (position < 0) {
+      position = values.size
+      if (position == capacity) {
+        grow()
+      }
+      values.add(data)
+      positions.put(data.id, position)
+    } else {
+      values[position] = data
+    }
+    update(position, data.requestStartTimeUs, data.updateTimeUs)
+  }
+
+  /**
+   * Returns all connections that intersect [range] (in microseconds), using the same semantics as
+   * [ConnectionData]'s `intersectsRange`.
+   */
+  fun getForRange(range: Range): List<T> {
+    if (values.isEmpty()) {
+      return emptyList()
+    }
+    val result = mutableListOf<T>()
+    collect(1, range.min.toLong(), range.max.toLong(), result)
+    return result
+  }
+
+  fun clear() {
+    positions.clear()
+    values.clear()
+    capacity = INITIAL_CAPACITY
+    minStarts = LongArray(2 * capacity) { Long.MAX_VALUE }
+    maxEnds = LongArray(2 * capacity) { Long.MIN_VALUE }
+  }
+
+  private fun collect(node: Int, min: Long, max: Long, result: MutableList<T>) {
+    if (minStarts[node] > max || maxEnds[node] < min) {
+      return
+    }
+    if (node >= capacity) {
+      result.add(values[node - capacity])
+      return
+    }
+    collect(2 * node, min, max, result)
+    collect(2 * node + 1, min, max, result)
+  }
+
+  private fun update(position: Int, start: Long, end: Long) {
+    var node = position + capacity
+    minStarts[node] = start
+    maxEnds[node] = end
+    node = node shr 1
+    while (node > 0) {
+      minStarts[node] = minOf(minStarts[2 * node], minStarts[2 * node + 1])
+      maxEnds[node] = maxOf(maxEnds[2 * node], maxEnds[2 * node + 1])
+      node = node shr 1
+    }
+  }
+
+  private fun grow() {
+    capacity *= 2
+    minStarts = LongArray(2 * capacity) { Long.MAX_VALUE }
+    maxEnds = LongArray(2 * capacity) { Long.MIN_VALUE }
+    values.forEachIndexed { i, data ->
+      minStarts[capacity + i] = data.requestStartTimeUs
+      maxEnds[capacity + i] = data.updateTimeUs
+    }
+    for (node in capacity - 1 downTo 1) {
+      minStarts[node] = minOf(minStarts[2 * node], minStarts[2 * node + 1])
+      maxEnds[node] = maxOf(maxEnds[2 * node], maxEnds[2 * node + 1])
+    }
+  }
+}
@@ -21,12 +21,11 @@ import com.android.tools.idea.appinspection.inspectors.network.model.DataHandler
 import com.android.tools.idea.appinspection.inspectors.network.model.analytics.NetworkInspectorTracker
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.GrpcData
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.PayloadStore
 import com.android.tools.idea.flags.StudioFlags
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.diagnostic.thisLogger
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
-import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.TimeUnit.NANOSECONDS
 import kotlin.Boolean
 import kotlin.Long
@@ -56,17 +55,22 @@ import studio.network.inspection.NetworkInspectorProtocol.SpeedEvent
  * Handles [HttpConnectionEvent]s and [SpeedEvent]s
  *
  * 'HttpConnectionEvent's are assembled into [HttpData] objects and 'SpeedEvent's are collected to a
- * list.
+ * [SpeedDataStore]. Connections are kept in a [ConnectionIntervalIndex] so range queries done on
+ * every timeline repaint don't need to scan all connections. Large payloads are spilled to a
+ * [PayloadStore] rather than kept on the heap.
  *
  * The functions [handleSpeedEvent] and [handleHttpConnectionEvent] return a [Result] object
  * containing hints to the caller.
  */
-internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
+internal class DataHandler(
+  private val usageTracker: NetworkInspectorTracker,
+  private val payloadStore: PayloadStore = PayloadStore(),
+) {
   private val logger = thisLogger()
 
-  private val speedData = CopyOnWriteArrayList<Event>()
-  @GuardedBy("itself") private val httpDataMap = Long2ObjectLinkedOpenHashMap<HttpData>()
-  @GuardedBy("itself") private val grpcDataMap = Long2ObjectLinkedOpenHashMap<GrpcData>()
+  private val speedData = SpeedDataStore()
+  @GuardedBy("itself") private val httpDataMap = ConnectionIntervalIndex<HttpData>()
+  @GuardedBy("itself") private val grpcDataMap = ConnectionIntervalIndex<GrpcData>()
 
   /**
    * A collection of all the currently active connections. This is used to determine if a
@@ -97,11 +101,12 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
     val id = httpConnectionEvent.connectionId
     val data =
       synchronized(httpDataMap) {
-        httpDataMap.getOrPut(id) {
-          activeConnections[id] = ActiveConnection(event.timestamp)
-          logger.debug { "HTTP Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
-          HttpData.createHttpData(id)
-        }
+        httpDataMap[id]
+          ?: HttpData.createHttpData(id).also {
+            activeConnections[id] = ActiveConnection(event.timestamp)
+            logger.debug { "HTTP Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
+            httpDataMap.put(it)
+          }
       }
 
     val newData =
@@ -112,8 +117,8 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
         HTTP_RESPONSE_INTERCEPTED -> data
         HTTP_RESPONSE_COMPLETED -> data.withResponseCompleted(event)
         HTTP_CLOSED -> data.withHttpClosed(event)
-        REQUEST_PAYLOAD -> data.withRequestPayload(event)
-        RESPONSE_PAYLOAD -> data.withResponsePayload(event)
+        REQUEST_PAYLOAD -> data.withRequestPayload(event, payloadStore)
+        RESPONSE_PAYLOAD -> data.withResponsePayload(event, payloadStore)
         HTTP_THREAD -> data.withHttpThread(event)
         else -> {
           logger.warn("Unexpected event: ${httpConnectionEvent.unionCase}")
@@ -124,7 +129,7 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
       activeConnections.getValue(id).endNs = event.timestamp
       logger.debug { "Connection ended: id=$id time=${event.timestamp.nanosToSeconds()}" }
     }
-    synchronized(httpDataMap) { httpDataMap[id] = newData }
+    synchronized(httpDataMap) { httpDataMap.put(newData) }
     return Result(updateTimeline = true)
   }
 
@@ -140,20 +145,21 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
     val id = grpcEvent.connectionId
     val data =
       synchronized(grpcDataMap) {
-        grpcDataMap.getOrPut(id) {
-          activeConnections[id] = ActiveConnection(event.timestamp)
-          logger.debug { "gRPC Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
-          GrpcData.createGrpcData(id)
-        }
+        grpcDataMap[id]
+          ?: GrpcData.createGrpcData(id).also {
+            activeConnections[id] = ActiveConnection(event.timestamp)
+            logger.debug { "gRPC Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
+            grpcDataMap.put(it)
+          }
       }
 
     val newData =
       when (grpcEvent.unionCase) {
         GRPC_CALL_STARTED -> data.withGrpcCallStarted(event)
-        GRPC_MESSAGE_SENT -> data.withGrpcMessageSent(event)
+        GRPC_MESSAGE_SENT -> data.withGrpcMessageSent(event, payloadStore)
         GRPC_STREAM_CREATED -> data.withGrpcStreamCreated(event)
         GRPC_RESPONSE_HEADERS -> data.withGrpcResponseHeaders(event)
-        GRPC_MESSAGE_RECEIVED -> data.withGrpcMessageReceived(event)
+        GRPC_MESSAGE_RECEIVED -> data.withGrpcMessageReceived(event, payloadStore)
         GRPC_CALL_ENDED -> data.withGrpcCallEnded(event)
         GRPC_THREAD -> data.withGrpcThread(event)
         UNION_NOT_SET,
@@ -166,23 +172,29 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
       activeConnections.getValue(id).endNs = event.timestamp
       logger.debug { "Connection ended: id=$id time=${event.timestamp.nanosToSeconds()}" }
     }
-    synchronized(grpcDataMap) { grpcDataMap[id] = newData }
+    synchronized(grpcDataMap) { grpcDataMap.put(newData) }
     return Result(updateTimeline = true)
   }
 
   fun getSpeedForRange(range: Range) = speedData.searchRange(range)
 
   fun getHttpDataForRange(range: Range) =
-    synchronized(httpDataMap) { httpDataMap.values.filter { it.intersectsRange(range) } }
+    synchronized(httpDataMap) { httpDataMap.getForRange(range) }
 
   fun getGrpcDataForRange(range: Range) =
-    synchronized(grpcDataMap) { grpcDataMap.values.filter { it.intersectsRange(range) } }
+    synchronized(grpcDataMap) { grpcDataMap.getForRange(range) }
 
   fun reset() {
     speedData.clear()
     activeConnections.clear()
     synchronized(httpDataMap) { httpDataMap.clear() }
     synchronized(grpcDataMap) { grpcDataMap.clear() }
+    payloadStore.clear()
+  }
+
+  fun dispose() {
+    reset()
+    payloadStore.close()
   }
 
   private fun shouldUpdateTimeline(event: Event): Boolean {
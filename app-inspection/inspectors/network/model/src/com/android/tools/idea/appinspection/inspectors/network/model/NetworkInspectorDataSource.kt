@@ -23,6 +23,7 @@ import com.android.tools.idea.concurrency.createChildScope
 import com.intellij.util.containers.ContainerUtil
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import studio.network.inspection.NetworkInspectorProtocol.Event
 
@@ -55,6 +56,11 @@ class NetworkInspectorDataSourceImpl(
 
   @Volatile private var isStarted = false
 
+  init {
+    // Releases the payload spill file when the inspector goes away.
+    scope.coroutineContext.job.invokeOnCompletion { dataHandler.dispose() }
+  }
+
   override fun start() {
     if (isStarted) {
       return
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.adtui.model.Range
+import java.util.concurrent.TimeUnit.MICROSECONDS
+import studio.network.inspection.NetworkInspectorProtocol.Event
+import studio.network.inspection.NetworkInspectorProtocol.SpeedEvent
+
+private const val INITIAL_CAPACITY = 1024
+
+/**
+ * An append-only store of [SpeedEvent]s kept as primitive timestamp/rx/tx columns.
+ *
+ * Speed events arrive several times a second for as long as the inspector is running, so storing
+ * them as individual protos (or in a copy-on-write list) gets expensive during long sessions. The
+ * columns grow geometrically and range queries use a binary search over the timestamp column, so
+ * only the events that are actually returned get materialized as [Event]s.
+ *
+ * Events are expected to arrive in timestamp order. An out-of-order event is still accepted and
+ * inserted at its sorted position.
+ */
+internal class SpeedDataStore {
+  private val lock = Any()
+
+  @GuardedBy("lock") private var timestamps = LongArray(INITIAL_CAPACITY)
+  @GuardedBy("lock") private var rxSpeeds = LongArray(INITIAL_CAPACITY)
+  @GuardedBy("lock") private var txSpeeds = LongArray(INITIAL_CAPACITY)
+  @GuardedBy("lock") private var size = 0
+
+  val count: Int
+    get() = synchronized(lock) { size }
+
+  fun add(event: Event) {
+    add(event.timestamp, event.speedEvent.rxSpeed, event.speedEvent.txSpeed)
+  }
+
+  fun add(timestampNs: Long, rxSpeed: Long, txSpeed: Long) {
+    synchronized(lock) {
+      ensureCapacity(size + 1)
+      // Insert after any events with the same timestamp so equal timestamps keep arrival order.
+      val index =
+        if (size == 0 || timestamps[size - 1] <= timestampNs) size
+        else upperBound(timestampNs)
+      if (index < size) {
+        System.arraycopy(timestamps, index, timestamps, index + 1, size - index)
+        System.arraycopy(rxSpeeds, index, rxSpeeds, index + 1, size - index)
+        System.arraycopy(txSpeeds, index, txSpeeds, index + 1, size - index)
+      }
+      timestamps[index] = timestampNs
+      rxSpeeds[index] = rxSpeed
+      txSpeeds[index] = txSpeed
+      size++
+    }
+  }
+
+  /**
+   * Return all events that fall within [range] (in microseconds) inclusive.
+   *
+   * This function is designed to be fast (logN) because it gets called frequently by the frontend.
+   */
+  fun searchRange(range: Range): List<Event> {
+    val minNs = MICROSECONDS.toNanos(range.min.toLong())
+    val maxNs = MICROSECONDS.toNanos(range.max.toLong())
+    synchronized(lock) {
+      val start = lowerBound(minNs)
+      val end = upperBound(maxNs)
+      if (start >= end) {
+        return emptyList()
+      }
+      return (start until end).map { i ->
+        Event.newBuilder()
+          .setTimestamp(timestamps[i])
+          .setSpeedEvent(SpeedEvent.newBuilder().setRxSpeed(rxSpeeds[i]).setTxSpeed(txSpeeds[i]))
+          .build()
+      }
+    }
+  }
+
+  fun clear() {
+    synchronized(lock) {
+      timestamps = LongArray(INITIAL_CAPACITY)
+      rxSpeeds = LongArray(INITIAL_CAPACITY)
+      txSpeeds = LongArray(INITIAL_CAPACITY)
+      size = 0
+    }
+  }
+
+  /** Index of the first element with `timestamp >= valueNs`. */
+  @GuardedBy("lock")
+  private fun lowerBound(valueNs: Long): Int {
+    var low = 0
+    var high = size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (timestamps[mid] < valueNs) low = mid + 1 else high = mid
+    }
+    return low
+  }
+
+  /** Index of the first element with `timestamp > valueNs`. */
+  @GuardedBy("lock")
+  private fun upperBound(valueNs: Long): Int {
+    var low = 0
+    var high = size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (timestamps[mid] <= valueNs) low = mid + 1 else high = mid
+    }
+    return low
+  }
+
+  @GuardedBy("lock")
+  private fun ensureCapacity(capacity: Int) {
+    if (capacity <= timestamps.size) {
+      return
+    }
+    val newCapacity = maxOf(capacity, timestamps.size * 2)
+    timestamps = timestamps.copyOf(newCapacity)
+    rxSpeeds = rxSpeeds.copyOf(newCapacity)
+    txSpeeds = txSpeeds.copyOf(newCapacity)
+  }
+}
@@ -37,12 +37,20 @@ interface ConnectionData {
   val trace: String
   val requestHeaders: Map<String, List<String>>
   val requestPayload: ByteString
+  /** Size of [requestPayload] in bytes, available without loading the payload. */
+  val requestPayloadSize: Int
+  /** Whether [requestPayload] was discarded from the payload store, in which case it is empty. */
+  val isRequestPayloadDiscarded: Boolean
   val requestType: String
   val requestPayloadText: String
   val status: String
   val error: String
   val responseHeaders: Map<String, List<String>>
   val responsePayload: ByteString
+  /** Size of [responsePayload] in bytes, available without loading the payload. */
+  val responsePayloadSize: Int
+  /** Whether [responsePayload] was discarded from the payload store, in which case it is empty. */
+  val isResponsePayloadDiscarded: Boolean
   val responseType: String
   val responsePayloadText: String
   val responseTrailers: Map<String, List<String>>
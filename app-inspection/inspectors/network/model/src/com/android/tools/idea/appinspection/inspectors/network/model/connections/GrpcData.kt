@@ -43,13 +43,13 @@ private constructor(
   override val method: String,
   override val trace: String,
   override val requestHeaders: Map<String, List<String>>,
-  override val requestPayload: ByteString,
+  val requestPayloadRef: Payload,
   override val requestType: String,
   override val requestPayloadText: String,
   override val status: String,
   override val error: String,
   override val responseHeaders: Map<String, List<String>>,
-  override val responsePayload: ByteString,
+  val responsePayloadRef: Payload,
   override val responseType: String,
   override val responsePayloadText: String,
   override val responseTrailers: Map<String, List<String>>,
@@ -57,6 +57,24 @@ private constructor(
   override val transport: String
     get() = "gRPC"
 
+  override val requestPayload: ByteString
+    get() = requestPayloadRef.bytes
+
+  override val requestPayloadSize: Int
+    get() = requestPayloadRef.size
+
+  override val isRequestPayloadDiscarded: Boolean
+    get() = requestPayloadRef.isDiscarded
+
+  override val responsePayload: ByteString
+    get() = responsePayloadRef.bytes
+
+  override val responsePayloadSize: Int
+    get() = responsePayloadRef.size
+
+  override val isResponsePayloadDiscarded: Boolean
+    get() = responsePayloadRef.isDiscarded
+
   override val url: String
     get() = "$schema://$address/$path"
 
@@ -82,13 +100,16 @@ private constructor(
     )
   }
 
-  internal fun withGrpcMessageSent(event: NetworkInspectorProtocol.Event): GrpcData {
+  internal fun withGrpcMessageSent(
+    event: NetworkInspectorProtocol.Event,
+    store: PayloadStore,
+  ): GrpcData {
     val timestamp = TimeUnit.NANOSECONDS.toMicros(event.timestamp)
     return copy(
       id = id,
       updateTimeUs = timestamp,
       requestCompleteTimeUs = timestamp,
-      requestPayload = event.grpcEvent.grpcMessageSent.payload.bytes,
+      requestPayloadRef = store.store(event.grpcEvent.grpcMessageSent.payload.bytes),
       requestType = event.grpcEvent.grpcMessageSent.payload.type,
       requestPayloadText = event.grpcEvent.grpcMessageSent.payload.text,
     )
@@ -105,13 +126,16 @@ private constructor(
     )
   }
 
-  internal fun withGrpcMessageReceived(event: NetworkInspectorProtocol.Event): GrpcData {
+  internal fun withGrpcMessageReceived(
+    event: NetworkInspectorProtocol.Event,
+    store: PayloadStore,
+  ): GrpcData {
     val timestamp = TimeUnit.NANOSECONDS.toMicros(event.timestamp)
     return copy(
       id = id,
       updateTimeUs = timestamp,
       responseCompleteTimeUs = timestamp,
-      responsePayload = event.grpcEvent.grpcMessageReceived.payload.bytes,
+      responsePayloadRef = store.store(event.grpcEvent.grpcMessageReceived.payload.bytes),
       responseType = event.grpcEvent.grpcMessageReceived.payload.type,
       responsePayloadText = event.grpcEvent.grpcMessageReceived.payload.text,
     )
@@ -191,13 +215,13 @@ private constructor(
         method,
         trace,
         requestHeaders.toMap(),
-        requestPayload,
+        Payload.of(requestPayload),
         requestType,
         requestPayloadText,
         status,
         error,
         responseHeaders.toMap(),
-        responsePayload,
+        Payload.of(responsePayload),
         responseType,
         responsePayloadText,
         responseTrailers.toMap(),
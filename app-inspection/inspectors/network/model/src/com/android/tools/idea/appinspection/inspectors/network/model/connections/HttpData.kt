@@ -18,7 +18,6 @@ package com.android.tools.idea.appinspection.inspectors.network.model.connection
 import com.android.tools.adtui.model.Range
 import com.android.tools.idea.protobuf.ByteString
 import com.intellij.util.io.URLUtil
-import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.net.URI
 import java.util.TreeMap
@@ -51,9 +50,9 @@ data class HttpData(
   val httpTransport: HttpTransport,
   override val trace: String,
   override val requestHeaders: Map<String, List<String>>,
-  override val requestPayload: ByteString,
+  val requestPayloadRef: Payload,
   override val responseHeaders: Map<String, List<String>>,
-  override val responsePayload: ByteString,
+  val responsePayloadRef: Payload,
   val responseCode: Int,
 ) : ConnectionData {
   private val uri: URI? = runCatching { URI.create(url) }.getOrNull()
@@ -91,6 +90,24 @@ data class HttpData(
       }.decodeUrl()
     }
 
+  override val requestPayload: ByteString
+    get() = requestPayloadRef.bytes
+
+  override val requestPayloadSize: Int
+    get() = requestPayloadRef.size
+
+  override val isRequestPayloadDiscarded: Boolean
+    get() = requestPayloadRef.isDiscarded
+
+  override val responsePayload: ByteString
+    get() = responsePayloadRef.bytes
+
+  override val responsePayloadSize: Int
+    get() = responsePayloadRef.size
+
+  override val isResponsePayloadDiscarded: Boolean
+    get() = responsePayloadRef.isDiscarded
+
   override val requestType: String
     get() = getRequestContentType().mimeType
 
@@ -113,9 +130,10 @@ data class HttpData(
     get() = emptyMap()
 
   fun getReadableResponsePayload(): ByteString {
+    val responsePayload = responsePayload
     return if (getContentEncodings().find { it.lowercase() == "gzip" } != null) {
       try {
-        GZIPInputStream(ByteArrayInputStream(responsePayload.toByteArray())).use {
+        GZIPInputStream(responsePayload.newInput()).use {
           ByteString.copyFrom(it.readBytes())
         }
       } catch (ignored: IOException) {
@@ -146,10 +164,10 @@ data class HttpData(
       threads = threads + event.toJavaThread(),
     )
 
-  internal fun withRequestPayload(event: NetworkInspectorProtocol.Event) =
+  internal fun withRequestPayload(event: NetworkInspectorProtocol.Event, store: PayloadStore) =
     copy(
       updateTimeUs = TimeUnit.NANOSECONDS.toMicros(event.timestamp),
-      requestPayload = event.httpConnectionEvent.requestPayload.payload,
+      requestPayloadRef = store.store(event.httpConnectionEvent.requestPayload.payload),
     )
 
   internal fun withRequestCompleted(event: NetworkInspectorProtocol.Event): HttpData {
@@ -168,10 +186,10 @@ data class HttpData(
     )
   }
 
-  internal fun withResponsePayload(event: NetworkInspectorProtocol.Event) =
+  internal fun withResponsePayload(event: NetworkInspectorProtocol.Event, store: PayloadStore) =
     copy(
       updateTimeUs = TimeUnit.NANOSECONDS.toMicros(event.timestamp),
-      responsePayload = event.httpConnectionEvent.responsePayload.payload,
+      responsePayloadRef = store.store(event.httpConnectionEvent.responsePayload.payload),
     )
 
   internal fun withResponseCompleted(event: NetworkInspectorProtocol.Event): HttpData {
@@ -246,9 +264,9 @@ data class HttpData(
         transport,
         trace,
         requestHeaders.toMap(),
-        requestPayload,
+        Payload.of(requestPayload),
         responseHeaders.toMap(),
-        responsePayload,
+        Payload.of(responsePayload),
         responseCode,
       )
     }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.connections
+
+import com.android.tools.idea.protobuf.ByteString
+
+/**
+ * A request or response body of a connection.
+ *
+ * Small payloads are kept [Inline]. Large ones are written to a [PayloadStore] and only a
+ * [Spilled] reference is held by the connection data, so that the many immutable copies of
+ * [HttpData] and [GrpcData] don't keep large bodies on the heap.
+ */
+sealed interface Payload {
+  /** The size of the payload in bytes. Does not require the payload to be loaded. */
+  val size: Int
+
+  /** The payload content. For [Spilled] payloads this may read from disk. */
+  val bytes: ByteString
+
+  /**
+   * Whether the payload was discarded to bound the disk space used by payloads. A discarded payload
+   * still has its original [size], but its [bytes] are empty.
+   */
+  val isDiscarded: Boolean
+
+  data class Inline(override val bytes: ByteString) : Payload {
+    override val size: Int
+      get() = bytes.size()
+
+    override val isDiscarded: Boolean
+      get() = false
+  }
+
+  /**
+   * A payload stored in a segment of [store]. It is discarded once the store has been cleared or
+   * the segment was deleted because the store reached its capacity.
+   */
+  class Spilled
+  internal constructor(
+    private val store: PayloadStore,
+    internal val generation: Int,
+    internal val segment: Int,
+    internal val offset: Long,
+    override val size: Int,
+  ) : Payload {
+    override val bytes: ByteString
+      get() = store.read(this) ?: ByteString.EMPTY
+
+    override val isDiscarded: Boolean
+      get() = store.isDiscarded(this)
+
+    override fun equals(other: Any?) =
+      other is Spilled &&
+        store === other.store &&
+        generation == other.generation &&
+        segment == other.segment &&
+        offset == other.offset &&
+        size == other.size
+
+    override fun hashCode() = ((31 * generation + segment) * 31 + offset.hashCode()) * 31 + size
+
+    override fun toString() = "Spilled(segment=$segment, offset=$offset, size=$size)"
+  }
+
+  companion object {
+    val EMPTY: Payload = Inline(ByteString.EMPTY)
+
+    fun of(bytes: ByteString): Payload = if (bytes.isEmpty) EMPTY else Inline(bytes)
+  }
+}
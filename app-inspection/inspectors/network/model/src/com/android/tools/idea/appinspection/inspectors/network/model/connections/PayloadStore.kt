@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.connections
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.protobuf.ByteString
+import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.util.io.FileUtil
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/** Payloads up to this size are kept on the heap. */
+private const val DEFAULT_INLINE_THRESHOLD = 16 * 1024
+
+/** Size of a spill file. A payload that doesn't fit in the current one starts a new one. */
+private const val DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024
+
+/** Total size of the spill files. Once exceeded, the oldest spill file is discarded. */
+private const val DEFAULT_CAPACITY = 512L * 1024 * 1024
+
+/** Total size of the decoded payloads kept in memory. */
+private const val DEFAULT_CACHE_SIZE = 32 * 1024 * 1024
+
+/**
+ * Stores connection payloads in size-bounded spill files.
+ *
+ * Payloads are appended to the current spill file, or segment, and a new segment is started when a
+ * payload doesn't fit in it. Once the segments add up to more than [capacity], the oldest segment
+ * is deleted. Its payloads are never overwritten in place: they become
+ * [discarded][Payload.isDiscarded] and read back as empty, so that the UI can tell them apart from
+ * empty payloads. Payloads that are read are kept in a small LRU cache so that switching back and
+ * forth between connections in the details view doesn't read the same bytes from disk again.
+ *
+ * Segments are accessed with positional [FileChannel] reads and writes rather than being
+ * memory-mapped, so that they can be deleted as soon as they are closed, including on Windows.
+ * They are created lazily when the first large payload is stored.
+ */
+class PayloadStore(
+  private val inlineThreshold: Int = DEFAULT_INLINE_THRESHOLD,
+  private val segmentSize: Long = DEFAULT_SEGMENT_SIZE,
+  private val capacity: Long = DEFAULT_CAPACITY,
+  private val cacheSize: Int = DEFAULT_CACHE_SIZE,
+) : Closeable {
+  private val logger = thisLogger()
+  private val lock = Any()
+
+  /** Live segments, ordered by id. Ids are consecutive, since only the oldest is ever removed. */
+  @GuardedBy("lock") private val segments = ArrayDeque<Segment>()
+  @GuardedBy("lock") private var nextSegmentId = 0
+  @GuardedBy("lock") private var totalSize = 0L
+  @GuardedBy("lock") private var spillFailed = false
+  @GuardedBy("lock") private var closed = false
+  @GuardedBy("lock") private var generation = 0
+  @GuardedBy("lock") private var cachedBytes = 0
+  @GuardedBy("lock")
+  private val cache = LinkedHashMap<Payload.Spilled, ByteString>(16, 0.75f, /* accessOrder= */ true)
+
+  /**
+   * Returns a [Payload] for [bytes], spilling it to disk if it's large enough. If the spill files
+   * can't be used, the payload is kept on the heap.
+   */
+  fun store(bytes: ByteString): Payload {
+    val size = bytes.size()
+    if (size <= inlineThreshold || size > capacity) {
+      return Payload.of(bytes)
+    }
+    synchronized(lock) {
+      val segment = getOrCreateSegment(size) ?: return Payload.of(bytes)
+      val offset = segment.size
+      try {
+        var position = offset
+        for (buffer in bytes.asReadOnlyByteBufferList()) {
+          while (buffer.hasRemaining()) {
+            position += segment.channel.write(buffer, position)
+          }
+        }
+      } catch (e: IOException) {
+        logger.warn("Unable to write payload to ${segment.file}. It will be kept in memory.", e)
+        return Payload.of(bytes)
+      }
+      segment.size += size
+      totalSize += size
+      discardOldestSegments()
+      return Payload.Spilled(this, generation, segment.id, offset, size)
+    }
+  }
+
+  internal fun isDiscarded(payload: Payload.Spilled): Boolean {
+    synchronized(lock) {
+      return findSegment(payload) == null
+    }
+  }
+
+  /** Returns the content of [payload], or null if it has been discarded. */
+  internal fun read(payload: Payload.Spilled): ByteString? {
+    synchronized(lock) {
+      val segment = findSegment(payload)
+      if (segment == null) {
+        logger.debug("Payload $payload has been discarded")
+        return null
+      }
+      cache[payload]?.let {
+        return it
+      }
+      val buffer = ByteBuffer.allocate(payload.size)
+      try {
+        while (buffer.hasRemaining()) {
+          if (segment.channel.read(buffer, payload.offset + buffer.position()) < 0) {
+            break
+          }
+        }
+      } catch (e: IOException) {
+        logger.warn("Unable to read payload from ${segment.file}", e)
+        return null
+      }
+      val bytes = ByteString.copyFrom(buffer.array(), 0, buffer.position())
+      addToCache(payload, bytes)
+      return bytes
+    }
+  }
+
+  /** Discards all payloads returned so far and deletes the spill files. */
+  fun clear() {
+    synchronized(lock) {
+      generation++
+      segments.forEach { it.delete() }
+      segments.clear()
+      totalSize = 0
+      cache.clear()
+      cachedBytes = 0
+    }
+  }
+
+  override fun close() {
+    synchronized(lock) {
+      clear()
+      closed = true
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun findSegment(payload: Payload.Spilled): Segment? {
+    if (payload.generation != generation) {
+      return null
+    }
+    val first = segments.firstOrNull() ?: return null
+    return segments.getOrNull(payload.segment - first.id)
+  }
+
+  @GuardedBy("lock")
+  private fun discardOldestSegments() {
+    while (totalSize > capacity && segments.size > 1) {
+      val oldest = segments.removeFirst()
+      totalSize -= oldest.size
+      oldest.delete()
+      val iterator = cache.entries.iterator()
+      while (iterator.hasNext()) {
+        val entry = iterator.next()
+        if (entry.key.segment == oldest.id) {
+          cachedBytes -= entry.value.size()
+          iterator.remove()
+        }
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun addToCache(payload: Payload.Spilled, bytes: ByteString) {
+    if (bytes.size() > cacheSize) {
+      return
+    }
+    cache[payload] = bytes
+    cachedBytes += bytes.size()
+    val iterator = cache.values.iterator()
+    while (cachedBytes > cacheSize && iterator.hasNext()) {
+      cachedBytes -= iterator.next().size()
+      iterator.remove()
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun getOrCreateSegment(payloadSize: Int): Segment? {
+    val current = segments.lastOrNull()
+    if (current != null && (current.size == 0L || current.size + payloadSize <= segmentSize)) {
+      return current
+    }
+    if (spillFailed || closed) {
+      return null
+    }
+    return try {
+      // The file is also deleted on exit, in case deleting it when discarded fails.
+      val file = FileUtil.createTempFile("network-inspector-payloads", ".bin", true)
+      val channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+      Segment(nextSegmentId++, file, channel).also { segments.addLast(it) }
+    } catch (e: IOException) {
+      spillFailed = true
+      logger.warn("Unable to create payload spill file. Payloads will be kept in memory.", e)
+      null
+    }
+  }
+
+  private inner class Segment(val id: Int, val file: File, val channel: FileChannel) {
+    var size = 0L
+
+    fun delete() {
+      try {
+        channel.close()
+      } catch (e: IOException) {
+        logger.warn("Unable to close $file", e)
+      }
+      if (!FileUtil.delete(file)) {
+        logger.warn("Unable to delete $file")
+      }
+    }
+  }
+}
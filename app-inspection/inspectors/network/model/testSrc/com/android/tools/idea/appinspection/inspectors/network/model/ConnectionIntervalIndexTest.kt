@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+/** Tests for [ConnectionIntervalIndex] */
+class ConnectionIntervalIndexTest {
+
+  @Test
+  fun getForRange() {
+    val index = ConnectionIntervalIndex<HttpData>()
+    val data1 = httpData(1, startUs = 10, endUs = 20)
+    val data2 = httpData(2, startUs = 15, endUs = 30)
+    val data3 = httpData(3, startUs = 40, endUs = 50)
+    index.put(data1)
+    index.put(data2)
+    index.put(data3)
+
+    assertThat(index.getForRange(Range(0.0, 9.0))).isEmpty()
+    assertThat(index.getForRange(Range(0.0, 10.0))).containsExactly(data1)
+    assertThat(index.getForRange(Range(18.0, 22.0))).containsExactly(data1, data2).inOrder()
+    assertThat(index.getForRange(Range(21.0, 39.0))).containsExactly(data2)
+    assertThat(index.getForRange(Range(0.0, 100.0))).containsExactly(data1, data2, data3).inOrder()
+    assertThat(index.getForRange(Range(51.0, 100.0))).isEmpty()
+  }
+
+  @Test
+  fun put_replacesExisting() {
+    val index = ConnectionIntervalIndex<HttpData>()
+    index.put(httpData(1, startUs = 10, endUs = 20))
+    val updated = httpData(1, startUs = 10, endUs = 60)
+
+    index.put(updated)
+
+    assertThat(index.size).isEqualTo(1)
+    assertThat(index[1]).isSameAs(updated)
+    assertThat(index.getForRange(Range(50.0, 55.0))).containsExactly(updated)
+  }
+
+  @Test
+  fun getForRange_unorderedStarts() {
+    val index = ConnectionIntervalIndex<HttpData>()
+    val data1 = httpData(1, startUs = 100, endUs = 110)
+    val data2 = httpData(2, startUs = 5, endUs = 8)
+    index.put(data1)
+    index.put(data2)
+
+    assertThat(index.getForRange(Range(0.0, 6.0))).containsExactly(data2)
+  }
+
+  @Test
+  fun getForRange_matchesLinearScan() {
+    val index = ConnectionIntervalIndex<HttpData>()
+    val all = (1..2000L).map { httpData(it, startUs = it * 10, endUs = it * 10 + (it % 97) * 5) }
+    all.forEach { index.put(it) }
+
+    listOf(Range(0.0, 5.0), Range(123.0, 456.0), Range(9000.0, 9001.0), Range(19990.0, 30000.0))
+      .forEach { range ->
+        assertThat(index.getForRange(range))
+          .containsExactlyElementsIn(all.filter { it.intersectsRange(range) })
+          .inOrder()
+      }
+  }
+
+  @Test
+  fun clear() {
+    val index = ConnectionIntervalIndex<HttpData>()
+    index.put(httpData(1, startUs = 10, endUs = 20))
+
+    index.clear()
+
+    assertThat(index.size).isEqualTo(0)
+    assertThat(index[1]).isNull()
+    assertThat(index.getForRange(Range(0.0, 100.0))).isEmpty()
+  }
+}
+
+private fun httpData(id: Long, startUs: Long, endUs: Long) =
+  HttpData.createHttpData(id, updateTimeUs = endUs, requestStartTimeUs = startUs)
@@ -6,6 +6,7 @@ import com.android.tools.idea.appinspection.inspectors.network.model.analytics.S
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.GrpcData
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.JavaThread
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.Payload
 import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.idea.testing.DebugLoggerRule
@@ -57,7 +58,10 @@ class DataHandlerTest {
 
     handler.handleHttpConnectionEvent(httpRequestPayload(id, 12.secondsInNanos, "request-payload"))
     expected =
-      expected.copy(updateTimeUs = 12000000, requestPayload = "request-payload".toByteString())
+      expected.copy(
+        updateTimeUs = 12000000,
+        requestPayloadRef = Payload.of("request-payload".toByteString()),
+      )
     assertThat(handler.getHttpDataForRange(range)).containsExactly(expected)
 
     handler.handleHttpConnectionEvent(httpRequestCompleted(id, 13.secondsInNanos))
@@ -80,7 +84,10 @@ class DataHandlerTest {
       httpResponsePayload(id, 15.secondsInNanos, "response-payload")
     )
     expected =
-      expected.copy(updateTimeUs = 15000000, responsePayload = "response-payload".toByteString())
+      expected.copy(
+        updateTimeUs = 15000000,
+        responsePayloadRef = Payload.of("response-payload".toByteString()),
+      )
     assertThat(handler.getHttpDataForRange(range)).containsExactly(expected)
 
     handler.handleHttpConnectionEvent(httpResponseCompleted(id, 16.secondsInNanos))
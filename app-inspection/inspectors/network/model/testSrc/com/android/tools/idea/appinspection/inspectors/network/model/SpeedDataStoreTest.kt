@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.adtui.model.Range
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.TimeUnit.MICROSECONDS
+import java.util.concurrent.TimeUnit.NANOSECONDS
+import org.junit.Test
+
+/** Tests for [SpeedDataStore] */
+class SpeedDataStoreTest {
+
+  @Test
+  fun searchRange() {
+    val store = storeOf(3, 5, 5, 5, 7)
+
+    assertThat(store.searchRange(3..7)).containsExactly(3, 5, 5, 5, 7).inOrder()
+    assertThat(store.searchRange(5..7)).containsExactly(5, 5, 5, 7).inOrder()
+    assertThat(store.searchRange(3..5)).containsExactly(3, 5, 5, 5).inOrder()
+    assertThat(store.searchRange(5..5)).containsExactly(5, 5, 5)
+    assertThat(store.searchRange(4..6)).containsExactly(5, 5, 5)
+    assertThat(store.searchRange(2..8)).containsExactly(3, 5, 5, 5, 7).inOrder()
+    assertThat(store.searchRange(1..2)).isEmpty()
+    assertThat(store.searchRange(8..9)).isEmpty()
+  }
+
+  @Test
+  fun searchRange_preservesSpeeds() {
+    val store = SpeedDataStore()
+    val event1 = speedEvent(MICROSECONDS.toNanos(1), 10, 20)
+    val event2 = speedEvent(MICROSECONDS.toNanos(2), 30, 40)
+    store.add(event1)
+    store.add(event2)
+
+    assertThat(store.searchRange(Range(0.0, 3.0))).containsExactly(event1, event2).inOrder()
+  }
+
+  @Test
+  fun add_outOfOrder() {
+    val store = storeOf(1, 5, 3, 2, 5, 4)
+
+    assertThat(store.searchRange(0..10)).containsExactly(1, 2, 3, 4, 5, 5).inOrder()
+  }
+
+  @Test
+  fun add_growsCapacity() {
+    val store = SpeedDataStore()
+    repeat(5000) { store.add(MICROSECONDS.toNanos(it.toLong()), it.toLong(), 0) }
+
+    assertThat(store.count).isEqualTo(5000)
+    assertThat(store.searchRange(4000..4002)).containsExactly(4000, 4001, 4002).inOrder()
+  }
+
+  @Test
+  fun clear() {
+    val store = storeOf(1, 2, 3)
+
+    store.clear()
+
+    assertThat(store.count).isEqualTo(0)
+    assertThat(store.searchRange(0..10)).isEmpty()
+  }
+}
+
+private fun storeOf(vararg timestampsUs: Long) =
+  SpeedDataStore().apply { timestampsUs.forEach { add(speedEvent(MICROSECONDS.toNanos(it))) } }
+
+/** Convenience method that handles Micro <-> Nano & Int <-> Long conversions */
+private fun SpeedDataStore.searchRange(range: IntRange) =
+  searchRange(Range(range.first.toDouble(), range.last.toDouble())).map {
+    NANOSECONDS.toMicros(it.timestamp).toInt()
+  }
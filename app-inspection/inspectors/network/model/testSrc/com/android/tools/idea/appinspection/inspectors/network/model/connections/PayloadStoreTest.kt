@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model.connections
+
+import com.android.tools.idea.protobuf.ByteString
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+
+/** Tests for [PayloadStore] */
+class PayloadStoreTest {
+  private val store = PayloadStore(inlineThreshold = 4, segmentSize = 16, capacity = 32, cacheSize = 16)
+
+  @After
+  fun tearDown() {
+    store.close()
+  }
+
+  @Test
+  fun smallPayload_isInline() {
+    val payload = store.store(bytesOf(1, 2, 3))
+
+    assertThat(payload).isInstanceOf(Payload.Inline::class.java)
+    assertThat(payload.bytes).isEqualTo(bytesOf(1, 2, 3))
+  }
+
+  @Test
+  fun largePayload_isSpilled() {
+    val bytes = bytesOf(1..10)
+
+    val payload = store.store(bytes)
+
+    assertThat(payload).isInstanceOf(Payload.Spilled::class.java)
+    assertThat(payload.size).isEqualTo(10)
+    assertThat(payload.bytes).isEqualTo(bytes)
+    assertThat(payload.isDiscarded).isFalse()
+  }
+
+  @Test
+  fun payloadLargerThanCapacity_isInline() {
+    val payload = store.store(ByteString.copyFrom(ByteArray(40)))
+
+    assertThat(payload).isInstanceOf(Payload.Inline::class.java)
+  }
+
+  @Test
+  fun payloadsShareSegmentUntilFull() {
+    val first = store.store(bytesOf(1..6))
+    val second = store.store(bytesOf(7..12))
+    val third = store.store(bytesOf(13..18))
+
+    assertThat((first as Payload.Spilled).segment).isEqualTo((second as Payload.Spilled).segment)
+    assertThat((third as Payload.Spilled).segment).isNotEqualTo(second.segment)
+    assertThat(first.bytes).isEqualTo(bytesOf(1..6))
+    assertThat(second.bytes).isEqualTo(bytesOf(7..12))
+    assertThat(third.bytes).isEqualTo(bytesOf(13..18))
+  }
+
+  @Test
+  fun oldestSegmentIsDiscardedOverCapacity() {
+    val first = store.store(bytesOf(1..10))
+    // Cached payloads are discarded too.
+    assertThat(first.bytes).isEqualTo(bytesOf(1..10))
+    val second = store.store(bytesOf(11..20))
+    val third = store.store(bytesOf(21..30))
+    val fourth = store.store(bytesOf(31..40))
+
+    // The payloads of the deleted segment are reported as discarded instead of being overwritten.
+    assertThat(first.isDiscarded).isTrue()
+    assertThat(first.size).isEqualTo(10)
+    assertThat(first.bytes).isEqualTo(ByteString.EMPTY)
+    assertThat(second.isDiscarded).isFalse()
+    assertThat(second.bytes).isEqualTo(bytesOf(11..20))
+    assertThat(third.bytes).isEqualTo(bytesOf(21..30))
+    assertThat(fourth.bytes).isEqualTo(bytesOf(31..40))
+  }
+
+  @Test
+  fun clear_discardsPayloads() {
+    val payload = store.store(bytesOf(1..10))
+
+    store.clear()
+    val newPayload = store.store(bytesOf(11..20))
+
+    assertThat(payload.isDiscarded).isTrue()
+    assertThat(payload.bytes).isEqualTo(ByteString.EMPTY)
+    assertThat(newPayload.bytes).isEqualTo(bytesOf(11..20))
+  }
+
+  @Test
+  fun close_keepsNewPayloadsInMemory() {
+    store.store(bytesOf(1..10))
+
+    store.close()
+    val payload = store.store(bytesOf(11..20))
+
+    assertThat(payload).isInstanceOf(Payload.Inline::class.java)
+    assertThat(payload.bytes).isEqualTo(bytesOf(11..20))
+  }
+
+  @Test
+  fun equality() {
+    val bytes = bytesOf(1..10)
+    val payload1 = store.store(bytes)
+    val payload2 = store.store(bytes)
+
+    assertThat(payload1).isEqualTo(payload1)
+    assertThat(payload1).isNotEqualTo(payload2)
+    assertThat(Payload.of(bytesOf(1))).isEqualTo(Payload.of(bytesOf(1)))
+    assertThat(Payload.of(ByteString.EMPTY)).isEqualTo(Payload.EMPTY)
+  }
+}
+
+private fun bytesOf(vararg values: Int) =
+  ByteString.copyFrom(ByteArray(values.size) { values[it].toByte() })
+
+private fun bytesOf(range: IntRange) = bytesOf(*range.toList().toIntArray())
@@ -58,6 +58,12 @@ internal abstract class DataComponentFactory(protected val data: ConnectionData)
 
   abstract fun createBodyComponent(type: ConnectionType): JComponent?
 
+  protected fun isPayloadDiscarded(type: ConnectionType) =
+    when (type) {
+      REQUEST -> data.isRequestPayloadDiscarded
+      RESPONSE -> data.isResponsePayloadDiscarded
+    }
+
   protected fun createHeaderComponent(map: Map<String, List<String>>): JComponent? {
     if (map.isEmpty()) {
       return null
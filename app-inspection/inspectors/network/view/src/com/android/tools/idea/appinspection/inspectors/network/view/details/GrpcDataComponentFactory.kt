@@ -37,6 +37,7 @@ import com.intellij.psi.search.ProjectScope
 import io.ktor.utils.io.core.toByteArray
 import java.io.StringReader
 import javax.swing.JComponent
+import javax.swing.JLabel
 import javax.xml.parsers.DocumentBuilderFactory
 import kotlin.text.RegexOption.MULTILINE
 import org.xml.sax.InputSource
@@ -56,6 +57,9 @@ internal class GrpcDataComponentFactory(
   override fun createDataViewer(type: ConnectionType, formatted: Boolean) = null
 
   override fun createBodyComponent(type: ConnectionType): JComponent? {
+    if (isPayloadDiscarded(type)) {
+      return createTitledPanel("Payload", JLabel(PAYLOAD_DISCARDED_TEXT), null)
+    }
     val bytes =
       when (type) {
         REQUEST -> data.requestPayload.toByteArray()
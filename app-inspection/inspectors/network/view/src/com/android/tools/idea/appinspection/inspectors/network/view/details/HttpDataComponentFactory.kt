@@ -73,10 +73,13 @@ internal class HttpDataComponentFactory(
   /**
    * Returns a payload component which can display the underlying data of the current [HttpData]'s
    * payload. If the payload is empty, this will return a label to indicate that the target payload
-   * is not set. If the payload is not empty and is supported for parsing, this will return a
+   * is not set or was discarded. If the payload is not empty and is supported for parsing, this will return a
    * component containing both the raw data view and the parsed view.
    */
   override fun createBodyComponent(type: ConnectionType): JComponent {
+    if (isPayloadDiscarded(type)) {
+      return createTitledPanel(getBodyTitle(type), JLabel(PAYLOAD_DISCARDED_TEXT), null)
+    }
     val payload = getPayload(type)
     if (payload.isEmpty) {
       return createTitledPanel(getBodyTitle(type), JLabel("Not available"), null)
@@ -200,7 +200,7 @@ internal class OverviewTabContent : TabContent() {
         myFieldsPanel.add(contentTypeLabel, TabularLayout.Constraint(row, 2))
       }
 
-      val requestSize = data.requestPayload.size()
+      val requestSize = data.requestPayloadSize
       if (requestSize > 0) {
         row++
         myFieldsPanel.add(NoWrapBoldLabel("Request size"), TabularLayout.Constraint(row, 0))
@@ -218,7 +218,7 @@ internal class OverviewTabContent : TabContent() {
         myFieldsPanel.add(contentTypeLabel, TabularLayout.Constraint(row, 2))
       }
 
-      val responseSize = data.responsePayload.size()
+      val responseSize = data.responsePayloadSize
       if (responseSize > 0) {
         row++
         myFieldsPanel.add(NoWrapBoldLabel("Response size"), TabularLayout.Constraint(row, 0))
@@ -61,6 +61,9 @@ const val SECTION_TITLE_BODY = "Body"
 
 const val REGEX_TEXT = "Regex"
 
+/** Shown instead of a payload that was discarded to limit the disk space used by payloads. */
+const val PAYLOAD_DISCARDED_TEXT = "Payload discarded to save disk space"
+
 /** Creates a scroll panel that wraps a target component with a consistent style. */
 fun createScrollPane(component: JComponent): JBScrollPane {
   val scrollPane = JBScrollPane(component)
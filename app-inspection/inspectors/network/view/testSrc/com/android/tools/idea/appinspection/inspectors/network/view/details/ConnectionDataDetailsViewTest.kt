@@ -33,6 +33,8 @@ import com.android.tools.idea.appinspection.inspectors.network.model.connections
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.FAKE_THREAD_LIST
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.JavaThread
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.Payload
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.PayloadStore
 import com.android.tools.idea.appinspection.inspectors.network.model.connections.createFakeHttpData
 import com.android.tools.idea.appinspection.inspectors.network.view.FakeUiComponentsProvider
 import com.android.tools.idea.appinspection.inspectors.network.view.NetworkInspectorView
@@ -206,7 +208,7 @@ class ConnectionDataDetailsViewTest {
 
   @Test
   fun viewerForRequestPayloadIsAbsentWhenRequestPayloadIsNull() {
-    val data = DEFAULT_DATA.copy(requestPayload = ByteString.EMPTY)
+    val data = DEFAULT_DATA.copy(requestPayloadRef = Payload.EMPTY)
     detailsView.setConnectionData(data)
     assertThat(
         findPayloadViewer(detailsView.findTab(RequestTabContent::class.java)!!.findPayloadBody())
@@ -214,6 +216,17 @@ class ConnectionDataDetailsViewTest {
       .isNull()
   }
 
+  @Test
+  fun discardedRequestPayloadIsReported() {
+    val store = PayloadStore(inlineThreshold = 0)
+    val payload = store.store(ByteString.copyFromUtf8("Request payload"))
+    store.close()
+    detailsView.setConnectionData(DEFAULT_DATA.copy(requestPayloadRef = payload))
+    val tab = detailsView.findTab(RequestTabContent::class.java)!!
+    assertThat(TreeWalker(tab.component).descendants().filterIsInstance<JLabel>().map { it.text })
+      .contains(PAYLOAD_DISCARDED_TEXT)
+  }
+
   @Test
   fun requestPayloadHasBothParsedViewAndRawDataView() {
     val data =
@@ -301,7 +314,8 @@ class ConnectionDataDetailsViewTest {
   @Test
   fun sizeHasProperValueFromData() {
     assertThat(detailsView.findTab(OverviewTabContent::class.java)!!.findSizeValue()).isNull()
-    val data = DEFAULT_DATA.copy(responsePayload = ByteString.copyFromUtf8("Response payload"))
+    val data =
+      DEFAULT_DATA.copy(responsePayloadRef = Payload.of(ByteString.copyFromUtf8("Response payload")))
     detailsView.setConnectionData(data)
     val value = detailsView.findTab(OverviewTabContent::class.java)!!.findSizeValue()!!
     assertThat(value.text).isEqualTo("${data.responsePayload.size()} B")
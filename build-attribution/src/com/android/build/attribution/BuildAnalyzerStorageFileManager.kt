@@ -27,12 +27,35 @@ import java.io.FileOutputStream
 import java.io.IOException
 
 class BuildAnalyzerStorageFileManager(
-  private val dataFolder: File
+  private val dataFolder: File,
+  private val historyIndexFile: File = dataFolder.resolveSibling("${dataFolder.name}.index")
 ) {
   private val log: Logger get() = Logger.getInstance("Build Analyzer")
 
   val totalFilesSize = AtomicProperty(getCurrentBuildHistoryDataSize())
 
+  /**
+   * Index of the stored builds for trend queries across builds, which are too slow to do by reading the results of every build.
+   * Kept outside of [dataFolder] so that it doesn't count towards the size of the stored results. If the index file is missing, e.g.
+   * because the builds were stored before there was an index, it is rebuilt from the stored results when first used.
+   */
+  @get:Slow
+  val historyIndex: BuildHistoryIndex by lazy {
+    BuildHistoryIndex(historyIndexFile).also { if (!historyIndexFile.exists()) rebuildHistoryIndex(it) }
+  }
+
+  private fun rebuildHistoryIndex(index: BuildHistoryIndex) {
+    val buildFiles = dataFolder.listFiles()?.filter { it.isFile } ?: return
+    for (buildFile in buildFiles) {
+      try {
+        index.add(getHistoricBuildResultByID(buildFile.name))
+      }
+      catch (e: IOException) {
+        log.warn("Failed to add stored build ${buildFile.name} to the build history index", e)
+      }
+    }
+  }
+
   /**
    * Converts build analysis results into a protobuf-generated data structure, that is then stored in byte form in a file. If there is an
    * error during file storage, then an IOException is logged and False is returned. If the folder containing build results cannot be resolved
@@ -45,13 +68,17 @@ class BuildAnalyzerStorageFileManager(
     try {
       FileUtils.mkdirs(dataFolder)
       val buildResultFile = getFileFromBuildID(buildResults.getBuildSessionID())
+      val previousLength = buildResultFile.length()
       buildResultFile.createNewFile()
-      BuildResultsProtoMessageConverter.convertBuildAnalysisResultsFromObjectToBytes(
-        buildResults,
-        buildResults.getPluginMap(),
-        buildResults.getTaskMap()
-      ).writeDelimitedTo(FileOutputStream(buildResultFile))
-      updateObservables()
+      FileOutputStream(buildResultFile).use {
+        BuildResultsProtoMessageConverter.convertBuildAnalysisResultsFromObjectToBytes(
+          buildResults,
+          buildResults.getPluginMap(),
+          buildResults.getTaskMap()
+        ).writeDelimitedTo(it)
+      }
+      historyIndex.add(buildResults)
+      updateObservables(buildResultFile.length() - previousLength)
       true
     }
     catch (e: IOException) {
@@ -82,8 +109,7 @@ class BuildAnalyzerStorageFileManager(
   @Slow
   fun getHistoricBuildResultByID(buildSessionID: String): HistoricBuildAnalysisResults {
     try {
-      val stream = FileInputStream(getFileFromBuildID(buildSessionID))
-      val message = BuildAnalysisResultsMessage.parseDelimitedFrom(stream)
+      val message = FileInputStream(getFileFromBuildID(buildSessionID)).use { BuildAnalysisResultsMessage.parseDelimitedFrom(it) }
       return BuildResultsProtoMessageConverter
         .convertBuildAnalysisResultsFromBytesToObject(message)
     }
@@ -94,13 +120,17 @@ class BuildAnalyzerStorageFileManager(
 
   @Slow
   fun deleteHistoricBuildResultByID(buildID: String) {
-    getFileFromBuildID(buildID).delete()
-    updateObservables()
+    val file = getFileFromBuildID(buildID)
+    val length = file.length()
+    if (file.delete()) {
+      updateObservables(-length)
+    }
+    historyIndex.remove(buildID)
   }
 
-  @Slow
-  private fun updateObservables() {
-    totalFilesSize.set(getCurrentBuildHistoryDataSize())
+  /** Updates the total size by the change in size of one file, instead of walking the whole data folder again. */
+  private fun updateObservables(sizeChange: Long) {
+    totalFilesSize.updateAndGet { it + sizeChange }
   }
 
   @VisibleForTesting
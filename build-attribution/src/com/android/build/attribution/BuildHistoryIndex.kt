@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution
+
+import com.android.annotations.concurrency.Slow
+import com.android.build.attribution.data.TaskData
+import com.android.buildanalyzer.common.TaskCategory
+import com.intellij.openapi.diagnostic.Logger
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * Summary of a stored build, as kept in [BuildHistoryIndex].
+ */
+data class BuildHistorySummary(
+  val buildSessionID: String,
+  val buildFinishedTimestamp: Long,
+  val totalBuildTimeMs: Long,
+  val configurationPhaseTimeMs: Long,
+  val garbageCollectionTimeMs: Long,
+  val taskCount: Int
+)
+
+/**
+ * A value of a trend across stored builds, e.g. the execution time of a task in one build.
+ */
+data class BuildHistoryPoint(
+  val buildSessionID: String,
+  val buildFinishedTimestamp: Long,
+  val valueMs: Long
+)
+
+/**
+ * A task that took noticeably longer in the latest build than it usually did in the builds before.
+ *
+ * @param baselineMs the median execution time of the task in the baseline builds
+ * @param latestMs the execution time of the task in the latest build
+ */
+data class TaskRegression(
+  val taskPath: String,
+  val buildSessionID: String,
+  val baselineMs: Long,
+  val latestMs: Long
+)
+
+/**
+ * Compact columnar index of the stored builds, which allows looking at trends across hundreds of builds without deserializing
+ * full [BuildAnalysisResults].
+ *
+ * For each build the index keeps a few build-wide timings and three parallel columns for the executed tasks: the task path, the
+ * execution time and the primary [TaskCategory]. Task paths and category names are interned in a dictionary shared by all builds,
+ * so a task column is just an array of ints.
+ *
+ * The index is stored in an append-only file: adding a build appends its record together with the dictionary strings it introduces,
+ * deleting a build appends a tombstone. The file is rewritten compactly when it is found to be truncated or when tombstones make up
+ * most of it.
+ */
+class BuildHistoryIndex(private val indexFile: File) {
+  private val log: Logger get() = Logger.getInstance("Build Analyzer")
+
+  private var strings = mutableListOf<String>()
+  private var stringIds = HashMap<String, Int>()
+  /** Stored builds in the order they were added. */
+  private var builds = LinkedHashMap<String, BuildColumns>()
+  private var tombstoneCount = 0
+  private var loaded = false
+
+  private class BuildColumns(
+    val summary: BuildHistorySummary,
+    val taskPathIds: IntArray,
+    val taskDurationsMs: LongArray,
+    val taskCategoryIds: IntArray
+  )
+
+  /** Adds the build to the index, replacing a previous build with the same ID. */
+  @Slow
+  @Synchronized
+  fun add(buildResults: BuildAnalysisResults) {
+    val tasks = buildResults.getTaskMap().values
+    add(BuildHistorySummary(
+      buildSessionID = buildResults.getBuildSessionID(),
+      buildFinishedTimestamp = buildResults.getBuildFinishedTimestamp(),
+      totalBuildTimeMs = buildResults.getTotalBuildTimeMs(),
+      configurationPhaseTimeMs = buildResults.getConfigurationPhaseTimeMs(),
+      garbageCollectionTimeMs = buildResults.getTotalGarbageCollectionTimeMs(),
+      taskCount = tasks.size
+    ), tasks)
+  }
+
+  /** Adds a build read back from storage to the index, replacing a previous build with the same ID. */
+  @Slow
+  @Synchronized
+  fun add(buildResults: HistoricBuildAnalysisResults) {
+    val tasks = buildResults.taskMap.values
+    val criticalPath = buildResults.criticalPathAnalyzerResult
+    val firstTaskStartTime = criticalPath.tasksDeterminingBuildDuration.minOfOrNull { it.executionStartTime }
+    add(BuildHistorySummary(
+      buildSessionID = buildResults.buildSessionID,
+      buildFinishedTimestamp = criticalPath.buildFinishedTimestamp,
+      totalBuildTimeMs = criticalPath.buildFinishedTimestamp - criticalPath.buildStartedTimestamp,
+      configurationPhaseTimeMs = (firstTaskStartTime ?: criticalPath.buildFinishedTimestamp) - criticalPath.buildStartedTimestamp,
+      garbageCollectionTimeMs = buildResults.garbageCollectionAnalyzerResult.totalGarbageCollectionTimeMs,
+      taskCount = tasks.size
+    ), tasks)
+  }
+
+  private fun add(summary: BuildHistorySummary, tasks: Collection<TaskData>) {
+    ensureLoaded()
+    val taskList = tasks.toList()
+    // Strings introduced by this build are only added to the dictionary once its record is written, so that a failed write doesn't
+    // leave ids in the dictionary that later records would refer to without the file defining them.
+    val newStrings = LinkedHashMap<String, Int>()
+    fun internPending(string: String) = stringIds[string] ?: newStrings.getOrPut(string) { strings.size + newStrings.size }
+    val columns = BuildColumns(
+      summary = summary,
+      taskPathIds = IntArray(taskList.size) { internPending(taskList[it].getTaskPath()) },
+      taskDurationsMs = LongArray(taskList.size) { taskList[it].executionTime },
+      taskCategoryIds = IntArray(taskList.size) { internPending(taskList[it].primaryTaskCategory.name) }
+    )
+    val commit = {
+      newStrings.keys.forEach(::intern)
+      builds.remove(summary.buildSessionID)
+      builds[summary.buildSessionID] = columns
+    }
+    if (!indexFile.exists()) {
+      commit()
+      rewrite()
+    }
+    else if (append { writeBuild(it, columns, newStrings.keys) }) {
+      commit()
+    }
+  }
+
+  /** Removes the build from the index. */
+  @Slow
+  @Synchronized
+  fun remove(buildSessionID: String) {
+    ensureLoaded()
+    if (builds.remove(buildSessionID) == null) return
+    tombstoneCount++
+    if (tombstoneCount > builds.size || !indexFile.exists()) {
+      rewrite()
+    }
+    else {
+      append { writeTombstone(it, buildSessionID) }
+    }
+  }
+
+  /** Returns the summaries of all stored builds, oldest first. */
+  @Slow
+  @Synchronized
+  fun getBuilds(): List<BuildHistorySummary> {
+    ensureLoaded()
+    return sortedBuilds().map { it.summary }
+  }
+
+  /** Returns the execution time of the task in each stored build that executed it, oldest first. */
+  @Slow
+  @Synchronized
+  fun getTaskDurationTrend(taskPath: String): List<BuildHistoryPoint> {
+    ensureLoaded()
+    val taskPathId = stringIds[taskPath] ?: return emptyList()
+    return sortedBuilds().mapNotNull { build ->
+      val index = build.taskPathIds.indexOf(taskPathId)
+      if (index < 0) null else build.point(build.taskDurationsMs[index])
+    }
+  }
+
+  /** Returns the total execution time of the tasks with the given primary category in each stored build, oldest first. */
+  @Slow
+  @Synchronized
+  fun getCategoryDurationTrend(category: TaskCategory): List<BuildHistoryPoint> {
+    ensureLoaded()
+    val categoryId = stringIds[category.name]
+    return sortedBuilds().map { build ->
+      var total = 0L
+      if (categoryId != null) {
+        for (i in build.taskCategoryIds.indices) {
+          if (build.taskCategoryIds[i] == categoryId) {
+            total += build.taskDurationsMs[i]
+          }
+        }
+      }
+      build.point(total)
+    }
+  }
+
+  /**
+   * Compares the execution times of the tasks in the latest build with their median execution times in up to [baselineBuildCount]
+   * preceding builds. Returns the tasks that took longer than the median by more than [minRegressionMs] and by more than
+   * [minRegressionRatio] of the median, largest regressions first.
+   */
+  @Slow
+  @Synchronized
+  fun findTaskRegressions(
+    baselineBuildCount: Int = 10,
+    minRegressionRatio: Double = 0.5,
+    minRegressionMs: Long = 1000
+  ): List<TaskRegression> {
+    ensureLoaded()
+    val sorted = sortedBuilds()
+    val latest = sorted.lastOrNull() ?: return emptyList()
+    val baseline = sorted.subList(maxOf(0, sorted.size - 1 - baselineBuildCount), sorted.size - 1)
+    if (baseline.isEmpty()) return emptyList()
+
+    val baselineDurations = HashMap<Int, MutableList<Long>>()
+    for (build in baseline) {
+      for (i in build.taskPathIds.indices) {
+        baselineDurations.getOrPut(build.taskPathIds[i]) { mutableListOf() }.add(build.taskDurationsMs[i])
+      }
+    }
+    val regressions = mutableListOf<TaskRegression>()
+    for (i in latest.taskPathIds.indices) {
+      val durations = baselineDurations[latest.taskPathIds[i]] ?: continue
+      val median = durations.sorted()[durations.size / 2]
+      val latestMs = latest.taskDurationsMs[i]
+      if (latestMs - median > minRegressionMs && latestMs - median > median * minRegressionRatio) {
+        regressions.add(TaskRegression(strings[latest.taskPathIds[i]], latest.summary.buildSessionID, median, latestMs))
+      }
+    }
+    return regressions.sortedByDescending { it.latestMs - it.baselineMs }
+  }
+
+  private fun BuildColumns.point(valueMs: Long) = BuildHistoryPoint(summary.buildSessionID, summary.buildFinishedTimestamp, valueMs)
+
+  private fun sortedBuilds(): List<BuildColumns> = builds.values.sortedBy { it.summary.buildFinishedTimestamp }
+
+  private fun intern(string: String): Int = stringIds.getOrPut(string) {
+    strings.add(string)
+    strings.size - 1
+  }
+
+  private fun ensureLoaded() {
+    if (loaded) return
+    loaded = true
+    if (!indexFile.exists()) return
+    var needsRewrite = false
+    try {
+      DataInputStream(BufferedInputStream(FileInputStream(indexFile))).use { input ->
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          needsRewrite = true
+          return@use
+        }
+        while (true) {
+          val recordType = try {
+            input.readByte()
+          }
+          catch (e: EOFException) {
+            break
+          }
+          when (recordType) {
+            BUILD_RECORD -> {
+              val build = readBuild(input)
+              builds.remove(build.summary.buildSessionID)
+              builds[build.summary.buildSessionID] = build
+            }
+            TOMBSTONE_RECORD -> {
+              builds.remove(input.readUTF())
+              tombstoneCount++
+            }
+            else -> throw IOException("Unknown record type $recordType")
+          }
+        }
+      }
+    }
+    catch (e: IOException) {
+      // A truncated last record is expected if the IDE was terminated while writing it. Builds read up to that point are kept.
+      log.warn("Build history index $indexFile is corrupted, rewriting it", e)
+      needsRewrite = true
+    }
+    if (needsRewrite) {
+      rewrite()
+    }
+  }
+
+  private fun readBuild(input: DataInputStream): BuildColumns {
+    val newStringCount = input.readInt()
+    val firstNewString = strings.size
+    repeat(newStringCount) { intern(input.readUTF()) }
+    if (strings.size != firstNewString + newStringCount) throw IOException("Duplicate strings in build history index")
+    val buildSessionID = input.readUTF()
+    val buildFinishedTimestamp = input.readLong()
+    val totalBuildTimeMs = input.readLong()
+    val configurationPhaseTimeMs = input.readLong()
+    val garbageCollectionTimeMs = input.readLong()
+    val taskCount = input.readInt()
+    val taskPathIds = IntArray(taskCount) { input.readInt().also(::checkStringId) }
+    val taskDurationsMs = LongArray(taskCount) { input.readLong() }
+    val taskCategoryIds = IntArray(taskCount) { input.readInt().also(::checkStringId) }
+    val summary = BuildHistorySummary(
+      buildSessionID, buildFinishedTimestamp, totalBuildTimeMs, configurationPhaseTimeMs, garbageCollectionTimeMs, taskCount)
+    return BuildColumns(summary, taskPathIds, taskDurationsMs, taskCategoryIds)
+  }
+
+  private fun checkStringId(id: Int) {
+    if (id !in strings.indices) throw IOException("Invalid string id $id in build history index")
+  }
+
+  private fun writeBuild(output: DataOutputStream, build: BuildColumns, newStrings: Collection<String>) {
+    output.writeByte(BUILD_RECORD.toInt())
+    output.writeInt(newStrings.size)
+    newStrings.forEach(output::writeUTF)
+    build.summary.run {
+      output.writeUTF(buildSessionID)
+      output.writeLong(buildFinishedTimestamp)
+      output.writeLong(totalBuildTimeMs)
+      output.writeLong(configurationPhaseTimeMs)
+      output.writeLong(garbageCollectionTimeMs)
+    }
+    output.writeInt(build.taskPathIds.size)
+    build.taskPathIds.forEach(output::writeInt)
+    build.taskDurationsMs.forEach(output::writeLong)
+    build.taskCategoryIds.forEach(output::writeInt)
+  }
+
+  private fun writeTombstone(output: DataOutputStream, buildSessionID: String) {
+    output.writeByte(TOMBSTONE_RECORD.toInt())
+    output.writeUTF(buildSessionID)
+  }
+
+  /**
+   * Appends a record to the existing index file. If that fails, the file is rewritten from the builds in memory, so that a partially
+   * written record doesn't corrupt the records appended after it.
+   *
+   * @return whether the record was appended
+   */
+  private fun append(writer: (DataOutputStream) -> Unit): Boolean {
+    try {
+      DataOutputStream(BufferedOutputStream(FileOutputStream(indexFile, true))).use(writer)
+      return true
+    }
+    catch (e: IOException) {
+      log.warn("Failed to update build history index $indexFile", e)
+      rewrite()
+      return false
+    }
+  }
+
+  /**
+   * Writes all builds to a new index file with a dictionary containing only the strings they use. The builds in memory only switch to
+   * that dictionary once the new file has replaced the old one. If that fails, the builds in memory are left as they were and the index
+   * file is deleted, since it may no longer match them. It is then written again with the next change.
+   */
+  private fun rewrite() {
+    val newStrings = mutableListOf<String>()
+    val newStringIds = HashMap<String, Int>()
+    val newBuilds = LinkedHashMap<String, BuildColumns>()
+    fun internNew(id: Int): Int = newStringIds.getOrPut(strings[id]) {
+      newStrings.add(strings[id])
+      newStrings.size - 1
+    }
+    val tempFile = File(indexFile.path + ".tmp")
+    try {
+      indexFile.parentFile?.mkdirs()
+      DataOutputStream(BufferedOutputStream(FileOutputStream(tempFile))).use { output ->
+        output.writeInt(MAGIC)
+        output.writeInt(VERSION)
+        for (oldBuild in builds.values) {
+          val firstNewString = newStrings.size
+          val build = BuildColumns(
+            oldBuild.summary,
+            IntArray(oldBuild.taskPathIds.size) { internNew(oldBuild.taskPathIds[it]) },
+            oldBuild.taskDurationsMs,
+            IntArray(oldBuild.taskCategoryIds.size) { internNew(oldBuild.taskCategoryIds[it]) }
+          )
+          newBuilds[build.summary.buildSessionID] = build
+          writeBuild(output, build, newStrings.subList(firstNewString, newStrings.size))
+        }
+      }
+      if (!tempFile.renameTo(indexFile)) {
+        indexFile.delete()
+        if (!tempFile.renameTo(indexFile)) throw IOException("Failed to rename $tempFile to $indexFile")
+      }
+    }
+    catch (e: IOException) {
+      log.warn("Failed to write build history index $indexFile", e)
+      tempFile.delete()
+      indexFile.delete()
+      return
+    }
+    strings = newStrings
+    stringIds = newStringIds
+    builds = newBuilds
+    tombstoneCount = 0
+  }
+
+  companion object {
+    private const val MAGIC = 0x42414849 // "BAHI"
+    private const val VERSION = 1
+    private const val BUILD_RECORD: Byte = 1
+    private const val TOMBSTONE_RECORD: Byte = 2
+  }
+}
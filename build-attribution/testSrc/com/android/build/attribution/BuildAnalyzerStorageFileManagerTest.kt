@@ -133,6 +133,70 @@ class BuildAnalyzerStorageFileManagerTest {
     fileManager.deleteHistoricBuildResultByID("no-such-file")
   }
 
+  @Test
+  fun testHistoryIndexIsMaintainedOnStoreAndDelete() {
+    val dataFolder = tmpFolder.newFolder("data")
+    val indexFile = File(tmpFolder.root, "data.index")
+    val fileManager = BuildAnalyzerStorageFileManager(dataFolder, indexFile)
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_1"))
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_2"))
+    Truth.assertThat(countOfFiles(dataFolder)).isEqualTo(2)
+
+    val index = BuildHistoryIndex(indexFile)
+    Truth.assertThat(index.getBuilds().map { it.buildSessionID }).containsExactly("build_number_1", "build_number_2")
+    Truth.assertThat(index.getBuilds().map { it.taskCount }).containsExactly(3, 3)
+    Truth.assertThat(index.getTaskDurationTrend("project path:task name 2").map { it.buildSessionID })
+      .containsExactly("build_number_1", "build_number_2")
+    Truth.assertThat(index.getTaskDurationTrend("project path:no such task")).isEmpty()
+    Truth.assertThat(index.findTaskRegressions()).isEmpty()
+
+    fileManager.deleteHistoricBuildResultByID("build_number_1")
+    Truth.assertThat(fileManager.historyIndex.getBuilds().map { it.buildSessionID }).containsExactly("build_number_2")
+    Truth.assertThat(BuildHistoryIndex(indexFile).getBuilds().map { it.buildSessionID }).containsExactly("build_number_2")
+    Truth.assertThat(fileManager.totalFilesSize.get()).isEqualTo(fileManager.getCurrentBuildHistoryDataSize())
+  }
+
+  @Test
+  fun testHistoryIndexIsRebuiltFromStoredResultsWhenMissing() {
+    val dataFolder = tmpFolder.newFolder("data")
+    val indexFile = File(tmpFolder.root, "data.index")
+    val fileManager = BuildAnalyzerStorageFileManager(dataFolder, indexFile)
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_1"))
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_2"))
+    val builds = fileManager.historyIndex.getBuilds()
+    Truth.assertThat(indexFile.delete()).isTrue()
+
+    val newFileManager = BuildAnalyzerStorageFileManager(dataFolder, indexFile)
+    Truth.assertThat(newFileManager.historyIndex.getBuilds()).containsExactlyElementsIn(builds)
+    Truth.assertThat(indexFile.exists()).isTrue()
+  }
+
+  @Test
+  fun testHistoryIndexKeepsBuildsWhenRewriteFails() {
+    val dataFolder = tmpFolder.newFolder("data")
+    val indexFile = File(tmpFolder.root, "data.index")
+    val fileManager = BuildAnalyzerStorageFileManager(dataFolder, indexFile)
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_1"))
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_2"))
+
+    // A directory in place of the temporary file makes the rewrite fail.
+    val tempFile = File(indexFile.path + ".tmp")
+    Truth.assertThat(tempFile.mkdir()).isTrue()
+    Truth.assertThat(indexFile.delete()).isTrue()
+    fileManager.deleteHistoricBuildResultByID("build_number_1")
+    Truth.assertThat(indexFile.exists()).isFalse()
+    Truth.assertThat(fileManager.historyIndex.getBuilds().map { it.buildSessionID }).containsExactly("build_number_2")
+    Truth.assertThat(fileManager.historyIndex.getTaskDurationTrend("project path:task name 2").map { it.buildSessionID })
+      .containsExactly("build_number_2")
+
+    Truth.assertThat(tempFile.delete()).isTrue()
+    fileManager.storeBuildResultsInFile(constructBuildResultsObject("build_number_3"))
+    val index = BuildHistoryIndex(indexFile)
+    Truth.assertThat(index.getBuilds().map { it.buildSessionID }).containsExactly("build_number_2", "build_number_3")
+    Truth.assertThat(index.getTaskDurationTrend("project path:task name 2").map { it.buildSessionID })
+      .containsExactly("build_number_2", "build_number_3")
+  }
+
   private fun countOfFiles(dir: File) =
     FileUtils.getAllFiles(dir).size()
 
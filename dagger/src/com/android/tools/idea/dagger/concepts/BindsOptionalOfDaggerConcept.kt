@@ -33,7 +33,6 @@ import com.intellij.psi.PsiMethod
 import com.intellij.psi.PsiType
 import com.intellij.psi.search.GlobalSearchScope
 import org.jetbrains.annotations.VisibleForTesting
-import org.jetbrains.kotlin.idea.base.util.projectScope
 import org.jetbrains.kotlin.idea.core.util.readString
 import org.jetbrains.kotlin.idea.core.util.writeString
 import org.jetbrains.kotlin.name.ClassId
@@ -163,7 +162,7 @@ internal data class BindsOptionalOfProviderDaggerElement(
 
   override fun getIndexKeys(): List<String> {
     val project = psiElement.project
-    val scope = project.projectScope()
+    val scope = project.daggerIndexScope()
     return listOf(optionalSimpleName) + getAliasSimpleNames(optionalSimpleName, project, scope)
   }
 
@@ -23,19 +23,20 @@ import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.kotlin.psiType
 import com.android.tools.idea.kotlin.toPsiType
 import com.google.wireless.android.sdk.stats.DaggerEditorEvent
+import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiClass
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiField
 import com.intellij.psi.PsiMethod
 import com.intellij.psi.PsiParameter
 import com.intellij.psi.PsiType
+import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
 import com.intellij.psi.util.PsiModificationTracker
 import kotlin.reflect.KClass
 import org.jetbrains.annotations.PropertyKey
 import org.jetbrains.kotlin.asJava.elements.KtLightElement
-import org.jetbrains.kotlin.idea.base.util.projectScope
 import org.jetbrains.kotlin.psi.KtClass
 import org.jetbrains.kotlin.psi.KtClassOrObject
 import org.jetbrains.kotlin.psi.KtConstructor
@@ -88,7 +89,7 @@ sealed class DaggerElement {
     indexKeys: List<String>,
   ): List<DaggerElement> {
     val project = psiElement.project
-    val scope = project.projectScope()
+    val scope = project.daggerIndexScope()
 
     return indexKeys
       .asSequence()
@@ -119,13 +120,20 @@ sealed class DaggerElement {
   protected abstract fun filterResolveCandidate(resolveCandidate: DaggerElement): Boolean
 
   /**
-   * Gets the index keys associated with the given [PsiType], using the project and project scope
-   * from the current [DaggerElement]'s [PsiElement].
+   * Gets the index keys associated with the given [PsiType], using the project and
+   * [daggerIndexScope] from the current [DaggerElement]'s [PsiElement].
    */
   protected fun PsiType.getIndexKeys() =
-    getIndexKeys(this, psiElement.project, psiElement.project.projectScope())
+    getIndexKeys(this, psiElement.project, psiElement.project.daggerIndexScope())
 }
 
+/**
+ * Scope used to look up [DaggerIndex] values and the keys they are stored under. It includes
+ * libraries, whose compiled classes are indexed too, so that type aliases declared in libraries
+ * produce keys for values that resolve there.
+ */
+internal fun Project.daggerIndexScope(): GlobalSearchScope = GlobalSearchScope.allScope(this)
+
 fun interface DaggerElementIdentifier<T : PsiElement> {
   /**
    * Returns a [DaggerElement] representing the given [PsiElement], iff the element is somehow used
@@ -25,7 +25,6 @@ import com.intellij.psi.PsiMethod
 import com.intellij.psi.PsiParameter
 import com.intellij.psi.PsiType
 import com.intellij.psi.util.parentOfType
-import org.jetbrains.kotlin.idea.base.util.projectScope
 import org.jetbrains.kotlin.psi.KtClass
 import org.jetbrains.kotlin.psi.KtClassOrObject
 import org.jetbrains.kotlin.psi.KtFunction
@@ -119,7 +118,7 @@ internal data class ProviderDaggerElement(
 
   override fun getIndexKeys(): List<String> {
     val project = psiElement.project
-    val scope = project.projectScope()
+    val scope = project.daggerIndexScope()
     return providedPsiType.getIndexKeys() + extraIndexKeysForProvider(project, scope)
   }
 
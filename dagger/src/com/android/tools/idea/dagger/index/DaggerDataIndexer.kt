@@ -17,10 +17,12 @@ package com.android.tools.idea.dagger.index
 
 import com.android.tools.idea.dagger.concepts.AllConcepts
 import com.android.tools.idea.dagger.concepts.DaggerConcept
+import com.android.tools.idea.dagger.index.psiwrappers.DaggerIndexClassFileWrapper
 import com.android.tools.idea.dagger.index.psiwrappers.DaggerIndexClassWrapper
 import com.android.tools.idea.dagger.index.psiwrappers.DaggerIndexFieldWrapper
 import com.android.tools.idea.dagger.index.psiwrappers.DaggerIndexMethodWrapper
 import com.android.tools.idea.dagger.index.psiwrappers.DaggerIndexPsiWrapper
+import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.psi.JavaRecursiveElementWalkingVisitor
 import com.intellij.psi.PsiClass
@@ -53,9 +55,23 @@ internal constructor(private val conceptIndexers: DaggerConceptIndexers = AllCon
     // `javax.inject.Inject`. These annotations are specified in DaggerAnnotations.kt. If the file
     // doesn't contain either of those tokens, we can avoid visiting its contents.
     private val DAGGER_FILE_PATTERN = Regex("dagger|inject")
+
+    // Same tokens as [DAGGER_FILE_PATTERN], matched against the raw bytes of class files.
+    private val DAGGER_CLASS_FILE_TOKENS =
+      listOf("dagger", "inject").map { it.toByteArray(Charsets.US_ASCII) }
+
+    private fun ByteArray.containsToken(token: ByteArray): Boolean {
+      for (start in 0..size - token.size) {
+        var i = 0
+        while (i < token.size && this[start + i] == token[i]) i++
+        if (i == token.size) return true
+      }
+      return false
+    }
   }
 
   override fun map(inputData: FileContent): Map<String, Set<IndexValue>> {
+    if (inputData.fileType == JavaClassFileType.INSTANCE) return mapClassFile(inputData.content)
     if (!DAGGER_FILE_PATTERN.containsMatchIn(inputData.contentAsText)) return emptyMap()
 
     val results: IndexEntries = mutableMapOf()
@@ -72,6 +88,23 @@ internal constructor(private val conceptIndexers: DaggerConceptIndexers = AllCon
     return results
   }
 
+  /**
+   * Indexes a compiled class from a library. Class files are read directly rather than through
+   * their decompiled PSI, which would be much slower to build.
+   */
+  private fun mapClassFile(bytes: ByteArray): Map<String, Set<IndexValue>> {
+    // Annotation descriptors are stored as plain text in the constant pool, so the same tokens as
+    // for source files can be looked up in the bytes without decoding them.
+    if (DAGGER_CLASS_FILE_TOKENS.none { bytes.containsToken(it) }) return emptyMap()
+
+    val classWrapper = DaggerIndexClassFileWrapper.read(bytes) ?: return emptyMap()
+    val results: IndexEntries = mutableMapOf()
+    conceptIndexers.doIndexing(classWrapper, results)
+    classWrapper.fields.forEach { conceptIndexers.doIndexing(it, results) }
+    classWrapper.methods.forEach { conceptIndexers.doIndexing(it, results) }
+    return results
+  }
+
   private class KotlinVisitor(
     private val results: IndexEntries,
     private val conceptIndexers: DaggerConceptIndexers,
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.dagger.index
 
+import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.project.ProjectManager
 import com.intellij.openapi.roots.ProjectFileIndex
@@ -46,7 +47,7 @@ class DaggerIndex : FileBasedIndexExtension<String, Set<IndexValue>>() {
 
   override fun dependsOnFileContent() = true
 
-  override fun getVersion() = 3
+  override fun getVersion() = 4
 
   override fun getInputFilter(): FileBasedIndex.InputFilter = DaggerIndexInputFilter
 
@@ -58,12 +59,17 @@ class DaggerIndex : FileBasedIndexExtension<String, Set<IndexValue>>() {
     DaggerDataIndexer.INSTANCE
 
   private object DaggerIndexInputFilter :
-    DefaultFileTypeSpecificInputFilter(KotlinFileType.INSTANCE, JavaFileType.INSTANCE) {
+    DefaultFileTypeSpecificInputFilter(
+      KotlinFileType.INSTANCE,
+      JavaFileType.INSTANCE,
+      JavaClassFileType.INSTANCE,
+    ) {
     override fun acceptInput(file: VirtualFile): Boolean {
       return when (file.fileType) {
         JavaFileType.INSTANCE ->
           super.acceptInput(file) && JavaFileElementType.isInSourceContent(file)
         KotlinFileType.INSTANCE -> super.acceptInput(file) && file.isInSourceContentOfOpenProject()
+        JavaClassFileType.INSTANCE -> super.acceptInput(file) && file.isInLibraryOfOpenProject()
         else -> throw IllegalArgumentException("Unexpected file type ${file.fileType}")
       }
     }
@@ -73,5 +79,11 @@ class DaggerIndex : FileBasedIndexExtension<String, Set<IndexValue>>() {
         ProjectFileIndex.getInstance(it).isInSourceContent(this)
       }
     }
+
+    private fun VirtualFile.isInLibraryOfOpenProject(): Boolean {
+      return ProjectManager.getInstance().openProjects.any {
+        ProjectFileIndex.getInstance(it).isInLibraryClasses(this)
+      }
+    }
   }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.dagger.index.psiwrappers
+
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor
+import org.jetbrains.org.objectweb.asm.ClassReader
+import org.jetbrains.org.objectweb.asm.ClassVisitor
+import org.jetbrains.org.objectweb.asm.FieldVisitor
+import org.jetbrains.org.objectweb.asm.Label
+import org.jetbrains.org.objectweb.asm.MethodVisitor
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
+
+/**
+ * Wrappers for the Dagger index backed by a compiled class file instead of PSI, so that Dagger
+ * elements defined in libraries (JARs and AARs) can be indexed without decompiling them.
+ *
+ * Annotation names are always fully-qualified in class files, so unlike source wrappers, these
+ * wrappers can tell with certainty whether an element has a given annotation. Type names are
+ * derived from erased descriptors and follow the same conventions as the Java source wrappers (see
+ * [DaggerIndexTypeWrapper.getSimpleName]).
+ */
+internal object DaggerIndexClassFileWrapper {
+  /**
+   * Reads the class file in [bytes]. Returns null for local, anonymous and synthetic classes, which
+   * can't be Dagger elements.
+   */
+  fun read(bytes: ByteArray): ClassFileClassWrapper? {
+    val visitor = ClassFileVisitor()
+    ClassReader(bytes).accept(visitor, ClassReader.SKIP_FRAMES)
+    return visitor.result
+  }
+}
+
+internal class ClassFileAnnotationWrapper(
+  private val fqName: String,
+  private val classArguments: Map<String, List<String>>,
+) : DaggerIndexAnnotationWrapper {
+  override fun getAnnotationNameInSource(): String = fqName
+
+  override fun getArgumentClassNames(argumentName: String): List<String> =
+    classArguments[argumentName] ?: emptyList()
+}
+
+internal abstract class ClassFileAnnotatedWrapper : DaggerIndexAnnotatedWrapper {
+  val annotations = mutableListOf<ClassFileAnnotationWrapper>()
+
+  override fun getAnnotations(annotation: DaggerAnnotation) =
+    annotations.asSequence().filter { it.getAnnotationNameInSource() == annotation.fqNameString }
+}
+
+internal class ClassFileClassWrapper : ClassFileAnnotatedWrapper(), DaggerIndexClassWrapper {
+  val fields = mutableListOf<ClassFileFieldWrapper>()
+  val methods = mutableListOf<ClassFileMethodWrapper>()
+
+  /** Set at the end of the class file, once the `InnerClasses` attribute has been read. */
+  lateinit var classId: ClassId
+
+  override fun getClassId(): ClassId = classId
+
+  // The annotations of the class containing a companion object are in a different class file.
+  override fun getIsSelfOrCompanionParentAnnotatedWith(annotation: DaggerAnnotation): Boolean =
+    getIsAnnotatedWith(annotation)
+}
+
+internal class ClassFileFieldWrapper(
+  private val name: String,
+  private val type: DaggerIndexTypeWrapper,
+  private val containingClass: DaggerIndexClassWrapper,
+) : ClassFileAnnotatedWrapper(), DaggerIndexFieldWrapper {
+  override fun getSimpleName(): String = name
+
+  override fun getType(): DaggerIndexTypeWrapper = type
+
+  override fun getContainingClass(): DaggerIndexClassWrapper = containingClass
+}
+
+internal class ClassFileMethodWrapper(
+  private val name: String,
+  private val returnType: DaggerIndexTypeWrapper?,
+  private val parameters: List<ClassFileParameterWrapper>,
+  private val containingClass: DaggerIndexClassWrapper,
+) : ClassFileAnnotatedWrapper(), DaggerIndexMethodWrapper {
+  override fun getSimpleName(): String =
+    if (getIsConstructor()) containingClass.getClassId().shortClassName.asString() else name
+
+  override fun getReturnType(): DaggerIndexTypeWrapper? = returnType
+
+  override fun getParameters(): List<DaggerIndexParameterWrapper> = parameters
+
+  override fun getIsConstructor() = name == "<init>"
+
+  override fun getContainingClass(): DaggerIndexClassWrapper = containingClass
+}
+
+internal class ClassFileParameterWrapper(private val type: DaggerIndexTypeWrapper) :
+  ClassFileAnnotatedWrapper(), DaggerIndexParameterWrapper {
+  /**
+   * Name of the parameter from the `MethodParameters` or `LocalVariableTable` attribute. Null if
+   * the class was compiled without that information.
+   */
+  var name: String? = null
+
+  override fun getSimpleName(): String? = name
+
+  override fun getType(): DaggerIndexTypeWrapper = type
+}
+
+internal class ClassFileTypeWrapper(private val type: Type) : DaggerIndexTypeWrapper {
+  override fun getSimpleName(): String = type.getSimpleName()
+
+  companion object {
+    private fun Type.getSimpleName(): String =
+      when (sort) {
+        Type.VOID -> "Void"
+        Type.BOOLEAN -> "Boolean"
+        Type.CHAR -> "Character"
+        Type.BYTE -> "Byte"
+        Type.SHORT -> "Short"
+        Type.INT -> "Integer"
+        Type.FLOAT -> "Float"
+        Type.LONG -> "Long"
+        Type.DOUBLE -> "Double"
+        Type.ARRAY -> {
+          // Same as Java source: primitive components use the primitive name, e.g. "int[][]".
+          val elementName =
+            if (elementType.sort == Type.OBJECT) elementType.getSimpleName()
+            else elementType.className
+          elementName + "[]".repeat(dimensions)
+        }
+        else -> internalName.substringAfterLast('/').substringAfterLast('$')
+      }
+  }
+}
+
+private class ClassFileVisitor : ClassVisitor(Opcodes.API_VERSION) {
+  private lateinit var internalName: String
+  /** Enclosing class and simple name of nested classes, from the `InnerClasses` attribute. */
+  private val nestedClasses = mutableMapOf<String, Pair<String?, String?>>()
+  private var classWrapper: ClassFileClassWrapper? = null
+
+  var result: ClassFileClassWrapper? = null
+    private set
+
+  override fun visit(
+    version: Int,
+    access: Int,
+    name: String,
+    signature: String?,
+    superName: String?,
+    interfaces: Array<out String>?,
+  ) {
+    internalName = name
+    if (access and Opcodes.ACC_SYNTHETIC == 0) classWrapper = ClassFileClassWrapper()
+  }
+
+  override fun visitInnerClass(name: String, outerName: String?, innerName: String?, access: Int) {
+    nestedClasses[name] = Pair(outerName, innerName)
+  }
+
+  override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor? =
+    classWrapper?.let { ClassFileAnnotationVisitor(descriptor, it.annotations) }
+
+  override fun visitField(
+    access: Int,
+    name: String,
+    descriptor: String,
+    signature: String?,
+    value: Any?,
+  ): FieldVisitor? {
+    if (access and Opcodes.ACC_SYNTHETIC != 0) return null
+    val containingClass = classWrapper ?: return null
+    val field =
+      ClassFileFieldWrapper(name, ClassFileTypeWrapper(Type.getType(descriptor)), containingClass)
+    containingClass.fields.add(field)
+    return object : FieldVisitor(Opcodes.API_VERSION) {
+      override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor =
+        ClassFileAnnotationVisitor(descriptor, field.annotations)
+    }
+  }
+
+  override fun visitMethod(
+    access: Int,
+    name: String,
+    descriptor: String,
+    signature: String?,
+    exceptions: Array<out String>?,
+  ): MethodVisitor? {
+    if (access and (Opcodes.ACC_SYNTHETIC or Opcodes.ACC_BRIDGE) != 0 || name == "<clinit>") {
+      return null
+    }
+    val containingClass = classWrapper ?: return null
+    val methodType = Type.getMethodType(descriptor)
+    val parameters =
+      methodType.argumentTypes.map { ClassFileParameterWrapper(ClassFileTypeWrapper(it)) }
+    val returnType = if (name == "<init>") null else ClassFileTypeWrapper(methodType.returnType)
+    val method = ClassFileMethodWrapper(name, returnType, parameters, containingClass)
+    containingClass.methods.add(method)
+
+    // Local variable slots of the parameters, used to find their names in the LocalVariableTable.
+    val parameterSlots = mutableMapOf<Int, ClassFileParameterWrapper>()
+    var slot = if (access and Opcodes.ACC_STATIC != 0) 0 else 1
+    methodType.argumentTypes.forEachIndexed { i, type ->
+      parameterSlots[slot] = parameters[i]
+      slot += type.size
+    }
+
+    return object : MethodVisitor(Opcodes.API_VERSION) {
+      private var parameterIndex = 0
+      private var parameterAnnotationOffset = 0
+
+      override fun visitParameter(name: String?, access: Int) {
+        parameters.getOrNull(parameterIndex++)?.let { it.name = name }
+      }
+
+      override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor =
+        ClassFileAnnotationVisitor(descriptor, method.annotations)
+
+      override fun visitAnnotableParameterCount(parameterCount: Int, visible: Boolean) {
+        // Synthetic parameters, e.g. of inner class constructors, may have no annotation entries.
+        parameterAnnotationOffset = parameters.size - parameterCount
+      }
+
+      override fun visitParameterAnnotation(
+        parameter: Int,
+        descriptor: String,
+        visible: Boolean,
+      ): AnnotationVisitor? =
+        parameters.getOrNull(parameter + parameterAnnotationOffset)?.let {
+          ClassFileAnnotationVisitor(descriptor, it.annotations)
+        }
+
+      override fun visitLocalVariable(
+        name: String,
+        descriptor: String,
+        signature: String?,
+        start: Label,
+        end: Label,
+        index: Int,
+      ) {
+        parameterSlots[index]?.let { if (it.name == null) it.name = name }
+      }
+    }
+  }
+
+  override fun visitEnd() {
+    val wrapper = classWrapper ?: return
+    wrapper.classId = getClassId(internalName) ?: return
+    result = wrapper
+  }
+
+  /** Returns the [ClassId] of the class, or null if the class is local or anonymous. */
+  private fun getClassId(name: String): ClassId? {
+    val nestedClass = nestedClasses[name]
+    if (nestedClass != null) {
+      val (outerName, simpleName) = nestedClass
+      if (outerName == null || simpleName == null) return null
+      return getClassId(outerName)?.createNestedClassId(Name.identifier(simpleName))
+    }
+    val packageName = name.substringBeforeLast('/', "").replace('/', '.')
+    return ClassId(FqName(packageName), FqName(name.substringAfterLast('/')), false)
+  }
+}
+
+/**
+ * Collects an annotation, including the class literals in its arguments, which are needed by
+ * [DaggerIndexAnnotationWrapper.getArgumentClassNames].
+ */
+private class ClassFileAnnotationVisitor(
+  descriptor: String,
+  private val annotations: MutableList<ClassFileAnnotationWrapper>,
+) : AnnotationVisitor(Opcodes.API_VERSION) {
+  private val fqName = Type.getType(descriptor).className
+  private val classArguments = mutableMapOf<String, MutableList<String>>()
+
+  override fun visit(name: String?, value: Any?) {
+    if (name != null && value is Type) {
+      classArguments.getOrPut(name) { mutableListOf() }.add(value.toClassName())
+    }
+  }
+
+  override fun visitArray(name: String): AnnotationVisitor {
+    val classNames = classArguments.getOrPut(name) { mutableListOf() }
+    return object : AnnotationVisitor(Opcodes.API_VERSION) {
+      override fun visit(name: String?, value: Any?) {
+        if (value is Type) classNames.add(value.toClassName())
+      }
+    }
+  }
+
+  override fun visitEnd() {
+    annotations.add(ClassFileAnnotationWrapper(fqName, classArguments))
+  }
+
+  private fun Type.toClassName() = className.replace('$', '.')
+}
@@ -17,9 +17,11 @@ package com.android.tools.idea.dagger.index
 
 import com.android.testutils.MockitoKt.mock
 import com.android.testutils.MockitoKt.whenever
+import com.android.tools.idea.dagger.index.psiwrappers.DaggerAnnotation
 import com.android.tools.idea.testing.AndroidProjectRule
 import com.android.tools.idea.testing.onEdt
 import com.google.common.truth.Truth.assertThat
+import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.fileTypes.FileType
 import com.intellij.testFramework.RunsInEdt
@@ -27,6 +29,9 @@ import com.intellij.testFramework.fixtures.CodeInsightTestFixture
 import com.intellij.util.indexing.FileContent
 import org.jetbrains.kotlin.idea.KotlinFileType
 import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.org.objectweb.asm.ClassWriter
+import org.jetbrains.org.objectweb.asm.Opcodes
+import org.jetbrains.org.objectweb.asm.Type
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -625,6 +630,136 @@ class DaggerDataIndexerTest {
     assertThat(indexer.map(fileContentWithNoKnownToken)).isEmpty()
   }
 
+  @Test
+  fun classFile() {
+    val classWriter = ClassWriter(0)
+    classWriter.visit(
+      Opcodes.V11,
+      Opcodes.ACC_PUBLIC,
+      "com/example/CoffeeShop\$CoffeeMaker",
+      null,
+      "java/lang/Object",
+      null,
+    )
+    classWriter.visitAnnotation("Ldagger/Module;", true).apply {
+      visitArray("includes").apply {
+        visit(null, Type.getObjectType("com/example/Outer\$HeaterModule"))
+        visitEnd()
+      }
+      visitEnd()
+    }
+    classWriter.visitInnerClass(
+      "com/example/CoffeeShop\$CoffeeMaker",
+      "com/example/CoffeeShop",
+      "CoffeeMaker",
+      Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC,
+    )
+    classWriter
+      .visitField(Opcodes.ACC_PUBLIC, "grinders", "[Lcom/example/Grinder;", null, null)
+      .apply {
+        visitAnnotation("Ljavax/inject/Inject;", true).visitEnd()
+        visitEnd()
+      }
+    classWriter
+      .visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(ILcom/example/Heater;)V", null, null)
+      .apply {
+        visitParameter("cups", 0)
+        visitParameter("heater", 0)
+        visitAnnotation("Ljavax/inject/Inject;", true).visitEnd()
+        visitParameterAnnotation(1, "Ldagger/assisted/Assisted;", true).visitEnd()
+        visitEnd()
+      }
+    classWriter
+      .visitMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_SYNTHETIC, "access", "()V", null, null)
+      .visitEnd()
+    classWriter.visitEnd()
+
+    val fileContent =
+      mock<FileContent>().apply {
+        whenever(this.fileType).thenReturn(JavaClassFileType.INSTANCE)
+        whenever(this.content).thenReturn(classWriter.toByteArray())
+      }
+
+    val indexer =
+      DaggerDataIndexer(
+        DaggerConceptIndexers(
+          classIndexers =
+            listOf(
+              DaggerConceptIndexer { wrapper, indexEntries ->
+                val module = wrapper.getAnnotations(DaggerAnnotation.MODULE).single()
+                indexEntries[wrapper.getClassId().asString()] = mutableSetOf(fakeIndexValue)
+                indexEntries[module.getArgumentClassNames("includes").single()] =
+                  mutableSetOf(fakeIndexValue)
+              }
+            ),
+          fieldIndexers =
+            listOf(
+              DaggerConceptIndexer { wrapper, indexEntries ->
+                if (wrapper.getIsAnnotatedWith(DaggerAnnotation.INJECT)) {
+                  val key = "${wrapper.getSimpleName()}: ${wrapper.getType()?.getSimpleName()}"
+                  indexEntries[key] = mutableSetOf(fakeIndexValue)
+                }
+              }
+            ),
+          methodIndexers =
+            listOf(
+              DaggerConceptIndexer { wrapper, indexEntries ->
+                for (parameter in wrapper.getParameters()) {
+                  val assisted = parameter.getIsAnnotatedWith(DaggerAnnotation.ASSISTED)
+                  val key =
+                    "${wrapper.getSimpleName()}(${parameter.getSimpleName()}: " +
+                      "${parameter.getType()?.getSimpleName()}, assisted=$assisted)"
+                  indexEntries[key] = mutableSetOf(fakeIndexValue)
+                }
+              }
+            ),
+        )
+      )
+
+    assertThat(indexer.map(fileContent).keys)
+      .containsExactly(
+        "com/example/CoffeeShop.CoffeeMaker",
+        "com.example.Outer.HeaterModule",
+        "grinders: Grinder[]",
+        "CoffeeMaker(cups: Integer, assisted=false)",
+        "CoffeeMaker(heater: Heater, assisted=true)",
+      )
+  }
+
+  @Test
+  fun classFileDaggerHeuristic() {
+    val classWriter = ClassWriter(0)
+    classWriter.visit(
+      Opcodes.V11,
+      Opcodes.ACC_PUBLIC,
+      "com/example/Foo",
+      null,
+      "java/lang/Object",
+      null,
+    )
+    classWriter.visitEnd()
+
+    val fileContent =
+      mock<FileContent>().apply {
+        whenever(this.fileType).thenReturn(JavaClassFileType.INSTANCE)
+        whenever(this.content).thenReturn(classWriter.toByteArray())
+      }
+
+    val indexer =
+      DaggerDataIndexer(
+        DaggerConceptIndexers(
+          classIndexers =
+            listOf(
+              DaggerConceptIndexer { _, indexEntries ->
+                indexEntries["found"] = mutableSetOf(fakeIndexValue)
+              }
+            )
+        )
+      )
+
+    assertThat(indexer.map(fileContent)).isEmpty()
+  }
+
   private fun createFileContent(fileType: FileType, text: String): FileContent {
     val psiFile = myFixture.configureByText(fileType, text)
 
@@ -86,6 +86,7 @@ import com.android.tools.rendering.RenderAsyncActionExecutor;
 import com.android.tools.rendering.RenderLogger;
 import com.android.tools.rendering.RenderProblem;
 import com.android.tools.rendering.RenderResult;
+import com.android.tools.rendering.RenderResultStats;
 import com.android.tools.rendering.RenderService;
 import com.android.tools.rendering.RenderTask;
 import com.android.tools.rendering.api.RenderModelModule;
@@ -124,6 +125,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -137,6 +140,7 @@ import org.jetbrains.annotations.TestOnly;
  */
 public class LayoutlibSceneManager extends SceneManager implements InteractiveSceneManager {
   private static final SceneDecoratorFactory DECORATOR_FACTORY = new NlSceneDecoratorFactory();
+  private static final long DEFAULT_FRAME_BUDGET_MS = 50;
 
   @Nullable private SceneView mySecondarySceneView;
 
@@ -187,6 +191,29 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
    */
   @GuardedBy("myFuturesLock")
   private Boolean myIsCurrentlyRendering = false;
+  /**
+   * Incremented every time a render starts or the pending requests are cancelled. A delayed follow-up render only acts if nothing
+   * happened since it was scheduled, see {@link #scheduleFollowUpRender()}.
+   */
+  @GuardedBy("myFuturesLock")
+  private int myRenderGeneration = 0;
+  /** True while {@link #renderAsync} is called from the render queue, in which case nobody waits on the returned future. */
+  private final ThreadLocal<Boolean> myIsRenderingFromQueue = ThreadLocal.withInitial(() -> false);
+
+  /**
+   * Minimum time in milliseconds between the start of two consecutive renders of this scene. Requests arriving while a render is in
+   * progress are merged into a single follow-up render, which is delayed if needed so that rapid edits do not cause back-to-back
+   * renders. 0 disables the budget.
+   */
+  private volatile long myFrameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+  private volatile long myLastRenderStartTimeMs = -1;
+  /** True if the previous render was dropped because newer requests were waiting, see {@link #dropIfSuperseded()}. */
+  private volatile boolean myLastRenderSuperseded = false;
+  private final AtomicLong myRequestedRenders = new AtomicLong();
+  private final AtomicLong myExecutedRenders = new AtomicLong();
+  private final AtomicLong mySupersededRenders = new AtomicLong();
+  private final AtomicLong myDeferredRenders = new AtomicLong();
+  @NotNull private volatile RenderResultStats myLastRenderResultStats = RenderResultStats.getEMPTY();
 
   /**
    * If true, the renders using this LayoutlibSceneManager will use transparent backgrounds
@@ -744,6 +771,7 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
       return CompletableFuture.completedFuture(null);
     }
 
+    myRequestedRenders.incrementAndGet();
     CompletableFuture<Void> callback = new CompletableFuture<>();
     synchronized (myFuturesLock) {
       myPendingFutures.add(callback);
@@ -763,7 +791,13 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
     return new Update("model.render", LOW_PRIORITY) {
       @Override
       public void run() {
-        renderAsync(trigger, reverseUpdate);
+        myIsRenderingFromQueue.set(true);
+        try {
+          renderAsync(trigger, reverseUpdate);
+        }
+        finally {
+          myIsRenderingFromQueue.set(false);
+        }
       }
 
       @Override
@@ -1327,9 +1361,12 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
       return CompletableFuture.completedFuture(null);
     }
 
+    // Only renders coming from the queue can be dropped, direct callers expect the result of this render
+    AtomicReference<CompletableFuture<Void>> supersededBy = myIsRenderingFromQueue.get() ? new AtomicReference<>() : null;
     synchronized (myFuturesLock) {
       // This is because at the moment render could also be called from requestLayoutAndRender in a synchronous mode
       myIsCurrentlyRendering = true;
+      myRenderGeneration++;
       myRenderFutures.addAll(myPendingFutures);
       myPendingFutures.clear();
     }
@@ -1340,34 +1377,17 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
 
       fireOnRenderStart();
       long renderStartTimeMs = System.currentTimeMillis();
-      return renderImplAsync(reverseUpdate)
-        .thenApply(result -> logIfSuccessful(result, trigger, CommonUsageTracker.RenderResultType.RENDER))
-        .thenApply(this::updateCachedRenderResultIfNotNull)
-        .thenApply(result -> {
-          if (result != null) {
-            long renderTimeMs = System.currentTimeMillis() - renderStartTimeMs;
-            // In an unlikely event when result is disposed we can still safely request the size of the image
-            NlDiagnosticsManager.getWriteInstance(surface).recordRender(renderTimeMs,
-                                                                        result.getRenderedImage().getWidth() *
-                                                                        result.getRenderedImage().getHeight() *
-                                                                        4L);
+      myLastRenderStartTimeMs = renderStartTimeMs;
+      return renderImplAsync(reverseUpdate, supersededBy)
+        .thenCompose(result -> {
+          CompletableFuture<Void> followUp = supersededBy != null ? supersededBy.get() : null;
+          if (followUp == null) {
+            return completeRenderAsync(result, trigger, surface, renderStartTimeMs);
           }
-
-          return result;
-        })
-        .thenApplyAsync(result -> {
-          if (!isDisposed.get()) {
-            update();
-          }
-
-          return result;
-        }, EdtExecutorService.getInstance())
-        .thenApplyAsync(result -> {
-          fireOnRenderComplete();
+          // The render was dropped before producing a frame, so there is nothing to report to the render listeners
           completeRender();
-
-          return result;
-        }, AppExecutorUtil.getAppExecutorService());
+          return followUp.thenApply(ignored -> getRenderResult());
+        });
     }
     catch (Throwable e) {
       if (!getModel().getFacet().isDisposed()) {
@@ -1380,6 +1400,41 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
     return CompletableFuture.completedFuture(null);
   }
 
+  @NotNull
+  private CompletableFuture<RenderResult> completeRenderAsync(@Nullable RenderResult renderResult,
+                                                              @Nullable LayoutEditorRenderResult.Trigger trigger,
+                                                              @NotNull NlDesignSurface surface,
+                                                              long renderStartTimeMs) {
+    return CompletableFuture.completedFuture(renderResult)
+      .thenApply(result -> logIfSuccessful(result, trigger, CommonUsageTracker.RenderResultType.RENDER))
+      .thenApply(this::updateCachedRenderResultIfNotNull)
+      .thenApply(result -> {
+        if (result != null) {
+          long renderTimeMs = System.currentTimeMillis() - renderStartTimeMs;
+          // In an unlikely event when result is disposed we can still safely request the size of the image
+          NlDiagnosticsManager.getWriteInstance(surface).recordRender(renderTimeMs,
+                                                                      result.getRenderedImage().getWidth() *
+                                                                      result.getRenderedImage().getHeight() *
+                                                                      4L);
+        }
+
+        return result;
+      })
+      .thenApplyAsync(result -> {
+        if (!isDisposed.get()) {
+          update();
+        }
+
+        return result;
+      }, EdtExecutorService.getInstance())
+      .thenApplyAsync(result -> {
+        fireOnRenderComplete();
+        completeRender();
+
+        return result;
+      }, AppExecutorUtil.getAppExecutorService());
+  }
+
   private boolean hasPendingRenders() {
     synchronized(myFuturesLock) {
       return !myPendingFutures.isEmpty();
@@ -1393,19 +1448,102 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
    */
   private void completeRender() {
     ImmutableList<CompletableFuture<Void>> callbacks;
+    boolean hasPendingRenders;
     synchronized (myFuturesLock) {
       callbacks = ImmutableList.copyOf(myRenderFutures);
       myRenderFutures.clear();
-      myIsCurrentlyRendering = false;
+      hasPendingRenders = !myPendingFutures.isEmpty();
+      // While a follow-up render is scheduled, new requests are merged into it
+      myIsCurrentlyRendering = hasPendingRenders;
     }
     isOutOfDate.set(false);
     callbacks.forEach(callback -> callback.complete(null));
     // If there are pending futures, we should trigger the render update
-    if (hasPendingRenders()) {
-      requestRenderAsync(getTriggerFromChangeType(getModel().getLastChangeType()), new AtomicBoolean());
+    if (hasPendingRenders) {
+      scheduleFollowUpRender();
     }
   }
 
+  /**
+   * Queues the render for the requests that arrived while the previous render was running. The render is delayed if the previous one
+   * started less than {@link #myFrameBudgetMs} ago.
+   */
+  private void scheduleFollowUpRender() {
+    Update update = createRenderUpdate(getTriggerFromChangeType(getModel().getLastChangeType()), new AtomicBoolean());
+    long delayMs = myFrameBudgetMs - (System.currentTimeMillis() - myLastRenderStartTimeMs);
+    if (delayMs <= 0 || isDisposed.get()) {
+      myRenderingQueue.queue(update);
+      return;
+    }
+    int generation;
+    synchronized (myFuturesLock) {
+      generation = myRenderGeneration;
+    }
+    myDeferredRenders.incrementAndGet();
+    AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+      boolean hasPendingRenders;
+      synchronized (myFuturesLock) {
+        if (generation != myRenderGeneration) {
+          // Another render started or the requests were cancelled in the meantime (see deactivate), which now own the render state
+          return;
+        }
+        hasPendingRenders = !isDisposed.get() && !myPendingFutures.isEmpty();
+        if (!hasPendingRenders) {
+          myIsCurrentlyRendering = false;
+        }
+      }
+      if (hasPendingRenders) {
+        myRenderingQueue.queue(update);
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Called once the model has been inflated, right before rendering it. If newer render requests are already waiting, the render is
+   * dropped since its result would be replaced right away, and its callbacks are moved to the follow-up render. Two consecutive renders
+   * are never dropped, so the surface keeps receiving frames while the model is being edited continuously.
+   *
+   * @return a future completed once the follow-up render is done if the render should be dropped, null otherwise
+   */
+  @Nullable
+  private CompletableFuture<Void> dropIfSuperseded() {
+    CompletableFuture<Void> followUp = null;
+    if (!myLastRenderSuperseded) {
+      synchronized (myFuturesLock) {
+        if (!myPendingFutures.isEmpty()) {
+          followUp = new CompletableFuture<>();
+          myPendingFutures.addAll(0, myRenderFutures);
+          myPendingFutures.add(followUp);
+          myRenderFutures.clear();
+        }
+      }
+    }
+    myLastRenderSuperseded = followUp != null;
+    if (followUp != null) {
+      mySupersededRenders.incrementAndGet();
+    }
+    return followUp;
+  }
+
+  /**
+   * Sets the minimum time between the start of two consecutive renders of this scene. See {@link #myFrameBudgetMs}.
+   */
+  public void setFrameBudgetMs(long frameBudgetMs) {
+    myFrameBudgetMs = Math.max(0, frameBudgetMs);
+  }
+
+  /**
+   * Returns how the render requests of this scene have been scheduled so far, together with the stats of the last render.
+   */
+  @NotNull
+  public RenderRequestStats getRenderRequestStats() {
+    return new RenderRequestStats(myRequestedRenders.get(),
+                                  myExecutedRenders.get(),
+                                  mySupersededRenders.get(),
+                                  myDeferredRenders.get(),
+                                  myLastRenderResultStats);
+  }
+
   /**
    * Returns if there are any pending render requests.
    */
@@ -1417,12 +1555,20 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
   }
 
   @NotNull
-  private CompletableFuture<RenderResult> renderImplAsync(AtomicBoolean reverseUpdate) {
+  private CompletableFuture<RenderResult> renderImplAsync(AtomicBoolean reverseUpdate,
+                                                          @Nullable AtomicReference<CompletableFuture<Void>> supersededBy) {
     return inflateAsync(myForceInflate.getAndSet(false), reverseUpdate)
       .thenCompose(inflateResult -> {
         boolean inflated = inflateResult != null && inflateResult.getRenderResult().isSuccess();
         long elapsedFrameTimeMs = myElapsedFrameTimeMs;
 
+        if (supersededBy != null && (inflateResult == null || inflateResult.getRenderResult().isSuccess())) {
+          supersededBy.set(dropIfSuperseded());
+          if (supersededBy.get() != null) {
+            return CompletableFuture.completedFuture(null);
+          }
+        }
+
         synchronized (myRenderingTaskLock) {
           if (myRenderTask == null || (inflateResult != null && !inflateResult.getRenderResult().isSuccess())) {
             getDesignSurface().updateErrorDisplay();
@@ -1434,7 +1580,11 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
           // Make sure that the task's quality is up-to-date before rendering
           final float currentQuality = quality;
           myRenderTask.setQuality(quality);
+          myExecutedRenders.incrementAndGet();
           return myRenderTask.render().thenApply(result -> {
+            if (result != null) {
+              myLastRenderResultStats = result.getStats();
+            }
             if (result != null && result.getRenderResult().isSuccess()) {
               lastRenderQuality = currentQuality;
             }
@@ -1774,6 +1924,9 @@ public class LayoutlibSceneManager extends SceneManager implements InteractiveSc
     synchronized (myFuturesLock) {
       callbacks = ImmutableList.copyOf(myPendingFutures);
       myPendingFutures.clear();
+      // A delayed follow-up render would not run anymore, so new requests must queue their own render
+      myIsCurrentlyRendering = false;
+      myRenderGeneration++;
     }
     callbacks.forEach(callback -> callback.completeExceptionally(new CancellationException()));
   }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene
+
+import com.android.tools.rendering.RenderResultStats
+
+/** Class to record how the render requests of a [LayoutlibSceneManager] have been scheduled. */
+data class RenderRequestStats(
+  /** Number of renders requested, including the ones merged into other renders. */
+  val requestedRenders: Long = 0,
+  /** Number of renders that reached the render task. */
+  val executedRenders: Long = 0,
+  /** Number of renders dropped after inflation because newer requests were already waiting. */
+  val supersededRenders: Long = 0,
+  /** Number of follow-up renders that were delayed to respect the frame budget. */
+  val deferredRenders: Long = 0,
+  /** Stats of the last executed render, or [RenderResultStats.EMPTY] if there was none. */
+  val lastRenderResultStats: RenderResultStats = RenderResultStats.EMPTY,
+) {
+  /** Number of requests that did not cause a render of their own because they were merged. */
+  val mergedRenders: Long
+    get() = (requestedRenders - executedRenders - supersededRenders).coerceAtLeast(0)
+
+  companion object {
+    @JvmStatic val EMPTY = RenderRequestStats()
+  }
+}
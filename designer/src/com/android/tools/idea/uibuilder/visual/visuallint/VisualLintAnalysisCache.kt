@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.visual.visuallint
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.ide.common.rendering.api.ViewInfo
+import com.android.tools.idea.uibuilder.visual.visuallint.VisualLintAnalyzer.VisualLintIssueContent
+import java.util.IdentityHashMap
+
+private const val DEFAULT_MAX_ENTRIES = 2048
+
+/**
+ * Cache of the issues found by each [VisualLintAnalyzer], keyed by layout, configuration and
+ * analyzer type.
+ *
+ * Every entry remembers the fingerprint of the render it was computed from. The fingerprint
+ * combines a seed provided by the caller (e.g. a hash of the layout content and of the resources)
+ * with the class and bounds of every view in the rendered hierarchy. When the same configuration is
+ * rendered again with the same fingerprint, the cached issues are mapped onto the views of the new
+ * render instead of running the analyzer again. This way, after an edit only the configurations
+ * whose render output actually changed are re-analyzed.
+ *
+ * Only the position of the [VisualLintIssueContent.sourceViews] of each issue in the rendered
+ * hierarchy is kept. The issue contents are recreated from the views of the new render, so the
+ * cache never retains views, components or models of previous renders.
+ *
+ * This class is thread safe.
+ */
+class VisualLintAnalysisCache(private val maxEntries: Int = DEFAULT_MAX_ENTRIES) {
+  private data class Key(
+    val layout: String,
+    val configuration: String,
+    val type: VisualLintErrorType,
+  )
+
+  /**
+   * A cached issue, stored as the indices of its source views in the depth-first list of views of
+   * the render.
+   */
+  private class CachedIssue(val viewIndices: IntArray)
+
+  private class Entry(val fingerprint: Long, val issues: List<CachedIssue>)
+
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private val entries =
+    object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>) =
+        size > maxEntries
+    }
+
+  val size: Int
+    get() = synchronized(lock) { entries.size }
+
+  /**
+   * Creates a [RenderSnapshot] for the render of [layout] in [configuration] with the given
+   * [rootViews]. The same snapshot should be shared by all the analyzers run on that render.
+   */
+  fun snapshot(
+    layout: String,
+    configuration: String,
+    seed: Long,
+    rootViews: List<ViewInfo>,
+  ): RenderSnapshot {
+    val views = mutableListOf<ViewInfo>()
+    val toVisit = ArrayDeque(rootViews.asReversed())
+    while (toVisit.isNotEmpty()) {
+      val view = toVisit.removeLast()
+      views.add(view)
+      view.children.asReversed().forEach { toVisit.addLast(it) }
+    }
+    var fingerprint = seed
+    for (view in views) {
+      fingerprint = 31 * fingerprint + view.className.hashCode()
+      fingerprint = 31 * fingerprint + view.left
+      fingerprint = 31 * fingerprint + view.top
+      fingerprint = 31 * fingerprint + view.right
+      fingerprint = 31 * fingerprint + view.bottom
+      fingerprint = 31 * fingerprint + view.baseLine
+      fingerprint = 31 * fingerprint + view.children.size
+    }
+    return RenderSnapshot(layout, configuration, fingerprint, views)
+  }
+
+  /** Removes the cached issues of all the configurations of [layout]. */
+  fun clear(layout: String) {
+    synchronized(lock) { entries.keys.removeIf { it.layout == layout } }
+  }
+
+  fun clear() {
+    synchronized(lock) { entries.clear() }
+  }
+
+  /** The views and fingerprint of one render result. */
+  inner class RenderSnapshot
+  internal constructor(
+    private val layout: String,
+    private val configuration: String,
+    private val fingerprint: Long,
+    private val views: List<ViewInfo>,
+  ) {
+    private val viewIndices: Map<ViewInfo, Int> by lazy {
+      IdentityHashMap<ViewInfo, Int>().apply { views.forEachIndexed { i, view -> put(view, i) } }
+    }
+
+    /**
+     * Returns the issues of the analyzer of the given [type], recreated with [recreate] from the
+     * views of this render, if this render has the same fingerprint as the one they were found in.
+     * Otherwise, runs [analyze] and caches its result.
+     */
+    fun getOrAnalyze(
+      type: VisualLintErrorType,
+      recreate: (List<ViewInfo>) -> VisualLintIssueContent?,
+      analyze: () -> List<VisualLintIssueContent>,
+    ): List<VisualLintIssueContent> {
+      val key = Key(layout, configuration, type)
+      val entry = synchronized(lock) { entries[key] }
+      if (entry != null && entry.fingerprint == fingerprint) {
+        val recreated =
+          entry.issues.mapNotNull { issue -> recreate(issue.viewIndices.map { views[it] }) }
+        if (recreated.size == entry.issues.size) {
+          return recreated
+        }
+      }
+      val issues = analyze()
+      val cachedIssues =
+        issues.map { issue ->
+          // Issues without views, or pointing to views outside the hierarchy, can't be recreated
+          // for a later render.
+          if (issue.sourceViews.isEmpty()) {
+            return issues
+          }
+          CachedIssue(issue.sourceViews.map { viewIndices[it] ?: return issues }.toIntArray())
+        }
+      synchronized(lock) { entries[key] = Entry(fingerprint, cachedIssues) }
+      return issues
+    }
+  }
+}
@@ -38,25 +38,46 @@ abstract class VisualLintAnalyzer {
   abstract val type: VisualLintErrorType
   abstract val backgroundEnabled: Boolean
 
+  /**
+   * Whether the issues found by this analyzer only depend on the views of the render, and can be
+   * recreated from their [VisualLintIssueContent.sourceViews] with [recreateIssueContent]. Only the
+   * issues of such analyzers are cached by [VisualLintAnalysisCache].
+   */
+  protected open val isCacheable: Boolean = false
+
   /**
    * Analyze the given [RenderResult] for visual lint issues and return found
-   * [VisualLintRenderIssue]s
+   * [VisualLintRenderIssue]s. If a [snapshot] of the render is given, the issues found for an
+   * identical previous render are reused instead of running the analysis again.
    */
   fun analyze(
     renderResult: RenderResult,
     model: NlModel,
     severity: HighlightSeverity,
     runningInBackground: Boolean,
+    snapshot: VisualLintAnalysisCache.RenderSnapshot? = null,
   ): List<VisualLintRenderIssue> {
     if (runningInBackground && !backgroundEnabled) {
       return emptyList()
     }
-    val issueContents = findIssues(renderResult, model)
+    val issueContents =
+      if (snapshot != null && isCacheable) {
+        snapshot.getOrAnalyze(type, ::recreateIssueContent) { findIssues(renderResult, model) }
+      } else {
+        findIssues(renderResult, model)
+      }
     return issueContents.map { createIssue(it, model, severity) }.toList()
   }
 
   abstract fun findIssues(renderResult: RenderResult, model: NlModel): List<VisualLintIssueContent>
 
+  /**
+   * Recreates the content of an issue found by [findIssues] for the given [sourceViews] of a new
+   * render, or returns null if it cannot be recreated. Only called if [isCacheable].
+   */
+  protected open fun recreateIssueContent(sourceViews: List<ViewInfo>): VisualLintIssueContent? =
+    null
+
   private fun getHyperlinkListener(
     issueOrigin: VisualLintOrigin,
     type: VisualLintErrorType,
@@ -138,6 +159,8 @@ abstract class VisualLintAnalyzer {
     // Overrides the error type, it is used if we need to specify a type for the error
     // that is different from the default type provided by the analyzer that created the error.
     val overriddenErrorType: VisualLintErrorType? = null,
+    // Views the issue was created from, see VisualLintAnalyzer.recreateIssueContent.
+    val sourceViews: List<ViewInfo> = listOfNotNull(view),
     val descriptionProvider: (Int) -> HtmlBuilder,
   )
 }
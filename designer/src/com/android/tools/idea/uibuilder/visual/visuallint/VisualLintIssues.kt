@@ -29,11 +29,13 @@ class VisualLintIssues {
   val list: Collection<VisualLintRenderIssue>
     get() = _map.values
 
+  @Synchronized
   fun clear() {
     _map.clear()
     _mapByType.clear()
   }
 
+  @Synchronized
   fun add(issue: VisualLintRenderIssue) {
     val original = _map[issue.rangeBasedHashCode()]
 
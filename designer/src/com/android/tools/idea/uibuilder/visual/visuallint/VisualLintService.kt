@@ -25,6 +25,7 @@ import com.android.tools.idea.rendering.createHtmlLogger
 import com.android.tools.idea.rendering.errors.ui.RenderErrorModel
 import com.android.tools.idea.rendering.parsers.PsiXmlFile
 import com.android.tools.idea.rendering.taskBuilder
+import com.android.tools.idea.res.StudioResourceRepositoryManager
 import com.android.tools.idea.uibuilder.scene.NlModelHierarchyUpdater.updateHierarchy
 import com.android.tools.idea.uibuilder.visual.WearDeviceModelsProvider
 import com.android.tools.idea.uibuilder.visual.WindowSizeModelsProvider
@@ -48,6 +49,7 @@ import com.intellij.codeInspection.InspectionProfile
 import com.intellij.lang.annotation.HighlightSeverity
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.runReadAction
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
@@ -56,6 +58,7 @@ import com.intellij.profile.ProfileChangeAdapter
 import com.intellij.profile.codeInspection.InspectionProfileManager
 import com.intellij.util.concurrency.AppExecutorUtil
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.TimeUnit
@@ -67,9 +70,12 @@ import java.util.concurrent.atomic.AtomicBoolean
  */
 private val visualLintExecutorService =
   AppExecutorUtil.createBoundedApplicationPoolExecutor("Visual Lint Service", 1)
-/** Pool of 1 thread to run all the visual linting analyzers triggered from one analysis */
+/** Pool of threads to analyze the render results of the different configurations in parallel */
 private val visualLintAnalyzerExecutorService =
-  AppExecutorUtil.createBoundedApplicationPoolExecutor("Visual Lint Analyzer", 1)
+  AppExecutorUtil.createBoundedApplicationPoolExecutor(
+    "Visual Lint Analyzer",
+    maxOf(1, Runtime.getRuntime().availableProcessors() - 1),
+  )
 /**
  * Time out for visual lint analysis. Use a longer one for testing to ensure it always completes
  * then.
@@ -105,6 +111,12 @@ class VisualLintService(val project: Project) : Disposable {
 
   private val ignoredTypes: MutableList<VisualLintErrorType>
 
+  /** Results of the background analyses, reused for configurations whose render did not change. */
+  private val analysisCache = VisualLintAnalysisCache()
+
+  /** Models whose layout has results in [analysisCache], which are removed once they are disposed. */
+  private val cachedModels = ConcurrentHashMap.newKeySet<NlModel>()
+
   init {
     val connection = project.messageBus.connect()
     ignoredTypes = mutableListOf()
@@ -217,6 +229,17 @@ class VisualLintService(val project: Project) : Disposable {
         }
       }
     baseModel.addListener(listener)
+    if (cachedModels.add(baseModel)) {
+      val layout = baseModel.virtualFile.path
+      val registered =
+        Disposer.tryRegister(baseModel) {
+          cachedModels.remove(baseModel)
+          analysisCache.clear(layout)
+        }
+      if (!registered) {
+        cachedModels.remove(baseModel)
+      }
+    }
     try {
       val modelsToAnalyze =
         if (HardwareConfigHelper.isWear(baseModel.configuration.device)) {
@@ -297,18 +320,30 @@ class VisualLintService(val project: Project) : Disposable {
     baseConfigIssues: VisualLintBaseConfigIssues,
     runningInBackground: Boolean = false,
   ) {
-    runAnalyzers(targetIssueProvider, basicAnalyzers, result, model, runningInBackground)
-    if (HardwareConfigHelper.isWear(model.configuration.device)) {
-      runAnalyzers(targetIssueProvider, wearAnalyzers, result, model, runningInBackground)
-    } else {
-      runAnalyzers(targetIssueProvider, adaptiveAnalyzers, result, model, runningInBackground)
-      if (VisualLintErrorType.LOCALE_TEXT !in ignoredTypes) {
-        LocaleAnalyzer(baseConfigIssues).let {
-          targetIssueProvider.addAllIssues(
+    val isWear = HardwareConfigHelper.isWear(model.configuration.device)
+    // Only background runs are cached: they render layout files, for which the render snapshot
+    // captures the inputs of the view based analyzers. Previews, e.g. Compose ones, can change
+    // without their layout changing. Analyzers looking at the rendered pixels, like AtfAnalyzer,
+    // are never cached, see VisualLintAnalyzer.isCacheable.
+    val snapshot = if (runningInBackground) createRenderSnapshot(result, model) else null
+    runAnalyzers(
+      targetIssueProvider,
+      basicAnalyzers + if (isWear) wearAnalyzers else adaptiveAnalyzers,
+      result,
+      model,
+      runningInBackground,
+      snapshot,
+    )
+    if (!isWear && VisualLintErrorType.LOCALE_TEXT !in ignoredTypes) {
+      // LocaleAnalyzer compares this configuration with the state shared by all configurations, so
+      // it runs one configuration at a time and its results are never cached.
+      val issues =
+        synchronized(baseConfigIssues) {
+          LocaleAnalyzer(baseConfigIssues).let {
             it.analyze(result, model, getSeverity(it.type), runningInBackground)
-          )
+          }
         }
-      }
+      targetIssueProvider.addAllIssues(issues)
     }
   }
 
@@ -318,15 +353,43 @@ class VisualLintService(val project: Project) : Disposable {
     result: RenderResult,
     model: NlModel,
     runningInBackground: Boolean,
+    snapshot: VisualLintAnalysisCache.RenderSnapshot?,
   ) {
+    // The analyzers of one render run one after the other: some of them update the components of
+    // the model, e.g. AtfAnalyzer, or read PSI.
     analyzers
       .filter { !ignoredTypes.contains(it.type) }
       .forEach {
-        val issues = it.analyze(result, model, getSeverity(it.type), runningInBackground)
+        val issues =
+          it.analyze(result, model, getSeverity(it.type), runningInBackground, snapshot)
         targetIssueProvider.addAllIssues(issues)
       }
   }
 
+  private fun createRenderSnapshot(
+    result: RenderResult,
+    model: NlModel,
+  ): VisualLintAnalysisCache.RenderSnapshot {
+    val configuration = model.configuration
+    val configurationKey =
+      listOf(
+          configuration.device?.id,
+          configuration.fullConfig.qualifierString,
+          configuration.theme,
+          configuration.fontScale,
+        )
+        .joinToString("|")
+    val layoutHash = runReadAction { model.file.text }.hashCode().toLong()
+    val resourcesModificationCount =
+      StudioResourceRepositoryManager.getAppResources(model.facet).modificationCount
+    return analysisCache.snapshot(
+      model.virtualFile.path,
+      configurationKey,
+      31 * layoutHash + resourcesModificationCount,
+      result.rootViews,
+    )
+  }
+
   private fun getSeverity(type: VisualLintErrorType): HighlightSeverity {
     val key = HighlightDisplayKey.find(type.shortName)
     return key?.let {
@@ -341,6 +404,7 @@ class VisualLintService(val project: Project) : Disposable {
 
   override fun dispose() {
     issueModel.removeAllIssueProviders()
+    analysisCache.clear()
   }
 }
 
@@ -41,6 +41,9 @@ object BottomAppBarAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = BottomAppBarAnalyzerInspection.bottomAppBarBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -64,6 +67,9 @@ object BottomAppBarAnalyzer : VisualLintAnalyzer() {
     return issues
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val content = { count: Int ->
       HtmlBuilder()
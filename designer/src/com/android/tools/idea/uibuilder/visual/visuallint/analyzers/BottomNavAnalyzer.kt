@@ -39,6 +39,9 @@ object BottomNavAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = BottomNavAnalyzerInspection.bottomNavBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -59,6 +62,9 @@ object BottomNavAnalyzer : VisualLintAnalyzer() {
     return issues
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val content = { count: Int ->
       HtmlBuilder()
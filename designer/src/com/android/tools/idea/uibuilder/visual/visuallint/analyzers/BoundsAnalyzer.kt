@@ -44,6 +44,9 @@ object BoundsAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = BoundsAnalyzerInspection.boundsBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -72,6 +75,9 @@ object BoundsAnalyzer : VisualLintAnalyzer() {
     return (child.top < 0 || child.bottom > height || child.left < 0 || child.right > width)
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val viewName = simpleName(view)
     val summary = "${nameWithId(view)} is partially hidden in layout"
@@ -35,6 +35,9 @@ object ButtonSizeAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = ButtonSizeAnalyzerInspection.buttonSizeBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -59,6 +62,9 @@ object ButtonSizeAnalyzer : VisualLintAnalyzer() {
     return widthInDp > MAX_BUTTON_WIDTH_DP
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val summary = "The button ${nameWithId(view)} is too wide"
     val provider = { count: Int ->
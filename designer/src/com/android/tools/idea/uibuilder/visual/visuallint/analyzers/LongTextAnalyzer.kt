@@ -38,6 +38,9 @@ object LongTextAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = LongTextAnalyzerInspection.longTextBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -92,6 +95,9 @@ object LongTextAnalyzer : VisualLintAnalyzer() {
     return false
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val summary = "${nameWithId(view)} has lines containing more than 120 characters"
     val url =
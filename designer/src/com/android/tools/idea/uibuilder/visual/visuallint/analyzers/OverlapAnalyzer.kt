@@ -48,6 +48,9 @@ object OverlapAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = OverlapAnalyzerInspection.overlapBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -104,6 +107,9 @@ object OverlapAnalyzer : VisualLintAnalyzer() {
     }
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews[0], sourceViews[1])
+
   private fun createIssueContent(
     firstView: ViewInfo,
     secondView: ViewInfo,
@@ -120,6 +126,7 @@ object OverlapAnalyzer : VisualLintAnalyzer() {
     return VisualLintIssueContent(
       view = firstView,
       message = summary,
+      sourceViews = listOf(firstView, secondView),
       descriptionProvider = content,
     )
   }
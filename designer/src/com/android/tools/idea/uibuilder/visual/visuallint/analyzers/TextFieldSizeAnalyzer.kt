@@ -35,6 +35,9 @@ object TextFieldSizeAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = TextFieldSizeAnalyzerInspection.textFieldSizeBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -59,6 +62,9 @@ object TextFieldSizeAnalyzer : VisualLintAnalyzer() {
     return widthInDp > TEXT_FIELD_MAX_DP_WIDTH
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val summary = "The text field ${nameWithId(view)} is too wide"
     val provider = { count: Int ->
@@ -35,6 +35,9 @@ object WearMarginAnalyzer : VisualLintAnalyzer() {
   override val backgroundEnabled: Boolean
     get() = WearMarginAnalyzerInspection.wearMarginBackground
 
+  override val isCacheable: Boolean
+    get() = true
+
   override fun findIssues(
     renderResult: RenderResult,
     model: NlModel,
@@ -72,6 +75,9 @@ object WearMarginAnalyzer : VisualLintAnalyzer() {
     return issues
   }
 
+  override fun recreateIssueContent(sourceViews: List<ViewInfo>) =
+    createIssueContent(sourceViews.single())
+
   private fun createIssueContent(view: ViewInfo): VisualLintIssueContent {
     val summary = "The view ${nameWithId(view)} is too close to the side of the device"
     val provider = { count: Int ->
@@ -30,8 +30,10 @@ import com.android.tools.idea.uibuilder.type.PreferenceScreenFileType
 import com.google.common.truth.Truth.assertThat
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.psi.PsiDocumentManager
+import com.intellij.testFramework.PlatformTestUtil
 import com.intellij.util.concurrency.EdtExecutorService
 import com.intellij.util.ui.update.Update
+import java.util.concurrent.TimeUnit
 import kotlinx.coroutines.runBlocking
 
 class LayoutlibSceneManagerTest : SceneTest() {
@@ -204,6 +206,60 @@ class LayoutlibSceneManagerTest : SceneTest() {
     assertTrue("the render should be interrupted", future.isCompletedExceptionally)
   }
 
+  fun testRenderRequestsAreMergedWhileWaiting() {
+    val noOpLayoutlibSceneManager = noOpRenderingLayoutLibSceneManager()
+
+    val futures = (1..3).map { noOpLayoutlibSceneManager.requestRenderAsync() }
+    assertTrue(futures.none { it.isDone })
+    noOpLayoutlibSceneManager.renderRequestStats.let {
+      assertEquals(3, it.requestedRenders)
+      assertEquals(0, it.executedRenders)
+      assertEquals(3, it.mergedRenders)
+    }
+    noOpLayoutlibSceneManager.deactivate(ModelBuilder::class.java)
+  }
+
+  fun testRenderIsQueuedAfterDeactivatingDuringFollowUpDelay() {
+    val queuedUpdates = mutableListOf<Update>()
+    val sceneManager = layoutLibSceneManager { queuedUpdates.add(it) }
+    sceneManager.setFrameBudgetMs(TimeUnit.MINUTES.toMillis(10))
+    var requestedDuringRender = false
+    sceneManager.addRenderListener(
+      object : RenderListener {
+        override fun onRenderStarted() {
+          // Make the render finish with a pending request, so that a follow-up render is delayed
+          if (!requestedDuringRender) {
+            requestedDuringRender = true
+            sceneManager.requestRenderAsync()
+          }
+        }
+
+        override fun onRenderCompleted() {}
+      }
+    )
+
+    sceneManager.requestRenderAsync()
+    assertEquals(1, queuedUpdates.size)
+    queuedUpdates.first().run()
+    PlatformTestUtil.waitWithEventsDispatching(
+      "the follow-up render was not delayed",
+      { sceneManager.renderRequestStats.deferredRenders == 1L },
+      10,
+    )
+
+    sceneManager.deactivate(ModelBuilder::class.java)
+    sceneManager.requestRenderAsync()
+    assertEquals("the next request should queue a render", 2, queuedUpdates.size)
+  }
+
+  fun testRenderRequestStatsRecordExecutedRenders() = runBlocking {
+    val before = myLayoutlibSceneManager.renderRequestStats
+    myLayoutlibSceneManager.render()
+    val after = myLayoutlibSceneManager.renderRequestStats
+    assertEquals(before.executedRenders + 1, after.executedRenders)
+    assertThat(after.requestedRenders).isGreaterThan(before.requestedRenders)
+  }
+
   override fun createModel(): ModelBuilder {
     return model(
       FD_RES_XML,
@@ -215,16 +271,18 @@ class LayoutlibSceneManagerTest : SceneTest() {
     )
   }
 
-  private fun noOpRenderingLayoutLibSceneManager() =
+  private fun noOpRenderingLayoutLibSceneManager() = layoutLibSceneManager {
+    // no-op
+  }
+
+  private fun layoutLibSceneManager(onQueue: (Update) -> Unit) =
     LayoutlibSceneManager(
       myLayoutlibSceneManager.model,
       myLayoutlibSceneManager.designSurface,
       EdtExecutorService.getInstance(),
       {
         object : RenderingQueue {
-          override fun queue(update: Update) {
-            // no-op
-          }
+          override fun queue(update: Update) = onQueue(update)
         }
       },
       LayoutlibSceneManager.LayoutlibSceneManagerHierarchyProvider(),
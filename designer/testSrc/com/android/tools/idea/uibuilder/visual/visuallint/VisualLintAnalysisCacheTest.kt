@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.visual.visuallint
+
+import com.android.ide.common.rendering.api.ViewInfo
+import com.android.tools.idea.uibuilder.visual.visuallint.VisualLintAnalyzer.VisualLintIssueContent
+import com.android.utils.HtmlBuilder
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class VisualLintAnalysisCacheTest {
+  private fun createHierarchy(buttonRight: Int = 100): List<ViewInfo> {
+    val button = ViewInfo("android.widget.Button", null, 0, 0, buttonRight, 50)
+    val text = ViewInfo("android.widget.TextView", null, 0, 50, 100, 100)
+    val root = ViewInfo("android.widget.LinearLayout", null, 0, 0, 1000, 1000)
+    root.children = listOf(button, text)
+    return listOf(root)
+  }
+
+  private fun issue(view: ViewInfo?, message: String) =
+    VisualLintIssueContent(view = view, message = message) { HtmlBuilder() }
+
+  private val recreate = { views: List<ViewInfo> ->
+    issue(views.single(), "${views.single().className} recreated")
+  }
+
+  @Test
+  fun testReusesIssuesForIdenticalRender() {
+    val cache = VisualLintAnalysisCache()
+    var analysisCount = 0
+
+    val firstRoots = createHierarchy()
+    val first =
+      cache.snapshot("layout.xml", "phone", 0, firstRoots).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        recreate,
+      ) {
+        analysisCount++
+        listOf(
+          issue(firstRoots[0].children[1], "Text out of bounds"),
+          issue(firstRoots[0].children[0], "Button out of bounds"),
+        )
+      }
+    assertThat(analysisCount).isEqualTo(1)
+    assertThat(first[0].view).isSameAs(firstRoots[0].children[1])
+
+    val secondRoots = createHierarchy()
+    val second =
+      cache.snapshot("layout.xml", "phone", 0, secondRoots).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        recreate,
+      ) {
+        analysisCount++
+        emptyList()
+      }
+    assertThat(analysisCount).isEqualTo(1)
+    // Cached issues are recreated from the views of the new render.
+    assertThat(second.map { it.message })
+      .containsExactly("android.widget.TextView recreated", "android.widget.Button recreated")
+      .inOrder()
+    assertThat(second[0].view).isSameAs(secondRoots[0].children[1])
+    assertThat(second[1].view).isSameAs(secondRoots[0].children[0])
+  }
+
+  @Test
+  fun testReanalyzesIfIssuesCannotBeRecreated() {
+    val cache = VisualLintAnalysisCache()
+    var analysisCount = 0
+    val analyze = {
+      analysisCount++
+      listOf(issue(null, "No view"))
+    }
+
+    repeat(2) {
+      cache.snapshot("layout.xml", "phone", 0, createHierarchy()).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        recreate,
+        analyze,
+      )
+    }
+    // Issues without views are not cached
+    assertThat(analysisCount).isEqualTo(2)
+
+    repeat(2) {
+      val roots = createHierarchy()
+      cache.snapshot("layout.xml", "tablet", 0, roots).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        { null },
+      ) {
+        analysisCount++
+        listOf(issue(roots[0].children[0], "Button out of bounds"))
+      }
+    }
+    assertThat(analysisCount).isEqualTo(4)
+  }
+
+  @Test
+  fun testReanalyzesChangedRender() {
+    val cache = VisualLintAnalysisCache()
+    var analysisCount = 0
+    val analyze = {
+      analysisCount++
+      listOf(issue(null, "Issue $analysisCount"))
+    }
+
+    cache.snapshot("layout.xml", "phone", 0, createHierarchy()).getOrAnalyze(
+      VisualLintErrorType.BOUNDS,
+      recreate,
+      analyze,
+    )
+    // Different bounds
+    val changedBounds =
+      cache
+        .snapshot("layout.xml", "phone", 0, createHierarchy(buttonRight = 200))
+        .getOrAnalyze(VisualLintErrorType.BOUNDS, recreate, analyze)
+    assertThat(changedBounds.single().message).isEqualTo("Issue 2")
+    // Different seed, e.g. the layout content changed
+    cache
+      .snapshot("layout.xml", "phone", 1, createHierarchy(buttonRight = 200))
+      .getOrAnalyze(VisualLintErrorType.BOUNDS, recreate, analyze)
+    assertThat(analysisCount).isEqualTo(3)
+
+    // Other configurations, layouts and analyzers are cached separately
+    cache
+      .snapshot("layout.xml", "tablet", 1, createHierarchy(buttonRight = 200))
+      .getOrAnalyze(VisualLintErrorType.BOUNDS, recreate, analyze)
+    cache
+      .snapshot("other.xml", "phone", 1, createHierarchy(buttonRight = 200))
+      .getOrAnalyze(VisualLintErrorType.BOUNDS, recreate, analyze)
+    cache
+      .snapshot("layout.xml", "phone", 1, createHierarchy(buttonRight = 200))
+      .getOrAnalyze(VisualLintErrorType.OVERLAP, recreate, analyze)
+    assertThat(analysisCount).isEqualTo(6)
+    assertThat(cache.size).isEqualTo(4)
+  }
+
+  @Test
+  fun testIssuesOutsideHierarchyAreNotCached() {
+    val cache = VisualLintAnalysisCache()
+    var analysisCount = 0
+    val analyze = {
+      analysisCount++
+      listOf(issue(ViewInfo("android.view.View", null, 0, 0, 1, 1), "Detached view"))
+    }
+
+    cache.snapshot("layout.xml", "phone", 0, createHierarchy()).getOrAnalyze(
+      VisualLintErrorType.BOUNDS,
+      recreate,
+      analyze,
+    )
+    cache.snapshot("layout.xml", "phone", 0, createHierarchy()).getOrAnalyze(
+      VisualLintErrorType.BOUNDS,
+      recreate,
+      analyze,
+    )
+    assertThat(analysisCount).isEqualTo(2)
+    assertThat(cache.size).isEqualTo(0)
+  }
+
+  @Test
+  fun testEvictsLeastRecentlyUsedEntries() {
+    val cache = VisualLintAnalysisCache(maxEntries = 2)
+    for (configuration in listOf("phone", "foldable", "tablet")) {
+      cache.snapshot("layout.xml", configuration, 0, createHierarchy()).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        recreate,
+      ) {
+        emptyList()
+      }
+    }
+    assertThat(cache.size).isEqualTo(2)
+    cache.clear()
+    assertThat(cache.size).isEqualTo(0)
+  }
+
+  @Test
+  fun testClearLayout() {
+    val cache = VisualLintAnalysisCache()
+    for (layout in listOf("layout.xml", "other.xml")) {
+      cache.snapshot(layout, "phone", 0, createHierarchy()).getOrAnalyze(
+        VisualLintErrorType.BOUNDS,
+        recreate,
+      ) {
+        emptyList()
+      }
+    }
+    cache.clear("layout.xml")
+    assertThat(cache.size).isEqualTo(1)
+  }
+}
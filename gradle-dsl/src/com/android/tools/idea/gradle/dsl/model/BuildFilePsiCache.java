@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.dsl.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.LowMemoryWatcher;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.source.tree.TreeUtil;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+/**
+ * Parses the PSI of Gradle files ahead of building their Dsl trees, and keeps the parsed syntax trees alive between creations of
+ * {@link com.android.tools.idea.gradle.dsl.api.ProjectBuildModel}.
+ * <p>
+ * Building the Dsl tree of a file has to be done sequentially since files depend on each other (e.g. through the {@code subprojects}
+ * block of the parent module, or applied files), but lexing and parsing the files themselves is independent and is done concurrently.
+ * The platform only keeps syntax trees of closed files softly reachable, so without this cache each new model of a large project would
+ * parse all its build files again. A cached tree is reused as long as its file is valid and its modification stamp is unchanged.
+ * <p>
+ * The cache is bounded by the total text length of the cached files, beyond which the least recently used trees are dropped. Entries of
+ * deleted files are dropped too, and the cache is dropped entirely when memory is low.
+ */
+public final class BuildFilePsiCache implements Disposable {
+  private static final long DEFAULT_MAX_CACHED_TEXT_LENGTH = 16L * 1024 * 1024;
+
+  @NotNull private final Project myProject;
+  private final long myMaxCachedTextLength;
+  // In least recently used order. Guarded by itself, as is myCachedTextLength.
+  @NotNull private final LinkedHashMap<VirtualFile, ParsedFile> myParsedFiles = new LinkedHashMap<>(16, 0.75f, true);
+  private long myCachedTextLength = 0;
+  @NotNull private final AtomicInteger myParseCount = new AtomicInteger();
+
+  public BuildFilePsiCache(@NotNull Project project) {
+    this(project, DEFAULT_MAX_CACHED_TEXT_LENGTH);
+  }
+
+  @VisibleForTesting
+  BuildFilePsiCache(@NotNull Project project, long maxCachedTextLength) {
+    myProject = project;
+    myMaxCachedTextLength = maxCachedTextLength;
+    LowMemoryWatcher.register(() -> removeIf(file -> true), this);
+    project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        if (events.stream().anyMatch(event -> event instanceof VFileDeleteEvent)) {
+          // Deleting a directory invalidates the files under it without an event for each of them.
+          removeIf(file -> !file.isValid());
+        }
+      }
+    });
+  }
+
+  @NotNull
+  public static BuildFilePsiCache getInstance(@NotNull Project project) {
+    return project.getService(BuildFilePsiCache.class);
+  }
+
+  /**
+   * Makes sure that the syntax trees of the given files are parsed and cached, parsing the files that are not cached or have been
+   * modified since concurrently. When called while holding the read lock, the files are parsed on the calling thread to avoid blocking
+   * a pending write action. Null elements of {@code files} are ignored.
+   */
+  public void parse(@NotNull Collection<VirtualFile> files) {
+    List<VirtualFile> filesToParse = files.stream().filter(Objects::nonNull).distinct().toList();
+    if (filesToParse.size() <= 1 || ApplicationManager.getApplication().isReadAccessAllowed()) {
+      filesToParse.forEach(this::parse);
+      return;
+    }
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(filesToParse, indicator, file -> {
+      parse(file);
+      return true;
+    });
+  }
+
+  private void parse(@NotNull VirtualFile file) {
+    ReadAction.run(() -> {
+      PsiFile psiFile = file.isValid() ? PsiManager.getInstance(myProject).findFile(file) : null;
+      if (psiFile == null) {
+        removeIf(file::equals);
+        return;
+      }
+      long stamp = psiFile.getModificationStamp();
+      synchronized (myParsedFiles) {
+        ParsedFile parsedFile = myParsedFiles.get(file);
+        if (parsedFile != null && parsedFile.myPsiFile == psiFile && psiFile.isValid() && parsedFile.myStamp == stamp) {
+          return;
+        }
+      }
+      ASTNode tree = psiFile.getNode();
+      if (tree != null) {
+        TreeUtil.ensureParsed(tree);
+      }
+      myParseCount.incrementAndGet();
+      cache(file, new ParsedFile(psiFile, tree, stamp, psiFile.getTextLength()));
+    });
+  }
+
+  private void cache(@NotNull VirtualFile file, @NotNull ParsedFile parsedFile) {
+    synchronized (myParsedFiles) {
+      ParsedFile previous = myParsedFiles.put(file, parsedFile);
+      if (previous != null) {
+        myCachedTextLength -= previous.myTextLength;
+      }
+      myCachedTextLength += parsedFile.myTextLength;
+
+      // Drop the least recently used trees, but always keep the one just parsed.
+      Iterator<ParsedFile> iterator = myParsedFiles.values().iterator();
+      while (myCachedTextLength > myMaxCachedTextLength && myParsedFiles.size() > 1) {
+        myCachedTextLength -= iterator.next().myTextLength;
+        iterator.remove();
+      }
+    }
+  }
+
+  private void removeIf(@NotNull Predicate<VirtualFile> predicate) {
+    synchronized (myParsedFiles) {
+      Iterator<Map.Entry<VirtualFile, ParsedFile>> iterator = myParsedFiles.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<VirtualFile, ParsedFile> entry = iterator.next();
+        if (predicate.test(entry.getKey())) {
+          myCachedTextLength -= entry.getValue().myTextLength;
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  @TestOnly
+  boolean isCached(@NotNull VirtualFile file) {
+    synchronized (myParsedFiles) {
+      return myParsedFiles.containsKey(file);
+    }
+  }
+
+  /**
+   * @return how many times the tree of a file was not found in the cache and had to be parsed, or at least looked up again.
+   */
+  @TestOnly
+  int getParseCount() {
+    return myParseCount.get();
+  }
+
+  @Override
+  public void dispose() {
+    removeIf(file -> true);
+  }
+
+  private static final class ParsedFile {
+    @NotNull private final PsiFile myPsiFile;
+    // Strongly references the syntax tree, which is otherwise only softly reachable from the file.
+    @SuppressWarnings({"unused", "FieldCanBeLocal"}) @Nullable private final ASTNode myTree;
+    private final long myStamp;
+    private final int myTextLength;
+
+    private ParsedFile(@NotNull PsiFile psiFile, @Nullable ASTNode tree, long stamp, int textLength) {
+      myPsiFile = psiFile;
+      myTree = tree;
+      myStamp = stamp;
+      myTextLength = textLength;
+    }
+  }
+}
@@ -52,6 +52,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -232,6 +233,9 @@ public final class BuildModelContext {
 
   @Nullable
   public GradleBuildFile initializeContext(@NotNull Project project, @Nullable VirtualFile file) {
+    // The root build file and the settings file are independent of each other, parse their PSI concurrently.
+    BuildFilePsiCache.getInstance(project).parse(Arrays.asList(file, getProjectSettingsFile()));
+
     // First parse the main project build file.
     GradleBuildFile result = file != null ? new GradleBuildFile(file, project, ":", this) : null;
     if (result != null) {
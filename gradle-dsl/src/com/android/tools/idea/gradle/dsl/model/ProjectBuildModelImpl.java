@@ -30,7 +30,9 @@ import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -175,18 +177,25 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     Set<String> modulePaths = settingsModel.modulePaths();
     Integer nModelsToConsider = nModelsSeen[0] + modulePaths.size();
 
-    allModels.addAll(modulePaths.stream().map((modulePath) -> {
-      GradleBuildModel model = null;
+    Map<String, VirtualFile> moduleBuildFiles = new LinkedHashMap<>();
+    for (String modulePath : modulePaths) {
       // This should have already been added above
       if (!modulePath.equals(":")) {
         File moduleDir = settingsModel.moduleDirectory(modulePath);
         if (moduleDir != null) {
-          VirtualFile file = myBuildModelContext.getGradleBuildFile(moduleDir);
-          if (file != null) {
-            model = getModuleBuildModel(file);
-          }
+          moduleBuildFiles.put(modulePath, myBuildModelContext.getGradleBuildFile(moduleDir));
         }
       }
+    }
+    // The Dsl trees of the modules are built one by one below, but their PSI can be parsed up front, concurrently.
+    BuildFilePsiCache.getInstance(myBuildModelContext.getProject()).parse(moduleBuildFiles.values());
+
+    allModels.addAll(modulePaths.stream().map((modulePath) -> {
+      GradleBuildModel model = null;
+      VirtualFile file = moduleBuildFiles.get(modulePath);
+      if (file != null) {
+        model = getModuleBuildModel(file);
+      }
       func.accept(++nModelsSeen[0], nModelsToConsider);
       return model;
     }).filter(Objects::nonNull).collect(Collectors.toList()));
@@ -31,7 +31,10 @@ import com.android.tools.idea.gradle.dsl.parser.files.GradlePropertiesFile
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile
 import com.android.tools.idea.gradle.dsl.parser.files.GradleVersionCatalogFile
 import com.android.tools.idea.gradle.dsl.parser.semantics.AndroidGradlePluginVersion
+import com.intellij.openapi.application.runReadAction
+import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiManager
 import junit.framework.Assert
 import org.hamcrest.CoreMatchers.hasItems
 import org.hamcrest.MatcherAssert.assertThat
@@ -378,6 +381,55 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     assertEquals(listOf(1 to null, 2 to null, 3 to 4, 4 to 4), args)
   }
 
+  @Test
+  fun testGetAllIncludedBuildModelsCachesParsedFiles() {
+    writeToBuildFile("")
+    writeToSubModuleBuildFile("")
+    writeToNewSubModule("a", "", "")
+    writeToSettingsFile(subModuleSettingsText + getSubModuleSettingsText("a"))
+
+    projectBuildModel.getAllIncludedBuildModels()
+
+    val cache = BuildFilePsiCache.getInstance(project)
+    assertTrue(cache.isCached(myBuildFile))
+    assertTrue(cache.isCached(mySettingsFile))
+    assertTrue(cache.isCached(mySubModuleBuildFile))
+
+    // A new model reuses the cached trees instead of parsing the files again, and produces the same result.
+    val parseCount = cache.parseCount
+    val tree = runReadAction { PsiManager.getInstance(project).findFile(mySubModuleBuildFile)!!.node }
+    assertSize(4, projectBuildModel.getAllIncludedBuildModels())
+    assertEquals(parseCount, cache.parseCount)
+    assertSame(tree, runReadAction { PsiManager.getInstance(project).findFile(mySubModuleBuildFile)!!.node })
+
+    // Deleted files are dropped from the cache.
+    runWriteAction<Unit, IOException> { mySubModuleBuildFile.delete(this) }
+    assertFalse(cache.isCached(mySubModuleBuildFile))
+    assertTrue(cache.isCached(myBuildFile))
+  }
+
+  @Test
+  fun testBuildFilePsiCacheDropsLeastRecentlyUsedFilesOverTextLength() {
+    writeToBuildFile("ext.a = 1")
+    writeToSubModuleBuildFile("ext.b = 2")
+
+    val cache = BuildFilePsiCache(project, 15)
+    try {
+      cache.parse(listOf(myBuildFile))
+      cache.parse(listOf(myBuildFile))
+      assertEquals(1, cache.parseCount)
+      assertTrue(cache.isCached(myBuildFile))
+
+      cache.parse(listOf(mySubModuleBuildFile))
+      assertEquals(2, cache.parseCount)
+      assertFalse(cache.isCached(myBuildFile))
+      assertTrue(cache.isCached(mySubModuleBuildFile))
+    }
+    finally {
+      Disposer.dispose(cache)
+    }
+  }
+
   @Test
   fun testGetContext() {
     val pbm = projectBuildModel
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.benchmarks
+
+import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.res.ResourceFolderRegistry
+import com.android.tools.idea.testing.AndroidProjectRule
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.openapi.vfs.VirtualFile
+import java.nio.file.Files
+import org.jetbrains.android.facet.AndroidFacet
+import org.jetbrains.android.facet.ResourceFolderManager
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+
+private const val NUM_VALUES_FOLDERS = 20
+private const val NUM_VALUES_FILES_PER_FOLDER = 100
+private const val NUM_STRINGS_PER_FILE = 20
+private const val NUM_LAYOUT_FILES = 2000
+
+/**
+ * Measures loading a resource folder with thousands of resource files without a persistent cache,
+ * with and without parallel parsing.
+ */
+class ResourceFolderRepositoryLoadingBenchmark {
+  @get:Rule val projectRule = AndroidProjectRule.withSdk().initAndroid(true)
+
+  private lateinit var facet: AndroidFacet
+  private lateinit var resourceDir: VirtualFile
+
+  companion object {
+    // Note: metadata for this benchmark is uploaded by IdeBenchmarkTestSuite.
+    val benchmark =
+      Benchmark.Builder("ResourceFolderRepository cold load")
+        .setDescription(
+          "Time to load a resource folder with $NUM_LAYOUT_FILES layouts and " +
+            "${NUM_VALUES_FOLDERS * NUM_VALUES_FILES_PER_FOLDER} values files without a cache."
+        )
+        .setProject(EDITOR_PERFGATE_PROJECT_NAME)
+        .build()
+  }
+
+  @Before
+  fun setUp() {
+    projectRule.fixture.addFileToProject("res/empty", "")
+    facet = AndroidFacet.getInstance(projectRule.module)!!
+    resourceDir = ResourceFolderManager.getInstance(facet).folders.single()
+    generateResources(resourceDir)
+    disableExpensivePlatformAssertions(projectRule.fixture)
+  }
+
+  private fun generateResources(resourceDir: VirtualFile) {
+    val resPath = resourceDir.toNioPath()
+    for (folder in 0 until NUM_VALUES_FOLDERS) {
+      val valuesDir = resPath.resolve(if (folder == 0) "values" else "values-b+x$folder")
+      Files.createDirectories(valuesDir)
+      for (file in 0 until NUM_VALUES_FILES_PER_FOLDER) {
+        val strings =
+          (0 until NUM_STRINGS_PER_FILE).joinToString("\n") {
+            """  <string name="string_${file}_$it">String $it of file $file</string>"""
+          }
+        Files.writeString(
+          valuesDir.resolve("strings$file.xml"),
+          "<resources>\n$strings\n</resources>\n",
+        )
+      }
+    }
+    val layoutDir = resPath.resolve("layout")
+    Files.createDirectories(layoutDir)
+    for (file in 0 until NUM_LAYOUT_FILES) {
+      Files.writeString(
+        layoutDir.resolve("layout$file.xml"),
+        """
+          <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android"
+              android:layout_width="match_parent"
+              android:layout_height="match_parent">
+            <TextView android:id="@+id/text$file"
+                android:layout_width="wrap_content"
+                android:layout_height="wrap_content" />
+            <Button android:id="@+id/button$file"
+                android:layout_width="wrap_content"
+                android:layout_height="wrap_content" />
+          </LinearLayout>
+        """
+          .trimIndent(),
+      )
+    }
+    VfsUtil.markDirtyAndRefresh(false, true, true, resourceDir)
+  }
+
+  private fun measureColdLoad(parallel: Boolean): List<Metric.MetricSample> {
+    val registry = ResourceFolderRegistry.getInstance(projectRule.project)
+    StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.override(parallel)
+    try {
+      return measureTimeMs(
+        warmupIterations = 3,
+        mainIterations = 10,
+        setUp = {
+          registry.reset(facet)
+          System.gc()
+        },
+        action = {
+          val repository = registry[facet, resourceDir]
+          assertThat(repository.allResources).isNotEmpty()
+        },
+      )
+    } finally {
+      StudioFlags.RESOURCE_REPOSITORY_PARALLEL_LOADING.clearOverride()
+    }
+  }
+
+  private fun commit(metricName: String, samples: List<Metric.MetricSample>) {
+    val samplesStr = samples.joinToString(prefix = "[", postfix = "]") { it.sampleData.toString() }
+    println("$metricName: $samplesStr")
+    val metric = Metric(metricName)
+    metric.addSamples(benchmark, *samples.toTypedArray())
+    metric.commit()
+  }
+
+  @Test
+  fun coldLoad() {
+    commit("cold_load_serial", measureColdLoad(parallel = false))
+    commit("cold_load_parallel", measureColdLoad(parallel = true))
+  }
+}
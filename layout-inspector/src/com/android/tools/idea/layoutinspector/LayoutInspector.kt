@@ -156,9 +156,20 @@ private constructor(
 
   init {
     // refresh the rendering each time the inspector model changes
-    inspectorModel.addModificationListener { _, newAndroidWindow, _ ->
+    inspectorModel.addModificationListener { _, newAndroidWindow, structuralChange ->
       coroutineScope.launch {
-        newAndroidWindow?.refreshImages(renderLogic.renderSettings.scaleFraction)
+        val scale = renderLogic.renderSettings.scaleFraction
+        if (
+          newAndroidWindow != null &&
+            !structuralChange &&
+            newAndroidWindow.canSkipImageRefresh(scale)
+        ) {
+          // Nothing affecting the layers changed (e.g. only recomposition counts were updated):
+          // keep the existing images and levels.
+          renderModel.refreshUnchangedLayers()
+          return@launch
+        }
+        newAndroidWindow?.refreshImages(scale)
         renderModel.refresh()
       }
     }
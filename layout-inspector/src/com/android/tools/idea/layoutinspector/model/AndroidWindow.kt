@@ -16,6 +16,7 @@
 package com.android.tools.idea.layoutinspector.model
 
 import com.android.tools.idea.layoutinspector.view.inspection.LayoutInspectorViewProtocol
+import java.awt.Rectangle
 import java.awt.Shape
 
 /**
@@ -58,6 +59,23 @@ abstract class AndroidWindow(val root: ViewNode, val id: Any, imageType: ImageTy
 
   open val deviceClip: Shape? = null
 
+  /**
+   * The area (in device coordinates) covered by the nodes that changed in the last
+   * [InspectorModel.update] of this window. An empty rectangle means no node changed in a way that
+   * affects rendering (e.g. only recomposition counts were updated). `null` means the whole window
+   * should be considered changed, e.g. for a new window or after a structural change.
+   *
+   * Rendering doesn't do partial updates: the region is only checked for emptiness, to skip the
+   * refresh of the images and layers altogether (see [canSkipImageRefresh]).
+   */
+  @Volatile var dirtyRegion: Rectangle? = null
+
+  /**
+   * Returns true if calling [refreshImages] with [scale] would produce the same images as the
+   * previous call, so the existing draw children can be kept as they are.
+   */
+  open fun canSkipImageRefresh(scale: Double): Boolean = false
+
   open fun copyFrom(other: AndroidWindow) {
     if (other.imageType == ImageType.SKP_PENDING && imageType == ImageType.SKP) {
       // we already have an skp merged in, don't go back to pending when we get a new one
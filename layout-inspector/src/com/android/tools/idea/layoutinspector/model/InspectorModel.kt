@@ -25,6 +25,8 @@ import com.android.tools.idea.util.ListenerCollection
 import com.google.wireless.android.sdk.stats.DynamicLayoutInspectorErrorInfo
 import com.intellij.openapi.project.Project
 import java.awt.Dimension
+import java.awt.Rectangle
+import java.awt.Shape
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors.newSingleThreadExecutor
 import java.util.concurrent.ScheduledExecutorService
@@ -342,6 +344,7 @@ class InspectorModel(
             oldWindow.copyFrom(newWindow)
             val updater = Updater(oldWindow.root, newWindow.root, this)
             structuralChange = updater.update() || structuralChange
+            oldWindow.dirtyRegion = if (structuralChange) null else updater.dirtyRegion
           }
         }
 
@@ -447,6 +450,8 @@ class InspectorModel(
   }
 
   fun notifyModified(structuralChange: Boolean = false) {
+    // The caller may have changed anything, e.g. which nodes are hidden.
+    windows.values.forEach { it.dirtyRegion = null }
     if (windows.isEmpty())
       modificationListeners.forEach { it.onModification(null, null, structuralChange) }
     else
@@ -508,6 +513,13 @@ class InspectorModel(
         oldRoot.flatten().filter { it.drawId != 0L }.associateByTo(mutableMapOf()) { it.drawId }
       }
 
+    /**
+     * The area covered by nodes whose bounds or properties changed, or `null` if the change can't
+     * be described by a region. Only meaningful if [update] didn't report a structural change.
+     */
+    var dirtyRegion: Rectangle? = Rectangle()
+      private set
+
     fun update(): Boolean {
       return access.run {
         val modified = update(oldRoot, oldRoot.parent, newRoot)
@@ -516,6 +528,27 @@ class InspectorModel(
       }
     }
 
+    private fun addDirty(shape: Shape) {
+      val region = dirtyRegion ?: return
+      val bounds = shape.bounds
+      when {
+        // A change to an empty node may still affect its children, e.g. through its flags.
+        bounds.isEmpty -> dirtyRegion = null
+        region.isEmpty -> region.bounds = bounds
+        else -> region.add(bounds)
+      }
+    }
+
+    private fun ViewNode.WriteAccess.hasRenderingChanges(oldNode: ViewNode, newNode: ViewNode) =
+      oldNode.layoutBounds != newNode.layoutBounds ||
+        oldNode.renderBounds != newNode.renderBounds ||
+        oldNode.qualifiedName != newNode.qualifiedName ||
+        oldNode.layout != newNode.layout ||
+        oldNode.layoutFlags != newNode.layoutFlags ||
+        (oldNode is ComposeViewNode &&
+          newNode is ComposeViewNode &&
+          oldNode.composeFlags != newNode.composeFlags)
+
     /**
      * Called when the view has changed on the device. All the information from the [newNode] is
      * copied into the [oldNode].
@@ -526,6 +559,10 @@ class InspectorModel(
       newNode: ViewNode,
     ): Boolean {
       var modified = (parent != oldNode.parent) || !sameChildren(oldNode, newNode)
+      if (hasRenderingChanges(oldNode, newNode)) {
+        addDirty(oldNode.renderBounds)
+        addDirty(newNode.renderBounds)
+      }
       // TODO: should changes below cause modified to be set to true?
       // Maybe each view should have its own modification listener that can listen for such changes?
       oldNode.layoutBounds = newNode.layoutBounds
@@ -69,6 +69,12 @@ class ViewAndroidWindow(
   private var screenshotBytes =
     if (event.hasScreenshot()) event.screenshot.bytes.toByteArray() else null
 
+  /** The inputs of the last successful [refreshImages], used by [canSkipImageRefresh]. */
+  @Volatile private var lastRefresh: RefreshInputs? = null
+
+  /** The last decoded bitmap, so that an unchanged screenshot isn't inflated again. */
+  @Volatile private var lastBitmap: Pair<ByteArray, BufferedImage>? = null
+
   override val deviceClip =
     if (folderConfiguration.screenRoundQualifier?.value == ScreenRound.ROUND) {
       val width = folderConfiguration.screenWidthQualifier?.value
@@ -86,16 +92,32 @@ class ViewAndroidWindow(
     }
   }
 
+  override fun canSkipImageRefresh(scale: Double): Boolean {
+    val last = lastRefresh ?: return false
+    return dirtyRegion?.isEmpty == true &&
+      last.scale == scale &&
+      last.imageType == imageType &&
+      (last.bytes === screenshotBytes || last.bytes.contentEquals(screenshotBytes))
+  }
+
   override suspend fun refreshImages(scale: Double) {
+    lastRefresh = null
     try {
       val immutableScreenshotBytes = screenshotBytes
+      val refreshImageType = imageType
       if (immutableScreenshotBytes == null) {
         createDrawChildren(null)
       } else {
         if (immutableScreenshotBytes.isNotEmpty()) {
           when (imageType) {
             ImageType.BITMAP_AS_REQUESTED -> {
-              val bufferedImage = processBitmap(immutableScreenshotBytes)
+              val bufferedImage =
+                lastBitmap
+                  ?.takeIf { it.first.contentEquals(immutableScreenshotBytes) }
+                  ?.second
+                  ?: processBitmap(immutableScreenshotBytes).also {
+                    lastBitmap = Pair(immutableScreenshotBytes, it)
+                  }
               createDrawChildren(bufferedImage)
               logEvent(DynamicLayoutInspectorEventType.INITIAL_RENDER_BITMAPS)
             }
@@ -108,6 +130,7 @@ class ViewAndroidWindow(
           }
         }
       }
+      lastRefresh = RefreshInputs(immutableScreenshotBytes, scale, refreshImageType)
     } catch (ex: Exception) {
       // TODO: it seems like grpc can run out of memory landing us here. We should check for that.
       Logger.getInstance(LayoutInspector::class.java).warn(ex)
@@ -229,3 +252,9 @@ class ViewAndroidWindow(
     return inspectorView
   }
 }
+
+private class RefreshInputs(
+  val bytes: ByteArray?,
+  val scale: Double,
+  val imageType: AndroidWindow.ImageType,
+)
@@ -48,6 +48,57 @@ data class ViewDrawInfo(
 
 private data class LevelListItem(val node: DrawViewNode, val isCollapsed: Boolean)
 
+/**
+ * The levels the nodes are placed in for rendering, together with a [SpatialIndex] of the already
+ * placed nodes, so that finding the highest level a node overlaps with doesn't require checking
+ * every node placed so far.
+ */
+private class LevelLists(area: Rectangle) {
+  val levels = mutableListOf<MutableList<LevelListItem>>()
+  private val index = SpatialIndex.forArea<Pair<Int, DrawViewNode>>(area)
+
+  val size: Int
+    get() = levels.size
+
+  fun getOrNull(level: Int): List<LevelListItem>? = levels.getOrNull(level)
+
+  /**
+   * Returns the index of the list at [level], adding a new level at the end if [level] doesn't
+   * exist yet.
+   */
+  fun getOrAddLevel(level: Int): Int {
+    if (level < levels.size) {
+      return level
+    }
+    levels.add(mutableListOf())
+    return levels.size - 1
+  }
+
+  fun add(level: Int, item: LevelListItem) {
+    val actualLevel = getOrAddLevel(level)
+    levels[actualLevel].add(item)
+    index.add(item.node.bounds.bounds, Pair(actualLevel, item.node))
+  }
+
+  /**
+   * Find the highest level at or above [minLevel] with a node that overlaps [node], relative to
+   * [minLevel]. Returns -1 if there is no such level.
+   */
+  fun highestOverlappingLevel(
+    node: DrawViewNode,
+    minLevel: Int,
+    overlap: (DrawViewNode) -> Boolean,
+  ): Int {
+    var highest = -1
+    index.forEachCandidate(node.bounds.bounds) { (level, existing) ->
+      if (level >= minLevel && level - minLevel > highest && overlap(existing)) {
+        highest = level - minLevel
+      }
+    }
+    return highest
+  }
+}
+
 /** Class defining what is being rendered by [RenderLogic]. */
 class RenderModel(
   val model: InspectorModel,
@@ -87,7 +138,18 @@ class RenderModel(
   val isRotated
     get() = xOff != 0.0 || yOff != 0.0
 
-  @VisibleForTesting var hitRects = listOf<ViewDrawInfo>()
+  @VisibleForTesting
+  var hitRects = listOf<ViewDrawInfo>()
+    private set(value) {
+      field = value
+      hitIndex = createHitIndex(value)
+    }
+
+  /** Index of [hitRects] by their bounds, rebuilt whenever [hitRects] changes. */
+  private var hitIndex = SpatialIndex<ViewDrawInfo>(1)
+
+  /** The area covered by the model, used to size the [SpatialIndex]es used in [refresh]. */
+  private var indexArea = Rectangle()
 
   val modificationListeners = mutableListOf<() -> Unit>()
 
@@ -149,7 +211,8 @@ class RenderModel(
     findDrawInfoAt(x, y).mapNotNull { it.node.findFilteredOwner(treeSettings) }.distinct()
 
   fun findDrawInfoAt(x: Double, y: Double): Sequence<ViewDrawInfo> =
-    hitRects
+    hitIndex
+      .candidatesAt(x, y)
       .asReversed()
       .asSequence()
       .filter { it.bounds.contains(x, y) }
@@ -175,11 +238,18 @@ class RenderModel(
     }
     val root = model.root
 
-    val levelLists = mutableListOf<MutableList<LevelListItem>>()
     // Each window should start completely above the previous window, hence level = levelLists.size
-    ViewNode.readAccess {
-      root.drawChildren.forEach { buildLevelLists(sequenceOf(it), levelLists, levelLists.size) }
-    }
+    val levelLists =
+      ViewNode.readAccess {
+        indexArea =
+          root
+            .flatten()
+            .map { it.renderBounds.bounds }
+            .reduceOrNull { acc, bounds -> acc.apply { add(bounds) } } ?: Rectangle()
+        val levelLists = LevelLists(indexArea)
+        root.drawChildren.forEach { buildLevelLists(sequenceOf(it), levelLists, levelLists.size) }
+        levelLists
+      }
     maxDepth = levelLists.size
 
     val newHitRects = mutableListOf<ViewDrawInfo>()
@@ -208,10 +278,7 @@ class RenderModel(
             .reduceOrNull { acc, bounds -> acc.apply { add(bounds) } } ?: Rectangle()
       }
 
-      root.layoutBounds.x = rootBounds.x
-      root.layoutBounds.y = rootBounds.y
-      root.layoutBounds.width = rootBounds.width
-      root.layoutBounds.height = rootBounds.height
+      applyRootBounds()
 
       // Don't allow rotation to completely edge-on, since some rendering can have problems in that
       // situation. See issue 158452416.
@@ -224,11 +291,33 @@ class RenderModel(
     } else {
       visibleBounds = Rectangle()
     }
-    rebuildRectsForLevel(transform, magnitude, angle, levelLists, newHitRects)
+    rebuildRectsForLevel(transform, magnitude, angle, levelLists.levels, newHitRects)
     hitRects = newHitRects.toList()
     modificationListeners.forEach { it() }
   }
 
+  /**
+   * Called instead of [refresh] after a model update that didn't change any nodes or images (see
+   * [com.android.tools.idea.layoutinspector.model.AndroidWindow.canSkipImageRefresh]). The
+   * existing levels and [hitRects] are kept, only the root bounds reset by the update are restored.
+   */
+  fun refreshUnchangedLayers() {
+    if (model.isEmpty || maxDepth == 0) {
+      refresh()
+      return
+    }
+    applyRootBounds()
+    modificationListeners.forEach { it() }
+  }
+
+  private fun applyRootBounds() {
+    val root = model.root
+    root.layoutBounds.x = rootBounds.x
+    root.layoutBounds.y = rootBounds.y
+    root.layoutBounds.width = rootBounds.width
+    root.layoutBounds.height = rootBounds.height
+  }
+
   /**
    * Figure out in what layer of the rendering the given set of sibling [nodes] should be placed.
    * The nodes will be placed in the level that is:
@@ -241,7 +330,7 @@ class RenderModel(
    */
   private fun ViewNode.ReadAccess.buildLevelLists(
     nodes: Sequence<DrawViewNode>,
-    levelListCollector: MutableList<MutableList<LevelListItem>>,
+    levelListCollector: LevelLists,
     minLevel: Int,
   ) {
 
@@ -258,6 +347,7 @@ class RenderModel(
     // A, B, C, D, E, where B can merge with the parent, C overlaps A and D overlaps C, the result
     // would be [[B], [A, E], [C], [D]].
     val siblingGroups = mutableListOf(mutableListOf<DrawViewNode>())
+    val siblingIndex = SpatialIndex.forArea<Pair<Int, DrawViewNode>>(indexArea)
 
     for (node in nodes) {
       // first check whether this node overlaps with any already-placed sibling nodes.
@@ -269,14 +359,16 @@ class RenderModel(
       // since this node and a previous sibling
       // can't be drawn at the same level if the previous sibling's children will be drawn before
       // this node.
-      val reversedIndex =
-        siblingGroups.reversed().indexOfFirst {
-          it.any { sibling -> sibling.intersects(node, true) }
+      var highestGroup = -1
+      siblingIndex.forEachCandidate(node.bounds.bounds) { (group, sibling) ->
+        if (group > highestGroup && sibling.intersects(node, true)) {
+          highestGroup = group
         }
+      }
       val siblingListIndex =
-        if (reversedIndex == -1) if (node.canCollapse(treeSettings)) 0 else 1
-        else siblingGroups.size - reversedIndex
+        if (highestGroup == -1) if (node.canCollapse(treeSettings)) 0 else 1 else highestGroup + 1
       siblingGroups.getOrAddSublist(siblingListIndex).add(node)
+      siblingIndex.add(node.unfilteredOwner.transitiveBounds, Pair(siblingListIndex, node))
     }
 
     // Add the collapsible nodes first, one at a time, since they don't need to be at the same level
@@ -288,11 +380,7 @@ class RenderModel(
         continue
       }
       val newLevelIndex =
-        if (levelListCollector.isEmpty()) -1
-        else
-          levelListCollector.subList(minLevel, levelListCollector.size).indexOfLast { levelList ->
-            levelList.any { (existing, _) -> existing.intersects(node) }
-          }
+        levelListCollector.highestOverlappingLevel(node, minLevel) { it.intersects(node) }
 
       // Check if this node actually collapses into the parent
       if (
@@ -302,14 +390,12 @@ class RenderModel(
           } == true) || (newLevelIndex == -1 && node.findFilteredOwner(treeSettings) == null))
       ) {
         if (node.drawWhenCollapsed) {
-          levelListCollector.getOrAddSublist(minLevel).add(LevelListItem(node, true))
+          levelListCollector.add(minLevel, LevelListItem(node, true))
         }
         buildLevelLists(node.children(this), levelListCollector, minLevel)
       } else {
         // Otherwise, add to the next available level
-        levelListCollector
-          .getOrAddSublist(newLevelIndex + minLevel + 1)
-          .add(LevelListItem(node, false))
+        levelListCollector.add(newLevelIndex + minLevel + 1, LevelListItem(node, false))
         buildLevelLists(node.children(this), levelListCollector, newLevelIndex + minLevel + 1)
       }
     }
@@ -322,12 +408,11 @@ class RenderModel(
         }
       // Find the lowest level that this level can sit on the existing nodes and add them there
       val newLevelIndex =
-        levelListCollector.subList(minLevel, levelListCollector.size).indexOfLast { levelList ->
-          levelList.any { (existing, _) -> filteredGroup.any { existing.intersects(it) } }
-        } + minLevel + 1
-      filteredGroup.mapTo(levelListCollector.getOrAddSublist(newLevelIndex)) {
-        LevelListItem(it, false)
-      }
+        (filteredGroup.maxOfOrNull { node ->
+          levelListCollector.highestOverlappingLevel(node, minLevel) { it.intersects(node) }
+        } ?: -1) + minLevel + 1
+      val actualLevelIndex = levelListCollector.getOrAddLevel(newLevelIndex)
+      filteredGroup.forEach { levelListCollector.add(actualLevelIndex, LevelListItem(it, false)) }
 
       // recurse on each set of children (including for hidden nodes)
       for (sibling in siblingGroup) {
@@ -348,6 +433,15 @@ class RenderModel(
   private fun DrawViewNode.intersects(other: DrawViewNode, useTransitiveBounds: Boolean = false) =
     (if (useTransitiveBounds) unfilteredOwner.transitiveBounds else bounds).overlap(other.bounds)
 
+  private fun createHitIndex(drawInfos: List<ViewDrawInfo>): SpatialIndex<ViewDrawInfo> {
+    // Grow the bounds a little, since the bounds of a transformed shape are rounded.
+    val bounds = drawInfos.map { it.bounds.bounds.apply { grow(1, 1) } }
+    val area = Rectangle(bounds.firstOrNull() ?: Rectangle()).apply { bounds.forEach { add(it) } }
+    val index = SpatialIndex.forArea<ViewDrawInfo>(area)
+    drawInfos.forEachIndexed { i, drawInfo -> index.add(bounds[i], drawInfo) }
+    return index
+  }
+
   @TestOnly fun testOverlap(shape1: Shape, shape2: Shape): Boolean = shape1.overlap(shape2)
 
   // Most shapes are simply Rectangles. For Rectangles use Rectangle#overlap, which is a lot  faster
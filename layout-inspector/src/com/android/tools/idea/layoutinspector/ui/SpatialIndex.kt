@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.layoutinspector.ui
+
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import java.awt.Rectangle
+import kotlin.math.floor
+
+/** Items covering more than this many cells are not put in the grid but checked on every query. */
+private const val MAX_CELLS_PER_ITEM = 64
+
+/** The number of cells along the longest side of the indexed area. */
+private const val CELLS_PER_SIDE = 64
+
+/**
+ * A uniform grid index over the bounding rectangles of a set of items.
+ *
+ * The index only filters by bounding rectangle: callers must still do an exact hit or overlap test
+ * on the candidates returned. Candidates are always reported in insertion order, so the index can
+ * be used as a drop-in replacement for a linear scan over a list.
+ *
+ * Items that would cover a large number of cells (e.g. the root view of a window) are kept in a
+ * separate list that is checked on every query.
+ */
+internal class SpatialIndex<T>(private val cellSize: Int) {
+  private val items = mutableListOf<T>()
+  private val itemBounds = mutableListOf<Rectangle>()
+  private val cells = Long2ObjectOpenHashMap<IntArrayList>()
+  private val oversized = IntArrayList()
+
+  val size: Int
+    get() = items.size
+
+  fun add(bounds: Rectangle, item: T) {
+    val index = items.size
+    items.add(item)
+    itemBounds.add(bounds)
+    if (bounds.isEmpty) {
+      // Still checked, since zero sized shapes may be transformed into something visible.
+      oversized.add(index)
+      return
+    }
+    val minX = cell(bounds.x)
+    val minY = cell(bounds.y)
+    val maxX = cell(bounds.x + bounds.width - 1)
+    val maxY = cell(bounds.y + bounds.height - 1)
+    if ((maxX - minX + 1).toLong() * (maxY - minY + 1) > MAX_CELLS_PER_ITEM) {
+      oversized.add(index)
+      return
+    }
+    for (x in minX..maxX) {
+      for (y in minY..maxY) {
+        cells.computeIfAbsent(key(x, y)) { IntArrayList() }.add(index)
+      }
+    }
+  }
+
+  /** Returns the items whose bounds may contain the point ([x], [y]), in insertion order. */
+  fun candidatesAt(x: Double, y: Double): List<T> {
+    val cell = cells.get(key(cell(x), cell(y)))
+    val result = mutableListOf<T>()
+    mergeSorted(cell, oversized) { result.add(items[it]) }
+    return result
+  }
+
+  /**
+   * Calls [action] for each item whose bounds intersect [area], in insertion order. Each item is
+   * reported once.
+   */
+  fun forEachCandidate(area: Rectangle, action: (T) -> Unit) {
+    if (area.isEmpty) {
+      forEachCandidateSlow(area, action)
+      return
+    }
+    val minX = cell(area.x)
+    val minY = cell(area.y)
+    val maxX = cell(area.x + area.width - 1)
+    val maxY = cell(area.y + area.height - 1)
+    if ((maxX - minX + 1).toLong() * (maxY - minY + 1) > MAX_CELLS_PER_ITEM) {
+      forEachCandidateSlow(area, action)
+      return
+    }
+    val found = IntArrayList()
+    for (x in minX..maxX) {
+      for (y in minY..maxY) {
+        cells.get(key(x, y))?.let { found.addAll(it) }
+      }
+    }
+    found.addAll(oversized)
+    found.sort(null)
+    var last = -1
+    for (i in 0 until found.size) {
+      val index = found.getInt(i)
+      if (index != last && itemBounds[index].intersectsOrEmpty(area)) {
+        action(items[index])
+      }
+      last = index
+    }
+  }
+
+  private fun forEachCandidateSlow(area: Rectangle, action: (T) -> Unit) {
+    for (index in items.indices) {
+      if (itemBounds[index].intersectsOrEmpty(area)) {
+        action(items[index])
+      }
+    }
+  }
+
+  /**
+   * Empty rectangles are always considered candidates, the caller decides whether they really
+   * overlap.
+   */
+  private fun Rectangle.intersectsOrEmpty(other: Rectangle) =
+    isEmpty ||
+      other.isEmpty ||
+      (x < other.x + other.width &&
+        other.x < x + width &&
+        y < other.y + other.height &&
+        other.y < y + height)
+
+  private inline fun mergeSorted(first: IntArrayList?, second: IntArrayList, action: (Int) -> Unit) {
+    var i = 0
+    var j = 0
+    val firstSize = first?.size ?: 0
+    while (i < firstSize || j < second.size) {
+      val a = if (i < firstSize) first!!.getInt(i) else Int.MAX_VALUE
+      val b = if (j < second.size) second.getInt(j) else Int.MAX_VALUE
+      if (a <= b) {
+        action(a)
+        i++
+        if (a == b) j++
+      } else {
+        action(b)
+        j++
+      }
+    }
+  }
+
+  private fun cell(value: Int): Int = Math.floorDiv(value, cellSize)
+
+  private fun cell(value: Double): Int = Math.floorDiv(floor(value).toLong(), cellSize.toLong()).toInt()
+
+  private fun key(x: Int, y: Int): Long = (x.toLong() shl 32) or (y.toLong() and 0xffffffffL)
+
+  companion object {
+    /** Creates an index with a cell size suitable for items spread over [area]. */
+    fun <T> forArea(area: Rectangle): SpatialIndex<T> =
+      SpatialIndex(maxOf(1, maxOf(area.width, area.height) / CELLS_PER_SIDE))
+  }
+}
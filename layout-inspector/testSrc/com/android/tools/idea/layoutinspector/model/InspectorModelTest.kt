@@ -35,6 +35,7 @@ import com.google.common.util.concurrent.MoreExecutors
 import com.google.wireless.android.sdk.stats.DynamicLayoutInspectorErrorInfo
 import com.intellij.testFramework.ApplicationRule
 import com.intellij.testFramework.DisposableRule
+import java.awt.Rectangle
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 import kotlin.test.fail
@@ -98,6 +99,55 @@ class InspectorModelTest {
     assertSingleRoot(model, FakeTreeSettings())
   }
 
+  @Test
+  fun testDirtyRegion() {
+    val model =
+      model(disposable) {
+        view(ROOT, 0, 0, 100, 100, qualifiedName = "rootType") {
+          view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type")
+          view(VIEW2, 50, 50, 50, 50, qualifiedName = "v2Type")
+        }
+      }
+
+    model.update(
+      window(ROOT, ROOT, 0, 0, 100, 100, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type")
+        view(VIEW2, 60, 60, 40, 40, qualifiedName = "v2Type")
+      },
+      listOf(ROOT),
+      0,
+    )
+    assertThat(model.windows[ROOT]?.dirtyRegion).isEqualTo(Rectangle(50, 50, 50, 50))
+
+    // No changes
+    model.update(
+      window(ROOT, ROOT, 0, 0, 100, 100, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type")
+        view(VIEW2, 60, 60, 40, 40, qualifiedName = "v2Type")
+      },
+      listOf(ROOT),
+      0,
+    )
+    assertThat(model.windows[ROOT]?.dirtyRegion?.isEmpty).isTrue()
+
+    // Structural change
+    model.update(
+      window(ROOT, ROOT, 0, 0, 100, 100, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type") {
+          view(VIEW3, 10, 10, 10, 10, qualifiedName = "v3Type")
+        }
+        view(VIEW2, 60, 60, 40, 40, qualifiedName = "v2Type")
+      },
+      listOf(ROOT),
+      0,
+    )
+    assertThat(model.windows[ROOT]?.dirtyRegion).isNull()
+
+    model.windows[ROOT]?.dirtyRegion = Rectangle()
+    model.notifyModified()
+    assertThat(model.windows[ROOT]?.dirtyRegion).isNull()
+  }
+
   @Test
   fun testChildCreated() {
     val image1 = TestUtils.resolveWorkspacePathUnchecked("${TEST_DATA_PATH}/image1.png").readImage()
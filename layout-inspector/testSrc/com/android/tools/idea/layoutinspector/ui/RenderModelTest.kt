@@ -214,6 +214,41 @@ class RenderModelTest {
       .containsExactly(VIEW3, VIEW2, VIEW1, ROOT)
   }
 
+  @Test
+  fun testFindDrawInfoAtLargeHierarchy() {
+    val model =
+      model(disposable) {
+        view(ROOT, 0, 0, 1000, 2000) {
+          for (row in 0 until 40) {
+            for (column in 0 until 20) {
+              val id = 100L + 2 * (row * 20 + column)
+              view(id, column * 50, row * 50, 60, 60) {
+                view(id + 1, column * 50 + 5, row * 50 + 5, 20, 20)
+              }
+            }
+          }
+        }
+      }
+    val panelModel = RenderModel(model, mock(), FakeTreeSettings()) { DisconnectedClient }
+
+    for (rotation in listOf(0.0, 0.3)) {
+      panelModel.rotate(rotation, rotation / 2)
+      for (x in -10..1010 step 37) {
+        for (y in -10..2010 step 43) {
+          val expected =
+            panelModel.hitRects
+              .asReversed()
+              .filter { it.bounds.contains(x.toDouble(), y.toDouble()) }
+              .sortedByDescending { it.hitLevel }
+              .distinct()
+          assertThat(panelModel.findDrawInfoAt(x.toDouble(), y.toDouble()).toList())
+            .containsExactlyElementsIn(expected)
+            .inOrder()
+        }
+      }
+    }
+  }
+
   @Test
   fun testAllNodesInvisible() {
     val model =
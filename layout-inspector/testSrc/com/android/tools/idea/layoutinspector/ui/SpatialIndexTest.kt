@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.layoutinspector.ui
+
+import com.google.common.truth.Truth.assertThat
+import java.awt.Rectangle
+import kotlin.random.Random
+import org.junit.Test
+
+class SpatialIndexTest {
+
+  @Test
+  fun testCandidatesAtPoint() {
+    val index = SpatialIndex<String>(10)
+    index.add(Rectangle(0, 0, 5, 5), "a")
+    index.add(Rectangle(20, 20, 5, 5), "b")
+    index.add(Rectangle(0, 0, 1000, 1000), "big")
+    index.add(Rectangle(2, 2, 5, 5), "c")
+
+    assertThat(index.candidatesAt(3.0, 3.0)).containsExactly("a", "big", "c").inOrder()
+    assertThat(index.candidatesAt(22.0, 22.0)).containsExactly("b", "big").inOrder()
+    assertThat(index.candidatesAt(500.0, 500.0)).containsExactly("big")
+    assertThat(index.candidatesAt(-500.0, -500.0)).isEmpty()
+  }
+
+  @Test
+  fun testForEachCandidate() {
+    val index = SpatialIndex<String>(10)
+    index.add(Rectangle(0, 0, 30, 30), "a")
+    index.add(Rectangle(40, 40, 10, 10), "b")
+    index.add(Rectangle(25, 25, 20, 20), "c")
+
+    assertThat(collect(index, Rectangle(28, 28, 5, 5))).containsExactly("a", "c").inOrder()
+    assertThat(collect(index, Rectangle(45, 45, 1, 1))).containsExactly("b")
+    assertThat(collect(index, Rectangle(30, 0, 10, 10))).isEmpty()
+    assertThat(collect(index, Rectangle(-100, -100, 1000, 1000)))
+      .containsExactly("a", "b", "c")
+      .inOrder()
+  }
+
+  @Test
+  fun testEmptyBoundsAreAlwaysCandidates() {
+    val index = SpatialIndex<String>(10)
+    index.add(Rectangle(100, 100, 0, 0), "empty")
+
+    assertThat(index.candidatesAt(0.0, 0.0)).containsExactly("empty")
+    assertThat(collect(index, Rectangle(0, 0, 1, 1))).containsExactly("empty")
+  }
+
+  @Test
+  fun testMatchesLinearScan() {
+    val random = Random(42)
+    val rects = (0 until 5000).map { random.nextRectangle(maxSize = 300) }
+    val index = SpatialIndex.forArea<Int>(Rectangle(-100, -100, 2400, 3400))
+    rects.forEachIndexed { i, rect -> index.add(rect, i) }
+
+    repeat(200) {
+      val query = random.nextRectangle(maxSize = 500)
+      assertThat(collect(index, query))
+        .containsExactlyElementsIn(rects.indices.filter { rects[it].intersects(query) })
+        .inOrder()
+
+      val x = query.x + 0.5
+      val y = query.y + 0.5
+      assertThat(index.candidatesAt(x, y).filter { rects[it].contains(x, y) })
+        .containsExactlyElementsIn(rects.indices.filter { rects[it].contains(x, y) })
+        .inOrder()
+    }
+  }
+
+  private fun <T> collect(index: SpatialIndex<T>, area: Rectangle): List<T> {
+    val result = mutableListOf<T>()
+    index.forEachCandidate(area) { result.add(it) }
+    return result
+  }
+}
+
+private fun Random.nextRectangle(maxSize: Int) =
+  Rectangle(nextInt(-100, 2000), nextInt(-100, 3000), nextInt(1, maxSize), nextInt(1, maxSize))
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.perfetto.traceprocessor
+
+import com.android.tools.profilers.CappedLRUMap
+import com.intellij.openapi.util.SystemInfo
+
+/**
+ * [NameDemangler] that remembers the names demangled by [delegate], so that names repeated across frames and captures are only demangled
+ * once. Each call forwards the distinct names that are not cached yet to [delegate] in a single batch.
+ *
+ * All the frames with the same name are given the same demangled string instance. Only names that [delegate] actually changed are cached,
+ * so that names it failed to demangle, e.g. because c++filt is missing, timed out or stopped answering, are submitted again next time.
+ */
+class CachingNameDemangler @JvmOverloads constructor(private val delegate: NameDemangler,
+                                                     maxCachedNames: Int = DEFAULT_MAX_CACHED_NAMES) : NameDemangler {
+  private val demangledNames = CappedLRUMap<String, String>(maxCachedNames)
+
+  override fun demangleInplace(stackFrames: Collection<NameHolder>) {
+    val framesByName = stackFrames.groupBy { it.name }
+    val namesToDemangle = mutableListOf<PendingName>()
+    synchronized(demangledNames) {
+      for ((name, frames) in framesByName) {
+        val demangledName = demangledNames[name]
+        if (demangledName == null) {
+          namesToDemangle.add(PendingName(name))
+        }
+        else {
+          frames.forEach { it.name = demangledName }
+        }
+      }
+    }
+    if (namesToDemangle.isEmpty()) {
+      return
+    }
+
+    delegate.demangleInplace(namesToDemangle)
+    synchronized(demangledNames) {
+      namesToDemangle.filter { it.name != it.mangledName }.forEach { demangledNames[it.mangledName] = it.name }
+    }
+    for (pendingName in namesToDemangle) {
+      framesByName.getValue(pendingName.mangledName).forEach { it.name = pendingName.name }
+    }
+  }
+
+  private class PendingName(val mangledName: String) : NameHolder {
+    override var name = mangledName
+  }
+
+  companion object {
+    const val DEFAULT_MAX_CACHED_NAMES = 100_000
+
+    /**
+     * Demangler shared by all the captures, so that the names of a capture do not need to be demangled again when a similar capture is
+     * loaded. Names are only demangled on Windows, so the cache is only used there.
+     */
+    @JvmStatic
+    val SHARED_INSTANCE: NameDemangler =
+      if (SystemInfo.isWindows) CachingNameDemangler(WindowsNameDemangler()) else WindowsNameDemangler()
+  }
+}
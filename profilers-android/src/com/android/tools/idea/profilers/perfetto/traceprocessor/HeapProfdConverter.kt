@@ -33,6 +33,11 @@ class HeapProfdConverter(private val memorySet: NativeMemoryHeapSet, private val
     private val UNKNOWN_FRAME = Memory.AllocationStack.StackFrame.newBuilder().setMethodName("unknown").build()
   }
 
+  // Module, file and method names are repeated across many frames, so each distinct string is only kept once.
+  private val internedStrings = HashMap<String, String>()
+
+  private fun intern(string: String) = internedStrings.putIfAbsent(string, string) ?: string
+
   /**
    * Given a {@link Memory.StackFrame} this method converts it to a StackFrameInfo using the provided name.
    * When we have a symbolized frame we return a frame with a method name in the form of
@@ -42,8 +47,8 @@ class HeapProfdConverter(private val memorySet: NativeMemoryHeapSet, private val
   private fun toStackFrameInfo(rawFrame: StackFrame): StackFrameInfo {
     val base64 = Base64.getDecoder()
 
-    val module = base64.decode(rawFrame.module).toString(Charsets.UTF_8)
-    val file = if (rawFrame.lineNumber > 0) base64.decode(rawFrame.sourceFile).toString(Charsets.UTF_8) else ""
+    val module = intern(base64.decode(rawFrame.module).toString(Charsets.UTF_8))
+    val file = if (rawFrame.lineNumber > 0) intern(base64.decode(rawFrame.sourceFile).toString(Charsets.UTF_8)) else ""
     val name = base64.decode(rawFrame.name).toString(Charsets.UTF_8)
 
     // If there is a file name (source file), then we will have a line number.
@@ -81,13 +86,14 @@ class HeapProfdConverter(private val memorySet: NativeMemoryHeapSet, private val
       frames[next.key] = next.value.map {
         Memory.AllocationStack.StackFrame.newBuilder()
           .setModuleName(it.moduleName)
-          .setMethodName(it.name)
+          .setMethodName(intern(it.name))
           .setFileName(it.fileName)
           .setLineNumber(it.lineNumber)
           .build()
       }
       it.remove() //Remove to reduce temp space required.
     }
+    internedStrings.clear()
     val pointerMap = context.pointersMap
     context.allocationsList.forEach { allocation ->
       // Some callstacks are recursive. Instead of having a fixed callstack length we track what site ids we have visited.
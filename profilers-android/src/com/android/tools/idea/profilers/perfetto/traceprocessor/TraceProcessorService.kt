@@ -205,7 +205,7 @@ class TraceProcessorServiceImpl(
                               abi: String,
                               memorySet: NativeMemoryHeapSet,
                               ideProfilerServices: IdeProfilerServices) {
-    val converter = HeapProfdConverter(memorySet, WindowsNameDemangler())
+    val converter = HeapProfdConverter(memorySet, CachingNameDemangler.SHARED_INSTANCE)
     handleRequest(traceId, ideProfilerServices, FeatureTracker::trackTraceProcessorMemoryData,
                   RequestBuilder({ memoryRequest = Memory.AllocationDataRequest.getDefaultInstance() },
                                  { converter.populateHeapSet(it.memoryEvents)}))
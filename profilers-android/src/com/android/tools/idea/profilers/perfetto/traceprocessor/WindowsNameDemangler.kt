@@ -26,6 +26,7 @@ import java.io.InputStreamReader
 import java.io.OutputStreamWriter
 import java.nio.file.Paths
 import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 /**
  * Class that calls out to the C++Filt tool to demangle itanium names on windows.
@@ -58,31 +59,40 @@ class WindowsNameDemangler(val timeoutMsc: Long = 5000) : NameDemangler {
       // Currently only windows needs an outside process to demangle names, mac/linux are done inside the daemon.
       return
     }
+    // Only submit names that start with _Z. Other names are invalid. Each distinct name is only submitted once.
+    val framesByName = stackFrames.filter { it.name.startsWith("_Z") }.groupBy { it.name }
+    if (framesByName.isEmpty()) {
+      return
+    }
     val holder = start()
     holder ?: return
 
-    val duplicatesMap = HashMap<String, String>()
-    for (frame in stackFrames) {
-      try {
-        if (duplicatesMap.containsKey(frame.name)) {
-          frame.name = duplicatesMap[frame.name]!!
-          continue
-        }
-        // Only submit names that start with _Z. Other names are invalid.
-        if (frame.name.startsWith("_Z")) {
-          holder.stdin.write(frame.name + "\n")
+    try {
+      val names = framesByName.keys.toList()
+      // Submit all the names at once from another thread while the responses are read, instead of waiting for the response of each name
+      // before submitting the next one. Reading concurrently makes sure neither process blocks on a full pipe.
+      val writer = thread(isDaemon = true, name = "C++ filt writer") {
+        try {
+          names.forEach { holder.stdin.write(it + "\n") }
           holder.stdin.flush()
-          val response = holder.stdout.readLine() ?: frame.name
-          duplicatesMap[frame.name] = response
-          frame.name = response
-
+          holder.stdin.close()
+        }
+        catch (ex: IOException) {
+          getLogger().warn(ex)
         }
       }
-      catch (ex: Exception) {
-        getLogger().error(ex)
+      for (name in names) {
+        val response = holder.stdout.readLine() ?: break
+        framesByName.getValue(name).forEach { it.name = response }
       }
+      writer.join(timeoutMsc)
+    }
+    catch (ex: Exception) {
+      getLogger().error(ex)
+    }
+    finally {
+      holder.dispose()
     }
-    holder.dispose()
   }
 
   private fun start() : ProcessHolder? {
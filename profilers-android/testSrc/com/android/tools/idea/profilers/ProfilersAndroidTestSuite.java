@@ -16,12 +16,16 @@
 package com.android.tools.idea.profilers;
 
 import com.android.testutils.JarTestSuiteRunner;
+import com.android.tools.idea.profilers.performance.ArtTraceHandlerBenchmarkTest;
 import com.android.tools.idea.profilers.performance.CaptureDetailsTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerAtraceCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerEmptyCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerPerfettoCaptureTest;
+import com.android.tools.idea.profilers.performance.HeapDumpRetainedSizeBenchmarkTest;
+import com.android.tools.idea.profilers.performance.HeapProfdConverterBenchmarkTest;
 import com.android.tools.idea.profilers.performance.MemoryClassifierViewFindSuperSetNodeTest;
 import com.android.tools.idea.profilers.performance.MemoryProfilerHeapDumpTest;
+import com.android.tools.idea.profilers.performance.SimpleperfTraceParserBenchmarkTest;
 import com.android.tools.idea.profilers.performance.TraceProcessorDaemonBenchmarkTest;
 import com.android.tools.tests.IdeaTestSuiteBase;
 import org.junit.runner.RunWith;
@@ -32,11 +36,15 @@ import org.junit.runner.RunWith;
   // Benchmark performance tests should not be part of this suite, because they will be run on their own test rule
   // See intellij.android.profilersAndroid.performance in profilers-android/BUILD
   PerformanceTestSuite.class,
+  ArtTraceHandlerBenchmarkTest.class,
   CpuProfilerAtraceCaptureTest.class,
   CpuProfilerEmptyCaptureTest.class,
   CpuProfilerPerfettoCaptureTest.class,
+  HeapDumpRetainedSizeBenchmarkTest.class,
+  HeapProfdConverterBenchmarkTest.class,
   MemoryProfilerHeapDumpTest.class, // b/152344964
   MemoryClassifierViewFindSuperSetNodeTest.class,
+  SimpleperfTraceParserBenchmarkTest.class,
   TraceProcessorDaemonBenchmarkTest.class,
   CaptureDetailsTest.class,
 })
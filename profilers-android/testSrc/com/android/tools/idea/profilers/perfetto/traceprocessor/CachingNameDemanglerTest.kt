@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.perfetto.traceprocessor
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class CachingNameDemanglerTest {
+  private val delegate = CountingNameDemangler()
+
+  @Test
+  fun distinctNamesAreDemangledInOneBatch() {
+    val demangler = CachingNameDemangler(delegate)
+    val frames = listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv"), StackFrameInfo("_Z1av"))
+
+    demangler.demangleInplace(frames)
+    assertThat(frames.map { it.name }).containsExactly("demangled _Z1av", "demangled _Z1bv", "demangled _Z1av").inOrder()
+    assertThat(delegate.batches).containsExactly(listOf("_Z1av", "_Z1bv"))
+    // Frames with the same name share the demangled string.
+    assertThat(frames[0].name).isSameAs(frames[2].name)
+  }
+
+  @Test
+  fun cachedNamesAreNotDemangledAgain() {
+    val demangler = CachingNameDemangler(delegate)
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1av")))
+    val frames = listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv"))
+
+    demangler.demangleInplace(frames)
+    assertThat(frames.map { it.name }).containsExactly("demangled _Z1av", "demangled _Z1bv").inOrder()
+    assertThat(delegate.batches).containsExactly(listOf("_Z1av"), listOf("_Z1bv")).inOrder()
+
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv")))
+    assertThat(delegate.batches).hasSize(2)
+  }
+
+  @Test
+  fun leastRecentlyUsedNamesAreEvicted() {
+    val demangler = CachingNameDemangler(delegate, 2)
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv")))
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1av")))
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1cv")))
+
+    demangler.demangleInplace(listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv")))
+    assertThat(delegate.batches).containsExactly(listOf("_Z1av", "_Z1bv"), listOf("_Z1cv"), listOf("_Z1bv")).inOrder()
+  }
+
+  @Test
+  fun namesLeftUnchangedAreNotCached() {
+    val demangler = CachingNameDemangler(delegate)
+    // The delegate fails to demangle the second name, as when c++filt stops answering.
+    delegate.namesToDemangle = 1
+    val frames = listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv"))
+
+    demangler.demangleInplace(frames)
+    assertThat(frames.map { it.name }).containsExactly("demangled _Z1av", "_Z1bv").inOrder()
+
+    delegate.namesToDemangle = Int.MAX_VALUE
+    val retriedFrames = listOf(StackFrameInfo("_Z1av"), StackFrameInfo("_Z1bv"))
+    demangler.demangleInplace(retriedFrames)
+    assertThat(retriedFrames.map { it.name }).containsExactly("demangled _Z1av", "demangled _Z1bv").inOrder()
+    assertThat(delegate.batches).containsExactly(listOf("_Z1av", "_Z1bv"), listOf("_Z1bv")).inOrder()
+  }
+
+  private class CountingNameDemangler : NameDemangler {
+    val batches = mutableListOf<List<String>>()
+    var namesToDemangle = Int.MAX_VALUE
+
+    override fun demangleInplace(stackFrames: Collection<NameHolder>) {
+      batches.add(stackFrames.map { it.name })
+      stackFrames.take(namesToDemangle).forEach { it.name = "demangled ${it.name}" }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.perflib.vmtrace.TraceAction
+import com.android.tools.profilers.cpu.art.ArtTraceHandler
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+/**
+ * Measures how long it takes to build the call trees of a large instrumented trace. The events are
+ * fed directly to [ArtTraceHandler], so the benchmark does not depend on a multi-hundred MB trace
+ * file being checked in.
+ */
+class ArtTraceHandlerBenchmarkTest {
+  private val benchmark = benchmarkMemoryAndTime("ART Trace Parsing", "Build-Call-Trees", memUnit = MemoryUnit.MB)
+
+  @Test
+  fun benchmarkLargeTrace() {
+    val threadCount = 16
+    val callsPerThread = 500_000
+    val handler = ArtTraceHandler()
+    (1..threadCount).forEach { handler.addThread(it, "Thread $it") }
+
+    // Interleave the threads like a real trace. Each thread repeatedly enters 4 nested methods.
+    var time = 0
+    repeat(callsPerThread / 4) {
+      (1..threadCount).forEach { thread ->
+        (0 until 4).forEach { depth -> handler.addMethodAction(thread, depth.toLong(), TraceAction.METHOD_ENTER, time, time++) }
+        (3 downTo 0).forEach { depth -> handler.addMethodAction(thread, depth.toLong(), TraceAction.METHOD_EXIT, time, time++) }
+      }
+    }
+
+    val threadsGraph = benchmark("$threadCount threads, $callsPerThread calls each") { handler.threadsGraph }
+    assertThat(threadsGraph).hasSize(threadCount)
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.test.testutils.TestUtils.resolveWorkspacePath
+import com.android.tools.perflib.heap.Instance
+import com.android.tools.perflib.heap.Snapshot
+import com.android.tools.perflib.heap.io.InMemoryBuffer
+import com.android.tools.profilers.memory.adapters.HeapGraph
+import com.android.tools.proguard.ProguardMap
+import com.google.common.truth.Truth.assertThat
+import gnu.trove.TObjectProcedure
+import org.junit.Test
+
+/**
+ * Compares computing the retained sizes of the instances of a heap dump with perflib, which is how they used to be computed, and with
+ * the semi-NCA dominator tree over primitive adjacency arrays that the memory profiler now computes in the background.
+ */
+class HeapDumpRetainedSizeBenchmarkTest {
+  private val benchmark = benchmarkMemoryAndTime("Heap Dump Retained Sizes", "Compute-Retained-Sizes")
+
+  @Test
+  fun `measure perflib retained sizes of github heap dump`() {
+    val snapshot = loadSnapshot("github")
+    benchmark("github, perflib") { snapshot.computeRetainedSizes() }
+  }
+
+  @Test
+  fun `measure dominator tree retained sizes of github heap dump`() {
+    measureDominatorTree("github")
+  }
+
+  @Test
+  fun `measure perflib retained sizes of sunflower heap dump`() {
+    val snapshot = loadSnapshot("sunflower")
+    benchmark("sunflower, perflib") { snapshot.computeRetainedSizes() }
+  }
+
+  @Test
+  fun `measure dominator tree retained sizes of sunflower heap dump`() {
+    measureDominatorTree("sunflower")
+  }
+
+  private fun measureDominatorTree(name: String) {
+    val snapshot = loadSnapshot(name)
+    val instances = ArrayList<Instance>()
+    snapshot.heaps.forEach { heap ->
+      instances.addAll(heap.classes)
+      heap.forEachInstance(TObjectProcedure { instances.add(it) })
+    }
+    val retainedSizes = benchmark("$name, dominator tree") {
+      HeapGraph.of(instances, snapshot.gcRoots).computeDominatorTree()
+        .computeRetainedSizes(LongArray(instances.size) { instances[it].size.toLong() })
+    }
+    assertThat(retainedSizes.any { it > 0 }).isTrue()
+  }
+
+  private fun loadSnapshot(name: String): Snapshot {
+    val file = resolveWorkspacePath("tools/adt/idea/profilers/testData/hprofs/performance/$name.hprof").toFile()
+    return Snapshot.createSnapshot(InMemoryBuffer(file.readBytes()), ProguardMap(), emptyList())
+  }
+}
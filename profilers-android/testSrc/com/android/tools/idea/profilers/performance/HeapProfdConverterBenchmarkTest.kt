@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.idea.profilers.perfetto.traceprocessor.CachingNameDemangler
+import com.android.tools.idea.profilers.perfetto.traceprocessor.HeapProfdConverter
+import com.android.tools.idea.profilers.perfetto.traceprocessor.NameDemangler
+import com.android.tools.idea.profilers.perfetto.traceprocessor.NameHolder
+import com.android.tools.profiler.perfetto.proto.Memory
+import com.android.tools.profilers.memory.adapters.FakeCaptureObject
+import com.android.tools.profilers.memory.adapters.classifiers.NativeMemoryHeapSet
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.Base64
+
+/**
+ * Measures how long it takes to convert a large heapprofd capture, the first time its names are demangled and when they are already
+ * cached. The capture is generated, so the benchmark does not depend on a large capture being checked in.
+ */
+class HeapProfdConverterBenchmarkTest {
+  private val benchmark = benchmarkMemoryAndTime("HeapProfd Conversion", "Populate-Heap-Set", memUnit = MemoryUnit.MB)
+
+  @Test
+  fun benchmarkLargeCapture() {
+    val frameCount = 50_000
+    val allocationCount = 500_000
+    val context = buildContext(frameCount, allocationCount)
+    val demangler = CachingNameDemangler(ItaniumPrefixStrippingDemangler())
+
+    val coldHeapSet = benchmark("$frameCount frames, $allocationCount allocations, cold cache") { convert(context, demangler) }
+    val warmHeapSet = benchmark("$frameCount frames, $allocationCount allocations, warm cache") { convert(context, demangler) }
+    assertThat(coldHeapSet.instancesCount).isEqualTo(warmHeapSet.instancesCount)
+  }
+
+  private fun convert(context: Memory.NativeAllocationContext, demangler: NameDemangler) =
+    NativeMemoryHeapSet(FakeCaptureObject.Builder().build()).also { HeapProfdConverter(it, demangler).populateHeapSet(context) }
+
+  /**
+   * Builds a capture where 10 frames share each distinct name and 1000 frames share each module, and where each allocation has a call
+   * stack of up to 16 frames.
+   */
+  private fun buildContext(frameCount: Int, allocationCount: Int): Memory.NativeAllocationContext {
+    val base64 = Base64.getEncoder()
+    val context = Memory.NativeAllocationContext.newBuilder()
+    for (id in 1L..frameCount) {
+      val distinctName = id / 10
+      context.addFrames(Memory.StackFrame.newBuilder()
+                          .setId(id)
+                          .setName(base64.encodeToString("_ZN7example5Class${distinctName}Function${distinctName}Ev".toByteArray()))
+                          .setModule(base64.encodeToString("/data/app/libexample${id / 1000}.so".toByteArray()))
+                          .setSourceFile(base64.encodeToString("example${id / 100}.cpp".toByteArray()))
+                          .setLineNumber((distinctName % 100).toInt() + 1))
+      // Each frame is called from the previous one, except for the first frame of each group of 16.
+      context.putPointers(id, Memory.StackPointer.newBuilder().setFrameId(id).setParentId(if (id % 16 == 1L) 0 else id - 1).build())
+    }
+    repeat(allocationCount) {
+      context.addAllocations(Memory.Allocation.newBuilder()
+                               .setTimestamp(it.toLong())
+                               .setCount(if (it % 4 == 3) -1 else 1)
+                               .setSize(if (it % 4 == 3) -16 else 16)
+                               .setStackId(it % frameCount + 1L))
+    }
+    return context.build()
+  }
+
+  /**
+   * Stands in for the out of process demangler, which is only available on Windows.
+   */
+  private class ItaniumPrefixStrippingDemangler : NameDemangler {
+    override fun demangleInplace(stackFrames: Collection<NameHolder>) {
+      stackFrames.filter { it.name.startsWith("_Z") }.forEach { it.name = it.name.substring(2).replace("E", "::") + "()" }
+    }
+  }
+}
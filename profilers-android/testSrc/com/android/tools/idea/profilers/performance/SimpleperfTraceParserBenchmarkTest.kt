@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.profiler.proto.SimpleperfReport
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Measures how long it takes to parse a large simpleperf trace, with and without decoding the
+ * records and building the call trees concurrently. The trace is generated, so the benchmark does
+ * not depend on a multi-hundred MB trace file being checked in.
+ */
+class SimpleperfTraceParserBenchmarkTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private val benchmark = benchmarkMemoryAndTime("Simpleperf Trace Parsing", "Parse-Trace", memUnit = MemoryUnit.MB)
+
+  @Test
+  fun benchmarkLargeTraceInParallel() {
+    benchmarkLargeTrace("parallel", true)
+  }
+
+  @Test
+  fun benchmarkLargeTraceSequentially() {
+    benchmarkLargeTrace("sequential", false)
+  }
+
+  private fun benchmarkLargeTrace(mode: String, isParallel: Boolean) {
+    val threadCount = 16
+    val samplesPerThread = 100_000
+    val trace = writeTrace(threadCount, samplesPerThread)
+
+    val capture = benchmark("$threadCount threads, $samplesPerThread samples each, $mode") {
+      SimpleperfTraceParser(isParallel).parse(trace, 1)
+    }
+    assertThat(capture.threads).hasSize(threadCount)
+  }
+
+  /**
+   * Writes a trace where the threads are interleaved like in a real trace. Each sample has a call
+   * chain of 4 to 7 frames, so that consecutive samples of a thread share some of their frames.
+   */
+  private fun writeTrace(threadCount: Int, samplesPerThread: Int): File {
+    val trace = temporaryFolder.newFile("simpleperf.trace")
+    BufferedOutputStream(trace.outputStream()).use { stream ->
+      stream.write("SIMPLEPERF".toByteArray())
+      stream.write(ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN).putShort(1).array())
+
+      val metaInfo = SimpleperfReport.MetaInfo.newBuilder().addEventType("cpu-clock").setAppPackageName("com.example.app")
+      stream.writeRecord(SimpleperfReport.Record.newBuilder().setMetaInfo(metaInfo).build())
+      val file = SimpleperfReport.File.newBuilder().setId(0).setPath("/data/app/com.example.app/lib/libexample.so")
+      (0 until SYMBOL_COUNT).forEach { file.addSymbol("example::Function$it()") }
+      stream.writeRecord(SimpleperfReport.Record.newBuilder().setFile(file).build())
+      (1..threadCount).forEach {
+        val thread = SimpleperfReport.Thread.newBuilder().setThreadId(it).setProcessId(1).setThreadName("Thread $it")
+        stream.writeRecord(SimpleperfReport.Record.newBuilder().setThread(thread).build())
+      }
+
+      var time = 0L
+      repeat(samplesPerThread) { sampleIndex ->
+        (1..threadCount).forEach { threadId ->
+          val sample = SimpleperfReport.Sample.newBuilder().setTime(time++).setThreadId(threadId).setEventCount(1)
+          // The call chain is stored from the innermost frame to the outermost one.
+          (3 + sampleIndex % 4 downTo 0).forEach { depth ->
+            val symbolId = (depth * 7 + (sampleIndex / 8) * depth) % SYMBOL_COUNT
+            sample.addCallchain(
+              SimpleperfReport.Sample.CallChainEntry.newBuilder().setFileId(0).setSymbolId(symbolId).setVaddrInFile(symbolId * 16L))
+          }
+          stream.writeRecord(SimpleperfReport.Record.newBuilder().setSample(sample).build())
+        }
+      }
+
+      val lost = SimpleperfReport.LostSituation.newBuilder().setSampleCount(threadCount.toLong() * samplesPerThread)
+      stream.writeRecord(SimpleperfReport.Record.newBuilder().setLost(lost).build())
+      // 0 indicates the end of the trace.
+      stream.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0).array())
+    }
+    return trace
+  }
+
+  private fun OutputStream.writeRecord(record: SimpleperfReport.Record) {
+    write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(record.serializedSize).array())
+    record.writeTo(this)
+  }
+
+  companion object {
+    private const val SYMBOL_COUNT = 256
+  }
+}
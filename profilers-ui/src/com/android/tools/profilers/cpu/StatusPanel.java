@@ -128,8 +128,11 @@ public class StatusPanel extends JComponent {
 
   @NotNull
   private String getDurationText() {
-    return TimeFormatter
+    String duration = TimeFormatter
       .getMultiUnitDurationString(TimeUnit.NANOSECONDS.toMicros((long)myModel.getRange().getLength()));
+    // The duration is refreshed as the operation goes on, so the progress is shown along with it when the model reports one.
+    double progress = myModel.getProgress();
+    return progress < 0 ? duration : String.format("%s (%d%%)", duration, (int)(Math.min(progress, 1) * 100));
   }
 
   private JButton createAbortButton(@NotNull String abortText) {
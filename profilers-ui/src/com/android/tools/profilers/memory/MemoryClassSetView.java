@@ -53,6 +53,7 @@ import icons.StudioIcons;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.util.ArrayList;
@@ -67,8 +68,10 @@ import javax.swing.Icon;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JTree;
+import javax.swing.JViewport;
 import javax.swing.SortOrder;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeExpansionListener;
 import javax.swing.tree.DefaultTreeModel;
@@ -313,6 +316,33 @@ public final class MemoryClassSetView extends AspectObserver {
     builder.setShowHeaderTooltips(true);
     myColumnTree = builder.build();
     myInstancesPanel.add(myColumnTree, BorderLayout.CENTER);
+
+    // Decode the previews of the bitmaps as they are scrolled into view, so that they are ready by the time they are selected.
+    JViewport viewport = (JViewport)SwingUtilities.getAncestorOfClass(JViewport.class, myTree);
+    if (viewport != null) {
+      viewport.addChangeListener(e -> preDecodeVisibleBitmaps());
+    }
+  }
+
+  private void preDecodeVisibleBitmaps() {
+    if (myTree == null || myTree.getRowCount() == 0) {
+      return;
+    }
+
+    Rectangle visibleRect = myTree.getVisibleRect();
+    int firstRow = myTree.getClosestRowForLocation(visibleRect.x, visibleRect.y);
+    int lastRow = myTree.getClosestRowForLocation(visibleRect.x, visibleRect.y + visibleRect.height);
+    List<InstanceObject> visibleInstances = new ArrayList<>();
+    for (int row = firstRow; row <= lastRow; row++) {
+      TreePath path = myTree.getPathForRow(row);
+      if (path != null && path.getLastPathComponent() instanceof MemoryObjectTreeNode) {
+        MemoryObject memoryObject = ((MemoryObjectTreeNode<?>)path.getLastPathComponent()).getAdapter();
+        if (memoryObject instanceof InstanceObject) {
+          visibleInstances.add((InstanceObject)memoryObject);
+        }
+      }
+    }
+    mySelection.getBitmapPreviews().preDecodeAsync(visibleInstances, mySelection.getIdeServices().getPoolExecutor(), () -> {});
   }
 
   private void installTreeContextMenus() {
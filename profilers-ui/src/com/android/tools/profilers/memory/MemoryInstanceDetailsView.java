@@ -148,7 +148,7 @@ public final class MemoryInstanceDetailsView extends AspectObserver {
     myPanel.add(titleWrapper, BorderLayout.NORTH);
     myPanel.setBorder(BorderFactory.createMatteBorder(0, 1, 0, 0, DEFAULT_BORDER_COLOR));
 
-    myInstanceViewers.add(new BitmapViewer());
+    myInstanceViewers.add(new BitmapViewer(mySelection.getBitmapPreviews()));
 
     myGCRootCheckBox.addItemListener(e -> {
       instanceChanged();
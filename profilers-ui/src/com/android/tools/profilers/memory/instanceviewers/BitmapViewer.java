@@ -19,8 +19,7 @@ import static javax.swing.ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED;
 import static javax.swing.ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED;
 
 import com.android.tools.profilers.IdeProfilerComponents;
-import com.android.tools.profilers.memory.adapters.AndroidBitmapDataProvider;
-import com.android.tools.profilers.memory.adapters.BitmapDecoder;
+import com.android.tools.profilers.memory.adapters.BitmapPreviewCache;
 import com.android.tools.profilers.memory.adapters.CaptureObject;
 import com.android.tools.profilers.memory.adapters.InstanceObject;
 import com.intellij.ui.components.JBScrollPane;
@@ -32,6 +31,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class BitmapViewer implements InstanceViewer {
+  @NotNull private final BitmapPreviewCache myPreviews;
+
+  public BitmapViewer(@NotNull BitmapPreviewCache previews) {
+    myPreviews = previews;
+  }
+
   @NotNull
   @Override
   public String getTitle() {
@@ -43,11 +48,7 @@ public class BitmapViewer implements InstanceViewer {
   public JComponent createComponent(@NotNull IdeProfilerComponents ideProfilerComponents,
                                     @NotNull CaptureObject captureObject,
                                     @NotNull InstanceObject instanceObject) {
-    AndroidBitmapDataProvider bitmapDataProvider = AndroidBitmapDataProvider.createDecoder(instanceObject);
-    if (bitmapDataProvider == null) {
-      return null;
-    }
-    BufferedImage image = BitmapDecoder.getBitmap(bitmapDataProvider);
+    BufferedImage image = myPreviews.getOrDecodePreview(instanceObject);
     if (image == null) {
       return null;
     }
@@ -47,6 +47,16 @@ class StatusPanelTest {
     val panel = StatusPanel(model, "Status", "Abort")
     model.testRange.max = TimeUnit.SECONDS.toNanos(8).toDouble()
     assertThat(panel.durationLabel.text).contains("8")
+    assertThat(panel.durationLabel.text).doesNotContain("%")
+  }
+
+  @Test
+  fun progressIsShownWithDuration() {
+    val model = TestStatusPanelModel()
+    val panel = StatusPanel(model, "Status", "Abort")
+    model.testProgress = 0.42
+    model.testRange.max = TimeUnit.SECONDS.toNanos(8).toDouble()
+    assertThat(panel.durationLabel.text).endsWith("(42%)")
   }
 
   private fun getAbortbutton(panel: StatusPanel) = TreeWalker(panel)
@@ -58,6 +68,7 @@ class StatusPanelTest {
 
 class TestStatusPanelModel : StatusPanelModel {
   var abortCalled = false
+  var testProgress = -1.0
   val testRange = Range(0.0, TimeUnit.SECONDS.toNanos(5).toDouble())
   override fun getConfigurationText(): String {
     return "Test"
@@ -71,4 +82,8 @@ class TestStatusPanelModel : StatusPanelModel {
     abortCalled = true
   }
 
+  override fun getProgress(): Double {
+    return testProgress
+  }
+
 }
\ No newline at end of file
@@ -76,6 +76,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -84,6 +85,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -225,6 +228,21 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   private long myRefreshDevicesAndPreferredProcessName;
 
+  /**
+   * The latest devices and processes queried on the pool executor, waiting to be applied on the next update.
+   */
+  private final AtomicReference<DeviceProcessSnapshot> myPendingDeviceProcessSnapshot = new AtomicReference<>();
+
+  /**
+   * Whether devices and processes are being queried, so that a slow transport does not pile up queries.
+   */
+  private final AtomicBoolean myIsQueryingDevicesAndProcesses = new AtomicBoolean();
+
+  /**
+   * The error of the latest failed query of devices and processes, rethrown on the next update as if the query had run there.
+   */
+  private final AtomicReference<StatusRuntimeException> myDeviceProcessQueryError = new AtomicReference<>();
+
   private long myEventPollingInternvalNs;
 
   private final Map<Common.SessionMetaData.SessionType, Runnable> mySessionChangeListener;
@@ -372,6 +390,8 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     // The rest of the Studio code runs on its own updater and assumes all UI-related code (e.g. Aspect) be handled via the updating
     // thread. Using the ScheduleExecutorService would violate that assumption and cause concurrency issues.
     myTransportPoller = new TransportEventPoller(myClient.getTransportClient(), Comparator.comparing(Common.Event::getTimestamp));
+    // Only query the listeners that may have new events on each tick, instead of issuing one query per listener.
+    myTransportPoller.subscribe();
 
     myUpdater.register(this);
   }
@@ -395,6 +415,7 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     // inconsistency worse if we call these lines again.
     setProcess(null, null);
     changed(ProfilerAspect.STAGE);
+    myTransportPoller.unsubscribe();
     // Shutdown the gRPC channel after changing the aspect because some operations triggered by the aspect depends on the channel.
     myClient.shutdownChannel();
   }
@@ -493,10 +514,6 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     return myAutoProfilingEnabled;
   }
 
-  private List<Common.Device> getUpToDateDevices() {
-    return getUpToDateDevices(myClient, myDeviceToStreamIds, myStreamIdToStreams);
-  }
-
   /**
    * Returns a up-to-date list of devices including disconnected ones.
    * This method works under either new or old data pipeline.
@@ -607,52 +624,17 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     try {
       readMainToolbarDeviceSelection();
 
-      Map<Common.Device, List<Common.Process>> newProcesses = new HashMap<>();
-      List<Common.Device> devices = getUpToDateDevices();
-      startProfileableDiscoveryIfApplicable(myProcesses.keySet(), devices);
-
-      for (Common.Device device : devices) {
-        List<Common.Process> processList = StreamQueryUtils.queryForProcesses(
-          myClient.getTransportClient(),
-          myDeviceToStreamIds.get(device),
-          (Boolean isProcessAlive, Common.Process process) -> {
-            int lastProcessId = myProcess == null ? 0 : myProcess.getPid();
-            return (isProcessAlive || process.getPid() == lastProcessId) &&
-                   (process.getExposureLevel().equals(Common.Process.ExposureLevel.DEBUGGABLE) ||
-                    process.getExposureLevel().equals(Common.Process.ExposureLevel.PROFILEABLE));
-          }
-        );
-        newProcesses.put(device, processList);
+      // Querying devices and processes blocks on the transport, so it is done on the pool executor and its result is only applied here
+      // once it is available, usually on the next update.
+      queryDevicesAndProcessesAsync();
+      // Skip the rest of the update on a failed query, as it used to be when the query threw here.
+      StatusRuntimeException queryError = myDeviceProcessQueryError.getAndSet(null);
+      if (queryError != null) {
+        throw queryError;
       }
-
-      if (!newProcesses.equals(myProcesses)) {
-        myProcesses = newProcesses;
-        // The following call to setProcess will start a session on profiler start and on process selection change, but Task-Based UX does
-        // not auto start a session on profiler start or on process change. Thus, we disable the call to setProcess if the Task-Based UX
-        // is enabled.
-        boolean isTaskBasedUXEnabled = getIdeServices().getFeatureConfig().isTaskBasedUxEnabled();
-        if (!isTaskBasedUXEnabled) {
-          setProcess(findPreferredDevice(), null);
-        }
-
-        if (isTaskBasedUXEnabled) {
-          TaskHomeTabModel.SelectionStateOnTaskEnter selectionStateOnTaskEnter = getTaskHomeTabModel().getSelectionStateOnTaskEnter();
-          if (selectionStateOnTaskEnter != null) {
-            boolean isProfilingFromProcessStart =
-            selectionStateOnTaskEnter.getProfilingProcessStartingPoint() == TaskHomeTabModel.ProfilingProcessStartingPoint.PROCESS_START;
-            ProfilerTaskType selectedTaskType = selectionStateOnTaskEnter.getSelectedStartupTaskType();
-            // The check for a non-null preferred device makes sure the preferred device is alive and detected. It is imperative for startup
-            // scenarios, although this condition may be true in non-startup scenarios too. It's worth noting that repeated calls to
-            // setProcess with the same parameters are harmless, as setProcess prevents starting a session/task with the same device and
-            // process combination when facilitating a startup task.
-            if (findPreferredDevice() != null && isProfilingFromProcessStart && selectedTaskType != ProfilerTaskType.UNSPECIFIED) {
-              setProcess(findPreferredDevice(), null, TaskTypeMappingUtils.convertTaskType(selectedTaskType), true);
-            }
-          }
-        }
-
-        // These need to be fired every time the process list changes so that the device/process dropdown always reflects the latest.
-        changed(ProfilerAspect.PROCESSES);
+      DeviceProcessSnapshot snapshot = myPendingDeviceProcessSnapshot.getAndSet(null);
+      if (snapshot != null) {
+        applyDeviceProcessSnapshot(snapshot);
       }
 
       mySessionsManager.update();
@@ -688,6 +670,85 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     }
   }
 
+  private void queryDevicesAndProcessesAsync() {
+    if (!myIsQueryingDevicesAndProcesses.compareAndSet(false, true)) {
+      return;
+    }
+    int lastProcessId = myProcess == null ? 0 : myProcess.getPid();
+    getIdeServices().getPoolExecutor().execute(() -> {
+      try {
+        myPendingDeviceProcessSnapshot.set(queryDevicesAndProcesses(lastProcessId));
+      }
+      catch (StatusRuntimeException e) {
+        myDeviceProcessQueryError.set(e);
+      }
+      finally {
+        myIsQueryingDevicesAndProcesses.set(false);
+      }
+    });
+  }
+
+  /**
+   * Queries the up-to-date devices and their processes, keeping only the ALIVE ones and the process of id {@code lastProcessId}. This
+   * blocks on the transport and does not access the state of the profilers, so that it can run off the update thread.
+   */
+  @NotNull
+  private DeviceProcessSnapshot queryDevicesAndProcesses(int lastProcessId) {
+    Map<Common.Device, Long> deviceToStreamIds = new HashMap<>();
+    Map<Long, Common.Stream> streamIdToStreams = new HashMap<>();
+    List<Common.Device> devices = getUpToDateDevices(myClient, deviceToStreamIds, streamIdToStreams);
+    Map<Common.Device, List<Common.Process>> processes = new HashMap<>();
+    for (Common.Device device : devices) {
+      List<Common.Process> processList = StreamQueryUtils.queryForProcesses(
+        myClient.getTransportClient(),
+        deviceToStreamIds.get(device),
+        (Boolean isProcessAlive, Common.Process process) ->
+          (isProcessAlive || process.getPid() == lastProcessId) &&
+          (process.getExposureLevel().equals(Common.Process.ExposureLevel.DEBUGGABLE) ||
+           process.getExposureLevel().equals(Common.Process.ExposureLevel.PROFILEABLE))
+      );
+      processes.put(device, processList);
+    }
+    return new DeviceProcessSnapshot(devices, deviceToStreamIds, streamIdToStreams, processes);
+  }
+
+  private void applyDeviceProcessSnapshot(@NotNull DeviceProcessSnapshot snapshot) {
+    snapshot.myDeviceToStreamIds.forEach(myDeviceToStreamIds::putIfAbsent);
+    snapshot.myStreamIdToStreams.forEach(myStreamIdToStreams::putIfAbsent);
+    startProfileableDiscoveryIfApplicable(myProcesses.keySet(), snapshot.myDevices);
+
+    Map<Common.Device, List<Common.Process>> newProcesses = snapshot.myProcesses;
+    if (!newProcesses.equals(myProcesses)) {
+      myProcesses = new HashMap<>(newProcesses);
+      // The following call to setProcess will start a session on profiler start and on process selection change, but Task-Based UX does
+      // not auto start a session on profiler start or on process change. Thus, we disable the call to setProcess if the Task-Based UX
+      // is enabled.
+      boolean isTaskBasedUXEnabled = getIdeServices().getFeatureConfig().isTaskBasedUxEnabled();
+      if (!isTaskBasedUXEnabled) {
+        setProcess(findPreferredDevice(), null);
+      }
+
+      if (isTaskBasedUXEnabled) {
+        TaskHomeTabModel.SelectionStateOnTaskEnter selectionStateOnTaskEnter = getTaskHomeTabModel().getSelectionStateOnTaskEnter();
+        if (selectionStateOnTaskEnter != null) {
+          boolean isProfilingFromProcessStart =
+          selectionStateOnTaskEnter.getProfilingProcessStartingPoint() == TaskHomeTabModel.ProfilingProcessStartingPoint.PROCESS_START;
+          ProfilerTaskType selectedTaskType = selectionStateOnTaskEnter.getSelectedStartupTaskType();
+          // The check for a non-null preferred device makes sure the preferred device is alive and detected. It is imperative for startup
+          // scenarios, although this condition may be true in non-startup scenarios too. It's worth noting that repeated calls to
+          // setProcess with the same parameters are harmless, as setProcess prevents starting a session/task with the same device and
+          // process combination when facilitating a startup task.
+          if (findPreferredDevice() != null && isProfilingFromProcessStart && selectedTaskType != ProfilerTaskType.UNSPECIFIED) {
+            setProcess(findPreferredDevice(), null, TaskTypeMappingUtils.convertTaskType(selectedTaskType), true);
+          }
+        }
+      }
+
+      // These need to be fired every time the process list changes so that the device/process dropdown always reflects the latest.
+      changed(ProfilerAspect.PROCESSES);
+    }
+  }
+
   private static Set<Common.Device> filterOnlineDevices(Collection<Common.Device> devices) {
     return devices.stream().filter(device -> device.getState().equals(Common.Device.State.ONLINE)).collect(Collectors.toSet());
   }
@@ -1276,4 +1337,24 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     double hashMs = TimeUnit.NANOSECONDS.toMicros(originalHash);
     return TimeUnit.MICROSECONDS.toNanos((long)hashMs);
   }
+
+  /**
+   * Immutable result of querying devices and processes off the update thread.
+   */
+  private static final class DeviceProcessSnapshot {
+    @NotNull private final List<Common.Device> myDevices;
+    @NotNull private final Map<Common.Device, Long> myDeviceToStreamIds;
+    @NotNull private final Map<Long, Common.Stream> myStreamIdToStreams;
+    @NotNull private final Map<Common.Device, List<Common.Process>> myProcesses;
+
+    private DeviceProcessSnapshot(@NotNull List<Common.Device> devices,
+                                  @NotNull Map<Common.Device, Long> deviceToStreamIds,
+                                  @NotNull Map<Long, Common.Stream> streamIdToStreams,
+                                  @NotNull Map<Common.Device, List<Common.Process>> processes) {
+      myDevices = Collections.unmodifiableList(devices);
+      myDeviceToStreamIds = Collections.unmodifiableMap(deviceToStreamIds);
+      myStreamIdToStreams = Collections.unmodifiableMap(streamIdToStreams);
+      myProcesses = Collections.unmodifiableMap(processes);
+    }
+  }
 }
@@ -105,6 +105,15 @@ public class CpuCaptureHandler implements Updatable, StatusPanelModel {
     myCaptureParser.abortParsing();
   }
 
+  /**
+   * {@link StatusPanelModel} interface override.
+   * Returns the progress reported by the capture parser, if any.
+   */
+  @Override
+  public double getProgress() {
+    return myCaptureParser.getParsingProgress();
+  }
+
   /**
    * {@link Updatable} interface override.
    * When parsing increases the max time of the parse range so parse range length is the total time to parse.
@@ -54,6 +54,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -101,6 +102,12 @@ public class CpuCaptureParser {
    */
   private long myParsingStartTimeMs;
 
+  /**
+   * Progress of the parsing in progress, between 0 and 1, or -1 if the parser does not report its progress. Updated from the thread
+   * parsing the trace.
+   */
+  private volatile double myParsingProgress = -1;
+
   /**
    * Metadata associated with parsing a capture.
    */
@@ -170,11 +177,19 @@ public class CpuCaptureParser {
     return System.currentTimeMillis() - myParsingStartTimeMs;
   }
 
+  /**
+   * Returns the progress of the parsing in progress, between 0 and 1, or -1 if it is unknown.
+   */
+  public double getParsingProgress() {
+    return myParsingProgress;
+  }
+
   /**
    * Updates {@link #myIsParsing} to false once the given {@link CompletableFuture<CpuCapture>} is done.
    */
   private void updateParsingStateWhenDone() {
     myIsParsing = false;
+    myParsingProgress = -1;
     myAspect.changed(CpuProfilerAspect.CAPTURE_PARSING);
   }
 
@@ -184,6 +199,7 @@ public class CpuCaptureParser {
   @VisibleForTesting // In order to be accessible from com.android.tools.profilers.cpu.capturedetails
   public void updateParsingStateWhenStarting() {
     myParsingStartTimeMs = System.currentTimeMillis();
+    myParsingProgress = -1;
     myIsParsing = true;
     myAspect.changed(CpuProfilerAspect.CAPTURE_PARSING);
   }
@@ -214,7 +230,8 @@ public class CpuCaptureParser {
       CompletableFuture.runAsync(new TraceFileValidationAction(traceFile), myServices.getPoolExecutor())
         .thenRunAsync(new ParsingStartAction(traceFile), myServices.getMainExecutor())
         .thenApplyAsync(
-          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices),
+          new ProcessTraceAction(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, myServices,
+                                 progress -> myParsingProgress = progress),
           myServices.getPoolExecutor())
         .whenCompleteAsync(new TraceResultHandler(traceFile, traceId, isImportedTrace, trackTaskFinished), myServices.getMainExecutor());
     myCaptures.put(traceId, cpuCapture);
@@ -406,8 +423,11 @@ public class CpuCaptureParser {
     @NotNull
     private final IdeProfilerServices services;
 
+    @NotNull
+    private final DoubleConsumer progressListener;
+
     // Parsers used by parseToCapture
-    private static final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser();
+    private final Supplier<TraceParser> ART_PARSER_SUPPLIER = () -> new ArtTraceParser(getProgressListener());
     private static final Supplier<TraceParser> SIMPLEPERF_PARSER_SUPPLIER = () -> new SimpleperfTraceParser();
     private final Supplier<TraceParser> ATRACE_PARSER_SUPPLIER = () -> new AtraceParser(getMainProcessSelector());
     private final Supplier<TraceParser> PERFETTO_PARSER_SUPPLIER =
@@ -417,6 +437,13 @@ public class CpuCaptureParser {
     ProcessTraceAction(
       @NotNull File traceFile, long traceId, @NotNull TraceType preferredProfilerType,
       int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services) {
+      this(traceFile, traceId, preferredProfilerType, processIdHint, processNameHint, services, progress -> {});
+    }
+
+    private ProcessTraceAction(
+      @NotNull File traceFile, long traceId, @NotNull TraceType preferredProfilerType,
+      int processIdHint, @Nullable String processNameHint, @NotNull IdeProfilerServices services,
+      @NotNull DoubleConsumer progressListener) {
 
       this.traceFile = traceFile;
       this.traceId = traceId;
@@ -424,6 +451,7 @@ public class CpuCaptureParser {
       this.processIdHint = processIdHint;
       this.processNameHint = processNameHint != null ? processNameHint : "";
       this.services = services;
+      this.progressListener = progressListener;
     }
 
     @Override
@@ -450,6 +478,11 @@ public class CpuCaptureParser {
       return services;
     }
 
+    @NotNull
+    private DoubleConsumer getProgressListener() {
+      return progressListener;
+    }
+
     private CpuCapture parseWith(@NotNull TraceType type, @NotNull File traceFile, long traceId) {
       Supplier<TraceParser> parserSupplier = getParserSupplier(type);
       TraceParser parser = parserSupplier.get();
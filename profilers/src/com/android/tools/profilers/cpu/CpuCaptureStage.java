@@ -21,6 +21,7 @@ import com.android.tools.adtui.model.DefaultTimeline;
 import com.android.tools.adtui.model.MultiSelectionModel;
 import com.android.tools.adtui.model.RangedSeries;
 import com.android.tools.adtui.model.SeriesData;
+import com.android.tools.adtui.model.StateChartModel;
 import com.android.tools.adtui.model.Timeline;
 import com.android.tools.adtui.model.event.EventModel;
 import com.android.tools.adtui.model.event.LifecycleEventModel;
@@ -790,12 +791,17 @@ public class CpuCaptureStage extends Stage<Timeline> {
       .build();
     for (CpuThreadInfo threadInfo : threadInfos) {
       String title = threadInfo.getName();
+      CpuThreadTrackModel trackModel =
+        new CpuThreadTrackModel(capture, threadInfo, myTrackGroupTimeline, myMultiSelectionModel, this::runInBackground);
+      if (capture.getSystemTraceData() != null) {
+        // Thread states are built in the background, redraw the track once they are available.
+        capture.getSystemTraceData().whenThreadStatesBuilt(threadInfo.getId(), () -> runOnMainThread(
+          () -> trackModel.getThreadStateChartModel().changed(StateChartModel.Aspect.MODEL_CHANGED)));
+      }
       // Since thread tracks display multiple elements with different tooltip we don't set a default tooltip model here but defer to the
       // track renderer to switch between its various tooltip models.
       threads.addTrackModel(
-        TrackModel.newBuilder(new CpuThreadTrackModel(capture, threadInfo, myTrackGroupTimeline, myMultiSelectionModel,
-                                                      this::runInBackground),
-                              ProfilerTrackRendererType.CPU_THREAD, title)
+        TrackModel.newBuilder(trackModel, ProfilerTrackRendererType.CPU_THREAD, title)
           .setCollapsible(true)
           .setCollapsed(collapseThreads));
     }
@@ -813,8 +819,12 @@ public class CpuCaptureStage extends Stage<Timeline> {
       LazyDataSeries<CpuThreadSliceInfo> coreSchedSeries = new LazyDataSeries<>(() -> systemTraceData.getCpuThreadSliceInfoStates(coreId));
       CpuKernelTooltip kernelTooltip = new CpuKernelTooltip(myTrackGroupTimeline, mainThreadId);
       kernelTooltip.setCpuSeries(cpuId, coreSchedSeries);
-      cores.addTrackModel(TrackModel.newBuilder(new CpuCoreTrackModel(coreSchedSeries, myTrackGroupTimeline.getViewRange(), mainThreadId),
-                                                ProfilerTrackRendererType.CPU_CORE, "CPU " + cpuId).setDefaultTooltipModel(kernelTooltip));
+      CpuCoreTrackModel coreTrackModel = new CpuCoreTrackModel(coreSchedSeries, myTrackGroupTimeline.getViewRange(), mainThreadId);
+      // The scheduling series is built in the background, redraw the track once it is available.
+      systemTraceData.whenCpuThreadSliceInfoStatesBuilt(coreId, () -> runOnMainThread(
+        () -> coreTrackModel.getStateChartModel().changed(StateChartModel.Aspect.MODEL_CHANGED)));
+      cores.addTrackModel(TrackModel.newBuilder(coreTrackModel, ProfilerTrackRendererType.CPU_CORE, "CPU " + cpuId)
+                            .setDefaultTooltipModel(kernelTooltip));
 
       // CPU Core frequency.
       String cpuFrequencyTitle = "CPU " + cpuId + " Frequency";
@@ -932,6 +942,10 @@ public class CpuCaptureStage extends Stage<Timeline> {
 
     return battery;
   }
+  private void runOnMainThread(@NotNull Runnable work) {
+    getStudioProfilers().getIdeServices().getMainExecutor().execute(work);
+  }
+
   private Unit runInBackground(Runnable work) {
     getStudioProfilers().getIdeServices().getPoolExecutor().execute(work);
     return Unit.INSTANCE;
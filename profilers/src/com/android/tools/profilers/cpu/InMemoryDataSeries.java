@@ -18,33 +18,36 @@ package com.android.tools.profilers.cpu;
 import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.SeriesData;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Implementers of this class should implement {@link #inMemoryDataList}, which should return all the {@link DataSeries} that would be
  * returned if {@link #getDataForRange(Range)} receives a range with maximum length.
+ * <p>
+ * The timestamps of the in-memory list are indexed the first time it is queried, so that range queries are binary searches over a
+ * primitive array and return a view of the list instead of copying it. The index is rebuilt if {@link #inMemoryDataList} returns a
+ * different list.
  */
 abstract class InMemoryDataSeries<T> implements DataSeries<T> {
+  @Nullable private volatile TimestampIndex myIndex;
+
   /**
-   * @return list of {@link SeriesData} within the given range, plus the data points before/after unless they match exactly the boundaries
-   * of the given range.
+   * @return an unmodifiable view of the list of {@link SeriesData} within the given range, plus the data points before/after unless they
+   * match exactly the boundaries of the given range.
    */
   @Override
   public List<SeriesData<T>> getDataForRange(Range range) {
-    List<SeriesData<T>> result = new ArrayList<>();
     List<SeriesData<T>> seriesDataList = inMemoryDataList();
     if (seriesDataList.isEmpty() || range.isEmpty()) {
-      return result;
+      return Collections.emptyList();
     }
-    // Create fake SeriesData for min and max as search keys.
-    SeriesData<Object> minSearchKey = new SeriesData<>((long)range.getMin(), null);
-    SeriesData<Object> maxSearchKey = new SeriesData<>((long)range.getMax(), null);
-    int minIndex = Collections.binarySearch(seriesDataList, minSearchKey, Comparator.comparingLong(o -> o.x));
-    int maxIndex = Collections.binarySearch(seriesDataList, maxSearchKey, Comparator.comparingLong(o -> o.x));
+    long[] timestamps = getTimestamps(seriesDataList);
+    int minIndex = Arrays.binarySearch(timestamps, (long)range.getMin());
+    int maxIndex = Arrays.binarySearch(timestamps, (long)range.getMax());
     // When the search key is not found, binarySearch returns (-insertion_point - 1), where insertion_point is the index at which the key
     // would be inserted into the list.
     if (minIndex < 0) {
@@ -58,14 +61,39 @@ abstract class InMemoryDataSeries<T> implements DataSeries<T> {
       maxIndex = Math.min(-maxIndex - 1, seriesDataList.size() - 1);
     }
     // Return all data points from minIndex to maxIndex, both inclusive.
-    result.addAll(seriesDataList.subList(minIndex, maxIndex + 1));
-    return result;
+    return Collections.unmodifiableList(seriesDataList.subList(minIndex, maxIndex + 1));
   }
 
   /**
    * @return all the {@link SeriesData} stored in memory (sorted by {@link SeriesData#x}, to be filtered by range in
+   * {@link #getDataForRange(Range)}. The list should not be modified once returned, as views of it are returned by
    * {@link #getDataForRange(Range)}. Note that for best performance it is recommended to returning a {@link java.util.RandomAccess} list.
    */
   @NotNull
   protected abstract List<SeriesData<T>> inMemoryDataList();
+
+  @NotNull
+  private long[] getTimestamps(@NotNull List<SeriesData<T>> seriesDataList) {
+    TimestampIndex index = myIndex;
+    if (index == null || index.myList != seriesDataList || index.myTimestamps.length != seriesDataList.size()) {
+      long[] timestamps = new long[seriesDataList.size()];
+      int i = 0;
+      for (SeriesData<T> data : seriesDataList) {
+        timestamps[i++] = data.x;
+      }
+      index = new TimestampIndex(seriesDataList, timestamps);
+      myIndex = index;
+    }
+    return index.myTimestamps;
+  }
+
+  private static final class TimestampIndex {
+    @NotNull private final List<?> myList;
+    @NotNull private final long[] myTimestamps;
+
+    private TimestampIndex(@NotNull List<?> list, @NotNull long[] timestamps) {
+      myList = list;
+      myTimestamps = timestamps;
+    }
+  }
 }
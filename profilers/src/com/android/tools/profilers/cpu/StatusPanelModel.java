@@ -39,4 +39,11 @@ public interface StatusPanelModel {
    * A way for the user to cancel / stop the current running operation if they deem it takes to long.
    */
   void abort();
+
+  /**
+   * @return The progress of the operation, between 0 and 1, or a negative value if it is unknown.
+   */
+  default double getProgress() {
+    return -1;
+  }
 }
@@ -24,17 +24,45 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel;
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel;
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Builds the call trees of all threads of an ART method trace from the events decoded by
+ * {@link com.android.tools.perflib.vmtrace.VmTraceParser}.
+ * <p>
+ * The events are decoded sequentially, but the call trees of different threads are independent. Method events are therefore only
+ * buffered per thread while the trace is decoded, and the call trees are built in parallel once all events are known.
+ */
 public class ArtTraceHandler implements VmTraceHandler {
   private static final String MAIN_THREAD_NAME = "main";
   private static final String KEY_ELAPSED_TIME_US = "elapsed-time-usec";
+  /**
+   * Size of a method event in the data section of a dual clock trace, used to estimate the progress while decoding.
+   */
+  private static final int ESTIMATED_RECORD_SIZE_BYTES = 14;
+  /**
+   * Number of events decoded between two progress reports.
+   */
+  private static final int PROGRESS_REPORT_INTERVAL = 1 << 16;
+  /**
+   * Part of the progress assigned to decoding the events, the rest being assigned to building the call trees.
+   */
+  private static final double DECODING_PROGRESS_WEIGHT = 0.5;
+  private static final TraceAction[] TRACE_ACTIONS = TraceAction.values();
+
+  private final long myTraceSizeBytes;
+  @NotNull private final DoubleConsumer myProgressListener;
   private long myStartTimeUs;
   private long myElapsedTimeUs;
+  private long myEventCount;
 
   /**
    * Map from thread ids to thread names.
@@ -47,13 +75,26 @@ public class ArtTraceHandler implements VmTraceHandler {
   private final Map<Long, CaptureNodeModel> myMethods = new HashMap<>();
 
   /**
-   * Map from thread id to per thread stack call constructor.
+   * Map from thread id to the method events of the thread.
    */
-  private final Map<Integer, CaptureNodeConstructor> myNodeConstructors = new HashMap<>();
+  private final Map<Integer, ThreadEvents> myThreadEvents = new HashMap<>();
 
   @Nullable
   private Map<CpuThreadInfo, CaptureNode> myThreadsGraph;
 
+  public ArtTraceHandler() {
+    this(0, progress -> {});
+  }
+
+  /**
+   * @param traceSizeBytes   size of the trace file, used to estimate the progress while decoding it
+   * @param progressListener receives the progress of the parsing, between 0 and 1
+   */
+  public ArtTraceHandler(long traceSizeBytes, @NotNull DoubleConsumer progressListener) {
+    myTraceSizeBytes = traceSizeBytes;
+    myProgressListener = progressListener;
+  }
+
   @Override
   public void addThread(int id, String name) {
     myThreads.put(id, name);
@@ -77,13 +118,17 @@ public class ArtTraceHandler implements VmTraceHandler {
       myMethods.put(methodId, new SingleNameModel("unknown"));
     }
 
-    CaptureNodeConstructor constructor = myNodeConstructors.get(threadId);
-    if (constructor == null) {
-      CaptureNodeModel topLevelModel = createUniqueMethodForThread(threadId);
-      constructor = new CaptureNodeConstructor(topLevelModel);
-      myNodeConstructors.put(threadId, constructor);
+    ThreadEvents events = myThreadEvents.get(threadId);
+    if (events == null) {
+      events = new ThreadEvents(createUniqueMethodForThread(threadId));
+      myThreadEvents.put(threadId, events);
+    }
+    events.add(methodId, methodAction, threadTime, globalTime);
+
+    if (++myEventCount % PROGRESS_REPORT_INTERVAL == 0 && myTraceSizeBytes > 0) {
+      double decoded = Math.min(1.0, (double)myEventCount * ESTIMATED_RECORD_SIZE_BYTES / myTraceSizeBytes);
+      myProgressListener.accept(decoded * DECODING_PROGRESS_WEIGHT);
     }
-    constructor.addTraceAction(myMethods.get(methodId), methodAction, threadTime, globalTime);
   }
 
   private CaptureNodeModel createUniqueMethodForThread(int threadId) {
@@ -102,20 +147,20 @@ public class ArtTraceHandler implements VmTraceHandler {
     return myThreadsGraph;
   }
 
+  /**
+   * Builds the call trees of all threads in parallel. The maps of threads and methods are only read at this point.
+   */
   @NotNull
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
+    Map<CpuThreadInfo, CaptureNode> threadsGraph = new ConcurrentHashMap<>(myThreads.size());
+    AtomicInteger builtThreads = new AtomicInteger();
+    myProgressListener.accept(DECODING_PROGRESS_WEIGHT);
 
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
+    myThreadEvents.entrySet().parallelStream().forEach(entry -> {
       final int id = entry.getKey();
-      final String name = entry.getValue();
-
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
-      }
+      final String name = myThreads.get(id);
 
-      CaptureNode topLevelCall = constructor.getTopLevel();
+      CaptureNode topLevelCall = entry.getValue().buildCallTree(myMethods);
       assert topLevelCall != null;
       CpuThreadInfo info = new CpuThreadInfo(id, name, name.equals(MAIN_THREAD_NAME));
 
@@ -123,9 +168,12 @@ public class ArtTraceHandler implements VmTraceHandler {
       adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart);
 
       threadsGraph.put(info, topLevelCall);
-    }
+      myProgressListener.accept(
+        DECODING_PROGRESS_WEIGHT + (1 - DECODING_PROGRESS_WEIGHT) * builtThreads.incrementAndGet() / myThreadEvents.size());
+    });
+    myThreadEvents.clear();
 
-    return threadsGraph;
+    return new HashMap<>(threadsGraph);
   }
 
   /**
@@ -178,4 +226,46 @@ public class ArtTraceHandler implements VmTraceHandler {
   public void setVersion(int version) {
     // We don't need this information
   }
+
+  /**
+   * Method events of a single thread, stored in primitive arrays until the call tree of the thread is built.
+   */
+  private static final class ThreadEvents {
+    private static final int INITIAL_CAPACITY = 256;
+
+    @NotNull private final CaptureNodeModel myTopLevelModel;
+    private long[] myMethodIds = new long[INITIAL_CAPACITY];
+    private byte[] myActions = new byte[INITIAL_CAPACITY];
+    private int[] myThreadTimes = new int[INITIAL_CAPACITY];
+    private int[] myGlobalTimes = new int[INITIAL_CAPACITY];
+    private int mySize;
+
+    private ThreadEvents(@NotNull CaptureNodeModel topLevelModel) {
+      myTopLevelModel = topLevelModel;
+    }
+
+    private void add(long methodId, @NotNull TraceAction action, int threadTime, int globalTime) {
+      if (mySize == myMethodIds.length) {
+        int capacity = mySize * 2;
+        myMethodIds = Arrays.copyOf(myMethodIds, capacity);
+        myActions = Arrays.copyOf(myActions, capacity);
+        myThreadTimes = Arrays.copyOf(myThreadTimes, capacity);
+        myGlobalTimes = Arrays.copyOf(myGlobalTimes, capacity);
+      }
+      myMethodIds[mySize] = methodId;
+      myActions[mySize] = (byte)action.ordinal();
+      myThreadTimes[mySize] = threadTime;
+      myGlobalTimes[mySize] = globalTime;
+      mySize++;
+    }
+
+    @NotNull
+    private CaptureNode buildCallTree(@NotNull Map<Long, CaptureNodeModel> methods) {
+      CaptureNodeConstructor constructor = new CaptureNodeConstructor(myTopLevelModel);
+      for (int i = 0; i < mySize; i++) {
+        constructor.addTraceAction(methods.get(myMethodIds[i]), TRACE_ACTIONS[myActions[i]], myThreadTimes[i], myGlobalTimes[i]);
+      }
+      return constructor.getTopLevel();
+    }
+  }
 }
@@ -23,6 +23,7 @@ import com.android.tools.profilers.cpu.CpuCapture;
 import com.android.tools.profilers.cpu.TraceParser;
 import java.io.File;
 import java.io.IOException;
+import java.util.function.DoubleConsumer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -30,17 +31,29 @@ import org.jetbrains.annotations.NotNull;
  */
 public class ArtTraceParser implements TraceParser {
 
-  private final ArtTraceHandler myTraceHandler = new ArtTraceHandler();
+  @NotNull private final DoubleConsumer myProgressListener;
+
+  public ArtTraceParser() {
+    this(progress -> {});
+  }
+
+  /**
+   * @param progressListener receives the progress of the parsing, between 0 and 1
+   */
+  public ArtTraceParser(@NotNull DoubleConsumer progressListener) {
+    myProgressListener = progressListener;
+  }
 
   @Override
   public CpuCapture parse(@NotNull File trace, long traceId) throws IOException {
-    VmTraceParser parser = new VmTraceParser(trace, myTraceHandler);
+    ArtTraceHandler traceHandler = new ArtTraceHandler(trace.length(), myProgressListener);
+    VmTraceParser parser = new VmTraceParser(trace, traceHandler);
     parser.parse();
     Range range = new Range(
-      myTraceHandler.getStartTimeUs(),
-      myTraceHandler.getStartTimeUs() + myTraceHandler.getElapsedTimeUs());
+      traceHandler.getStartTimeUs(),
+      traceHandler.getStartTimeUs() + traceHandler.getElapsedTimeUs());
     // ART traces always support dual clock mode.
-    return new BaseCpuCapture(traceId, TraceType.ART, true, null, range, myTraceHandler.getThreadsGraph());
+    return new BaseCpuCapture(traceId, TraceType.ART, true, null, range, traceHandler.getThreadsGraph());
   }
 
   public static boolean verifyFileHasArtHeader(@NotNull File trace) {
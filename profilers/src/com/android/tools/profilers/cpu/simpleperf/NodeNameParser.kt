@@ -19,6 +19,7 @@ import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel
 import com.android.tools.profilers.cpu.nodemodel.JavaMethodModel
 import com.android.tools.profilers.cpu.nodemodel.SyscallModel
+import com.google.common.collect.Interners
 import com.intellij.openapi.diagnostic.Logger
 import java.util.regex.Pattern
 import java.util.stream.IntStream
@@ -34,6 +35,10 @@ object NodeNameParser {
 
   private val logger = Logger.getInstance(NodeNameParser::class.java)
 
+  // The parts of the names are repeated across many symbols (e.g. namespaces, parameters) and captures, so they are shared between models.
+  // A weak interner is used so that the parts of closed captures can be collected, and because parsing can be concurrent.
+  private val nameParts = Interners.newWeakInterner<String>()
+
   /**
    * Parses a string representing a full symbol name into its corresponding model. For example:
    * "namespace::Class::Fun<int>(params)" is parsed into a [CppFunctionModel]
@@ -119,10 +124,10 @@ object NodeNameParser {
       }
     }
 
-    return CppFunctionModel.Builder(if (isOperatorOverload(name)) name else removeTemplateInfo(name))
-      .setClassOrNamespace(removeTemplateInfo(classOrNamespace))
+    return CppFunctionModel.Builder(nameParts.intern(if (isOperatorOverload(name)) name else removeTemplateInfo(name)))
+      .setClassOrNamespace(nameParts.intern(removeTemplateInfo(classOrNamespace)))
       .setIsUserCode(isUserWritten)
-      .setParameters(removeTemplateInfo(parameters))
+      .setParameters(nameParts.intern(removeTemplateInfo(parameters)))
       .setFileName(fileName)
       .setTag(fileName?.let { tagFromFileName(it) })
       .setVAddress(vAddress)
@@ -271,7 +276,7 @@ object NodeNameParser {
     val classPath = fullPath.subList(0, fullPath.size - 1).joinToString(".")
     val methodName = fullPath.last()
 
-    return JavaMethodModel(methodName, classPath, "")
+    return JavaMethodModel(nameParts.intern(methodName), nameParts.intern(classPath), "")
   }
 
   private fun tagFromFileName(fileName: String): String {
@@ -36,20 +36,31 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.android.tools.profilers.cpu.config.ProfilingConfiguration.TraceType;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
+ * <p>
+ * In parallel mode (the default), the records of the memory-mapped trace file are decoded in chunks on the common fork-join pool, and
+ * the call tree of each thread is built concurrently. Either way, the model of each call chain entry is only created once, and then
+ * shared by all the nodes of the entry.
  */
 public class SimpleperfTraceParser implements TraceParser {
 
@@ -63,6 +74,11 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private static final int INVALID_SYMBOL_ID = -1;
 
+  /**
+   * Number of records decoded by each task in parallel mode.
+   */
+  private static final int RECORDS_PER_CHUNK = 4096;
+
   /**
    * Directory containing files (.art, .odex, .so, .apk) related to app's. Each app's files are located in a subdirectory whose name starts
    * with the app ID. For instance, "com.google.sample.tunnel" app's directory could be something like
@@ -147,9 +163,24 @@ public class SimpleperfTraceParser implements TraceParser {
    */
   private String myAppDataFolderPrefix;
 
-  private Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
+  private final Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
+
+  /**
+   * Models of the call chain entries, shared by the threads. See {@link #methodModelFromCallchainEntry}.
+   */
+  private final Map<CallChainEntryKey, CaptureNodeModel> myNodeModels = new ConcurrentHashMap<>();
+
+  /**
+   * Whether records are decoded and call trees are built concurrently.
+   */
+  private final boolean myIsParallel;
 
   public SimpleperfTraceParser() {
+    this(true);
+  }
+
+  public SimpleperfTraceParser(boolean isParallel) {
+    myIsParallel = isParallel;
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
@@ -260,52 +291,38 @@ public class SimpleperfTraceParser implements TraceParser {
     verifyMagicNumber(buffer);
     parseVersionNumber(buffer);
 
-    // Read the first record size
-    int recordSize = buffer.getInt();
-
+    // Find the boundaries of the records first, so that they can be decoded independently.
+    int recordCount = 0;
+    int[] recordOffsets = new int[1024];
+    int[] recordSizes = new int[1024];
     // 0 is used to indicate the end of the trace
-    while (recordSize != 0) {
-      // The next recordSize bytes should represent the record
-      byte[] recordBytes = new byte[recordSize];
-      buffer.get(recordBytes);
-      SimpleperfReport.Record record = SimpleperfReport.Record.parseFrom(recordBytes);
-
-      switch (record.getRecordDataCase()) {
-        case FILE:
-          SimpleperfReport.File file = record.getFile();
-          myFiles.put(file.getId(), file);
-          break;
-        case LOST:
-          // Only one occurrence of LOST type is expected.
-          SimpleperfReport.LostSituation situation = record.getLost();
-          mySampleCount = situation.getSampleCount();
-          myLostSampleCount = situation.getLostCount();
-          break;
-        case SAMPLE:
-          SimpleperfReport.Sample sample = record.getSample();
-          mySamples.add(sample);
-          break;
-        case THREAD:
-          SimpleperfReport.Thread thread = record.getThread();
-          myThreads.put(thread.getThreadId(), thread);
-          break;
-        case META_INFO:
-          SimpleperfReport.MetaInfo info = record.getMetaInfo();
-          myEventTypes = info.getEventTypeList();
-          myAppPackageName = info.getAppPackageName();
-          myAppDataFolderPrefix = String.format("%s/%s", DATA_APP_DIR, myAppPackageName);
-          break;
-        case CONTEXT_SWITCH:
-          // Not using this type of data in profiler yet.
-          break;
-        default:
-          getLog().warn("Unexpected record data type " + record.getRecordDataCase());
+    for (int recordSize = buffer.getInt(); recordSize != 0; recordSize = buffer.getInt()) {
+      if (recordCount == recordOffsets.length) {
+        recordOffsets = Arrays.copyOf(recordOffsets, recordCount * 2);
+        recordSizes = Arrays.copyOf(recordSizes, recordCount * 2);
       }
-
-      // read the next record size
-      recordSize = buffer.getInt();
+      // The next recordSize bytes should represent the record
+      recordOffsets[recordCount] = buffer.position();
+      recordSizes[recordCount] = recordSize;
+      recordCount++;
+      buffer.position(buffer.position() + recordSize);
     }
 
+    // Decode the records in chunks, and handle them in the order of the file.
+    int chunkCount = (recordCount + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK;
+    int finalRecordCount = recordCount;
+    int[] offsets = recordOffsets;
+    int[] sizes = recordSizes;
+    IntStream chunks = IntStream.range(0, chunkCount);
+    (myIsParallel ? chunks.parallel() : chunks)
+      .mapToObj(chunk -> decodeRecords(buffer, offsets, sizes, chunk * RECORDS_PER_CHUNK,
+                                       Math.min(finalRecordCount, (chunk + 1) * RECORDS_PER_CHUNK)))
+      .forEachOrdered(records -> {
+        for (SimpleperfReport.Record record : records) {
+          handleRecord(record);
+        }
+      });
+
     if (mySamples.size() != mySampleCount) {
       // TODO: create a trace file to test this exception is thrown when it should.
       throw new IllegalStateException("Samples count doesn't match the number of samples read.");
@@ -314,6 +331,60 @@ public class SimpleperfTraceParser implements TraceParser {
     myCpuClockEventTypeId = myEventTypes.indexOf(CPU_CLOCK_EVENT);
   }
 
+  /**
+   * Decodes the records of index {@code start} (inclusive) to {@code end} (exclusive), without copying their bytes out of the buffer.
+   */
+  @NotNull
+  private static SimpleperfReport.Record[] decodeRecords(@NotNull ByteBuffer buffer, int[] offsets, int[] sizes, int start, int end) {
+    // Each chunk uses its own view of the buffer, as decoding moves its position.
+    ByteBuffer view = buffer.duplicate();
+    SimpleperfReport.Record[] records = new SimpleperfReport.Record[end - start];
+    for (int i = start; i < end; i++) {
+      view.limit(offsets[i] + sizes[i]).position(offsets[i]);
+      try {
+        records[i - start] = SimpleperfReport.Record.parseFrom(view.slice());
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("Malformed trace file: record " + i + " could not be parsed.", e);
+      }
+    }
+    return records;
+  }
+
+  private void handleRecord(@NotNull SimpleperfReport.Record record) {
+    switch (record.getRecordDataCase()) {
+      case FILE:
+        SimpleperfReport.File file = record.getFile();
+        myFiles.put(file.getId(), file);
+        break;
+      case LOST:
+        // Only one occurrence of LOST type is expected.
+        SimpleperfReport.LostSituation situation = record.getLost();
+        mySampleCount = situation.getSampleCount();
+        myLostSampleCount = situation.getLostCount();
+        break;
+      case SAMPLE:
+        SimpleperfReport.Sample sample = record.getSample();
+        mySamples.add(sample);
+        break;
+      case THREAD:
+        SimpleperfReport.Thread thread = record.getThread();
+        myThreads.put(thread.getThreadId(), thread);
+        break;
+      case META_INFO:
+        SimpleperfReport.MetaInfo info = record.getMetaInfo();
+        myEventTypes = info.getEventTypeList();
+        myAppPackageName = info.getAppPackageName();
+        myAppDataFolderPrefix = String.format("%s/%s", DATA_APP_DIR, myAppPackageName);
+        break;
+      case CONTEXT_SWITCH:
+        // Not using this type of data in profiler yet.
+        break;
+      default:
+        getLog().warn("Unexpected record data type " + record.getRecordDataCase());
+    }
+  }
+
   /**
    * Parses the next 16-bit number of the given {@link ByteBuffer} as the trace version.
    */
@@ -349,10 +420,13 @@ public class SimpleperfTraceParser implements TraceParser {
     // Split the samples per thread.
     Map<Integer, List<SimpleperfReport.Sample>> threadSamples = splitSamplesPerThread();
 
-    // Process the samples for each thread
-    for (Map.Entry<Integer, List<SimpleperfReport.Sample>> threadSamplesEntry : threadSamples.entrySet()) {
-      parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue());
-    }
+    // Process the samples for each thread. The trees are independent, so they can be built concurrently.
+    Stream<Map.Entry<Integer, List<SimpleperfReport.Sample>>> threads = threadSamples.entrySet().stream();
+    (myIsParallel ? threads.parallel() : threads)
+      .map(threadSamplesEntry -> parseThreadSamples(threadSamplesEntry.getKey(), threadSamplesEntry.getValue()))
+      .filter(Objects::nonNull)
+      .toList()
+      .forEach(tree -> myCaptureTrees.put(tree.getKey(), tree.getValue()));
   }
 
   /**
@@ -381,12 +455,13 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   /**
-   * Parses the list of samples of a thread into a {@link CaptureNode} tree.
+   * Parses the list of samples of a thread into a {@link CaptureNode} tree. Returns null if the thread has no samples.
    */
-  private void parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
+  @Nullable
+  private Map.Entry<CpuThreadInfo, CaptureNode> parseThreadSamples(int threadId, List<SimpleperfReport.Sample> threadSamples) {
     if (threadSamples.isEmpty()) {
       getLog().warn(String.format("Warning: No samples read for thread %s (%d)", myThreads.get(threadId), threadId));
-      return;
+      return null;
     }
 
     if (!myThreads.containsKey(threadId)) {
@@ -402,7 +477,6 @@ public class SimpleperfTraceParser implements TraceParser {
     SimpleperfReport.Thread thread = myThreads.get(threadId);
     CaptureNode root = createCaptureNode(new SingleNameModel(thread.getThreadName()), firstTimestamp, threadTimeNs);
     root.setDepth(0);
-    myCaptureTrees.put(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()), root);
 
     // Parse the first call chain so we have a value for lastCallchain
     List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = Lists.reverse(threadSamples.get(0).getCallchainList());
@@ -432,6 +506,8 @@ public class SimpleperfTraceParser implements TraceParser {
     updateAncestorsEndTime(lastTimestamp, threadTimeNs, lastVisitedNode);
     // update the root timestamp
     setNodeEndTime(root, lastTimestamp, threadTimeNs);
+    return new AbstractMap.SimpleImmutableEntry<>(new CpuThreadInfo(threadId, thread.getThreadName(), threadId == thread.getProcessId()),
+                                                  root);
   }
 
   /**
@@ -515,7 +591,18 @@ public class SimpleperfTraceParser implements TraceParser {
     return node;
   }
 
+  /**
+   * Returns the model of a call chain entry, creating it if needed. The model depends on the file and symbol of the entry, and on the
+   * address of the entry if it has no symbol, or of its parent otherwise.
+   */
   private CaptureNodeModel methodModelFromCallchainEntry(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
+    int symbolId = callChainEntry.getSymbolId();
+    long vAddress = symbolId == INVALID_SYMBOL_ID ? callChainEntry.getVaddrInFile() : parentVAddress;
+    CallChainEntryKey key = new CallChainEntryKey(callChainEntry.getFileId(), symbolId, vAddress);
+    return myNodeModels.computeIfAbsent(key, unused -> createMethodModel(callChainEntry, parentVAddress));
+  }
+
+  private CaptureNodeModel createMethodModel(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
     int symbolId = callChainEntry.getSymbolId();
     SimpleperfReport.File symbolFile = myFiles.get(callChainEntry.getFileId());
     if (symbolFile == null) {
@@ -536,7 +623,9 @@ public class SimpleperfTraceParser implements TraceParser {
 
   private CaptureNodeModel nodeWithTagAdded(CaptureNodeModel node) {
     if (node.getTag() != null) {
-      myTags.add(node.getTag());
+      synchronized (myTags) {
+        myTags.add(node.getTag());
+      }
     }
     return node;
   }
@@ -555,4 +644,30 @@ public class SimpleperfTraceParser implements TraceParser {
   @VisibleForTesting
   static Comparator<String> TAG_COMPARATOR =
     Comparator.comparing(SimpleperfTraceParser::tagClass).thenComparing(String::compareTo);
+
+  private static final class CallChainEntryKey {
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myVAddress;
+
+    private CallChainEntryKey(int fileId, int symbolId, long vAddress) {
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myVAddress = vAddress;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof CallChainEntryKey)) {
+        return false;
+      }
+      CallChainEntryKey other = (CallChainEntryKey)o;
+      return myFileId == other.myFileId && mySymbolId == other.mySymbolId && myVAddress == other.myVAddress;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFileId, mySymbolId, myVAddress);
+    }
+  }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.systemtrace
+
+import com.android.annotations.concurrency.GuardedBy
+import java.util.concurrent.Executor
+
+/**
+ * Map of track id (e.g. thread or CPU core id) to the data of the track, where the data of each track is built by its own task of an
+ * [Executor], so that tracks can show their data as soon as it is built instead of waiting for the data of all of them.
+ *
+ * Reading the data of a track never builds it: [get] returns [emptyData] until the track is built. Once built, the builder of the track
+ * is released, and so are the models it captured.
+ */
+internal class AsyncTrackDataMap<K, V : Any>(builders: Map<K, () -> V>, private val emptyData: V) {
+  private val tracks: Map<K, Track<V>> = builders.mapValues { Track(it.value) }
+
+  val size get() = tracks.size
+
+  operator fun get(key: K): V = tracks[key]?.data ?: emptyData
+
+  fun isBuilt(key: K) = tracks[key]?.data != null
+
+  /**
+   * Runs [callback] once the data of the track of [key] is built, from the thread that built it, or right away if it already is.
+   */
+  fun whenBuilt(key: K, callback: Runnable) {
+    tracks[key]?.whenBuilt(callback)
+  }
+
+  /**
+   * Builds the data of each track in its own task of [executor], in the iteration order of the tracks.
+   */
+  fun buildAsync(executor: Executor) {
+    tracks.values.forEach { executor.execute(it::build) }
+  }
+
+  private class Track<V : Any>(builder: () -> V) {
+    @GuardedBy("this") private var builder: (() -> V)? = builder
+    @GuardedBy("this") private val callbacks = mutableListOf<Runnable>()
+    @Volatile var data: V? = null
+      private set
+
+    fun build() {
+      val builder = synchronized(this) { builder.also { builder = null } } ?: return
+      val built = builder()
+      val callbacksToRun = synchronized(this) {
+        data = built
+        callbacks.toList().also { callbacks.clear() }
+      }
+      callbacksToRun.forEach(Runnable::run)
+    }
+
+    fun whenBuilt(callback: Runnable) {
+      val isBuilt = synchronized(this) {
+        (data != null).also { if (!it) callbacks.add(callback) }
+      }
+      if (isBuilt) {
+        callback.run()
+      }
+    }
+  }
+}
@@ -32,12 +32,24 @@ interface CpuSystemTraceData {
    */
   fun getThreadStatesForThread(threadId: Int): List<SeriesData<ThreadState>>
 
+  /**
+   * Runs [callback] once the thread states of the given thread are built, or right away if they already are. The states may be built
+   * in the background, in which case [getThreadStatesForThread] returns an empty list until then and [callback] runs on the thread
+   * that built them.
+   */
+  fun whenThreadStatesBuilt(threadId: Int, callback: Runnable) = callback.run()
+
   /**
    * Returns a series of [CpuThreadSliceInfo] information.
    * @param cpu The cpu index to get [CpuThreadSliceInfo] series for.
    */
   fun getCpuThreadSliceInfoStates(cpu: Int): List<SeriesData<CpuThreadSliceInfo>>
 
+  /**
+   * Runs [callback] once the [CpuThreadSliceInfo] series of the given cpu is built, the same way as [whenThreadStatesBuilt].
+   */
+  fun whenCpuThreadSliceInfoStatesBuilt(cpu: Int, callback: Runnable) = callback.run()
+
   /**
    * CPU Utilization data series, with one for each CPU core present on the traced device.
    */
@@ -26,20 +26,21 @@ import com.android.tools.profilers.cpu.ThreadState
 import com.android.tools.profilers.cpu.systemtrace.SystemTraceFrame.FrameThread
 import kotlin.streams.asSequence
 
-class SystemTraceCpuCapture(traceId: Long,
-                            model: SystemTraceModelAdapter,
-                            captureNodes: Map<CpuThreadInfo, CaptureNode>,
-                            private val threadStateDataSeries: Map<Int, List<SeriesData<ThreadState>>>,
-                            private val cpuThreadSliceInfoStates: Map<Int, List<SeriesData<CpuThreadSliceInfo>>>,
-                            override val cpuUtilizationSeries: List<SeriesData<Long>>,
-                            override val cpuCounters: List<Map<String, List<SeriesData<Long>>>>,
-                            override val memoryCounters: Map<String, List<SeriesData<Long>>>,
-                            override val powerRailCounters: Map<String, PowerCounterData>,
-                            override val batteryDrainCounters: Map<String, List<SeriesData<Long>>>,
-                            private val blastBufferQueueCounter: List<SeriesData<Long>>,
-                            private val frameManager: SystemTraceFrameManager,
-                            private val surfaceflingerManager: SystemTraceSurfaceflingerManager,
-                            initialViewRangeUs: Range)
+class SystemTraceCpuCapture
+internal constructor(traceId: Long,
+                     model: SystemTraceModelAdapter,
+                     captureNodes: Map<CpuThreadInfo, CaptureNode>,
+                     private val threadStateDataSeries: AsyncTrackDataMap<Int, List<SeriesData<ThreadState>>>,
+                     private val cpuThreadSliceInfoStates: AsyncTrackDataMap<Int, List<SeriesData<CpuThreadSliceInfo>>>,
+                     override val cpuUtilizationSeries: List<SeriesData<Long>>,
+                     override val cpuCounters: List<Map<String, List<SeriesData<Long>>>>,
+                     override val memoryCounters: Map<String, List<SeriesData<Long>>>,
+                     override val powerRailCounters: Map<String, PowerCounterData>,
+                     override val batteryDrainCounters: Map<String, List<SeriesData<Long>>>,
+                     private val blastBufferQueueCounter: List<SeriesData<Long>>,
+                     private val frameManager: SystemTraceFrameManager,
+                     private val surfaceflingerManager: SystemTraceSurfaceflingerManager,
+                     initialViewRangeUs: Range)
   // System Traces don't support dual clock.
   : BaseCpuCapture(traceId, model.getSystemTraceTechnology(), false, null,
                    Range(model.getCaptureStartTimestampUs().toDouble(), model.getCaptureEndTimestampUs().toDouble()),
@@ -98,12 +99,16 @@ class SystemTraceCpuCapture(traceId: Long,
    * Atrace reports a sched_switch event each time the thread state changes, because of this the thread states
    * reported here are more accurate than the ones sampled via perfd.
    */
-  override fun getThreadStatesForThread(threadId: Int) = threadStateDataSeries[threadId] ?: listOf()
+  override fun getThreadStatesForThread(threadId: Int) = threadStateDataSeries[threadId]
+
+  override fun whenThreadStatesBuilt(threadId: Int, callback: Runnable) = threadStateDataSeries.whenBuilt(threadId, callback)
 
   /**
    * The information is computed from the sched_switch trace line reported by atrace.
    */
-  override fun getCpuThreadSliceInfoStates(cpu: Int) = cpuThreadSliceInfoStates[cpu] ?: listOf()
+  override fun getCpuThreadSliceInfoStates(cpu: Int) = cpuThreadSliceInfoStates[cpu]
+
+  override fun whenCpuThreadSliceInfoStatesBuilt(cpu: Int, callback: Runnable) = cpuThreadSliceInfoStates.whenBuilt(cpu, callback)
   override fun getFrames(threadType: FrameThread) = frameManager.getFrames(threadType)
   override fun getSystemTraceData() = this
 
@@ -27,6 +27,7 @@ import com.android.tools.profilers.cpu.systemtrace.CounterDataUtils.convertCount
 import com.android.tools.profilers.cpu.systemtrace.CounterDataUtils.convertSeriesDataToDeltaSeries
 import com.android.tools.profilers.cpu.systemtrace.PowerRailTrackModel.Companion.isPowerRailShown
 import com.android.tools.profilers.cpu.systemtrace.PowerRailTrackModel.Companion.powerRailGroupMap
+import java.util.concurrent.Executor
 import java.util.concurrent.TimeUnit
 import java.util.function.UnaryOperator
 import kotlin.math.max
@@ -36,11 +37,55 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
   companion object {
     val UTILIZATION_BUCKET_LENGTH_US = TimeUnit.MILLISECONDS.toMicros(50)
     val BLAST_BUFFER_QUEUE_COUNTER_REGEX = Regex("QueuedBuffer - .+BLAST#\\d")
+
+    // Not a member of the builder, so that the builder of each thread's series does not reference the whole model.
+    private fun buildThreadStates(thread: ThreadModel): List<SeriesData<ThreadState>> {
+      val states: MutableList<SeriesData<ThreadState>> = ArrayList()
+
+      // We use a (state, timestamp) tuple and assume the state is valid until the next state.
+      // But Perfetto uses a (state, timestamp, duration) triplet to timebox each state.
+      var (lastState, lastEndTimestampUs) = Pair(ThreadState.NO_ACTIVITY, 0L)
+      if (thread.threadStateEvents.isEmpty()) {
+        // This thread doesn't have thread state events, which is possible for an atrace file.
+        // As a best effort, infer thread states from scheduling events, with a caveat that state transitions from
+        // non-running state to another non-running state will be missed. (b/249618556)
+        for (sched in thread.schedulingEvents) {
+          if (sched.state !== lastState) {
+            states.add(SeriesData(sched.startTimestampUs, sched.state))
+            lastState = sched.state
+            lastEndTimestampUs = sched.endTimestampUs
+          }
+        }
+      } else {
+        for (event in thread.threadStateEvents) {
+          states.add(SeriesData(event.startTimestampUs, event.state))
+          lastState = event.state
+          lastEndTimestampUs = event.endTimestampUs
+        }
+      }
+
+      // To avoid the last thread state slice extending until
+      // the end of user-dictated capture time, a fake NO_ACTIVITY
+      // event is appended to terminate the last state slice.
+      // Non-empty check makes sure we don't insert state data
+      // when there is actually isn't any.
+      if (lastState != ThreadState.NO_ACTIVITY && states.isNotEmpty()) {
+        states.add(SeriesData(lastEndTimestampUs, ThreadState.NO_ACTIVITY))
+      }
+      return states
+    }
   }
 
+  /**
+   * Builds the capture of [mainProcessId]. The thread state and CPU scheduling series of each track are built by their own task of
+   * [executor], so that the capture can be shown without waiting for all the series, and each track shows its series once it is built.
+   * By default, the series are built before this returns.
+   */
+  @JvmOverloads
   fun build(traceId: Long,
             mainProcessId: Int,
-            initialViewRange: Range): SystemTraceCpuCapture {
+            initialViewRange: Range,
+            executor: Executor = Executor(Runnable::run)): SystemTraceCpuCapture {
 
     val mainProcess = model.getProcessById(mainProcessId) ?: throw IllegalArgumentException(
       "A process with the id $mainProcessId was not found while parsing the capture.")
@@ -53,6 +98,8 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
     val powerRailCounters = buildPowerRailCountersData()
     val batteryDrainCounters = buildBatteryDrainCountersData()
     val blastBufferQueueCounter = buildBlastBufferQueueCounterData(mainProcess)
+    threadState.buildAsync(executor)
+    cpuState.schedulingData.buildAsync(executor)
 
     val frameManager = SystemTraceFrameManager(mainProcess)
     val sfManager = SystemTraceSurfaceflingerManager(model, mainProcess.name)
@@ -110,56 +157,19 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
   }
 
   /**
-   * Builds a map of thread id to a list of [ThreadState] series.
+   * Builds a map of thread id to a list of [ThreadState] series. The builder of each series only references the model of its thread.
    */
-  private fun buildThreadStateData(mainProcessModel: ProcessModel): Map<Int, List<SeriesData<ThreadState>>> {
-    val threadToStateSeries = mutableMapOf<Int, List<SeriesData<ThreadState>>>()
-
-    for (thread in mainProcessModel.getThreads()) {
-      val states: MutableList<SeriesData<ThreadState>> = ArrayList()
-      threadToStateSeries[thread.id] = states
-
-      // We use a (state, timestamp) tuple and assume the state is valid until the next state.
-      // But Perfetto uses a (state, timestamp, duration) triplet to timebox each state.
-      var (lastState, lastEndTimestampUs) = Pair(ThreadState.NO_ACTIVITY, 0L)
-      if (thread.threadStateEvents.isEmpty()) {
-        // This thread doesn't have thread state events, which is possible for an atrace file.
-        // As a best effort, infer thread states from scheduling events, with a caveat that state transitions from
-        // non-running state to another non-running state will be missed. (b/249618556)
-        for (sched in thread.schedulingEvents) {
-          if (sched.state !== lastState) {
-            states.add(SeriesData(sched.startTimestampUs, sched.state))
-            lastState = sched.state
-            lastEndTimestampUs = sched.endTimestampUs
-          }
-        }
-      } else {
-        for (event in thread.threadStateEvents) {
-          states.add(SeriesData(event.startTimestampUs, event.state))
-          lastState = event.state
-          lastEndTimestampUs = event.endTimestampUs
-        }
-      }
-
-      // To avoid the last thread state slice extending until
-      // the end of user-dictated capture time, a fake NO_ACTIVITY
-      // event is appended to terminate the last state slice.
-      // Non-empty check makes sure we don't insert state data
-      // when there is actually isn't any.
-      if (lastState != ThreadState.NO_ACTIVITY && states.isNotEmpty()) {
-        states.add(SeriesData(lastEndTimestampUs, ThreadState.NO_ACTIVITY))
-      }
-    }
-
-    return threadToStateSeries
-  }
+  private fun buildThreadStateData(mainProcessModel: ProcessModel): AsyncTrackDataMap<Int, List<SeriesData<ThreadState>>> =
+    AsyncTrackDataMap(mainProcessModel.getThreads().associate { thread -> thread.id to { buildThreadStates(thread) } }, emptyList())
 
   private data class CpuStateData(
-    val schedulingData: Map<Int, List<SeriesData<CpuThreadSliceInfo>>>,
+    val schedulingData: AsyncTrackDataMap<Int, List<SeriesData<CpuThreadSliceInfo>>>,
     val utilizationData: List<SeriesData<Long>>)
 
   /**
-   * Builds a map of CPU ids to a list of [CpuThreadInfo] series. While building the CPU map it also builds a CPU utilization series.
+   * Builds a map of CPU ids to a list of [CpuThreadInfo] series, and the CPU utilization series of the main process. The utilization
+   * series is built right away. The builder of the series of a CPU references the whole model to look up thread and process names,
+   * which is released once the series of every CPU is built.
    */
   private fun buildCpuStateData(mainProcessModel: ProcessModel): CpuStateData {
 
@@ -173,35 +183,8 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
       i += UTILIZATION_BUCKET_LENGTH_US
     }
 
-    val schedData = mutableMapOf<Int, List<SeriesData<CpuThreadSliceInfo>>>()
-
-    // Create a lookup table for thread names, to be used when the full process info is missing
-    val threadNames = model.getProcesses().flatMap { it.getThreads() }.associate { it.id to it.name }
-
     for (cpu in model.getCpuCores()) {
-      val processList: MutableList<SeriesData<CpuThreadSliceInfo>> = ArrayList()
-      var lastSliceEnd = cpu.schedulingEvents.firstOrNull()?.endTimestampUs ?: startUserTimeUs
       for (sched in cpu.schedulingEvents) {
-
-        // If we have a gap, add a placeholder entry representing no threads using this cpu.
-        if (sched.startTimestampUs > lastSliceEnd) {
-          processList.add(SeriesData(lastSliceEnd, CpuThreadSliceInfo.NULL_THREAD))
-        }
-
-        // Some of PIDs and TIDs are not present on the process/thread lists, so we do our best to find their data here.
-        val processName = model.getProcessById(sched.processId)?.getSafeProcessName() ?: ""
-        // Start by checking threads in the known processes, fallback to dangling threads and again to an empty name.
-        val threadName = model.getProcessById(sched.processId)?.threadById?.get(sched.threadId)?.name
-                         ?: model.getDanglingThread(sched.threadId)?.name
-                         ?: ""
-
-        processList.add(
-          SeriesData(sched.startTimestampUs,
-                     CpuThreadSliceInfo(
-                       sched.threadId, threadName,
-                       sched.processId, processName,
-                       sched.durationUs)))
-        lastSliceEnd = sched.endTimestampUs
         if (sched.processId == mainProcessModel.id) {
           // Calculate our start time.
           val startBucket = (sched.startTimestampUs - startUserTimeUs) / UTILIZATION_BUCKET_LENGTH_US
@@ -220,10 +203,6 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
           }
         }
       }
-
-      // We are done with this Cpu so we add a null process at the end to properly render this segment.
-      processList.add(SeriesData(endUserTimeUs, CpuThreadSliceInfo.NULL_THREAD))
-      schedData[cpu.id] = processList
     }
 
     // When we have finished processing all CPUs the utilization series contains the total time each CPU spent in each bucket.
@@ -235,9 +214,46 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
       series
     })
 
+    val schedData = AsyncTrackDataMap(model.getCpuCores().associate { cpu -> cpu.id to { buildCpuSchedulingData(cpu) } }, emptyList())
     return CpuStateData(schedData, utilizationData)
   }
 
+  /**
+   * Builds the series of the threads scheduled on [cpu], with [CpuThreadSliceInfo.NULL_THREAD] entries where no thread is scheduled.
+   */
+  private fun buildCpuSchedulingData(cpu: CpuCoreModel): List<SeriesData<CpuThreadSliceInfo>> {
+    val startUserTimeUs: Long = model.getCaptureStartTimestampUs()
+    val endUserTimeUs: Long = model.getCaptureEndTimestampUs()
+    val processList: MutableList<SeriesData<CpuThreadSliceInfo>> = ArrayList()
+    var lastSliceEnd = cpu.schedulingEvents.firstOrNull()?.endTimestampUs ?: startUserTimeUs
+    for (sched in cpu.schedulingEvents) {
+
+      // If we have a gap, add a placeholder entry representing no threads using this cpu.
+      if (sched.startTimestampUs > lastSliceEnd) {
+        processList.add(SeriesData(lastSliceEnd, CpuThreadSliceInfo.NULL_THREAD))
+      }
+
+      // Some of PIDs and TIDs are not present on the process/thread lists, so we do our best to find their data here.
+      val processName = model.getProcessById(sched.processId)?.getSafeProcessName() ?: ""
+      // Start by checking threads in the known processes, fallback to dangling threads and again to an empty name.
+      val threadName = model.getProcessById(sched.processId)?.threadById?.get(sched.threadId)?.name
+                       ?: model.getDanglingThread(sched.threadId)?.name
+                       ?: ""
+
+      processList.add(
+        SeriesData(sched.startTimestampUs,
+                   CpuThreadSliceInfo(
+                     sched.threadId, threadName,
+                     sched.processId, processName,
+                     sched.durationUs)))
+      lastSliceEnd = sched.endTimestampUs
+    }
+
+    // We are done with this Cpu so we add a null process at the end to properly render this segment.
+    processList.add(SeriesData(endUserTimeUs, CpuThreadSliceInfo.NULL_THREAD))
+    return processList
+  }
+
   private fun buildMainProcessMemoryCountersData(mainProcessModel: ProcessModel): Map<String, List<SeriesData<Long>>> {
     return mainProcessModel.counterByName.entries
       .filter { it.key.startsWith("mem.") }
@@ -23,8 +23,10 @@ import com.android.tools.adtui.model.filter.FilterResult
 import com.android.tools.inspectors.common.api.stacktrace.StackTraceModel
 import com.android.tools.profilers.IdeProfilerServices
 import com.android.tools.profilers.analytics.FilterMetadata
+import com.android.tools.profilers.memory.adapters.BitmapPreviewCache
 import com.android.tools.profilers.memory.adapters.CaptureObject
 import com.android.tools.profilers.memory.adapters.FieldObject
+import com.android.tools.profilers.memory.adapters.HeapDumpCaptureObject
 import com.android.tools.profilers.memory.adapters.InstanceObject
 import com.android.tools.profilers.memory.adapters.classifiers.ClassSet
 import com.android.tools.profilers.memory.adapters.classifiers.HeapSet
@@ -53,6 +55,7 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
   }
   val allocationStackTraceModel = StackTraceModel(ideServices.codeNavigator)
   val deallocationStackTraceModel = StackTraceModel(ideServices.codeNavigator)
+  val bitmapPreviews = BitmapPreviewCache()
 
   private var lastFilter: Filter? = null
 
@@ -111,6 +114,7 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
     selectedClassSet = null
     selectedHeapSet = null
     selectedCapture?.unload()
+    bitmapPreviews.clear()
     myCaptureEntry = captureEntry
     selectedCapture = captureEntry?.captureObject
     classGroupingModel.update()
@@ -211,6 +215,12 @@ class MemoryCaptureSelection(val ideServices: IdeProfilerServices) {
   fun finishSelectingCaptureObject(captureObject: CaptureObject?): Boolean {
     if (captureObject != null && captureObject === selectedCapture && !captureObject.isError && captureObject.isDoneLoading) {
       aspect.changed(CaptureSelectionAspect.CURRENT_LOADED_CAPTURE)
+      // Heap dumps are shown before their retained sizes are computed.
+      (captureObject as? HeapDumpCaptureObject)?.addRetainedSizesListener {
+        if (captureObject === selectedCapture) {
+          refreshSelectedHeap()
+        }
+      }
       return true
     }
     return false
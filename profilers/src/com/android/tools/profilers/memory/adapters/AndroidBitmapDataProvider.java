@@ -36,6 +36,14 @@ public final class AndroidBitmapDataProvider implements BitmapDecoder.BitmapData
 
   private int myHeight = -1;
 
+  /**
+   * @return whether {@code instance} is a Bitmap or BitmapDrawable, without reading its fields.
+   */
+  public static boolean isBitmapInstance(@NotNull InstanceObject instance) {
+    String className = instance.getClassEntry().getClassName();
+    return BITMAP_FQCN.equals(className) || BITMAP_DRAWABLE_FQCN.equals(className);
+  }
+
   @Nullable
   public static AndroidBitmapDataProvider createDecoder(@NotNull InstanceObject instance) {
     instance = getBitmapClassInstance(instance);
@@ -15,12 +15,14 @@
  */
 package com.android.tools.profilers.memory.adapters;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Map;
 
 public class BitmapDecoder {
@@ -42,7 +44,10 @@ public class BitmapDecoder {
   }
 
   private interface BitmapExtractor {
-    BufferedImage getImage(int w, int h, byte[] data);
+    /**
+     * Returns the pixel at ({@code x}, {@code y}) of the bitmap, as an ARGB int.
+     */
+    int getArgb(byte[] data, int width, int x, int y);
   }
 
   protected static final Map<PixelFormat, BitmapExtractor> SUPPORTED_FORMATS = ImmutableMap.of(
@@ -52,6 +57,16 @@ public class BitmapDecoder {
 
   @Nullable
   public static BufferedImage getBitmap(@NotNull BitmapDataProvider dataProvider) {
+    return getBitmap(dataProvider, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Decodes the bitmap, downsampled by the smallest power of 2 that fits it in {@code maxDimension} x {@code maxDimension} pixels.
+   * Only the pixels kept in the downsampled bitmap are read, so decoding the preview of a large bitmap is proportional to the size of
+   * the preview, not of the bitmap.
+   */
+  @Nullable
+  public static BufferedImage getBitmap(@NotNull BitmapDataProvider dataProvider, int maxDimension) {
     PixelFormat config = dataProvider.getBitmapConfigName();
     if (config == null) {
       return null;
@@ -63,78 +78,77 @@ public class BitmapDecoder {
     }
 
     Dimension size = dataProvider.getDimension();
-    if (size == null) {
+    if (size == null || size.width <= 0 || size.height <= 0) {
       return null;
     }
 
-    return bitmapExtractor.getImage(size.width, size.height, dataProvider.getPixelBytes(size));
+    byte[] data = dataProvider.getPixelBytes(size);
+    if (data == null) {
+      return null;
+    }
+
+    int sampleSize = getSampleSize(size, maxDimension);
+    int width = (size.width + sampleSize - 1) / sampleSize;
+    int height = (size.height + sampleSize - 1) / sampleSize;
+    @SuppressWarnings("UndesirableClassUsage")
+    BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    // Write the pixels directly into the buffer of the image, as setting them one by one through the image is much slower.
+    int[] pixels = ((DataBufferInt)bufferedImage.getRaster().getDataBuffer()).getData();
+    for (int y = 0; y < height; y++) {
+      int stride = y * width;
+      for (int x = 0; x < width; x++) {
+        pixels[stride + x] = bitmapExtractor.getArgb(data, size.width, x * sampleSize, y * sampleSize);
+      }
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Returns the smallest power of 2 by which {@code size} should be divided to fit in {@code maxDimension} x {@code maxDimension}.
+   */
+  @VisibleForTesting
+  static int getSampleSize(@NotNull Dimension size, int maxDimension) {
+    int sampleSize = 1;
+    while ((size.width + sampleSize - 1) / sampleSize > maxDimension || (size.height + sampleSize - 1) / sampleSize > maxDimension) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
   }
 
   private static class ARGB8888_BitmapExtractor implements BitmapExtractor {
     @Override
-    public BufferedImage getImage(int width, int height, byte[] rgba) {
-      @SuppressWarnings("UndesirableClassUsage")
-      BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      for (int y = 0; y < height; y++) {
-        int stride = y * width;
-        for (int x = 0; x < width; x++) {
-          int i = (stride + x) * 4;
-          long argb = 0;
-          argb |= ((long) rgba[i    ] & 0xff) << 16; // r
-          argb |= ((long) rgba[i + 1] & 0xff) << 8;  // g
-          argb |= ((long) rgba[i + 2] & 0xff);       // b
-          argb |= ((long) rgba[i + 3] & 0xff) << 24; // a
-          bufferedImage.setRGB(x, y, (int) (argb & 0xffffffffL));
-        }
-      }
-
-      return bufferedImage;
+    public int getArgb(byte[] rgba, int width, int x, int y) {
+      int i = (y * width + x) * 4;
+      long argb = 0;
+      argb |= ((long) rgba[i    ] & 0xff) << 16; // r
+      argb |= ((long) rgba[i + 1] & 0xff) << 8;  // g
+      argb |= ((long) rgba[i + 2] & 0xff);       // b
+      argb |= ((long) rgba[i + 3] & 0xff) << 24; // a
+      return (int) (argb & 0xffffffffL);
     }
   }
 
   private static class RGB565_BitmapExtractor implements BitmapExtractor {
     @Override
-    public BufferedImage getImage(int width, int height, byte[] rgb) {
+    public int getArgb(byte[] rgb, int width, int x, int y) {
       int bytesPerPixel = 2;
-
-      @SuppressWarnings("UndesirableClassUsage")
-      BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      for (int y = 0; y < height; y++) {
-        int stride = y * width;
-        for (int x = 0; x < width; x++) {
-          int index = (stride + x) * bytesPerPixel;
-          int value = (rgb[index] & 0x00ff) | (rgb[index + 1] << 8) & 0xff00;
-          // RGB565 to RGB888
-          // Multiply by 255/31 to convert from 5 bits (31 max) to 8 bits (255)
-          int r = ((value >>> 11) & 0x1f) * 255 / 31;
-          int g = ((value >>> 5) & 0x3f) * 255 / 63;
-          int b = ((value) & 0x1f) * 255 / 31;
-          int a = 0xFF;
-          int argb = a << 24 | r << 16 | g << 8 | b;
-          bufferedImage.setRGB(x, y, argb);
-        }
-      }
-
-      return bufferedImage;
+      int index = (y * width + x) * bytesPerPixel;
+      int value = (rgb[index] & 0x00ff) | (rgb[index + 1] << 8) & 0xff00;
+      // RGB565 to RGB888
+      // Multiply by 255/31 to convert from 5 bits (31 max) to 8 bits (255)
+      int r = ((value >>> 11) & 0x1f) * 255 / 31;
+      int g = ((value >>> 5) & 0x3f) * 255 / 63;
+      int b = ((value) & 0x1f) * 255 / 31;
+      int a = 0xFF;
+      return a << 24 | r << 16 | g << 8 | b;
     }
   }
 
   private static class ALPHA8_BitmapExtractor implements BitmapExtractor {
     @Override
-    public BufferedImage getImage(int width, int height, byte[] rgb) {
-      //noinspection UndesirableClassUsage
-      BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      for (int y = 0; y < height; y++) {
-        int stride = y * width;
-        for (int x = 0; x < width; x++) {
-          int index = stride + x;
-          int value = rgb[index];
-          int argb = value << 24 | 0xff << 16 | 0xff << 8 | 0xff;
-          bufferedImage.setRGB(x, y, argb);
-        }
-      }
-
-      return bufferedImage;
+    public int getArgb(byte[] rgb, int width, int x, int y) {
+      int value = rgb[y * width + x];
+      return value << 24 | 0xff << 16 | 0xff << 8 | 0xff;
     }
   }
 }
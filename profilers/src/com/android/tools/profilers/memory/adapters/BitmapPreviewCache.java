@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the images of the bitmap instances of a capture, shown by the bitmap viewer when an instance is selected. Images are
+ * downsampled to at most {@link #PREVIEW_MAX_DIMENSION} pixels on each side, decoded in the background as their rows are scrolled into
+ * view, and the least recently used ones are evicted once the cache holds more than a given number of pixels. Instances whose bitmap
+ * can't be decoded are remembered, so that they are not decoded again.
+ */
+public final class BitmapPreviewCache {
+  public static final int PREVIEW_MAX_DIMENSION = 2048;
+
+  private static final long DEFAULT_MAX_CACHED_PIXELS = 16L * 1024 * 1024;
+
+  private final long myMaxCachedPixels;
+
+  private final LinkedHashMap<InstanceObject, BufferedImage> myPreviews = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Set<InstanceObject> myPendingInstances = new HashSet<>();
+
+  private final Set<InstanceObject> myUndecodableInstances = new HashSet<>();
+
+  private long myCachedPixels = 0;
+
+  /**
+   * Incremented by {@link #clear()}, so that previews decoded for a capture that is not selected anymore are not cached.
+   */
+  private int myGeneration = 0;
+
+  public BitmapPreviewCache() {
+    this(DEFAULT_MAX_CACHED_PIXELS);
+  }
+
+  @VisibleForTesting
+  BitmapPreviewCache(long maxCachedPixels) {
+    myMaxCachedPixels = maxCachedPixels;
+  }
+
+  /**
+   * @return the preview of the bitmap of {@code instance} if it has been decoded, null otherwise.
+   */
+  @Nullable
+  public BufferedImage getPreview(@NotNull InstanceObject instance) {
+    synchronized (myPreviews) {
+      return myPreviews.get(instance);
+    }
+  }
+
+  /**
+   * @return the preview of the bitmap of {@code instance}, decoded on the calling thread and cached if it has not been decoded yet, or
+   * null if {@code instance} is not a bitmap that can be decoded.
+   */
+  @Nullable
+  public BufferedImage getOrDecodePreview(@NotNull InstanceObject instance) {
+    int generation;
+    synchronized (myPreviews) {
+      BufferedImage preview = myPreviews.get(instance);
+      if (preview != null || myUndecodableInstances.contains(instance)) {
+        return preview;
+      }
+      generation = myGeneration;
+    }
+    BufferedImage preview = decode(instance);
+    synchronized (myPreviews) {
+      if (generation == myGeneration) {
+        record(instance, preview);
+      }
+    }
+    return preview;
+  }
+
+  /**
+   * Decodes the previews of the bitmaps among {@code instances} on {@code executor}, and runs {@code onDecoded} after each preview has
+   * been cached. Instances that are not bitmaps, that are already cached or being decoded, or that could not be decoded before, are
+   * skipped.
+   */
+  public void preDecodeAsync(@NotNull Collection<InstanceObject> instances, @NotNull Executor executor, @NotNull Runnable onDecoded) {
+    for (InstanceObject instance : instances) {
+      if (!AndroidBitmapDataProvider.isBitmapInstance(instance)) {
+        continue;
+      }
+      int generation;
+      synchronized (myPreviews) {
+        if (myPreviews.containsKey(instance) || myUndecodableInstances.contains(instance) || !myPendingInstances.add(instance)) {
+          continue;
+        }
+        generation = myGeneration;
+      }
+      executor.execute(() -> {
+        BufferedImage preview = null;
+        try {
+          preview = decode(instance);
+        }
+        finally {
+          synchronized (myPreviews) {
+            if (generation == myGeneration) {
+              myPendingInstances.remove(instance);
+              record(instance, preview);
+            }
+          }
+        }
+        if (preview != null) {
+          onDecoded.run();
+        }
+      });
+    }
+  }
+
+  public boolean isCached(@NotNull InstanceObject instance) {
+    synchronized (myPreviews) {
+      return myPreviews.containsKey(instance);
+    }
+  }
+
+  @VisibleForTesting
+  boolean isUndecodable(@NotNull InstanceObject instance) {
+    synchronized (myPreviews) {
+      return myUndecodableInstances.contains(instance);
+    }
+  }
+
+  /**
+   * Drops all the previews, including the ones still being decoded.
+   */
+  public void clear() {
+    synchronized (myPreviews) {
+      myGeneration++;
+      myPreviews.clear();
+      myPendingInstances.clear();
+      myUndecodableInstances.clear();
+      myCachedPixels = 0;
+    }
+  }
+
+  @Nullable
+  private static BufferedImage decode(@NotNull InstanceObject instance) {
+    AndroidBitmapDataProvider dataProvider = AndroidBitmapDataProvider.createDecoder(instance);
+    return dataProvider == null ? null : BitmapDecoder.getBitmap(dataProvider, PREVIEW_MAX_DIMENSION);
+  }
+
+  /**
+   * Caches {@code preview}, or remembers that {@code instance} can't be decoded if it is null. Must be called while holding the lock on
+   * {@link #myPreviews}.
+   */
+  private void record(@NotNull InstanceObject instance, @Nullable BufferedImage preview) {
+    if (preview == null) {
+      myUndecodableInstances.add(instance);
+    }
+    else {
+      cache(instance, preview);
+    }
+  }
+
+  /**
+   * Must be called while holding the lock on {@link #myPreviews}.
+   */
+  private void cache(@NotNull InstanceObject instance, @NotNull BufferedImage preview) {
+    BufferedImage previous = myPreviews.put(instance, preview);
+    if (previous != null) {
+      myCachedPixels -= getPixelCount(previous);
+    }
+    myCachedPixels += getPixelCount(preview);
+
+    // Evict the least recently used previews, but always keep the one just decoded.
+    Iterator<Map.Entry<InstanceObject, BufferedImage>> iterator = myPreviews.entrySet().iterator();
+    while (myCachedPixels > myMaxCachedPixels && myPreviews.size() > 1) {
+      Map.Entry<InstanceObject, BufferedImage> eldest = iterator.next();
+      myCachedPixels -= getPixelCount(eldest.getValue());
+      iterator.remove();
+    }
+  }
+
+  private static long getPixelCount(@NotNull BufferedImage image) {
+    return (long)image.getWidth() * image.getHeight();
+  }
+}
@@ -137,8 +137,8 @@ public final class ClassDb {
     @NotNull private final String myClassName;
     @NotNull private final String[] mySplitPackageName;
 
-    // known exact retained size, or -1 if not know (e.g. for live allocations)
-    private final long myRetainedSize;
+    // known exact retained size, or -1 if not know (e.g. for live allocations, or heap dumps whose retained sizes are being computed)
+    private volatile long myRetainedSize;
 
     /**=
      * @param classId       unique identifier for the class.
@@ -202,6 +202,10 @@ public final class ClassDb {
       return myRetainedSize;
     }
 
+    void setRetainedSize(long retainedSize) {
+      myRetainedSize = retainedSize;
+    }
+
     @Override
     public int hashCode() {
       return myClassName.hashCode();
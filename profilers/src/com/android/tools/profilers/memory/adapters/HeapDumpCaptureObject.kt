@@ -51,6 +51,8 @@ import java.util.HashMap
 import java.util.HashSet
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
 import java.util.stream.Collectors
 import java.util.stream.Stream
 
@@ -62,6 +64,21 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
                                  private val ideProfilerServices: IdeProfilerServices) : CaptureObject {
   private val _heapSets: MutableMap<Int, HeapSet> = HashMap()
   private val instanceIndex = Long2ObjectOpenHashMap<InstanceObject>()
+  // Instances of the reference graph, by node index
+  private val graphInstances = ArrayList<Instance>()
+
+  // Distance of each node of the reference graph to a GC root, known once loaded
+  @Volatile
+  private var depths: IntArray? = null
+
+  // Retained size of each node of the reference graph, computed in the background once loaded
+  @Volatile
+  private var retainedSizes: LongArray? = null
+  private val retainedSizesListeners = mutableListOf<Runnable>()
+
+  // Background computation of the retained sizes, cancelled when the capture is unloaded
+  @Volatile
+  private var retainedSizesTask: Future<*>? = null
 
   @get:VisibleForTesting
   val classDb = ClassDb()
@@ -115,7 +132,6 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
   fun load(buffer: InMemoryBuffer) {
     val nativeRegistryPostProcessor = NativeRegistryPostProcessor()
     val snapshot = Snapshot.createSnapshot(buffer!!, proguardMap ?: ProguardMap(), listOf(nativeRegistryPostProcessor))
-    snapshot.computeRetainedSizes()
     hasNativeAllocations = nativeRegistryPostProcessor.hasNativeAllocations
     hasLoaded = true
     val javaLangClassObject = snapshot.heaps.stream()
@@ -130,12 +146,15 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
         { _, id, classInst -> addInstance(superHeap, id, classInst) }
       }
     heapSetMappings.forEach { (heap, heapSet) ->
-      heap.classes.forEach { addInstanceToRightHeap(heapSet, it.id, createClassObjectInstance(javaLangClassObject, it)) }
+      heap.classes.forEach {
+        addInstanceToRightHeap(heapSet, it.id, addGraphNode(it, createClassObjectInstance(javaLangClassObject, it)))
+      }
       heap.forEachInstance(object : TObjectProcedure<Instance> {
         override fun execute(instance: Instance): Boolean {
           assert(ClassDb.JAVA_LANG_CLASS != instance.classObj!!.className)
           val classEntry = instance.classObj!!.makeEntry()
-          addInstanceToRightHeap(heapSet, instance.id, HeapDumpInstanceObject(this@HeapDumpCaptureObject, instance, classEntry, null))
+          addInstanceToRightHeap(heapSet, instance.id,
+                                 addGraphNode(instance, HeapDumpInstanceObject(this@HeapDumpCaptureObject, instance, classEntry, null)))
           return true
         }
       })
@@ -143,18 +162,65 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
         _heapSets.put(heap.id, heapSet)
       }
     }
+
+    // Depths are cheap to compute and shown with the instances. Retained sizes require the dominator tree, so they are computed in the
+    // background and shown once they are all known.
+    val graph = HeapGraph.of(graphInstances, snapshot.gcRoots)
+    depths = graph.computeDepths()
+    val task = FutureTask<Unit> { computeRetainedSizes(graph) }
+    retainedSizesTask = task
+    ideProfilerServices.poolExecutor.execute(task)
+  }
+
+  private fun computeRetainedSizes(graph: HeapGraph) {
+    val sizes = graph.computeDominatorTree().computeRetainedSizes(LongArray(graphInstances.size) { graphInstances[it].size.toLong() })
+    if (retainedSizesTask?.isCancelled == true) {
+      return
+    }
+    graphInstances.forEachIndexed { node, instance ->
+      if (instance is ClassObj) {
+        classDb.getEntry(instance.id).retainedSize = sizes[node]
+      }
+    }
+    retainedSizes = sizes
+    ideProfilerServices.mainExecutor.execute {
+      // Sets may have summed up the unknown retained sizes of their instances.
+      _heapSets.values.forEach { it.invalidateRetainedSizes() }
+      synchronized(retainedSizesListeners) { retainedSizesListeners.toList() }.forEach(Runnable::run)
+    }
+  }
+
+  /**
+   * Registers [listener] to run on the main thread once the retained sizes of the instances are known. Until then, instances report an
+   * invalid retained size.
+   *
+   * @return false if the retained sizes are already known, in which case [listener] is not registered
+   */
+  fun addRetainedSizesListener(listener: Runnable) = synchronized(retainedSizesListeners) {
+    retainedSizes == null && retainedSizesListeners.add(listener)
   }
 
+  internal fun getDepth(nodeIndex: Int) = depths?.get(nodeIndex) ?: Int.MAX_VALUE
+
+  internal fun getRetainedSize(nodeIndex: Int) = retainedSizes?.get(nodeIndex) ?: MemoryObject.INVALID_VALUE.toLong()
+
   private fun addInstance(heapSet: HeapSet, id: Long, instObj: InstanceObject) {
     assert(!instanceIndex.containsKey(id))
     instanceIndex.put(id, instObj)
     heapSet.addDeltaInstanceObject(instObj)
   }
 
+  private fun addGraphNode(instance: Instance, instObj: InstanceObject) = instObj.also {
+    (it as HeapDumpInstanceObject).nodeIndex = graphInstances.size
+    graphInstances.add(instance)
+  }
+
   override fun isDoneLoading() = hasLoaded || isLoadingError
   override fun isError() = isLoadingError
   override fun unload() {
     executorService.shutdownNow()
+    retainedSizesTask?.cancel(true)
+    synchronized(retainedSizesListeners) { retainedSizesListeners.clear() }
   }
 
   override fun getClassifierAttributes() =
@@ -233,7 +299,8 @@ open class HeapDumpCaptureObject(private val client: ProfilerClient,
 
   private fun countBytes() = doGetBytesRequest().serializedSize
 
+  // The retained size of the class is only known once the retained sizes are computed.
   private fun ClassObj.makeEntry(name: String = this.className) =
-    if (superClassObj != null) classDb.registerClass(id, superClassObj!!.id, name, totalRetainedSize)
-    else classDb.registerClass(id, name, totalRetainedSize)
+    if (superClassObj != null) classDb.registerClass(id, superClassObj!!.id, name)
+    else classDb.registerClass(id, name)
 }
\ No newline at end of file
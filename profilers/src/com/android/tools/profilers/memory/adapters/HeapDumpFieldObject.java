@@ -79,8 +79,9 @@ final class HeapDumpFieldObject implements FieldObject {
 
         myNativeSize = instance.getNativeSize();
         myShallowSize = instance.getSize();
-        myRetainedSize = instance.getTotalRetainedSize();
-        myDepth = instance.getDistanceToGcRoot();
+        // Only the instances of the capture have computed retained sizes, which getRetainedSize reads from myInstanceObject.
+        myRetainedSize = INVALID_VALUE;
+        myDepth = myInstanceObject != null ? myInstanceObject.getDepth() : instance.getDistanceToGcRoot();
       }
     }
     else {
@@ -89,7 +90,8 @@ final class HeapDumpFieldObject implements FieldObject {
       myNativeSize = 0;
       myShallowSize = type.getSize();
       myRetainedSize = type.getSize();
-      myDepth = parentInstance.getDistanceToGcRoot();
+      InstanceObject parentObject = captureObject.findInstanceObject(parentInstance);
+      myDepth = parentObject != null ? parentObject.getDepth() : parentInstance.getDistanceToGcRoot();
     }
 
     myHashCode = Arrays.hashCode(new Object[]{myInstanceObject, getFieldName(), getValueType(), myField.getValue()});
@@ -131,7 +133,8 @@ final class HeapDumpFieldObject implements FieldObject {
 
   @Override
   public long getRetainedSize() {
-    return myRetainedSize;
+    // Retained sizes of heap dump instances are computed in the background, so they are not final when the field is created.
+    return myInstanceObject != null ? myInstanceObject.getRetainedSize() : myRetainedSize;
   }
 
   @Override
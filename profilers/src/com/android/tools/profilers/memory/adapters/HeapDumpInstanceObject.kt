@@ -47,6 +47,9 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
     }
   }
 
+  // Index of the instance in the reference graph of the capture, or -1 if it is not part of it
+  var nodeIndex = -1
+
   override fun equals(other: Any?) = other is HeapDumpInstanceObject && instance === other.instance
   override fun hashCode() = System.identityHashCode(instance) // cheap hashcode implementation in sync with `equals` as defined above
 
@@ -71,10 +74,10 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
 
   override fun getHeapId() = instance.heap!!.id
   override fun getClassEntry() = classEntry
-  override fun getDepth() = instance.distanceToGcRoot
+  override fun getDepth() = if (nodeIndex < 0) instance.distanceToGcRoot else captureObject.getDepth(nodeIndex)
   override fun getNativeSize() = instance.nativeSize
   override fun getShallowSize() = instance.size
-  override fun getRetainedSize() = instance.totalRetainedSize
+  override fun getRetainedSize() = if (nodeIndex < 0) instance.totalRetainedSize else captureObject.getRetainedSize(nodeIndex)
 
   override fun getFieldCount() = when (instance) {
     is ClassInstance -> instance.values.size
@@ -141,7 +144,7 @@ internal class HeapDumpInstanceObject(private val captureObject: HeapDumpCapture
 
   @VisibleForTesting
   fun extractReferences(): List<ReferenceObject> {
-    val order = compareBy(Instance::distanceToGcRoot, Instance::id) // to enforce more deterministic order
+    val order = compareBy<Instance>({ captureObject.findInstanceObject(it)?.depth ?: Int.MAX_VALUE }, Instance::id) // to enforce more deterministic order
     // Hard referrers first, soft second
     val sortedReferences = instance.hardReverseReferences.sortedWith(order) +
                            instance.softReverseReferences.sortedWith(order)
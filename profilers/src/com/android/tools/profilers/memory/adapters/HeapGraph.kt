@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.android.tools.perflib.heap.Instance
+import com.android.tools.perflib.heap.RootObj
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+
+/**
+ * Graph of the hard references between the instances of a heap dump, stored as primitive adjacency arrays so that graphs of millions of
+ * instances can be traversed without allocating anything per instance or per reference.
+ *
+ * Instances are numbered `0 until nodeCount`. The GC roots are the successors of a virtual root, numbered [nodeCount].
+ */
+class HeapGraph private constructor(val nodeCount: Int,
+                                    private val successorOffsets: IntArray,
+                                    private val successors: IntArray,
+                                    private val predecessorOffsets: IntArray,
+                                    private val predecessors: IntArray) {
+  private val virtualRoot get() = nodeCount
+
+  /**
+   * @return the length of the shortest path from a GC root to each node, where GC roots are at depth 0 and nodes that cannot be reached
+   * are at depth [Int.MAX_VALUE].
+   */
+  fun computeDepths(): IntArray {
+    val depths = IntArray(nodeCount) { Int.MAX_VALUE }
+    val queue = IntArray(nodeCount)
+    var head = 0
+    var tail = 0
+    for (i in successorOffsets[virtualRoot] until successorOffsets[virtualRoot + 1]) {
+      val root = successors[i]
+      if (depths[root] == Int.MAX_VALUE) {
+        depths[root] = 0
+        queue[tail++] = root
+      }
+    }
+    while (head < tail) {
+      val node = queue[head++]
+      for (i in successorOffsets[node] until successorOffsets[node + 1]) {
+        val successor = successors[i]
+        if (depths[successor] == Int.MAX_VALUE) {
+          depths[successor] = depths[node] + 1
+          queue[tail++] = successor
+        }
+      }
+    }
+    return depths
+  }
+
+  /**
+   * Computes the dominator tree of the nodes reachable from the GC roots with the semi-NCA algorithm, which computes the semi-dominators
+   * like Lengauer-Tarjan does, then the immediate dominators as nearest common ancestors in the partially built tree.
+   */
+  fun computeDominatorTree(): DominatorTree {
+    val size = nodeCount + 1
+    // Number the reachable nodes in depth-first preorder, with an explicit stack as the graph can be millions of nodes deep.
+    val preorder = IntArray(size) { -1 }
+    val vertices = IntArray(size)
+    val parents = IntArray(size)
+    val stackNodes = IntArray(size)
+    val stackEdges = IntArray(size)
+    var reachableCount = 1
+    preorder[virtualRoot] = 0
+    vertices[0] = virtualRoot
+    stackNodes[0] = virtualRoot
+    stackEdges[0] = successorOffsets[virtualRoot]
+    var stackSize = 1
+    while (stackSize > 0) {
+      val node = stackNodes[stackSize - 1]
+      val edge = stackEdges[stackSize - 1]
+      if (edge == successorOffsets[node + 1]) {
+        stackSize--
+        continue
+      }
+      stackEdges[stackSize - 1] = edge + 1
+      val successor = successors[edge]
+      if (preorder[successor] == -1) {
+        preorder[successor] = reachableCount
+        vertices[reachableCount] = successor
+        parents[reachableCount] = preorder[node]
+        reachableCount++
+        stackNodes[stackSize] = successor
+        stackEdges[stackSize] = successorOffsets[successor]
+        stackSize++
+      }
+    }
+
+    // From here on, nodes are identified by their preorder number.
+    val semis = IntArray(reachableCount) { it }
+    val labels = IntArray(reachableCount) { it }
+    val ancestors = IntArray(reachableCount) { -1 }
+    val path = IntArray(reachableCount)
+    for (w in reachableCount - 1 downTo 1) {
+      val node = vertices[w]
+      for (i in predecessorOffsets[node] until predecessorOffsets[node + 1]) {
+        val v = preorder[predecessors[i]]
+        if (v == -1) {
+          continue
+        }
+        val u = eval(v, ancestors, labels, semis, path)
+        if (semis[u] < semis[w]) {
+          semis[w] = semis[u]
+        }
+      }
+      ancestors[w] = parents[w]
+    }
+
+    val idoms = IntArray(reachableCount)
+    for (w in 1 until reachableCount) {
+      var dominator = parents[w]
+      while (dominator > semis[w]) {
+        dominator = idoms[dominator]
+      }
+      idoms[w] = dominator
+    }
+    return DominatorTree(nodeCount, preorder, vertices.copyOf(reachableCount), idoms)
+  }
+
+  /**
+   * Returns the node with the smallest semi-dominator on the path from [v] to the root of its tree in the forest of processed nodes,
+   * compressing the path along the way.
+   */
+  private fun eval(v: Int, ancestors: IntArray, labels: IntArray, semis: IntArray, path: IntArray): Int {
+    if (ancestors[v] == -1) {
+      return v
+    }
+    var pathSize = 0
+    var node = v
+    while (ancestors[ancestors[node]] != -1) {
+      path[pathSize++] = node
+      node = ancestors[node]
+    }
+    // Compress from the top of the path down, so that each node sees the already compressed label of its ancestor.
+    while (pathSize > 0) {
+      node = path[--pathSize]
+      val ancestor = ancestors[node]
+      if (semis[labels[ancestor]] < semis[labels[node]]) {
+        labels[node] = labels[ancestor]
+      }
+      ancestors[node] = ancestors[ancestor]
+    }
+    return labels[v]
+  }
+
+  class Builder(private val nodeCount: Int) {
+    private val edgeSources = IntArrayList()
+    private val edgeTargets = IntArrayList()
+
+    fun addRoot(node: Int) = addEdge(nodeCount, node)
+
+    fun addEdge(from: Int, to: Int) = apply {
+      edgeSources.add(from)
+      edgeTargets.add(to)
+    }
+
+    fun build(): HeapGraph {
+      val sources = edgeSources.toIntArray()
+      val targets = edgeTargets.toIntArray()
+      val successorOffsets = computeOffsets(sources)
+      val predecessorOffsets = computeOffsets(targets)
+      return HeapGraph(nodeCount,
+                       successorOffsets, group(sources, targets, successorOffsets),
+                       predecessorOffsets, group(targets, sources, predecessorOffsets))
+    }
+
+    /**
+     * @return the offset of the edges of each node once grouped by [keys], followed by the number of edges.
+     */
+    private fun computeOffsets(keys: IntArray) = IntArray(nodeCount + 2).also { offsets ->
+      keys.forEach { offsets[it + 1]++ }
+      for (i in 1 until offsets.size) {
+        offsets[i] += offsets[i - 1]
+      }
+    }
+
+    private fun group(keys: IntArray, values: IntArray, offsets: IntArray) = IntArray(keys.size).also { grouped ->
+      val next = offsets.copyOf(nodeCount + 1)
+      for (i in keys.indices) {
+        grouped[next[keys[i]]++] = values[i]
+      }
+    }
+  }
+
+  companion object {
+    /**
+     * Builds the graph of the hard references between [instances], where each instance is numbered by its index in [instances].
+     * References from instances that are not in [instances] are ignored.
+     */
+    @JvmStatic
+    fun of(instances: List<Instance>, gcRoots: Collection<RootObj>): HeapGraph {
+      val nodesById = Long2IntOpenHashMap(instances.size).apply { defaultReturnValue(-1) }
+      instances.forEachIndexed { node, instance -> nodesById.put(instance.id, node) }
+      val builder = Builder(instances.size)
+      gcRoots.forEach { root ->
+        val node = root.referredInstance?.let { nodesById.get(it.id) } ?: -1
+        if (node != -1) {
+          builder.addRoot(node)
+        }
+      }
+      instances.forEachIndexed { node, instance ->
+        for (referrer in instance.hardReverseReferences) {
+          val referrerNode = nodesById.get(referrer.id)
+          if (referrerNode != -1) {
+            builder.addEdge(referrerNode, node)
+          }
+        }
+      }
+      return builder.build()
+    }
+  }
+}
+
+/**
+ * Dominator tree of a [HeapGraph], where the nodes are also identified by their depth-first preorder number, so that the immediate
+ * dominator of a node always comes before it.
+ */
+class DominatorTree internal constructor(private val nodeCount: Int,
+                                         private val preorder: IntArray,
+                                         private val vertices: IntArray,
+                                         private val idoms: IntArray) {
+  /**
+   * @return the immediate dominator of [node], [nodeCount] if [node] is only dominated by the virtual root, or -1 if [node] cannot be
+   * reached from the GC roots.
+   */
+  fun getImmediateDominator(node: Int) = when (val p = preorder[node]) {
+    -1 -> -1
+    else -> vertices[idoms[p]]
+  }
+
+  /**
+   * @return the retained size of each node, i.e. the sum of the shallow sizes of the nodes it dominates, including itself. Nodes that
+   * cannot be reached from the GC roots retain nothing.
+   */
+  fun computeRetainedSizes(shallowSizes: LongArray): LongArray {
+    val accumulated = LongArray(vertices.size)
+    for (w in 1 until vertices.size) {
+      accumulated[w] = shallowSizes[vertices[w]]
+    }
+    for (w in vertices.size - 1 downTo 1) {
+      accumulated[idoms[w]] += accumulated[w]
+    }
+    return LongArray(nodeCount).also { retainedSizes ->
+      for (w in 1 until vertices.size) {
+        retainedSizes[vertices[w]] = accumulated[w]
+      }
+    }
+  }
+}
@@ -176,6 +176,16 @@ abstract class ClassifierSet(supplyName: () -> String) : MemoryObject {
     is State.Coalesced -> s.retainedSize = -1
     else -> {}
   }
+
+  /**
+   * Drops the cached retained sizes of this set and all its descendants, e.g. once the retained sizes of their instances are known.
+   */
+  fun invalidateRetainedSizes() {
+    when (val s = state) {
+      is State.Coalesced -> invalidateRetainedSizeCache()
+      is State.Partitioned -> s.classifier.allClassifierSets.forEach { it.invalidateRetainedSizes() }
+    }
+  }
   private fun ensurePartitioned() = state.forced().also { state = it }
   protected fun coalesce() {
     state = state.retracted(::createSubClassifier)
@@ -45,8 +45,10 @@ import com.android.tools.profilers.tasks.ProfilerTaskType;
 import com.android.tools.profilers.tasks.taskhandlers.singleartifact.cpu.SystemTraceTaskHandler;
 import com.google.common.collect.ImmutableList;
 import com.google.wireless.android.sdk.stats.AndroidProfilerEvent;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
@@ -1751,6 +1753,41 @@ public final class StudioProfilersTest {
     assertThat(box[0]).isEqualTo(3);
   }
 
+  @Test
+  public void testDevicesAndProcessesAreQueriedOnPoolExecutor() {
+    List<Runnable> poolTasks = new ArrayList<>();
+    FakeIdeProfilerServices ideServices = new FakeIdeProfilerServices() {
+      @NotNull
+      @Override
+      public Executor getPoolExecutor() {
+        return poolTasks::add;
+      }
+    };
+    ideServices.enableTaskBasedUx(false);
+    StudioProfilers profilers = new StudioProfilers(new ProfilerClient(myGrpcServer.getChannel()), ideServices, myTimer);
+
+    Common.Device device = createDevice(AndroidVersion.VersionCodes.BASE, "FakeDevice", Common.Device.State.ONLINE);
+    Common.Process process = createProcess(device.getDeviceId(), 20, "FakeProcess", Common.Process.State.ALIVE);
+    myTransportService.addDevice(device);
+    myTransportService.addProcess(device, process);
+
+    // The update only schedules the query, and doesn't schedule another one while it is pending.
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS);
+    assertThat(profilers.getDeviceProcessMap()).isEmpty();
+    assertThat(poolTasks).hasSize(1);
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS);
+    assertThat(profilers.getDeviceProcessMap()).isEmpty();
+    assertThat(poolTasks).hasSize(1);
+
+    // The result of the query is applied on the next update.
+    poolTasks.remove(0).run();
+    assertThat(profilers.getDeviceProcessMap()).isEmpty();
+    myTimer.tick(FakeTimer.ONE_SECOND_IN_NS);
+    assertThat(profilers.getDeviceProcessMap()).hasSize(1);
+    assertThat(profilers.getDeviceProcessMap().get(device)).hasSize(1);
+    assertThat(profilers.getDeviceProcessMap().get(device).get(0).getName()).isEqualTo("FakeProcess");
+  }
+
   private static Common.Device createDevice(int featureLevel, @NotNull String serial, @NotNull Common.Device.State state) {
     return Common.Device.newBuilder()
       .setDeviceId(serial.hashCode())
@@ -137,7 +137,16 @@ class InMemoryDataSeriesTest {
     assertThat(TestInMemoryDataSeries(dataList).getDataForRange(Range(0.0, 25.0))).containsExactlyElementsIn(dataList)
   }
 
-  private class TestInMemoryDataSeries(val dataList: MutableList<SeriesData<Long>>) : InMemoryDataSeries<Long>() {
+  @Test
+  fun timestampsAreIndexedAgainWhenListChanges() {
+    val series = TestInMemoryDataSeries(generateDataList(1L, 3L))
+    assertThat(series.getDataForRange(Range(15.0, 25.0))).containsExactly(SeriesData(10L, 1L), SeriesData(20L, 2L), SeriesData(30L, 3L))
+
+    series.dataList = generateDataList(4L, 6L)
+    assertThat(series.getDataForRange(Range(45.0, 55.0))).containsExactly(SeriesData(40L, 4L), SeriesData(50L, 5L), SeriesData(60L, 6L))
+  }
+
+  private class TestInMemoryDataSeries(var dataList: MutableList<SeriesData<Long>>) : InMemoryDataSeries<Long>() {
     override fun inMemoryDataList(): MutableList<SeriesData<Long>> {
       return dataList
     }
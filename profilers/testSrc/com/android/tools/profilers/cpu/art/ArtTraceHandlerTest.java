@@ -15,15 +15,19 @@
  */
 package com.android.tools.profilers.cpu.art;
 
+import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -97,6 +101,50 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void testThreadsAreBuiltIndependently() {
+    ArtTraceHandler handler = new ArtTraceHandler();
+    handler.addThread(1, "main");
+    handler.addThread(2, "worker");
+    // Events of the two threads are interleaved, as in a trace.
+    handler.addMethodAction(1, 10, TraceAction.METHOD_ENTER, 0, 0);
+    handler.addMethodAction(2, 20, TraceAction.METHOD_ENTER, 0, 1);
+    handler.addMethodAction(1, 11, TraceAction.METHOD_ENTER, 1, 2);
+    handler.addMethodAction(2, 20, TraceAction.METHOD_EXIT, 2, 3);
+    handler.addMethodAction(1, 11, TraceAction.METHOD_EXIT, 3, 4);
+    handler.addMethodAction(1, 10, TraceAction.METHOD_EXIT, 4, 5);
+
+    Map<Integer, CaptureNode> trees = new HashMap<>();
+    handler.getThreadsGraph().forEach((thread, node) -> trees.put(thread.getId(), node));
+    assertEquals(2, trees.size());
+
+    CaptureNode main = trees.get(1);
+    assertEquals("main", main.getData().getId());
+    assertEquals(1, main.getChildren().size());
+    assertEquals(1, main.getChildren().get(0).getChildren().size());
+    assertEquals(2, main.getChildren().get(0).getChildren().get(0).getDepth());
+
+    CaptureNode worker = trees.get(2);
+    assertEquals("worker", worker.getData().getId());
+    assertEquals(1, worker.getChildren().size());
+    assertTrue(worker.getChildren().get(0).getChildren().isEmpty());
+  }
+
+  @Test
+  public void testProgressIsReported() throws IOException {
+    File trace = CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace");
+    List<Double> progress = new ArrayList<>();
+    ArtTraceHandler handler = new ArtTraceHandler(trace.length(), progress::add);
+    new VmTraceParser(trace, handler).parse();
+    handler.getThreadsGraph();
+
+    assertFalse(progress.isEmpty());
+    assertEquals(1.0, progress.get(progress.size() - 1), 0);
+    for (int i = 1; i < progress.size(); i++) {
+      assertTrue(progress.get(i) >= progress.get(i - 1));
+    }
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("art_non_streaming.trace"), handler);
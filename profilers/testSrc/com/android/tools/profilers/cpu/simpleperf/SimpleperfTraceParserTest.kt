@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu.simpleperf
 import com.android.tools.adtui.model.Range
 import com.android.tools.profiler.proto.SimpleperfReport
 import com.android.tools.profilers.cpu.BaseCpuCapture
+import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils
 import com.android.tools.profilers.cpu.nodemodel.CppFunctionModel
 import com.google.common.collect.Lists
@@ -322,6 +323,42 @@ class SimpleperfTraceParserTest {
     Truth.assertThat(capture.mainThreadId).isEqualTo(BaseCpuCapture.NO_THREAD_ID)
   }
 
+  @Test
+  @Throws(IOException::class)
+  fun parallelAndSequentialModesBuildSameTrees() {
+    val parallelParser = SimpleperfTraceParser(true).apply { parse(myTraceFile, 0) }
+    val sequentialParser = SimpleperfTraceParser(false).apply { parse(myTraceFile, 0) }
+
+    Truth.assertThat(parallelParser.mySamples).isEqualTo(sequentialParser.mySamples)
+    Truth.assertThat(parallelParser.captureTrees.keys).containsExactlyElementsIn(sequentialParser.captureTrees.keys)
+    for ((thread, tree) in parallelParser.captureTrees) {
+      Truth.assertThat(flatten(tree)).isEqualTo(flatten(sequentialParser.captureTrees[thread]!!))
+    }
+  }
+
+  @Test
+  @Throws(IOException::class)
+  fun nodesOfSameCallChainEntryShareTheirModel() {
+    myParser.parse(myTraceFile, 0)
+    val models = myParser.captureTrees.values.flatMap { it.children }.flatMap { descendantsAndSelf(it) }.map { it.data }
+
+    // Models are equal by their content, so the distinct instances would be as many as the nodes if they were not shared.
+    val distinctInstances = models.map { System.identityHashCode(it) }.toSet()
+    Truth.assertThat(distinctInstances.size).isLessThan(models.size)
+  }
+
+  private fun descendantsAndSelf(node: CaptureNode): List<CaptureNode> = listOf(node) + node.children.flatMap { descendantsAndSelf(it) }
+
+  private fun flatten(root: CaptureNode): List<String> {
+    val nodes = mutableListOf<String>()
+    fun visit(node: CaptureNode) {
+      nodes.add("${node.depth} ${node.data.fullName} ${node.startGlobal} ${node.endGlobal} ${node.startThread} ${node.endThread}")
+      node.children.forEach { visit(it) }
+    }
+    visit(root)
+    return nodes
+  }
+
   @Test
   fun tagsSortedByExpectedOrder() {
     val shuffledTags = listOf("/a/b/c", "/c/d/e", "[java]", "/a/*").shuffled()
@@ -468,6 +468,50 @@ class SystemTraceCpuCaptureBuilderTest {
     }
   }
 
+  @Test
+  fun `thread and CPU series are built on the executor and never when read`() {
+    val processes = mapOf(
+      1 to ProcessModel(
+        1, "Process",
+        mapOf(1 to ThreadModel(1, 1, "Thread", listOf(), listOf(), listOf(ThreadStateModel(ThreadState.RUNNING_CAPTURED, 0L, 5L)))),
+        mapOf()))
+    val cpuCores = listOf(CpuCoreModel(0, listOf(SchedulingEventModel(ThreadState.RUNNING, 0L, 40L, 40L, 40L, 0, 33, 0)), mapOf()))
+    var danglingThreadLookups = 0
+    val model = object : SystemTraceModelAdapter by TestModel(processes, emptyMap(), cpuCores, emptyList(), emptyList()) {
+      override fun getDanglingThread(tid: Int): ThreadModel? {
+        danglingThreadLookups++
+        return null
+      }
+    }
+    val tasks = mutableListOf<Runnable>()
+    val builtTracks = mutableListOf<String>()
+
+    val systemTraceData = SystemTraceCpuCaptureBuilder(model).build(0L, 1, Range()) { tasks.add(it) }.systemTraceData!!
+    // One task for the thread and one for the CPU.
+    assertThat(tasks).hasSize(2)
+    assertThat(systemTraceData.cpuCount).isEqualTo(1)
+    systemTraceData.whenThreadStatesBuilt(1) { builtTracks.add("thread") }
+    systemTraceData.whenCpuThreadSliceInfoStatesBuilt(0) { builtTracks.add("cpu") }
+
+    // Reading a series that is not built yet does not build it.
+    assertThat(systemTraceData.getCpuThreadSliceInfoStates(0)).isEmpty()
+    assertThat(systemTraceData.getThreadStatesForThread(1)).isEmpty()
+    assertThat(danglingThreadLookups).isEqualTo(0)
+    assertThat(builtTracks).isEmpty()
+
+    tasks.forEach(Runnable::run)
+    assertThat(builtTracks).containsExactly("thread", "cpu").inOrder()
+    assertThat(systemTraceData.getCpuThreadSliceInfoStates(0)).hasSize(2)
+    assertThat(systemTraceData.getThreadStatesForThread(1).map { it.value })
+      .containsExactly(ThreadState.RUNNING_CAPTURED, ThreadState.NO_ACTIVITY).inOrder()
+
+    // Each series is only built once, and callbacks registered afterwards run right away.
+    tasks.forEach(Runnable::run)
+    assertThat(danglingThreadLookups).isEqualTo(1)
+    systemTraceData.whenCpuThreadSliceInfoStatesBuilt(0) { builtTracks.add("cpu again") }
+    assertThat(builtTracks).containsExactly("thread", "cpu", "cpu again").inOrder()
+  }
+
   class TestModel(
     private val processes: Map<Int, ProcessModel>,
     private val danglingThreads: Map<Int, ThreadModel>,
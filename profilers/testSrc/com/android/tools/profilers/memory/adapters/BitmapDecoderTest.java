@@ -19,11 +19,15 @@ import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.
 import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.BOOLEAN;
 import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.BYTE;
 import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.INT;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import com.google.common.collect.ImmutableSet;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
 public class BitmapDecoderTest {
@@ -71,4 +75,64 @@ public class BitmapDecoderTest {
     assertNull(AndroidBitmapDataProvider.createDecoder(badBitmapInstance1));
     assertNull(AndroidBitmapDataProvider.createDecoder(badBitmapInstance2));
   }
+
+  @Test
+  public void largeBitmapIsDownsampledToFitMaxDimension() {
+    // 5x3 ARGB_8888 bitmap where the red channel of each pixel is its index.
+    byte[] pixels = new byte[5 * 3 * 4];
+    for (int i = 0; i < 5 * 3; i++) {
+      pixels[i * 4] = (byte)i;
+      pixels[i * 4 + 3] = (byte)0xff;
+    }
+    BitmapDecoder.BitmapDataProvider dataProvider = new FixedBitmapDataProvider(BitmapDecoder.PixelFormat.ARGB_8888, 5, 3, pixels);
+
+    BufferedImage fullImage = BitmapDecoder.getBitmap(dataProvider);
+    assertNotNull(fullImage);
+    assertEquals(5, fullImage.getWidth());
+    assertEquals(3, fullImage.getHeight());
+    assertEquals(0xff070000, fullImage.getRGB(2, 1));
+
+    BufferedImage preview = BitmapDecoder.getBitmap(dataProvider, 3);
+    assertNotNull(preview);
+    assertEquals(3, preview.getWidth());
+    assertEquals(2, preview.getHeight());
+    // Each pixel of the preview is the top-left pixel of its 2x2 block.
+    assertEquals(0xff000000, preview.getRGB(0, 0));
+    assertEquals(0xff040000, preview.getRGB(2, 0));
+    assertEquals(0xff0c0000, preview.getRGB(1, 1));
+  }
+
+  @Test
+  public void sampleSizeIsSmallestPowerOfTwoThatFits() {
+    assertEquals(1, BitmapDecoder.getSampleSize(new Dimension(100, 50), 100));
+    assertEquals(2, BitmapDecoder.getSampleSize(new Dimension(101, 50), 100));
+    assertEquals(4, BitmapDecoder.getSampleSize(new Dimension(100, 4000), 1024));
+  }
+
+  private static class FixedBitmapDataProvider implements BitmapDecoder.BitmapDataProvider {
+    private final BitmapDecoder.PixelFormat myFormat;
+    private final Dimension mySize;
+    private final byte[] myPixels;
+
+    private FixedBitmapDataProvider(BitmapDecoder.PixelFormat format, int width, int height, byte[] pixels) {
+      myFormat = format;
+      mySize = new Dimension(width, height);
+      myPixels = pixels;
+    }
+
+    @Override
+    public BitmapDecoder.PixelFormat getBitmapConfigName() {
+      return myFormat;
+    }
+
+    @Override
+    public Dimension getDimension() {
+      return mySize;
+    }
+
+    @Override
+    public byte[] getPixelBytes(@NotNull Dimension size) {
+      return myPixels;
+    }
+  }
 }
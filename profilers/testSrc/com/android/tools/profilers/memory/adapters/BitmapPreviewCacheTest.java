@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.ARRAY;
+import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.BOOLEAN;
+import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.BYTE;
+import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.INT;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class BitmapPreviewCacheTest {
+  private final FakeCaptureObject myCaptureObject = new FakeCaptureObject.Builder().build();
+
+  @Test
+  public void previewIsDecodedOnce() {
+    BitmapPreviewCache cache = new BitmapPreviewCache();
+    FakeInstanceObject bitmap = createBitmap(2, 2);
+    AtomicInteger decodedCount = new AtomicInteger();
+
+    assertThat(cache.getPreview(bitmap)).isNull();
+    cache.preDecodeAsync(Collections.singletonList(bitmap), MoreExecutors.directExecutor(), decodedCount::incrementAndGet);
+    BufferedImage preview = cache.getPreview(bitmap);
+    assertThat(preview).isNotNull();
+    assertThat(cache.isCached(bitmap)).isTrue();
+    cache.preDecodeAsync(Collections.singletonList(bitmap), MoreExecutors.directExecutor(), decodedCount::incrementAndGet);
+    assertThat(cache.getPreview(bitmap)).isSameAs(preview);
+    assertThat(decodedCount.get()).isEqualTo(1);
+
+    cache.clear();
+    assertThat(cache.isCached(bitmap)).isFalse();
+  }
+
+  @Test
+  public void leastRecentlyUsedPreviewsAreEvictedOverPixelBudget() {
+    BitmapPreviewCache cache = new BitmapPreviewCache(8);
+    FakeInstanceObject bitmap1 = createBitmap(2, 2);
+    FakeInstanceObject bitmap2 = createBitmap(2, 2);
+    FakeInstanceObject bitmap3 = createBitmap(2, 2);
+
+    cache.preDecodeAsync(Arrays.asList(bitmap1, bitmap2), MoreExecutors.directExecutor(), () -> {});
+    cache.getPreview(bitmap1);
+    cache.preDecodeAsync(Collections.singletonList(bitmap3), MoreExecutors.directExecutor(), () -> {});
+    assertThat(cache.isCached(bitmap1)).isTrue();
+    assertThat(cache.isCached(bitmap2)).isFalse();
+    assertThat(cache.isCached(bitmap3)).isTrue();
+  }
+
+  @Test
+  public void onlyBitmapsArePreDecoded() {
+    BitmapPreviewCache cache = new BitmapPreviewCache();
+    FakeInstanceObject bitmap = createBitmap(2, 2);
+    FakeInstanceObject other = new FakeInstanceObject.Builder(myCaptureObject, 3, "java.lang.Object").build();
+
+    cache.preDecodeAsync(Arrays.asList(bitmap, other), MoreExecutors.directExecutor(), () -> {});
+    assertThat(cache.isCached(bitmap)).isTrue();
+    assertThat(cache.isCached(other)).isFalse();
+    assertThat(cache.getPreview(other)).isNull();
+  }
+
+  @Test
+  public void previewsDecodedAfterClearAreDropped() {
+    BitmapPreviewCache cache = new BitmapPreviewCache();
+    FakeInstanceObject bitmap = createBitmap(2, 2);
+    List<Runnable> tasks = new ArrayList<>();
+
+    cache.preDecodeAsync(Collections.singletonList(bitmap), tasks::add, () -> {});
+    assertThat(tasks).hasSize(1);
+    cache.clear();
+    tasks.remove(0).run();
+    assertThat(cache.isCached(bitmap)).isFalse();
+
+    // The instance is not considered as being decoded anymore.
+    cache.preDecodeAsync(Collections.singletonList(bitmap), tasks::add, () -> {});
+    assertThat(tasks).hasSize(1);
+    tasks.remove(0).run();
+    assertThat(cache.isCached(bitmap)).isTrue();
+  }
+
+  @Test
+  public void undecodableBitmapsAreNotDecodedAgain() {
+    BitmapPreviewCache cache = new BitmapPreviewCache();
+    FakeInstanceObject bitmap = new FakeInstanceObject.Builder(myCaptureObject, 1, AndroidBitmapDataProvider.BITMAP_FQCN).build();
+    List<Runnable> tasks = new ArrayList<>();
+
+    cache.preDecodeAsync(Collections.singletonList(bitmap), tasks::add, () -> {});
+    assertThat(tasks).hasSize(1);
+    tasks.remove(0).run();
+    assertThat(cache.isCached(bitmap)).isFalse();
+    assertThat(cache.isUndecodable(bitmap)).isTrue();
+
+    cache.preDecodeAsync(Collections.singletonList(bitmap), tasks::add, () -> {});
+    assertThat(tasks).isEmpty();
+    assertThat(cache.getOrDecodePreview(bitmap)).isNull();
+
+    cache.clear();
+    assertThat(cache.isUndecodable(bitmap)).isFalse();
+  }
+
+  @Test
+  public void previewDecodedOnDemandIsCached() {
+    BitmapPreviewCache cache = new BitmapPreviewCache();
+    FakeInstanceObject bitmap = createBitmap(2, 2);
+
+    BufferedImage preview = cache.getOrDecodePreview(bitmap);
+    assertThat(preview).isNotNull();
+    assertThat(cache.getOrDecodePreview(bitmap)).isSameAs(preview);
+
+    List<Runnable> tasks = new ArrayList<>();
+    cache.preDecodeAsync(Collections.singletonList(bitmap), tasks::add, () -> {});
+    assertThat(tasks).isEmpty();
+  }
+
+  @NotNull
+  private FakeInstanceObject createBitmap(int width, int height) {
+    FakeInstanceObject bitmap = new FakeInstanceObject.Builder(myCaptureObject, 1, AndroidBitmapDataProvider.BITMAP_FQCN)
+      .setFields(Arrays.asList("mBuffer", "mIsMutable", "mWidth", "mHeight")).build();
+    byte[] pixels = new byte[width * height * 4];
+    bitmap
+      .setFieldValue("mBuffer", ARRAY,
+                     new FakeInstanceObject.Builder(myCaptureObject, 2, "byte[]").setValueType(ARRAY)
+                       .setArray(BYTE, pixels, pixels.length).build())
+      .setFieldValue("mWidth", INT, width)
+      .setFieldValue("mHeight", INT, height)
+      .setFieldValue("mIsMutable", BOOLEAN, false);
+    return bitmap;
+  }
+}
@@ -137,6 +137,9 @@ public class HeapDumpCaptureObjectTest {
     InstanceObject instance1 = findChildClassSetWithName(classClassifier, "Class1").getInstancesStream().findFirst().orElse(null);
     verifyInstance(instance0, "Class0@1 (0x1)", 0, 1, 0);
     verifyInstance(instance1, "Class1@2 (0x2)", 1, 0, 1);
+    // Instance 0 is the only referrer of instance 1, so it retains it.
+    assertEquals(instance1.getShallowSize(), instance1.getRetainedSize());
+    assertEquals(instance0.getShallowSize() + instance1.getShallowSize(), instance0.getRetainedSize());
 
     FieldObject field0 = instance0.getFields().get(0);
     assertEquals(field0.getAsInstance(), instance1);
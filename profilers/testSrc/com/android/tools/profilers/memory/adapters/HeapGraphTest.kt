@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HeapGraphTest {
+  /**
+   * 0 -> 1 -> 3 -> 4
+   * 0 -> 2 -> 3
+   * 4 -> 1 (cycle through 1, 3 and 4)
+   * 5 is a second GC root that refers to 2
+   * 6 -> 4, but 6 cannot be reached
+   */
+  private val graph = HeapGraph.Builder(7)
+    .addRoot(0)
+    .addRoot(5)
+    .addEdge(0, 1)
+    .addEdge(0, 2)
+    .addEdge(1, 3)
+    .addEdge(2, 3)
+    .addEdge(3, 4)
+    .addEdge(4, 1)
+    .addEdge(5, 2)
+    .addEdge(6, 4)
+    .build()
+
+  @Test
+  fun depthsAreShortestDistancesToGcRoots() {
+    assertThat(graph.computeDepths().toList()).containsExactly(0, 1, 1, 2, 3, 0, Int.MAX_VALUE).inOrder()
+  }
+
+  @Test
+  fun immediateDominators() {
+    val tree = graph.computeDominatorTree()
+    val virtualRoot = graph.nodeCount
+    assertThat((0 until graph.nodeCount).map(tree::getImmediateDominator))
+      // 1 is not dominated by 0 as it can also be reached through 5 -> 2 -> 3 -> 4.
+      .containsExactly(virtualRoot, virtualRoot, virtualRoot, virtualRoot, 3, virtualRoot, -1).inOrder()
+  }
+
+  @Test
+  fun retainedSizesSumDominatedShallowSizes() {
+    val retainedSizes = graph.computeDominatorTree().computeRetainedSizes(longArrayOf(1, 2, 4, 8, 16, 32, 64))
+    assertThat(retainedSizes.toList()).containsExactly(1L, 2L, 4L, 24L, 16L, 32L, 0L).inOrder()
+  }
+
+  @Test
+  fun longChainsDoNotOverflowTheStack() {
+    val length = 1_000_000
+    val builder = HeapGraph.Builder(length).addRoot(0)
+    (1 until length).forEach { builder.addEdge(it - 1, it) }
+    val graph = builder.build()
+
+    val retainedSizes = graph.computeDominatorTree().computeRetainedSizes(LongArray(length) { 1 })
+    assertThat(retainedSizes.first()).isEqualTo(length.toLong())
+    assertThat(retainedSizes.last()).isEqualTo(1L)
+    assertThat(graph.computeDepths().last()).isEqualTo(length - 1)
+  }
+}
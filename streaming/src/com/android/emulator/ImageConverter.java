@@ -25,7 +25,9 @@ import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.util.system.CpuArch;
+import java.awt.Rectangle;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -96,6 +98,115 @@ public class ImageConverter {
     }
   }
 
+  /**
+   * Converts pixel values in RGB888 format stored in a {@link ByteBuffer}, e.g. a memory-mapped file shared
+   * with the Emulator, to the 32-bit integers in the 0xAARRGGBB format. The position of the buffer is not
+   * changed.
+   *
+   * @param buffer the buffer containing the pixel values to convert starting at index 0
+   * @param pixels the converted pixel values
+   * @param pixelCount the number of pixels to convert
+   */
+  public static void unpackRgb888(@NotNull ByteBuffer buffer, int[] pixels, int pixelCount) {
+    if (buffer.limit() < pixelCount * 3) {
+      throw new IllegalArgumentException("Buffer size (" + buffer.limit() + ") is less than " + pixelCount * 3 + " bytes");
+    }
+    int i = 0;
+    for (int j = 0; j < pixelCount; j++) {
+      int red = buffer.get(i++) & 0xFF;
+      int green = buffer.get(i++) & 0xFF;
+      int blue = buffer.get(i++) & 0xFF;
+      pixels[j] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+  }
+
+  /**
+   * Converts pixel values in RGB888 format inside the given region of the image to the 32-bit integers
+   * in the 0xAARRGGBB format. Pixels outside the region are left unchanged. The position of the buffer
+   * is not changed.
+   *
+   * @param imageBytes the buffer containing the pixel values of the whole image starting at index 0
+   * @param width the width of the image
+   * @param region the region of the image to convert
+   * @param pixels the pixel values of the whole image
+   */
+  public static void unpackRgb888(@NotNull ByteBuffer imageBytes, int width, @NotNull Rectangle region, int[] pixels) {
+    for (int y = region.y; y < region.y + region.height; y++) {
+      int j = y * width + region.x;
+      int i = j * 3;
+      int end = j + region.width;
+      while (j < end) {
+        int red = imageBytes.get(i++) & 0xFF;
+        int green = imageBytes.get(i++) & 0xFF;
+        int blue = imageBytes.get(i++) & 0xFF;
+        pixels[j++] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+      }
+    }
+  }
+
+  /**
+   * Returns the bounding rectangle of the pixels that differ between an image in RGB888 format and
+   * the previous image of the same size in the 0xAARRGGBB format. Returns an empty rectangle if the two
+   * images are identical. The position of the buffer is not changed.
+   * <p>
+   * Rows are compared from the top and from the bottom until the first difference is found, so for
+   * a small change most of the image is examined only once and nothing is written.
+   *
+   * @param imageBytes the buffer containing the pixel values of the new image starting at index 0
+   * @param width the width of the images
+   * @param height the height of the images
+   * @param previousPixels the pixel values of the previous image
+   */
+  public static @NotNull Rectangle findChangedRegion(@NotNull ByteBuffer imageBytes, int width, int height, int[] previousPixels) {
+    int top = 0;
+    while (top < height && isSameRow(imageBytes, width, top, previousPixels)) {
+      top++;
+    }
+    if (top == height) {
+      return new Rectangle();
+    }
+    int bottom = height - 1;
+    while (isSameRow(imageBytes, width, bottom, previousPixels)) {
+      bottom--;
+    }
+    int left = 0;
+    while (isSameColumn(imageBytes, width, left, top, bottom, previousPixels)) {
+      left++;
+    }
+    int right = width - 1;
+    while (isSameColumn(imageBytes, width, right, top, bottom, previousPixels)) {
+      right--;
+    }
+    return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+  }
+
+  private static boolean isSameRow(@NotNull ByteBuffer imageBytes, int width, int y, int[] previousPixels) {
+    int j = y * width;
+    int end = j + width;
+    while (j < end) {
+      if (!isSamePixel(imageBytes, j, previousPixels)) {
+        return false;
+      }
+      j++;
+    }
+    return true;
+  }
+
+  private static boolean isSameColumn(@NotNull ByteBuffer imageBytes, int width, int x, int top, int bottom, int[] previousPixels) {
+    for (int y = top; y <= bottom; y++) {
+      if (!isSamePixel(imageBytes, y * width + x, previousPixels)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSamePixel(@NotNull ByteBuffer imageBytes, int pixelIndex, int[] previousPixels) {
+    int i = pixelIndex * 3;
+    int rgb = ((imageBytes.get(i) & 0xFF) << 16) | ((imageBytes.get(i + 1) & 0xFF) << 8) | (imageBytes.get(i + 2) & 0xFF);
+    return (previousPixels[pixelIndex] & 0xFFFFFF) == rgb;
+  }
+
   @VisibleForTesting
   synchronized static void loadNativeLibrary() {
     Path libFile = getLibLocation();
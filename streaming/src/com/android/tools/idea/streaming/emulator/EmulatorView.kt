@@ -39,6 +39,7 @@ import com.android.tools.adtui.common.AdtUiCursorsProvider
 import com.android.tools.analytics.toProto
 import com.android.tools.idea.concurrency.executeOnPooledThread
 import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS
 import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_TRACE_NOTIFICATIONS
 import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_TRACE_SCREENSHOTS
 import com.android.tools.idea.io.grpc.stub.StreamObserver
@@ -167,6 +168,8 @@ import java.util.concurrent.atomic.AtomicReference
 import javax.swing.KeyStroke
 import kotlin.math.PI
 import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.floor
 import kotlin.math.min
 import kotlin.math.roundToInt
 import com.android.emulator.control.Image as ImageMessage
@@ -600,15 +603,19 @@ class EmulatorView(
       }
 
       cancelScreenshotFeed()
+      // The Emulator always runs on the same host, so it can write images directly to a shared memory buffer.
+      val frameBuffer =
+          if (EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.get()) SharedMemoryFrameBuffer.create(maxImageSize.width * maxImageSize.height)
+          else null
       val imageFormat = ImageFormat.newBuilder()
         .setDisplay(displayId)
         .setFormat(ImageFormat.ImgFormat.RGB888)
         .setWidth(maxImageSize.width)
         .setHeight(maxImageSize.height)
-        .build()
-      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants)
+      frameBuffer?.let { imageFormat.transport = it.transport }
+      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants, frameBuffer)
       screenshotReceiver = receiver
-      screenshotFeed = emulator.streamScreenshot(imageFormat, receiver)
+      screenshotFeed = emulator.streamScreenshot(imageFormat.build(), receiver)
     }
   }
 
@@ -1101,14 +1108,23 @@ class EmulatorView(
 
   private inner class ScreenshotReceiver(
     val maxImageSize: Dimension,
-    val orientationQuadrants: Int
+    val orientationQuadrants: Int,
+    private val frameBuffer: SharedMemoryFrameBuffer?
   ) : EmptyStreamObserver<ImageMessage>(), Disposable {
     private val screenshotForProcessing = AtomicReference<Screenshot?>()
     private val screenshotForDisplay = AtomicReference<Screenshot?>()
     private val skinLayoutCache = SkinLayoutCache(emulator)
-    private val recycledImage = AtomicReference<SofterReference<BufferedImage>?>()
+    private val recycledScreenshot = AtomicReference<SofterReference<Screenshot>?>()
     private val alarm = Alarm(this)
     private var expectedFrameNumber = -1
+    // The following fields are accessed only by the onNext method.
+    private var frameIndex = 0
+    private var previousScreenshot: Screenshot? = null
+    private val changedRegions = ChangedRegionHistory()
+
+    init {
+      frameBuffer?.let { Disposer.register(this, it) }
+    }
 
     override fun onNext(response: ImageMessage) {
       val arrivalTime = System.currentTimeMillis()
@@ -1136,9 +1152,19 @@ class EmulatorView(
         return // Ignore invalid screenshot.
       }
 
-      if (response.image.size() != imageFormat.width * imageFormat.height * 3) {
+      val imageSize = imageFormat.width * imageFormat.height * 3
+      // When the shared memory transport is used, the pixels are in the frame buffer and the message contains no image bytes.
+      val sharedMemoryFrame = frameBuffer != null && response.image.isEmpty
+      if (sharedMemoryFrame) {
+        if (imageSize > frameBuffer!!.size) {
+          LOG.error("Inconsistent ImageMessage for display ${imageFormat.display}: ${imageFormat.width}x${imageFormat.height}" +
+                    " image doesn't fit in the ${frameBuffer.size} byte shared memory buffer")
+          return
+        }
+      }
+      else if (response.image.size() != imageSize) {
         LOG.error("Inconsistent ImageMessage for display ${imageFormat.display}: ${imageFormat.width}x${imageFormat.height}" +
-                  " image contains ${response.image.size()} bytes instead of ${imageFormat.width * imageFormat.height * 3}")
+                  " image contains ${response.image.size()} bytes instead of $imageSize")
         return
       }
 
@@ -1167,15 +1193,33 @@ class EmulatorView(
       }
 
       alarm.cancelAllRequests()
-      val recycledImage = recycledImage.getAndSet(null)?.get()
-      val image = if (recycledImage?.width == imageFormat.width && recycledImage.height == imageFormat.height) {
-        val pixels = (recycledImage.raster.dataBuffer as DataBufferInt).data
-        ImageConverter.unpackRgb888(response.image, pixels)
-        recycledImage
+      frameIndex++
+      val imageBytes = if (sharedMemoryFrame) frameBuffer!!.imageBytes else response.image.asReadOnlyByteBuffer()
+      // Find the part of the image that changed since the previous frame.
+      val previous = previousScreenshot
+      val changedRegion = when {
+        previous != null && previous.frameIndex == frameIndex - 1 &&
+            previous.image.width == imageFormat.width && previous.image.height == imageFormat.height ->
+            ImageConverter.findChangedRegion(imageBytes, imageFormat.width, imageFormat.height, previous.image.pixels)
+        else -> null
+      }
+      changedRegions.add(frameIndex, changedRegion)
+
+      val recycled = recycledScreenshot.getAndSet(null)?.get()
+      val image = if (recycled != null && recycled !== previous &&
+                      recycled.image.width == imageFormat.width && recycled.image.height == imageFormat.height) {
+        val pixels = recycled.image.pixels
+        // Only the pixels that changed since the recycled frame need to be converted.
+        val staleRegion = changedRegions.unionSince(recycled.frameIndex)
+        when {
+          staleRegion == null -> unpackPixels(response, sharedMemoryFrame, pixels)
+          !staleRegion.isEmpty -> ImageConverter.unpackRgb888(imageBytes, imageFormat.width, staleRegion, pixels)
+        }
+        recycled.image
       }
       else {
         val pixels = IntArray(imageFormat.width * imageFormat.height)
-        ImageConverter.unpackRgb888(response.image, pixels)
+        unpackPixels(response, sharedMemoryFrame, pixels)
         val buffer = DataBufferInt(pixels, pixels.size)
         val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, imageFormat.width, imageFormat.height, SAMPLE_MODEL_BIT_MASKS)
         val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
@@ -1184,7 +1228,7 @@ class EmulatorView(
       }
 
       val lostFrames = if (expectedFrameNumber > 0) response.seq - expectedFrameNumber else 0
-      stats?.recordFrameArrival(arrivalTime - frameOriginationTime, lostFrames, imageFormat.width * imageFormat.height)
+      stats?.recordFrameArrival(arrivalTime - frameOriginationTime, lostFrames, imageFormat.width * imageFormat.height, sharedMemoryFrame)
       expectedFrameNumber = response.seq + 1
 
       if (displayMode != null && !checkAspectRatioConsistency(imageFormat, displayMode)) {
@@ -1199,7 +1243,8 @@ class EmulatorView(
       }
       val displayShape =
           DisplayShape(imageFormat.width, imageFormat.height, imageRotation, activeDisplayRegion, displayMode, response.seq.toUInt())
-      val screenshot = Screenshot(displayShape, image, frameOriginationTime)
+      val screenshot = Screenshot(displayShape, image, frameOriginationTime, frameIndex, changedRegion)
+      previousScreenshot = screenshot
       val skinLayout = skinLayoutCache.getCached(displayShape, currentPosture?.posture)
       if (skinLayout == null) {
         computeSkinLayoutOnPooledThread(screenshot)
@@ -1210,6 +1255,15 @@ class EmulatorView(
       }
     }
 
+    private fun unpackPixels(response: ImageMessage, sharedMemoryFrame: Boolean, pixels: IntArray) {
+      if (sharedMemoryFrame) {
+        frameBuffer!!.unpackRgb888(response.format.width, response.format.height, pixels)
+      }
+      else {
+        ImageConverter.unpackRgb888(response.image, pixels)
+      }
+    }
+
     private fun checkAspectRatioConsistency(imageFormat: ImageFormat, displayMode: DisplayMode): Boolean {
       val imageAspectRatio = if (imageFormat.rotation.rotationValue % 2 == 0) imageFormat.width.toDouble() / imageFormat.height
                              else imageFormat.height.toDouble() / imageFormat.width
@@ -1235,7 +1289,7 @@ class EmulatorView(
     }
 
     private fun computeSkinLayoutOnPooledThread(screenshotWithoutSkin: Screenshot) {
-      screenshotForProcessing.set(screenshotWithoutSkin)
+      screenshotForProcessing.getAndSet(screenshotWithoutSkin)?.let { screenshotWithoutSkin.mergeChangedRegion(it) }
 
       executeOnPooledThread {
         // If the screenshot feed has not been cancelled, update the skin and the display image.
@@ -1253,7 +1307,7 @@ class EmulatorView(
     }
 
     private fun updateDisplayImageOnUiThread(screenshot: Screenshot) {
-      screenshotForDisplay.set(screenshot)
+      screenshotForDisplay.getAndSet(screenshot)?.let { screenshot.mergeChangedRegion(it) }
 
       EventQueue.invokeLater { // This is safe because this code doesn't touch PSI or VFS.
         // If the screenshot feed has not been cancelled, update the display image.
@@ -1272,11 +1326,12 @@ class EmulatorView(
       }
 
       // Creation of a large BufferedImage is expensive. Recycle the old image if it has the proper size.
-      lastScreenshot?.image?.let {
+      val oldScreenshot = lastScreenshot
+      oldScreenshot?.image?.let {
         if (it.width == screenshot.displayShape.width && it.height == screenshot.displayShape.height) {
-          recycledImage.set(SofterReference(it))
+          recycledScreenshot.set(SofterReference(oldScreenshot))
           alarm.cancelAllRequests()
-          alarm.addRequest({ recycledImage.set(null) }, CACHED_IMAGE_LIVE_TIME_MILLIS, ModalityState.any())
+          alarm.addRequest({ recycledScreenshot.set(null) }, CACHED_IMAGE_LIVE_TIME_MILLIS, ModalityState.any())
         }
         else if (!isSameAspectRatio(it.width, it.height, screenshot.displayShape.width, screenshot.displayShape.height, 0.01)) {
           zoom(ZoomType.FIT) // Display dimensions changed - reset zoom level.
@@ -1288,20 +1343,99 @@ class EmulatorView(
 
       receivedFrameCount++
       frameTimestampMillis = System.currentTimeMillis()
-      repaint()
+      repaintChangedRegion(screenshot, oldScreenshot)
 
       if (screenshot.displayShape.displayMode != lastDisplayMode) {
         firePropertyChange(DISPLAY_MODE_PROPERTY, lastDisplayMode, screenshot.displayShape.displayMode)
       }
     }
 
+    /**
+     * Repaints the part of the view showing the region of the display that changed since [oldScreenshot],
+     * or the whole view if the changed region is not known.
+     */
+    @UiThread
+    private fun repaintChangedRegion(screenshot: Screenshot, oldScreenshot: Screenshot?) {
+      val changedRegion = screenshot.changedRegion
+      val displayRect = displayRectangle
+      if (changedRegion == null || displayRect == null || oldScreenshot == null ||
+          screenshot.baseFrameIndex != oldScreenshot.frameIndex || screenshot.skinLayout !== oldScreenshot.skinLayout) {
+        repaint()
+        return
+      }
+      if (changedRegion.isEmpty) {
+        return // The frame is identical to the previous one.
+      }
+      // Convert from image to physical and then to virtual pixels, rounding outwards and adding a margin for interpolation.
+      val scaleX = displayRect.width.toDouble() / screenshot.image.width / screenScale
+      val scaleY = displayRect.height.toDouble() / screenshot.image.height / screenScale
+      val x1 = floor(displayRect.x / screenScale + changedRegion.x * scaleX).toInt() - 1
+      val y1 = floor(displayRect.y / screenScale + changedRegion.y * scaleY).toInt() - 1
+      val x2 = ceil(displayRect.x / screenScale + changedRegion.maxX * scaleX).toInt() + 1
+      val y2 = ceil(displayRect.y / screenScale + changedRegion.maxY * scaleY).toInt() + 1
+      repaint(x1, y1, x2 - x1, y2 - y1)
+    }
+
     override fun dispose() {
     }
   }
 
-  private class Screenshot(val displayShape: DisplayShape, val image: BufferedImage, val frameOriginationTime: Long) {
+  /**
+   * A display image together with the region that changed since the frame with [baseFrameIndex].
+   * A null [changedRegion] means that the whole image may have changed.
+   */
+  private class Screenshot(
+    val displayShape: DisplayShape,
+    val image: BufferedImage,
+    val frameOriginationTime: Long,
+    val frameIndex: Int,
+    changedRegion: Rectangle?,
+  ) {
     lateinit var skinLayout: SkinLayout
     var painted = false
+    var changedRegion: Rectangle? = changedRegion
+      private set
+    var baseFrameIndex = frameIndex - 1
+      private set
+
+    /** Extends the changed region to account for an [earlier] screenshot that is dropped without being displayed. */
+    fun mergeChangedRegion(earlier: Screenshot) {
+      val region = changedRegion
+      val earlierRegion = earlier.changedRegion
+      changedRegion =
+          if (region == null || earlierRegion == null || earlier.frameIndex != baseFrameIndex) null else union(region, earlierRegion)
+      baseFrameIndex = earlier.baseFrameIndex
+    }
+  }
+
+  /**
+   * Remembers the regions of the display image that changed in each of the last few frames.
+   */
+  private class ChangedRegionHistory {
+    private val regions = ArrayDeque<Pair<Int, Rectangle?>>()
+
+    fun add(frameIndex: Int, changedRegion: Rectangle?) {
+      if (regions.size == MAX_CHANGED_REGION_HISTORY) {
+        regions.removeFirst()
+      }
+      regions.addLast(Pair(frameIndex, changedRegion))
+    }
+
+    /**
+     * Returns the union of the regions that changed after the frame with [frameIndex], or null if it is not known.
+     */
+    fun unionSince(frameIndex: Int): Rectangle? {
+      if (regions.isEmpty() || regions.first().first > frameIndex + 1) {
+        return null
+      }
+      var result = Rectangle()
+      for ((index, region) in regions) {
+        if (index > frameIndex) {
+          result = union(result, region ?: return null)
+        }
+      }
+      return result
+    }
   }
 
   /**
@@ -1361,8 +1495,11 @@ class EmulatorView(
     }
 
     @Synchronized
-    fun recordFrameArrival(latencyOfArrival: Long, numberOfLostFrames: Int, numberOfPixels: Int) {
+    fun recordFrameArrival(latencyOfArrival: Long, numberOfLostFrames: Int, numberOfPixels: Int, sharedMemory: Boolean) {
       data.frameCount += 1 + numberOfLostFrames
+      if (sharedMemory) {
+        data.sharedMemoryFrameCount++
+      }
       data.pixelCount += (1 + numberOfLostFrames) * numberOfPixels
       data.latencyOfArrival.recordValue(latencyOfArrival)
       if (numberOfLostFrames != 0) {
@@ -1406,6 +1543,7 @@ class EmulatorView(
       var frameCount = 0
       var droppedFrameCount = 0
       var droppedFrameCountBeforeArrival = 0
+      var sharedMemoryFrameCount = 0
       var pixelCount = 0L
       val latencyEndToEnd = Histogram(1)
       val latencyOfArrival = Histogram(1)
@@ -1417,7 +1555,8 @@ class EmulatorView(
           val frameSize = (pixelCount.toDouble() / frameCount).roundToInt()
           val neverArrived = if (droppedFrameCountBeforeArrival != 0) " (${droppedFrameCountBeforeArrival} never arrived)" else ""
           val dropped = if (droppedFrameCount != 0) " dropped frames: $droppedFrameCount$neverArrived" else ""
-          LOG.info("Frames: $frameCount $dropped average frame rate: $frameRate average frame size: $frameSize pixels\n" +
+          val sharedMemory = if (sharedMemoryFrameCount != 0) " received through shared memory: $sharedMemoryFrameCount" else ""
+          LOG.info("Frames: $frameCount$sharedMemory $dropped average frame rate: $frameRate average frame size: $frameSize pixels\n" +
                    "latency: ${shortDebugString(latencyEndToEnd.toProto())}\n" +
                    "latency of arrival: ${shortDebugString(latencyOfArrival.toProto())}")
         }
@@ -1439,6 +1578,17 @@ private val SAMPLE_MODEL_BIT_MASKS = intArrayOf(0xFF0000, 0xFF00, 0xFF, ALPHA_MA
 private val COLOR_MODEL = DirectColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
                                            32, 0xFF0000, 0xFF00, 0xFF, ALPHA_MASK, false, DataBuffer.TYPE_INT)
 private const val CACHED_IMAGE_LIVE_TIME_MILLIS = 2000
+private const val MAX_CHANGED_REGION_HISTORY = 8
+
+private val BufferedImage.pixels: IntArray
+  get() = (raster.dataBuffer as DataBufferInt).data
+
+/** Unlike [Rectangle.union], ignores empty rectangles. */
+private fun union(rect1: Rectangle, rect2: Rectangle): Rectangle = when {
+  rect1.isEmpty -> rect2
+  rect2.isEmpty -> rect1
+  else -> rect1.union(rect2)
+}
 
 // Android (and the emulator gRPC) button bits corresponding to the AWT button definitions.
 // The middle and the right buttons are ordered differently in Android compared to AWT.
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.emulator
+
+import com.android.emulator.ImageConverter
+import com.android.emulator.control.ImageTransport
+import com.android.emulator.control.ImageTransport.TransportChannel
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.util.io.FileUtil
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+
+/**
+ * A memory-mapped file the Emulator writes display images to in RGB888 format when the screenshot
+ * feed is requested with the [ImageTransport.TransportChannel.MMAP] transport. In this mode image
+ * messages received over gRPC carry only the image format, the sequence number and the timestamp,
+ * but no pixels.
+ *
+ * The Emulator may overwrite the buffer while a frame is being read from it, which may result in
+ * occasional tearing, but never in reading outside the buffer.
+ */
+internal class SharedMemoryFrameBuffer private constructor(private val file: Path, val size: Int) : Disposable {
+
+  private val buffer: MappedByteBuffer =
+      FileChannel.open(file, READ, WRITE).use { it.map(FileChannel.MapMode.READ_WRITE, 0, size.toLong()) }
+
+  /** The transport to use in the [com.android.emulator.control.ImageFormat] of the screenshot feed request. */
+  val transport: ImageTransport = ImageTransport.newBuilder()
+    .setChannel(TransportChannel.MMAP)
+    .setHandle(file.toUri().toString())
+    .build()
+
+  /** The contents of the buffer. Use absolute reads only. */
+  val imageBytes: ByteBuffer
+    get() = buffer.asReadOnlyBuffer()
+
+  /**
+   * Converts the first [width] * [height] pixels of the buffer to the 32-bit integers in the 0xAARRGGBB format.
+   */
+  fun unpackRgb888(width: Int, height: Int, pixels: IntArray) {
+    ImageConverter.unpackRgb888(buffer, pixels, width * height)
+  }
+
+  override fun dispose() {
+    // The mapping stays valid until the buffer is garbage collected, even after the file is deleted.
+    try {
+      Files.deleteIfExists(file)
+    }
+    catch (e: IOException) {
+      file.toFile().deleteOnExit() // The file may still be mapped by the Emulator on Windows.
+    }
+  }
+
+  companion object {
+    /**
+     * Creates a frame buffer large enough for an RGB888 image containing [maxPixels] pixels.
+     * Returns null if the memory-mapped file could not be created.
+     */
+    fun create(maxPixels: Int): SharedMemoryFrameBuffer? {
+      var file: Path? = null
+      try {
+        file = Files.createTempFile("emulator-frame", ".rgb")
+        val size = maxPixels * 3
+        RandomAccessFile(file.toFile(), "rw").use { it.setLength(size.toLong()) }
+        return SharedMemoryFrameBuffer(file, size)
+      }
+      catch (e: IOException) {
+        thisLogger().warn("Unable to create a shared memory frame buffer, falling back to gRPC image transport", e)
+        file?.let { FileUtil.delete(it) }
+        return null
+      }
+    }
+  }
+}
@@ -17,9 +17,12 @@ package com.android.emulator
 
 import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.idea.protobuf.UnsafeByteOperations
+import com.google.common.truth.Truth.assertThat
 import com.intellij.testFramework.UsefulTestCase.assertThrows
 import org.junit.Assert.fail
 import org.junit.Test
+import java.awt.Rectangle
+import java.nio.ByteBuffer
 
 /**
  * Tests for [ImageConverter].
@@ -50,6 +53,47 @@ class ImageConverterTest {
     println("unpackRgb888: ${String.format("%.5f", t)} sec")
   }
 
+  @Test
+  fun testUnpackRgb888FromByteBuffer() {
+    val buffer = ByteBuffer.allocateDirect(testImage.size())
+    testImage.copyTo(buffer)
+    buffer.flip()
+    val pixels = IntArray(IMAGE_SIZE)
+    val expectedPixels = IntArray(IMAGE_SIZE)
+    ImageConverter.unpackRgb888Slow(testImage, expectedPixels)
+    val t = runBenchmark { ImageConverter.unpackRgb888(buffer, pixels, IMAGE_SIZE) }
+    assertThat(pixels).isEqualTo(expectedPixels)
+    assertThat(buffer.position()).isEqualTo(0)
+    println("unpackRgb888 from ByteBuffer: ${String.format("%.5f", t)} sec")
+
+    assertThrows(IllegalArgumentException::class.java) {
+      ImageConverter.unpackRgb888(ByteBuffer.allocate(29), IntArray(10), 10)
+    }
+  }
+
+  @Test
+  fun testFindChangedRegionAndUnpackRegion() {
+    val width = 100
+    val height = 50
+    val bytes = ByteArray(width * height * 3) { (it / 3).toByte() }
+    val previousPixels = IntArray(width * height)
+    ImageConverter.unpackRgb888(ByteBuffer.wrap(bytes), previousPixels, width * height)
+
+    assertThat(ImageConverter.findChangedRegion(ByteBuffer.wrap(bytes), width, height, previousPixels).isEmpty).isTrue()
+
+    // Change two pixels.
+    bytes[(10 * width + 20) * 3] = 1
+    bytes[(30 * width + 5) * 3 + 2] = 1
+    val changedRegion = ImageConverter.findChangedRegion(ByteBuffer.wrap(bytes), width, height, previousPixels)
+    assertThat(changedRegion).isEqualTo(Rectangle(5, 10, 16, 21))
+
+    val pixels = previousPixels.copyOf()
+    ImageConverter.unpackRgb888(ByteBuffer.wrap(bytes), width, changedRegion, pixels)
+    val expectedPixels = IntArray(width * height)
+    ImageConverter.unpackRgb888(ByteBuffer.wrap(bytes), expectedPixels, width * height)
+    assertThat(pixels).isEqualTo(expectedPixels)
+  }
+
   @Test
   fun testUnpackRgb888ErrorHandling() {
     val bytes = ByteArray(30)
@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.streaming.emulator
 
+import com.android.emulator.control.ImageFormat
+import com.android.emulator.control.ImageTransport
 import com.android.emulator.control.Posture.PostureValue
 import com.android.testutils.ImageDiffUtil
 import com.android.testutils.MockitoKt.any
@@ -32,6 +34,7 @@ import com.android.tools.adtui.swing.IconLoaderRule
 import com.android.tools.adtui.swing.replaceKeyboardFocusManager
 import com.android.tools.adtui.ui.NotificationHolderPanel
 import com.android.tools.analytics.UsageTrackerRule
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.protobuf.TextFormat.shortDebugString
 import com.android.tools.idea.streaming.emulator.EmulatorController.ConnectionState
 import com.android.tools.idea.streaming.emulator.FakeEmulator.GrpcCallRecord
@@ -80,6 +83,7 @@ import org.junit.Test
 import org.mockito.MockedStatic
 import org.mockito.Mockito.atLeast
 import org.mockito.Mockito.verify
+import java.awt.Color
 import java.awt.Component
 import java.awt.DefaultKeyboardFocusManager
 import java.awt.Dimension
@@ -87,6 +91,7 @@ import java.awt.KeyboardFocusManager
 import java.awt.MouseInfo
 import java.awt.Point
 import java.awt.PointerInfo
+import java.awt.Rectangle
 import java.awt.event.InputEvent.CTRL_DOWN_MASK
 import java.awt.event.InputEvent.SHIFT_DOWN_MASK
 import java.awt.event.KeyEvent
@@ -112,10 +117,15 @@ import java.awt.event.KeyEvent.VK_RIGHT
 import java.awt.event.KeyEvent.VK_SHIFT
 import java.awt.event.KeyEvent.VK_TAB
 import java.awt.event.KeyEvent.VK_UP
+import java.awt.image.BufferedImage
+import java.net.URI
+import java.nio.file.Files
 import java.nio.file.Path
 import java.util.concurrent.TimeUnit.MILLISECONDS
 import java.util.concurrent.TimeoutException
+import javax.swing.JComponent
 import javax.swing.JScrollPane
+import javax.swing.RepaintManager
 import kotlin.time.Duration.Companion.seconds
 
 /**
@@ -291,6 +301,26 @@ class EmulatorViewTest {
     assertAppearance("EmulatorView4")
   }
 
+  @Test
+  fun testSharedMemoryScreenshots() {
+    StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.override(true, testRootDisposable)
+    view = emulatorViewRule.newEmulatorView()
+    fakeUi = FakeUi(createScrollPane(view), 2.0)
+
+    fakeUi.root.size = Dimension(200, 300)
+    fakeUi.layoutAndDispatchEvents()
+    val call = getStreamScreenshotCallAndWaitForFrame()
+    val request = call.request as ImageFormat
+    assertThat(request.transport.channel).isEqualTo(ImageTransport.TransportChannel.MMAP)
+    val frameFile = Path.of(URI(request.transport.handle))
+    assertThat(Files.size(frameFile)).isEqualTo(363L * 547 * 3)
+    // The image is read from the shared memory file and looks the same as the one received over gRPC.
+    assertAppearance("EmulatorView1")
+
+    Disposer.dispose(view)
+    assertThat(Files.exists(frameFile)).isFalse()
+  }
+
   @Test
   fun testKeyboardInput() {
     view = emulatorViewRule.newEmulatorView()
@@ -929,6 +959,74 @@ class EmulatorViewTest {
     }
   }
 
+  @Test
+  fun testLocalChangeRepaintsOnlyChangedRegionAndReusesImages() {
+    view = emulatorViewRule.newEmulatorView()
+    fakeUi = FakeUi(createScrollPane(view), 2.0)
+    val frames = mutableMapOf<UInt, Pair<Rectangle, BufferedImage>>()
+    view.addFrameListener { frameNumber, displayRectangle, _, displayImage ->
+      frames[frameNumber] = Pair(Rectangle(displayRectangle), displayImage)
+    }
+
+    fakeUi.root.size = Dimension(200, 300)
+    fakeUi.layoutAndDispatchEvents()
+    val call = getStreamScreenshotCallAndWaitForFrame()
+    assertThat(shortDebugString(call.request)).isEqualTo("format: RGB888 width: 363 height: 547")
+    val firstImage = frames.getValue(fakeEmulator.frameNumber).second
+
+    val repaintManager = DirtyRegionRecorder(view)
+    val originalRepaintManager = RepaintManager.currentManager(view)
+    RepaintManager.setCurrentManager(repaintManager)
+    Disposer.register(testRootDisposable) { RepaintManager.setCurrentManager(originalRepaintManager) }
+
+    // Frames that differ from the previous one in a small area repaint only that area.
+    val patch1 = Rectangle(100, 200, 30, 20)
+    val secondImage = changeDisplayAndWaitForFrame(patch1, repaintManager, frames)
+    assertThat(secondImage).isNotSameInstanceAs(firstImage)
+    assertThat(secondImage.getRGB(patch1.centerX.toInt(), patch1.centerY.toInt())).isEqualTo(Color.BLACK.rgb)
+
+    // The image of the frame before the previous one is recycled, and the pixels that changed since that frame are converted again.
+    val patch2 = Rectangle(200, 300, 30, 20)
+    val thirdImage = changeDisplayAndWaitForFrame(patch2, repaintManager, frames)
+    assertThat(thirdImage).isSameInstanceAs(firstImage)
+    assertThat(thirdImage.getRGB(patch2.centerX.toInt(), patch2.centerY.toInt())).isEqualTo(Color.BLACK.rgb)
+    assertThat(thirdImage.getRGB(patch1.centerX.toInt(), patch1.centerY.toInt())).isNotEqualTo(Color.BLACK.rgb)
+
+    val patch3 = Rectangle(150, 250, 30, 20)
+    assertThat(changeDisplayAndWaitForFrame(patch3, repaintManager, frames)).isSameInstanceAs(secondImage)
+  }
+
+  /**
+   * Paints [patch] on the display of the fake emulator instead of the previous patch and checks that the view repaints only
+   * the area of the old and the new patches. Returns the image of the displayed frame.
+   */
+  private fun changeDisplayAndWaitForFrame(
+      patch: Rectangle, repaintManager: DirtyRegionRecorder, frames: Map<UInt, Pair<Rectangle, BufferedImage>>): BufferedImage {
+    val previousPatch = fakeEmulator.displayPatch
+    val expectedFrameNumber = fakeEmulator.frameNumber + 1u
+    repaintManager.dirtyRegions.clear()
+    fakeEmulator.displayPatch = patch
+    waitForCondition(2.seconds) { fakeEmulator.frameNumber == expectedFrameNumber }
+    waitForFrame()
+
+    val (displayRectangle, image) = frames.getValue(expectedFrameNumber)
+    val changedArea = if (previousPatch == null) patch else patch.union(previousPatch)
+    // Convert from image to virtual pixels.
+    val scaleX = displayRectangle.width.toDouble() / image.width / fakeUi.screenScale
+    val scaleY = displayRectangle.height.toDouble() / image.height / fakeUi.screenScale
+    val expectedDirtyRegion = Rectangle((displayRectangle.x / fakeUi.screenScale + changedArea.x * scaleX).toInt() + 1,
+                                        (displayRectangle.y / fakeUi.screenScale + changedArea.y * scaleY).toInt() + 1,
+                                        (changedArea.width * scaleX).toInt() - 2,
+                                        (changedArea.height * scaleY).toInt() - 2)
+    assertThat(repaintManager.dirtyRegions).isNotEmpty()
+    for (dirtyRegion in repaintManager.dirtyRegions) {
+      assertWithMessage("$dirtyRegion in ${view.bounds}").that(dirtyRegion.width * dirtyRegion.height)
+        .isLessThan(view.width * view.height / 10)
+    }
+    assertThat(repaintManager.dirtyRegions.reduce(Rectangle::union).contains(expectedDirtyRegion)).isTrue()
+    return image
+  }
+
   @Test
   fun testMetricsCollection() {
     view = emulatorViewRule.newEmulatorView()
@@ -1001,6 +1099,18 @@ class EmulatorViewTest {
       TestUtils.resolveWorkspacePathUnchecked("${GOLDEN_FILE_PATH}/${name}.png")
 }
 
+/** Records the regions of a component that are repainted. */
+private class DirtyRegionRecorder(private val component: JComponent) : RepaintManager() {
+  val dirtyRegions = mutableListOf<Rectangle>()
+
+  override fun addDirtyRegion(c: JComponent, x: Int, y: Int, w: Int, h: Int) {
+    if (c === component) {
+      dirtyRegions.add(Rectangle(x, y, w, h))
+    }
+    super.addDirtyRegion(c, x, y, w, h)
+  }
+}
+
 private fun UsageTrackerRule.deviceMirroringSessions(): List<AndroidStudioEvent> =
     usages.filter { it.studioEvent.kind == AndroidStudioEvent.EventKind.DEVICE_MIRRORING_SESSION }.map { it.studioEvent }
 
@@ -28,6 +28,7 @@ import com.android.emulator.control.FoldedDisplay
 import com.android.emulator.control.Image
 import com.android.emulator.control.ImageFormat
 import com.android.emulator.control.ImageFormat.ImgFormat
+import com.android.emulator.control.ImageTransport
 import com.android.emulator.control.KeyboardEvent
 import com.android.emulator.control.MouseEvent
 import com.android.emulator.control.Notification
@@ -89,6 +90,7 @@ import com.intellij.util.ui.UIUtil
 import org.junit.Assert.fail
 import java.awt.Color
 import java.awt.Dimension
+import java.awt.Rectangle
 import java.awt.RenderingHints
 import java.awt.RenderingHints.KEY_ANTIALIASING
 import java.awt.RenderingHints.KEY_RENDERING
@@ -98,12 +100,16 @@ import java.awt.geom.Path2D
 import java.awt.image.BufferedImage
 import java.awt.image.BufferedImage.TYPE_INT_ARGB
 import java.io.ByteArrayOutputStream
+import java.net.URI
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.charset.StandardCharsets.UTF_8
 import java.nio.file.Files
 import java.nio.file.NoSuchFileException
 import java.nio.file.Path
 import java.nio.file.StandardOpenOption.CREATE
 import java.nio.file.StandardOpenOption.CREATE_NEW
+import java.nio.file.StandardOpenOption.WRITE
 import java.util.concurrent.CancellationException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.LinkedBlockingDeque
@@ -161,6 +167,20 @@ class FakeEmulator(val avdFolder: Path, val grpcPort: Int, registrationDirectory
       }
     }
 
+  /**
+   * A rectangle of the primary display image, in image coordinates before rotation, that is painted black.
+   * Setting it sends a new screenshot, which differs from the previous one only around the old and the new rectangles.
+   */
+  @Volatile var displayPatch: Rectangle? = null
+    set(value) {
+      field = value
+      executor.execute {
+        val screenshotObserver = screenshotStreamObserver ?: return@execute
+        val request = screenshotStreamRequest ?: return@execute
+        sendScreenshot(request, screenshotObserver)
+      }
+    }
+
   private val clipboardInternal = AtomicReference("")
   var clipboard: String
     get() = clipboardInternal.get()
@@ -449,6 +469,14 @@ class FakeEmulator(val avdFolder: Path, val grpcPort: Int, registrationDirectory
     val displayId = request.display
     val size = getScaledAndRotatedDisplaySize(request.width, request.height, displayId)
     val image = drawDisplayImage(size, displayId)
+    displayPatch?.let {
+      if (displayId == PRIMARY_DISPLAY_ID) {
+        val g = image.createGraphics()
+        g.paint = Color.BLACK
+        g.fill(it)
+        g.dispose()
+      }
+    }
     val rotatedImage = rotateByQuadrants(image, displayRotation.number)
     val imageBytes = ByteArray(rotatedImage.width * rotatedImage.height * 3)
     var i = 0
@@ -470,9 +498,17 @@ class FakeEmulator(val avdFolder: Path, val grpcPort: Int, registrationDirectory
     displayMode?.let { imageFormat.displayMode = it.displayModeId }
 
     val response = Image.newBuilder()
-      .setImage(ByteString.copyFrom(imageBytes))
       .setFormat(imageFormat)
       .setSeq((++frameNumber).toInt())
+    if (request.transport.channel == ImageTransport.TransportChannel.MMAP) {
+      // Write the image to the shared memory file and send only the image metadata.
+      FileChannel.open(Path.of(URI(request.transport.handle)), WRITE).use {
+        it.write(ByteBuffer.wrap(imageBytes), 0)
+      }
+    }
+    else {
+      response.setImage(ByteString.copyFrom(imageBytes))
+    }
     responseObserver.sendStreamingResponse(response.build())
   }
 
@@ -29,6 +29,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -60,6 +62,11 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
     }
   }
 
+  /**
+   * Listeners notified of every event inserted in the table, from the thread that inserted it.
+   */
+  private final List<Consumer<Event>> myInsertListeners = new CopyOnWriteArrayList<>();
+
   @Override
   public void prepareStatements() {
     try {
@@ -104,6 +111,17 @@ public class UnifiedEventsTable extends DataStoreTable<UnifiedEventsTable.Statem
             event.getTimestamp(),
             event.getIsEnded() ? 1 : 0,
             event.toByteArray());
+    for (Consumer<Event> listener : myInsertListeners) {
+      listener.accept(event);
+    }
+  }
+
+  public void addInsertListener(@NotNull Consumer<Event> listener) {
+    myInsertListeners.add(listener);
+  }
+
+  public void removeInsertListener(@NotNull Consumer<Event> listener) {
+    myInsertListeners.remove(listener);
   }
 
   public void deleteEvents(long streamId, int pid, long groupId, Event.Kind kind, long fromTimestamp, long toTimestamp) {
@@ -37,6 +37,7 @@ import com.android.tools.profiler.proto.Transport.GetDevicesRequest;
 import com.android.tools.profiler.proto.Transport.GetDevicesResponse;
 import com.android.tools.profiler.proto.Transport.GetEventGroupsRequest;
 import com.android.tools.profiler.proto.Transport.GetEventGroupsResponse;
+import com.android.tools.profiler.proto.Transport.GetEventsRequest;
 import com.android.tools.profiler.proto.Transport.GetProcessesRequest;
 import com.android.tools.profiler.proto.Transport.GetProcessesResponse;
 import com.android.tools.profiler.proto.Transport.TimeRequest;
@@ -47,6 +48,7 @@ import com.android.tools.profiler.proto.TransportServiceGrpc;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import com.android.tools.idea.io.grpc.Channel;
+import com.android.tools.idea.io.grpc.stub.ServerCallStreamObserver;
 import com.android.tools.idea.io.grpc.stub.StreamObserver;
 import java.sql.Connection;
 import java.util.Collection;
@@ -236,6 +238,24 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     responseObserver.onCompleted();
   }
 
+  /**
+   * Pushes the events inserted in the datastore from now on to the caller, until the call is cancelled. This lets clients avoid polling
+   * {@link #getEventGroups} for event kinds that have no new data.
+   * <p>
+   * A default {@link Event} is sent first to acknowledge the subscription. A default event is sent again whenever events had to be
+   * dropped because the caller was not reading them fast enough, in which case the caller should assume any of its queries may have new
+   * results.
+   */
+  @Override
+  public void getEvents(GetEventsRequest request, StreamObserver<Event> responseObserver) {
+    ServerCallStreamObserver<Event> observer = (ServerCallStreamObserver<Event>)responseObserver;
+    EventSubscriber subscriber = new EventSubscriber(observer);
+    observer.setOnReadyHandler(subscriber::onReady);
+    observer.setOnCancelHandler(() -> myTable.removeInsertListener(subscriber));
+    myTable.addInsertListener(subscriber);
+    subscriber.accept(Event.getDefaultInstance());
+  }
+
   @Override
   public void deleteEvents(Transport.DeleteEventsRequest request, StreamObserver<Transport.DeleteEventsResponse> responseObserver) {
     myTable.deleteEvents(request.getStreamId(),
@@ -247,4 +267,36 @@ public class TransportService extends TransportServiceGrpc.TransportServiceImplB
     responseObserver.onNext(Transport.DeleteEventsResponse.getDefaultInstance());
     responseObserver.onCompleted();
   }
+
+  /**
+   * Forwards inserted events to a caller of {@link #getEvents}. Events are dropped rather than buffered while the transport is not
+   * ready, and the caller is told to resynchronize once it is.
+   */
+  private static final class EventSubscriber implements Consumer<Event> {
+    @NotNull private final ServerCallStreamObserver<Event> myObserver;
+    private boolean myHasDroppedEvents;
+
+    private EventSubscriber(@NotNull ServerCallStreamObserver<Event> observer) {
+      myObserver = observer;
+    }
+
+    @Override
+    public synchronized void accept(Event event) {
+      if (myObserver.isCancelled()) {
+        return;
+      }
+      if (!myObserver.isReady()) {
+        myHasDroppedEvents = true;
+        return;
+      }
+      myObserver.onNext(event);
+    }
+
+    private synchronized void onReady() {
+      if (myHasDroppedEvents && myObserver.isReady() && !myObserver.isCancelled()) {
+        myHasDroppedEvents = false;
+        myObserver.onNext(Event.getDefaultInstance());
+      }
+    }
+  }
 }
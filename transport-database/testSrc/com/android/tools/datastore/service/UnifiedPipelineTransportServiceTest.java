@@ -17,6 +17,7 @@ package com.android.tools.datastore.service;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,6 +27,7 @@ import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.TestGrpcService;
 import com.android.tools.datastore.database.UnifiedEventsTable;
 import com.android.tools.idea.io.grpc.Channel;
+import com.android.tools.idea.io.grpc.stub.ServerCallStreamObserver;
 import com.android.tools.idea.io.grpc.stub.StreamObserver;
 import com.android.tools.profiler.proto.Commands.Command;
 import com.android.tools.profiler.proto.Common;
@@ -54,7 +56,8 @@ import org.mockito.Mockito;
 public class UnifiedPipelineTransportServiceTest extends DataStorePollerTest {
   private DataStoreService myDataStore = mock(DataStoreService.class);
 
-  private TransportService myTransportService = new TransportService(myDataStore, new UnifiedEventsTable(), getPollTicker()::run);
+  private UnifiedEventsTable myTable = new UnifiedEventsTable();
+  private TransportService myTransportService = new TransportService(myDataStore, myTable, getPollTicker()::run);
 
   private FakeTransportService myFakeService = new FakeTransportService();
   private Channel myChannel;
@@ -91,6 +94,30 @@ public class UnifiedPipelineTransportServiceTest extends DataStorePollerTest {
     validateResponse(observer, VersionResponse.getDefaultInstance());
   }
 
+  @Test
+  public void getEventsPushesInsertedEvents() {
+    ServerCallStreamObserver<Event> observer = mock(ServerCallStreamObserver.class);
+    when(observer.isReady()).thenReturn(true);
+    myTransportService.getEvents(GetEventsRequest.getDefaultInstance(), observer);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(observer).setOnReadyHandler(onReady.capture());
+    // The subscription is acknowledged with a default event.
+    verify(observer, times(1)).onNext(Event.getDefaultInstance());
+
+    Event event = Event.newBuilder().setKind(Event.Kind.ECHO).setTimestamp(10).build();
+    myTable.insertUnifiedEvent(TEST_DEVICE_ID, event);
+    verify(observer).onNext(event);
+
+    // Events are dropped while the caller is not ready, and the caller is told to resynchronize once it is.
+    when(observer.isReady()).thenReturn(false);
+    Event droppedEvent = event.toBuilder().setTimestamp(20).build();
+    myTable.insertUnifiedEvent(TEST_DEVICE_ID, droppedEvent);
+    when(observer.isReady()).thenReturn(true);
+    onReady.getValue().run();
+    verify(observer, never()).onNext(droppedEvent);
+    verify(observer, times(2)).onNext(Event.getDefaultInstance());
+  }
+
   @Test
   public void streamConnectAndDisconnect() {
     // Get events from poller to validate we have a connection.